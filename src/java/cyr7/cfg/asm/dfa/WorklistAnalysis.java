@@ -2,6 +2,9 @@ package cyr7.cfg.asm.dfa;
 
 import cyr7.cfg.asm.nodes.AsmCFGNode;
 import cyr7.cfg.asm.nodes.AsmCFGStartNode;
+import cyr7.util.DataflowStatistics;
+import cyr7.util.PriorityWorklist;
+import cyr7.util.WorklistOrder;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -13,35 +16,47 @@ import java.util.Set;
 public enum WorklistAnalysis {
     ;
 
+    /**
+     * Runs {@code analysis} over the nodes reachable from {@code cfg},
+     * visiting them in the backward order given by {@link WorklistOrder},
+     * and returns the in value of each node.
+     */
     public static <L> Map<AsmCFGNode, L> analyze(
         AsmCFGStartNode cfg,
         BackwardDataflowAnalysis<L> analysis) {
 
-        Set<AsmCFGNode> allNodes = getAllNodes(cfg);
-        Queue<AsmCFGNode> worklist = new LinkedList<>(allNodes);
+        WorklistOrder<AsmCFGNode> order
+            = WorklistOrder.of(cfg, AsmCFGNode::outNodes);
+        PriorityWorklist worklist = PriorityWorklist.full(order.size());
 
         Map<AsmCFGNode, L> in = new HashMap<>();
-        Map<AsmCFGNode, L> out = new HashMap<>();
-        for (AsmCFGNode node : allNodes) {
-            in.put(node, analysis.topValue());
+        for (int i = 0; i < order.size(); i++) {
+            in.put(order.node(i), analysis.topValue());
         }
 
+        long visits = 0;
         while (!worklist.isEmpty()) {
-            AsmCFGNode node = worklist.remove();
+            AsmCFGNode node = order.backwardNode(worklist.poll());
             L outValue = node.outNodes()
                 .stream()
                 .map(in::get)
                 .reduce(analysis::meet)
                 .orElse(analysis.topValue());
-            out.put(node, outValue);
 
             L oldInValue = in.get(node);
             L inValue = analysis.transfer(node, outValue);
+            visits++;
             if (!oldInValue.equals(inValue)) {
                 in.put(node, inValue);
-                worklist.addAll(node.inNodes());
+                for (AsmCFGNode pred : node.inNodes()) {
+                    int index = order.backwardIndexOf(pred);
+                    if (index >= 0) {
+                        worklist.add(index);
+                    }
+                }
             }
         }
+        DataflowStatistics.record(visits);
         return in;
     }
 
@@ -2,8 +2,10 @@ package cyr7.cfg.asm.reg;
 
 import cyr7.cli.CLI;
 import cyr7.ir.IdGenerator;
+import cyr7.ir.ScopedIdGenerator;
 import cyr7.ir.nodes.IRCompUnit;
 import cyr7.ir.nodes.IRFuncDecl;
+import cyr7.util.PhaseTimings;
 import cyr7.x86.abst.ASMAbstract;
 import cyr7.x86.asm.ASMLine;
 import cyr7.x86.reg_allocator.ASMGenerator;
@@ -11,43 +13,107 @@ import cyr7.x86.reg_allocator.ASMTrivialRegAllocGenerator;
 import cyr7.x86.tiler.TilerFactory;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
 
 public final class ASMRegAllocGenerator implements ASMGenerator {
 
     private final TilerFactory tilerFactory;
     private final IdGenerator generator;
+    private final boolean parallel;
+    private final PhaseTimings timings;
 
     public ASMRegAllocGenerator(TilerFactory tilerFactory,
                                 IdGenerator generator) {
+        this(tilerFactory, generator, false);
+    }
+
+    /**
+     * If {@code parallel} is {@code true}, the functions of a compilation
+     * unit are allocated concurrently.
+     */
+    public ASMRegAllocGenerator(TilerFactory tilerFactory,
+                                IdGenerator generator,
+                                boolean parallel) {
+        this(tilerFactory, generator, parallel, PhaseTimings.disabled());
+    }
+
+    /**
+     * Tiling and each iteration of register allocation are recorded per
+     * function in {@code timings}.
+     */
+    public ASMRegAllocGenerator(TilerFactory tilerFactory,
+                                IdGenerator generator,
+                                boolean parallel,
+                                PhaseTimings timings) {
         this.tilerFactory = tilerFactory;
         this.generator = generator;
+        this.parallel = parallel;
+        this.timings = timings;
     }
 
+    /**
+     * Generates the assembly of each function in {@code compUnit}. Each
+     * function creates its temps and labels with a generator scoped to its
+     * name, so names never collide between functions and the output of a
+     * function depends neither on the other functions of {@code compUnit} nor
+     * on whether the functions are allocated concurrently.
+     */
     @Override
-    public List<ASMLine> generate(IRCompUnit compUnit) {
-        ASMTrivialRegAllocGenerator trivialGenerator
-            = new ASMTrivialRegAllocGenerator(tilerFactory, generator);
-        List<ASMLine> lines = new ArrayList<>();
-
-        for (IRFuncDecl funcDecl : compUnit.functions().values()) {
-            try {
-                lines.addAll(generate(funcDecl));
-            } catch (RegisterAllocationFailedException e) {
-                lines.addAll(trivialGenerator.generate(funcDecl));
-            }
-        }
-
+    public Map<String, List<ASMLine>> generateFunctions(IRCompUnit compUnit) {
+        Map<String, List<ASMLine>> lines = new LinkedHashMap<>();
+        generateFunctions(compUnit, lines::put);
         return lines;
     }
 
+    /**
+     * Passes each function to {@code sink} as soon as it and every function
+     * before it have been allocated. When the functions are allocated
+     * concurrently, only the functions that finish ahead of their turn are
+     * held back.
+     */
+    @Override
+    public void generateFunctions(IRCompUnit compUnit,
+                                  BiConsumer<String, List<ASMLine>> sink) {
+        List<IRFuncDecl> functions = new ArrayList<>(compUnit.functions().values());
+        Stream<IRFuncDecl> stream = parallel
+            ? functions.parallelStream()
+            : functions.stream();
+
+        stream
+            .map(f -> Map.entry(f.name(),
+                allocate(f, ScopedIdGenerator.forFunction(f.name()))))
+            .forEachOrdered(f -> sink.accept(f.getKey(), f.getValue()));
+    }
+
+    /**
+     * Allocates registers for {@code funcDecl}, falling back to spilling
+     * every temp if register allocation fails.
+     */
+    private List<ASMLine> allocate(IRFuncDecl funcDecl, IdGenerator generator) {
+        try {
+            return generate(funcDecl, generator);
+        } catch (RegisterAllocationFailedException e) {
+            return new ASMTrivialRegAllocGenerator(tilerFactory, generator, timings)
+                .generate(funcDecl);
+        }
+    }
+
     @Override
     public List<ASMLine> generate(IRFuncDecl funcDecl) throws RegisterAllocationFailedException {
-        List<ASMLine> abstractASM
-            = ASMAbstract.generateBody(funcDecl, generator, tilerFactory);
+        return generate(funcDecl, generator);
+    }
+
+    private List<ASMLine> generate(IRFuncDecl funcDecl, IdGenerator generator)
+            throws RegisterAllocationFailedException {
+        List<ASMLine> abstractASM = timings.time("tiling", funcDecl.name(),
+            () -> ASMAbstract.generateBody(funcDecl, generator, tilerFactory));
 
-        RegisterAllocator registerAllocator
-            = new RegisterAllocator(abstractASM, funcDecl.name(), generator);
+        RegisterAllocator registerAllocator = new RegisterAllocator(
+            abstractASM, funcDecl.name(), generator, timings);
         registerAllocator.run();
 
 //        CLI.debugPrint("--- REGISTER ALLOCATED ---");
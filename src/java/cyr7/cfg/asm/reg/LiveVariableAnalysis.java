@@ -2,41 +2,134 @@ package cyr7.cfg.asm.reg;
 
 import cyr7.cfg.asm.dfa.BackwardDataflowAnalysis;
 import cyr7.cfg.asm.nodes.AsmCFGNode;
-import cyr7.util.Sets;
+import cyr7.util.BitVector;
+import cyr7.x86.asm.ASMReg;
+import cyr7.x86.asm.ASMRegSize;
+import cyr7.x86.asm.ASMTempArg;
 import cyr7.x86.asm.ASMTempRegArg;
 
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * Live variable analysis of the assembly of one function. Sets of temps and
+ * registers are stored as {@link BitVector}s of dense indices: each register
+ * is indexed by its ordinal, and each temp by the id that it carries in the
+ * {@link cyr7.ir.TempTable TempTable} of the function, after the registers,
+ * so the temps of the function must have been numbered. {@link #args} turns a
+ * set back into temps and registers. The uses and defs of each node are
+ * computed once and reused by every visit of the node.
+ */
 public final class LiveVariableAnalysis
-    implements BackwardDataflowAnalysis<Set<? extends ASMTempRegArg>> {
+    implements BackwardDataflowAnalysis<BitVector> {
+
+    private static final BitVector EMPTY = new BitVector();
+    private static final ASMReg[] REGISTERS = ASMReg.values();
+    private static final int SIZES = ASMRegSize.values().length;
 
     private final UsesVisitor uses;
     private final DefsVisitor defs;
 
+    /**
+     * The temps seen so far, by index. The byte and quad word temps of the
+     * same name share an id, so each id has an index for each size.
+     */
+    private ASMTempArg[] temps = new ASMTempArg[0];
+
+    private final Map<AsmCFGNode, BitVector> nodeUses = new HashMap<>();
+    private final Map<AsmCFGNode, BitVector> nodeDefs = new HashMap<>();
+    private final Map<AsmCFGNode, BitVector> nodeKills = new HashMap<>();
+
     public LiveVariableAnalysis(String mangledName) {
         this.uses = new UsesVisitor(mangledName);
         this.defs = new DefsVisitor();
     }
 
+    private BitVector indicesOf(Set<? extends ASMTempRegArg> set) {
+        BitVector vector = new BitVector();
+        for (ASMTempRegArg arg : set) {
+            vector.set(indexOf(arg));
+        }
+        return vector;
+    }
+
+    private int indexOf(ASMTempRegArg arg) {
+        if (arg instanceof ASMReg) {
+            return ((ASMReg) arg).ordinal();
+        }
+        ASMTempArg temp = (ASMTempArg) arg;
+        assert temp.id >= 0 : "Temp " + temp + " is not numbered";
+        int slot = temp.id * SIZES + temp.size.ordinal();
+        if (slot >= temps.length) {
+            temps = Arrays.copyOf(temps, Math.max(slot + 1, temps.length * 2));
+        }
+        temps[slot] = temp;
+        return REGISTERS.length + slot;
+    }
+
+    private ASMTempRegArg argAt(int index) {
+        return index < REGISTERS.length
+            ? REGISTERS[index]
+            : temps[index - REGISTERS.length];
+    }
+
+    /**
+     * Returns the temps and registers in {@code vector}, a lattice value of
+     * this analysis.
+     */
+    public Set<ASMTempRegArg> args(BitVector vector) {
+        Set<ASMTempRegArg> set = new HashSet<>(vector.cardinality() * 2);
+        vector.forEach(index -> set.add(argAt(index)));
+        return set;
+    }
+
+    /**
+     * Returns the empty set. Lattice values are never modified once they
+     * have been returned, so the same empty set is shared by every node.
+     */
     @Override
-    public Set<ASMTempRegArg> topValue() {
-        return Collections.emptySet();
+    public BitVector topValue() {
+        return EMPTY;
     }
 
     @Override
-    public Set<? extends ASMTempRegArg> transfer(AsmCFGNode n, Set<? extends ASMTempRegArg> out) {
-        Set<? extends ASMTempRegArg> uses = n.accept(this.uses);
-        Set<? extends ASMTempRegArg> defs = n.accept(this.defs);
+    public BitVector transfer(AsmCFGNode n, BitVector out) {
+        BitVector uses = nodeUses.computeIfAbsent(n,
+            node -> indicesOf(node.accept(this.uses)));
+        BitVector defs = nodeDefs.computeIfAbsent(n,
+            node -> indicesOf(node.accept(this.defs)));
+        // The defs that are not also uses, which are never live before n.
+        BitVector kills = nodeKills.computeIfAbsent(n, node -> {
+            BitVector vector = new BitVector(defs);
+            vector.andNot(uses);
+            return vector;
+        });
 
-        // use[n] u (out[n] - def[n])
-        return Sets.union(uses, Sets.difference(out, defs));
+        // use[n] u (out[n] - def[n]), which is only copied when it differs
+        // from out[n]
+        if (out.containsAll(uses) && !out.intersects(kills)) {
+            return out;
+        }
+        BitVector in = new BitVector(out);
+        in.andNot(kills);
+        in.or(uses);
+        return in;
     }
 
     @Override
-    public Set<? extends ASMTempRegArg> meet(Set<? extends ASMTempRegArg> lhs,
-                                   Set<? extends ASMTempRegArg> rhs) {
-        return Sets.union(lhs, rhs);
+    public BitVector meet(BitVector lhs, BitVector rhs) {
+        if (lhs.containsAll(rhs)) {
+            return lhs;
+        }
+        if (rhs.containsAll(lhs)) {
+            return rhs;
+        }
+        BitVector union = new BitVector(lhs);
+        union.or(rhs);
+        return union;
     }
 
 }
@@ -10,6 +10,9 @@ import cyr7.cfg.asm.nodes.AsmCFGStartNode;
 import cyr7.cfg.ir.CFGUtil;
 import cyr7.cli.CLI;
 import cyr7.ir.IdGenerator;
+import cyr7.ir.TempTable;
+import cyr7.util.BitVector;
+import cyr7.util.PhaseTimings;
 import cyr7.util.Sets;
 import cyr7.x86.asm.ASMArg;
 import cyr7.x86.asm.ASMInstr;
@@ -20,11 +23,15 @@ import cyr7.x86.asm.ASMTempArg;
 import cyr7.x86.asm.ASMTempRegArg;
 import cyr7.x86.visitor.TempVisitor;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -61,18 +68,37 @@ final class RegisterAllocator {
     private ArrayList<ASMLine> functionBody;
     private final String mangledName;
     private final IdGenerator generator;
+    private final PhaseTimings timings;
+
+    // The temps of the function are numbered in this table, so that each
+    // temp of the body, including the temps made when spilling, carries its
+    // id in it.
+    private final TempTable temps = new TempTable();
 
     public RegisterAllocator(
         List<ASMLine> functionBody,
         String mangledName,
         IdGenerator generator) {
+        this(functionBody, mangledName, generator, PhaseTimings.disabled());
+    }
+
+    /**
+     * Each iteration of {@link #run()} is recorded in {@code timings} as a
+     * call of the register allocation phase of {@code mangledName}.
+     */
+    public RegisterAllocator(
+        List<ASMLine> functionBody,
+        String mangledName,
+        IdGenerator generator,
+        PhaseTimings timings) {
 
         this.generator = generator;
-        this.functionBody = new ArrayList<>(functionBody);
+        this.timings = timings;
+        this.functionBody = new TempNumberer(temps).number(functionBody);
         this.functionBody.add(ASMLineFactory.instance.Ret());
         this.mangledName = mangledName;
 
-        worklists.initial.addAll(uniqueTemps(functionBody));
+        worklists.initial.addAll(uniqueTemps(this.functionBody));
     }
 
     public List<ASMLine> program() {
@@ -87,9 +113,13 @@ final class RegisterAllocator {
 
     private final Worklists worklists = new Worklists();
 
-    private final HashSet<ASMTempRegArg> spilledNodes = new HashSet<>();
-    private final HashSet<ASMTempRegArg> coalescedNodes = new HashSet<>();
-    private final HashSet<ASMTempRegArg> coloredNodes = new HashSet<>();
+    // The allocator visits these sets, and the sets and lists built from
+    // them, in insertion order, so that its choices depend only on the
+    // program and not on the names or hashes of its temps, which differ
+    // when functions are allocated in parallel.
+    private final LinkedHashSet<ASMTempRegArg> spilledNodes = new LinkedHashSet<>();
+    private final LinkedHashSet<ASMTempRegArg> coalescedNodes = new LinkedHashSet<>();
+    private final LinkedHashSet<ASMTempRegArg> coloredNodes = new LinkedHashSet<>();
     private final Deque<ASMTempRegArg> selectStack = new LinkedList<>();
 
     private final Moves moves = new Moves(worklists.moves);
@@ -97,13 +127,17 @@ final class RegisterAllocator {
     private final Alias alias = new Alias(coalescedNodes);
 
     private InterferenceGraph graph;
-    private HashMap<ASMTempRegArg, Integer> coloring;
+    private LinkedHashMap<ASMTempRegArg, Integer> coloring;
     private CoalescingHeuristic coalescingHeuristic;
 
     // run
 
+    /**
+     * Returns the temps of {@code lines} in the order in which they first
+     * appear.
+     */
     private static List<ASMTempArg> uniqueTemps(List<ASMLine> lines) {
-        Set<ASMTempArg> temps = new HashSet<>();
+        Set<ASMTempArg> temps = new LinkedHashSet<>();
         var tempVisitor = new TempVisitor();
         lines.forEach(l -> temps.addAll(l.accept(tempVisitor)));
         return new ArrayList<>(temps);
@@ -126,64 +160,72 @@ final class RegisterAllocator {
                 throw new RegisterAllocationFailedException(iterations);
             }
 
-            coloring = new HashMap<>(K);
-            for (int i = 0; i < REGISTERS.length; i++) {
-                coloring.put(REGISTERS[i], i);
-            }
-
-            assert worklists.simplify.isEmpty();
-            assert worklists.freeze.isEmpty();
-            assert spilledNodes.isEmpty();
-            assert coalescedNodes.isEmpty();
-            assert coloredNodes.isEmpty();
-            assert selectStack.isEmpty();
-
-            moves.coalesced.clear();
-            moves.constrained.clear();
-            moves.frozen.clear();
-            worklists.moves.clear();
-            moves.active.clear();
-            moves.clearMoveList();
-            alias.clearAliases();
-
-            build();
-            makeWorklist();
-
-            do {
-                if (!worklists.simplify.isEmpty()) {
-                    simplify();
-                } else if (!worklists.moves.isEmpty()) {
-                    coalesce();
-                } else if (!worklists.freeze.isEmpty()) {
-                    freeze();
-                } else if (!worklists.spill.isEmpty()) {
-                    selectSpill();
-                }
-            } while (!worklists.simplify.isEmpty()
-                || !worklists.moves.isEmpty()
-                || !worklists.freeze.isEmpty()
-                || !worklists.spill.isEmpty());
+            rerun = timings.time("register allocation", mangledName,
+                this::iterate);
+        } while (rerun);
+    }
 
-            assignColors();
+    /**
+     * Runs one iteration of the allocator. Returns {@code true} if temps
+     * were spilled, in which case the program has been rewritten and another
+     * iteration is needed.
+     */
+    private boolean iterate() {
+        coloring = new LinkedHashMap<>(K);
+        for (int i = 0; i < REGISTERS.length; i++) {
+            coloring.put(REGISTERS[i], i);
+        }
 
-            if (!spilledNodes.isEmpty()) {
-                rerun = true;
+        assert worklists.simplify.isEmpty();
+        assert worklists.freeze.isEmpty();
+        assert spilledNodes.isEmpty();
+        assert coalescedNodes.isEmpty();
+        assert coloredNodes.isEmpty();
+        assert selectStack.isEmpty();
+
+        moves.coalesced.clear();
+        moves.constrained.clear();
+        moves.frozen.clear();
+        worklists.moves.clear();
+        moves.active.clear();
+        moves.clearMoveList();
+        alias.clearAliases();
+
+        build();
+        makeWorklist();
 
-                rewriteProgram();
-            } else {
-                rerun = false;
-
-                FinalProgramRewriter rewriter = new FinalProgramRewriter(
-                    PRECOLORED,
-                    functionBody,
-                    coloring,
-                    REGISTERS,
-                    moves.coalesced,
-                    alias);
-                rewriter.run();
-                functionBody = rewriter.rewritten();
+        do {
+            if (!worklists.simplify.isEmpty()) {
+                simplify();
+            } else if (!worklists.moves.isEmpty()) {
+                coalesce();
+            } else if (!worklists.freeze.isEmpty()) {
+                freeze();
+            } else if (!worklists.spill.isEmpty()) {
+                selectSpill();
             }
-        } while (rerun);
+        } while (!worklists.simplify.isEmpty()
+            || !worklists.moves.isEmpty()
+            || !worklists.freeze.isEmpty()
+            || !worklists.spill.isEmpty());
+
+        assignColors();
+
+        if (!spilledNodes.isEmpty()) {
+            rewriteProgram();
+            return true;
+        } else {
+            FinalProgramRewriter rewriter = new FinalProgramRewriter(
+                PRECOLORED,
+                functionBody,
+                coloring,
+                REGISTERS,
+                moves.coalesced,
+                alias);
+            rewriter.run();
+            functionBody = rewriter.rewritten();
+            return false;
+        }
     }
 
     // build
@@ -192,20 +234,19 @@ final class RegisterAllocator {
         AsmCFGConstructor constructor = new AsmCFGConstructor(functionBody);
         AsmCFGStartNode cfg = constructor.constructAsmCFG();
         new AsmCFGUnreachableNodeCleaner().removeUnreachableNodes(cfg);
-        Map<AsmCFGNode, Set<? extends ASMTempRegArg>> liveInVariables
-            = WorklistAnalysis.analyze(cfg, new LiveVariableAnalysis(mangledName));
-
-        Map<AsmCFGNode, Set<? extends ASMTempRegArg>> liveOutVariables = new HashMap<>();
-        for (var entry : liveInVariables.entrySet()) {
-            List<AsmCFGNode> prevs = entry.getKey().inNodes();
-            for (AsmCFGNode prev : prevs) {
-                if (liveOutVariables.containsKey(prev)) {
-                    Set<ASMTempRegArg> newLiveOut
-                        = Sets.union(liveOutVariables.get(prev), entry.getValue());
-                    liveOutVariables.put(prev, newLiveOut);
-                } else {
-                    liveOutVariables.put(prev, entry.getValue());
-                }
+        LiveVariableAnalysis liveness = new LiveVariableAnalysis(mangledName);
+        Map<AsmCFGNode, BitVector> liveInVariables
+            = WorklistAnalysis.analyze(cfg, liveness);
+
+        Map<AsmCFGNode, BitVector> liveOutVariables = new LinkedHashMap<>();
+        for (AsmCFGNode node : nodesInOrder(cfg)) {
+            BitVector liveIn = liveInVariables.get(node);
+            if (liveIn == null) {
+                continue;
+            }
+            for (AsmCFGNode prev : node.inNodes()) {
+                liveOutVariables.computeIfAbsent(prev, p -> new BitVector())
+                    .or(liveIn);
             }
         }
 
@@ -221,9 +262,13 @@ final class RegisterAllocator {
 //            CLI.debugPrint("<-- LIVE VARIABLE ANALYSIS --> ");
 //        });
 
+        Map<ASMTempArg, Integer> positions = new HashMap<>();
+        for (ASMTempArg temp : uniqueTemps(functionBody)) {
+            positions.put(temp, positions.size());
+        }
         graph = new InterferenceGraph(PRECOLORED, selectStack, coalescedNodes);
         for (var entry : liveOutVariables.entrySet()) {
-            HashSet<ASMTempRegArg> live = new HashSet<>(entry.getValue());
+            Set<ASMTempRegArg> live = liveness.args(entry.getValue());
             live.remove(ASMReg.RSP);
             live.remove(ASMReg.RBP);
 
@@ -238,12 +283,12 @@ final class RegisterAllocator {
 
             Set<ASMTempRegArg> defs = entry.getKey().accept(new DefsVisitor());
             live.addAll(defs);
-            for (ASMTempRegArg d : defs) {
+            for (ASMTempRegArg d : inOrder(defs, positions)) {
                 if (d instanceof ASMReg && !PRECOLORED.contains(d)) {
                     continue;
                 }
 
-                for (ASMTempRegArg l : live) {
+                for (ASMTempRegArg l : inOrder(live, positions)) {
                     if (l instanceof ASMReg && !PRECOLORED.contains(l)) {
                         continue;
                     }
@@ -269,6 +314,40 @@ final class RegisterAllocator {
             new CoalescingHeuristic(K, PRECOLORED, graph);
     }
 
+    /**
+     * Returns the nodes of {@code cfg} in breadth-first order.
+     */
+    private static List<AsmCFGNode> nodesInOrder(AsmCFGStartNode cfg) {
+        Set<AsmCFGNode> visited = new LinkedHashSet<>();
+        Deque<AsmCFGNode> queue = new ArrayDeque<>();
+        visited.add(cfg);
+        queue.add(cfg);
+        while (!queue.isEmpty()) {
+            for (AsmCFGNode next : queue.remove().outNodes()) {
+                if (visited.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        return new ArrayList<>(visited);
+    }
+
+    /**
+     * Returns {@code args} with registers first, in the order in which they
+     * are declared, and then temps in the order in which they first appear
+     * in the function, whose positions are given by {@code positions}.
+     */
+    private static List<ASMTempRegArg> inOrder(
+        Set<? extends ASMTempRegArg> args,
+        Map<ASMTempArg, Integer> positions) {
+
+        List<ASMTempRegArg> ordered = new ArrayList<>(args);
+        ordered.sort(Comparator.comparingInt(arg -> arg instanceof ASMReg
+            ? ((ASMReg) arg).ordinal()
+            : ASMReg.values().length + positions.get(arg)));
+        return ordered;
+    }
+
     // make worklist
 
     private void makeWorklist() {
@@ -323,7 +402,10 @@ final class RegisterAllocator {
     private void decrementDegree(ASMTempRegArg m) {
         int degree = graph.decrementDegree(m);
         if (degree == K) {
-            enableMoves(Sets.union(Set.of(m), graph.adjacent(m)));
+            List<ASMTempRegArg> nodes = new ArrayList<>();
+            nodes.add(m);
+            nodes.addAll(graph.adjacent(m));
+            enableMoves(nodes);
 
             worklists.spill.remove(m);
 
@@ -335,7 +417,7 @@ final class RegisterAllocator {
         }
     }
 
-    private void enableMoves(Set<ASMTempRegArg> nodes) {
+    private void enableMoves(Collection<ASMTempRegArg> nodes) {
         for (ASMTempRegArg n : nodes) {
             for (int m : moves.getMoves(n)) {
                 if (moves.active.contains(m)) {
@@ -519,6 +601,7 @@ final class RegisterAllocator {
 
         SpillProgramRewriter rewriter = new SpillProgramRewriter(
             generator,
+            temps,
             functionBody,
             spilledNodes,
             spillAllocator
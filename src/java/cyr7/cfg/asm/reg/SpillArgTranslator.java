@@ -1,6 +1,7 @@
 package cyr7.cfg.asm.reg;
 
 import cyr7.ir.IdGenerator;
+import cyr7.ir.TempTable;
 import cyr7.x86.asm.ASMAddrExpr;
 import cyr7.x86.asm.ASMAddrExpr.ScaleValues;
 import cyr7.x86.asm.ASMArg;
@@ -28,6 +29,7 @@ final class SpillArgTranslator implements Runnable {
 
     private final HashSet<ASMTempRegArg> spilledTemps;
     private final IdGenerator idGenerator;
+    private final TempTable temps;
     private final SpillMemAllocator spillAllocator;
     private final ASMInstr instr;
 
@@ -37,11 +39,13 @@ final class SpillArgTranslator implements Runnable {
     public SpillArgTranslator(
         HashSet<ASMTempRegArg> spilledTemps,
         IdGenerator idGenerator,
+        TempTable temps,
         SpillMemAllocator spillAllocator,
         ASMInstr instr) {
 
         this.spilledTemps = spilledTemps;
         this.idGenerator = idGenerator;
+        this.temps = temps;
         this.spillAllocator = spillAllocator;
         this.instr = instr;
     }
@@ -129,14 +133,15 @@ final class SpillArgTranslator implements Runnable {
     }
 
     private ASMTempArg makeNewSpillTemp(ASMRegSize size) {
-        ASMTempArg temp = makeArg.temp(idGenerator.newTemp("spill"), size);
+        String name = idGenerator.newTemp("spill");
+        ASMTempArg temp = new ASMTempArg(name, temps.id(name), size);
         spillAllocator.addNewTemp(temp);
         return temp;
     }
 
     private ASMAddrExpr addrOfSpilledTemp(ASMTempArg tempArg) {
         assert spilledTemps.contains(tempArg);
-        Integer index = spillAllocator.indexOf(tempArg);
+        int index = spillAllocator.indexOf(tempArg);
 
         // [RBP + 8 * (index + 1)]
         return makeArg.addr(
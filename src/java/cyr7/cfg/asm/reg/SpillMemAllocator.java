@@ -3,35 +3,42 @@ package cyr7.cfg.asm.reg;
 import cyr7.x86.asm.ASMTempArg;
 import cyr7.x86.asm.ASMTempRegArg;
 
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 final class SpillMemAllocator {
 
-    // temp t is stored at memory location [RBP + 8(i + 1)]
-    private final HashMap<String, Integer> tempToIndex;
+    // the temp with id t is stored at memory location [RBP - 8(i + 1)],
+    // where i = indexById[t], or has no location yet if i is -1
+    private int[] indexById;
+    private int allocated;
 
-    private final HashSet<ASMTempRegArg> newTemps;
+    private final LinkedHashSet<ASMTempRegArg> newTemps;
 
     public SpillMemAllocator() {
-        this.tempToIndex = new HashMap<>();
-        this.newTemps = new HashSet<>();
+        this.indexById = new int[0];
+        this.allocated = 0;
+        this.newTemps = new LinkedHashSet<>();
     }
 
-    public Integer indexOf(ASMTempArg temp) {
-        if (tempToIndex.containsKey(temp.name)) {
-            return tempToIndex.get(temp.name);
-        } else {
-            int index = tempToIndex.size();
-            tempToIndex.put(temp.name, index);
-            return index;
+    public int indexOf(ASMTempArg temp) {
+        assert temp.id >= 0 : "Spilled temp " + temp + " is not numbered";
+        if (temp.id >= indexById.length) {
+            int oldLength = indexById.length;
+            indexById = Arrays.copyOf(indexById,
+                Math.max(temp.id + 1, oldLength * 2));
+            Arrays.fill(indexById, oldLength, indexById.length, -1);
         }
+        if (indexById[temp.id] < 0) {
+            indexById[temp.id] = allocated++;
+        }
+        return indexById[temp.id];
     }
 
     public int allocatedTemps() {
-        return tempToIndex.size();
+        return allocated;
     }
 
     public void clearNewTemps() {
@@ -1,6 +1,7 @@
 package cyr7.cfg.asm.reg;
 
 import cyr7.ir.IdGenerator;
+import cyr7.ir.TempTable;
 import cyr7.x86.asm.ASMInstr;
 import cyr7.x86.asm.ASMLine;
 import cyr7.x86.asm.ASMTempRegArg;
@@ -12,6 +13,7 @@ import java.util.List;
 final class SpillProgramRewriter implements Runnable {
 
     private final IdGenerator generator;
+    private final TempTable temps;
     private final List<ASMLine> lines;
     private final HashSet<ASMTempRegArg> spilledNodes;
     private final SpillMemAllocator spillAllocator;
@@ -20,11 +22,13 @@ final class SpillProgramRewriter implements Runnable {
 
     SpillProgramRewriter(
         IdGenerator generator,
+        TempTable temps,
         List<ASMLine> lines,
         HashSet<ASMTempRegArg> spilledNodes,
         SpillMemAllocator spillAllocator) {
 
         this.generator = generator;
+        this.temps = temps;
         this.lines = lines;
         this.spilledNodes = spilledNodes;
         this.spillAllocator = spillAllocator;
@@ -40,6 +44,7 @@ final class SpillProgramRewriter implements Runnable {
                 SpillArgTranslator translator = new SpillArgTranslator(
                     spilledNodes,
                     generator,
+                    temps,
                     spillAllocator,
                     (ASMInstr) line);
                 translator.run();
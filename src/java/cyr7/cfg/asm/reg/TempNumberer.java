@@ -0,0 +1,76 @@
+package cyr7.cfg.asm.reg;
+
+import cyr7.ir.TempTable;
+import cyr7.x86.asm.ASMAddrExpr;
+import cyr7.x86.asm.ASMArg;
+import cyr7.x86.asm.ASMInstr;
+import cyr7.x86.asm.ASMLine;
+import cyr7.x86.asm.ASMMemArg;
+import cyr7.x86.asm.ASMTempArg;
+import cyr7.x86.asm.ASMTempRegArg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gives the temps of the body of one function their ids in the
+ * {@link TempTable} of the function.
+ */
+final class TempNumberer {
+
+    private final TempTable temps;
+
+    TempNumberer(TempTable temps) {
+        this.temps = temps;
+    }
+
+    /**
+     * Returns {@code lines} with each of their temps carrying its id.
+     */
+    public ArrayList<ASMLine> number(List<ASMLine> lines) {
+        ArrayList<ASMLine> numbered = new ArrayList<>(lines.size());
+        for (ASMLine line : lines) {
+            if (line instanceof ASMInstr) {
+                numbered.add(number((ASMInstr) line));
+            } else {
+                numbered.add(line);
+            }
+        }
+        return numbered;
+    }
+
+    private ASMTempArg number(ASMTempArg temp) {
+        int id = temps.id(temp.name);
+        if (id == temp.id) {
+            return temp;
+        }
+        return new ASMTempArg(temp.name, id, temp.size);
+    }
+
+    private ASMInstr number(ASMInstr instr) {
+        List<ASMArg> args = new ArrayList<>(instr.args.size());
+        for (ASMArg arg : instr.args) {
+            if (arg instanceof ASMTempArg) {
+                args.add(number((ASMTempArg) arg));
+            } else if (arg instanceof ASMMemArg) {
+                ASMAddrExpr address = ((ASMMemArg) arg).address;
+                args.add(new ASMMemArg(new ASMAddrExpr(
+                    address.base.map(this::number),
+                    address.scale,
+                    address.index.map(this::number),
+                    address.displacement)));
+            } else {
+                args.add(arg);
+            }
+        }
+        return instr.withArgsReplaced(args);
+    }
+
+    private ASMTempRegArg number(ASMTempRegArg arg) {
+        if (arg instanceof ASMTempArg) {
+            return number((ASMTempArg) arg);
+        }
+        return arg;
+    }
+
+}
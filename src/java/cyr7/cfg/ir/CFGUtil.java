@@ -42,13 +42,12 @@ public final class CFGUtil {
             OptConfig optConfig,
             String functionName) throws Exception {
 
-        IRCompUnit lowered = IRUtil.generateIR(
+        Map<String, CFGStartNode> result = IRUtil.generateCFG(
                 reader,
                 filename,
                 fileOpener,
                 optConfig,
                 new DefaultIdGenerator());
-        Map<String, CFGStartNode> result = CFGConstructor.constructCFG(lowered);
         outputDotForFunctionIR(result.get(functionName), writer);
     }
 
@@ -69,13 +68,12 @@ public final class CFGUtil {
             String filename,
             IxiFileOpener fileOpener,
             OptConfig optConfig) throws Exception {
-        IRCompUnit lowered = IRUtil.generateIR(
+        return IRUtil.generateCFG(
                 reader,
                 filename,
                 fileOpener,
                 optConfig,
                 new DefaultIdGenerator());
-        return CFGConstructor.constructCFG(lowered);
     }
 
     public static void testGenerateDotAsm() throws Exception {
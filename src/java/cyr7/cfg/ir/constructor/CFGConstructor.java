@@ -1,5 +1,6 @@
 package cyr7.cfg.ir.constructor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -7,6 +8,9 @@ import java.util.Map;
 import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.ir.block.BasicBlock;
 import cyr7.ir.nodes.IRCompUnit;
+import cyr7.ir.nodes.IRSeq;
+import cyr7.ir.nodes.IRStmt;
+import java_cup.runtime.ComplexSymbolFactory.Location;
 
 public class CFGConstructor {
 
@@ -28,6 +32,29 @@ public class CFGConstructor {
     }
 
 
+    /**
+     * Generates a CFG for each function in {@code traces}, the reordered
+     * basic blocks of each function, without first joining the blocks into
+     * an {@link IRCompUnit}.
+     */
+    public static Map<String, CFGStartNode> constructTraceCFG(
+            Map<String, List<List<BasicBlock>>> traces, Location location) {
+
+        Map<String, CFGStartNode> cfgCollection = new HashMap<>();
+
+        traces.forEach((name, blocks) -> {
+            List<IRStmt> stmts = new ArrayList<>();
+            blocks.forEach(trace -> trace.forEach(block ->
+                stmts.addAll(block.stmts)));
+            CFGStartNode fBody = (CFGStartNode) new IRSeq(location, stmts)
+                                    .accept(new CFGConstructorVisitor());
+            var cleaner = new CFGUnreachableNodeCleaner();
+            fBody = cleaner.removeUnreachableNodes(fBody);
+            cfgCollection.put(name, fBody);
+        });
+        return cfgCollection;
+    }
+
     public static Map<String, CFGStartNode>
             constructBlockCFG(Map<String, List<List<BasicBlock>>> traces) {
 
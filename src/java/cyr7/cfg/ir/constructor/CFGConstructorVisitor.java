@@ -3,8 +3,10 @@ package cyr7.cfg.ir.constructor;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.stream.Collectors;
 
 import cyr7.cfg.ir.nodes.CFGCallNode;
 import cyr7.cfg.ir.nodes.CFGIfNode;
@@ -15,6 +17,7 @@ import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.*;
 import cyr7.visitor.MyIRVisitor;
 import java_cup.runtime.ComplexSymbolFactory.Location;
@@ -22,8 +25,15 @@ import kotlin.NotImplementedError;
 import org.jetbrains.annotations.NotNull;
 import polyglot.util.Pair;
 
+/**
+ * Constructs the CFG of the body of one function. The temps of the function
+ * are numbered in the {@link TempTable} of the CFG as its nodes are made, so
+ * every temp of the CFG carries its id.
+ */
 public class CFGConstructorVisitor implements MyIRVisitor<CFGNode> {
 
+    private final TempTable temps = new TempTable();
+    private final IRTempNumberer numberer = new IRTempNumberer(temps);
     private final Map<String, CFGNode> labelToCFG;
     private final Queue<Pair<CFGStubNode, String>> jumpTargetFromCFG;
     private final CFGNode absoluteLastReturn = new CFGReturnNode(
@@ -61,7 +71,7 @@ public class CFGConstructorVisitor implements MyIRVisitor<CFGNode> {
             var stmt = stmts.get(i);
             successor = stmt.accept(this);
         }
-        successor = new CFGStartNode(n.location(), successor);
+        successor = new CFGStartNode(n.location(), successor, temps);
 
         while (!this.jumpTargetFromCFG.isEmpty()) {
             var nextPair = this.jumpTargetFromCFG.poll();
@@ -91,9 +101,20 @@ public class CFGConstructorVisitor implements MyIRVisitor<CFGNode> {
     }
 
 
+    private IRExpr number(IRExpr expr) {
+        return expr.accept(numberer);
+    }
+
     @Override
     public CFGNode visit(IRCallStmt n) {
-        return new CFGCallNode(n.location(), n, successor);
+        n.collectors().forEach(temps::id);
+        List<IRExpr> args = n.args()
+            .stream()
+            .map(this::number)
+            .collect(Collectors.toList());
+        IRCallStmt call = new IRCallStmt(n.location(), n.collectors(),
+            number(n.target()), args);
+        return new CFGCallNode(n.location(), call, successor);
     }
 
 
@@ -104,12 +125,12 @@ public class CFGConstructorVisitor implements MyIRVisitor<CFGNode> {
         if (this.labelToCFG.containsKey(trueBranch)) {
             return new CFGIfNode(n.location(),
                     this.labelToCFG.get(trueBranch),
-                    successor, n.cond());
+                    successor, number(n.cond()));
         } else {
             // Create stub node, and connect target to the stub node.
             CFGStubNode stub = this.createStubNode();
             CFGIfNode ifNode = new CFGIfNode(n.location(),
-                    stub, successor, n.cond());
+                    stub, successor, number(n.cond()));
             this.jumpTargetFromCFG.add(new Pair<>(stub, trueBranch));
             return ifNode;
         }
@@ -147,11 +168,12 @@ public class CFGConstructorVisitor implements MyIRVisitor<CFGNode> {
     public CFGNode visit(IRMove n) {
         if (n.target() instanceof IRTemp) {
             IRTemp temp = (IRTemp) n.target();
+            temps.id(temp.name());
             return new CFGVarAssignNode(n.location(),
-                        temp.name(), n.source(), successor);
+                        temp.name(), number(n.source()), successor);
         } else {
             return new CFGMemAssignNode(n.location(),
-                        n.target(), n.source(), successor);
+                        number(n.target()), number(n.source()), successor);
         }
     }
 
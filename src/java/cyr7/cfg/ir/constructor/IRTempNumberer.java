@@ -0,0 +1,126 @@
+package cyr7.cfg.ir.constructor;
+
+import cyr7.ir.TempTable;
+import cyr7.ir.nodes.*;
+import cyr7.visitor.MyIRVisitor;
+import kotlin.NotImplementedError;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Copies a lowered expression so that each of its temps carries its id in
+ * the {@link TempTable} of the function that the expression belongs to.
+ */
+final class IRTempNumberer implements MyIRVisitor<IRExpr> {
+
+    private final TempTable temps;
+
+    IRTempNumberer(TempTable temps) {
+        this.temps = temps;
+    }
+
+    @Override
+    public IRExpr visit(IRBinOp n) {
+        return new IRBinOp(n.location(), n.opType(), n.left().accept(this),
+            n.right().accept(this));
+    }
+
+    @Override
+    public IRExpr visit(IRCall n) {
+        throw new UnsupportedOperationException("Cannot use IRCall in LIR.");
+    }
+
+    @Override
+    public IRExpr visit(IRInteger n) {
+        return n;
+    }
+
+    @Override
+    public IRExpr visit(IRESeq n) {
+        throw new UnsupportedOperationException("Cannot use IRESeq in LIR.");
+    }
+
+    @Override
+    public IRExpr visit(IRMem n) {
+        return new IRMem(n.location(), n.expr().accept(this));
+    }
+
+    @Override
+    public IRExpr visit(IRName n) {
+        return n;
+    }
+
+    @Override
+    public IRExpr visit(IRTemp n) {
+        return temps.number(n);
+    }
+
+    @Override
+    public IRExpr visit(IRCallStmt n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRCJump n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRCompUnit n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRExp n) {
+        throw new UnsupportedOperationException("Cannot use IRExp in LIR.");
+    }
+
+    @Override
+    public IRExpr visit(IRFuncDecl n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRJump n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRLabel n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRMove n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRReturn n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(IRSeq n) {
+        throw new UnsupportedOperationException(
+            "Cannot number the temps of a statement.");
+    }
+
+    @Override
+    public IRExpr visit(@NotNull IRFloat n) {
+        throw new NotImplementedError();
+    }
+
+    @Override
+    public IRExpr visit(@NotNull IRCast n) {
+        throw new NotImplementedError();
+    }
+
+}
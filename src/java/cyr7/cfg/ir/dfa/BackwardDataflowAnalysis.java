@@ -1,9 +1,31 @@
 package cyr7.cfg.ir.dfa;
 
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+
 public interface BackwardDataflowAnalysis<L> {
 
     L topValue();
     BackwardTransferFunction<L> transfer();
     L meet(L lhs, L rhs);
 
+    /**
+     * Returns the transfer function of {@code block}, a straight-line
+     * sequence of nodes, which maps the value after the last node to the
+     * value before the first. Analyses whose transfer functions compose
+     * into a cheaper summary, such as gen and kill sets, override this so
+     * that a block costs the same to visit however long it is.
+     */
+    default UnaryOperator<L> summarize(List<CFGNode> block) {
+        return out -> {
+            L value = out;
+            for (int i = block.size() - 1; i >= 0; i--) {
+                value = block.get(i).acceptBackward(transfer(), value);
+            }
+            return value;
+        };
+    }
+
 }
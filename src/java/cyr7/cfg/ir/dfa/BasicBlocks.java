@@ -0,0 +1,168 @@
+package cyr7.cfg.ir.dfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+
+/**
+ * The basic blocks of the nodes reachable from the start of a CFG: the
+ * maximal straight-line chains of nodes that control enters only at the
+ * first node and leaves only at the last. Control leaves a block only for
+ * the first nodes of other blocks.
+ */
+public final class BasicBlocks {
+
+    public static final class Block {
+
+        private final int index;
+        private final List<CFGNode> nodes;
+        private final List<Block> successors = new ArrayList<>(2);
+        private final List<Block> predecessors = new ArrayList<>(2);
+
+        private Block(int index, List<CFGNode> nodes) {
+            this.index = index;
+            this.nodes = Collections.unmodifiableList(nodes);
+        }
+
+        /**
+         * The position of this block in {@link BasicBlocks#blocks()}.
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * The nodes of this block, in the order that control reaches them.
+         */
+        public List<CFGNode> nodes() {
+            return nodes;
+        }
+
+        public CFGNode first() {
+            return nodes.get(0);
+        }
+
+        public CFGNode last() {
+            return nodes.get(nodes.size() - 1);
+        }
+
+        public List<Block> successors() {
+            return Collections.unmodifiableList(successors);
+        }
+
+        public List<Block> predecessors() {
+            return Collections.unmodifiableList(predecessors);
+        }
+
+    }
+
+    private final List<Block> blocks;
+    private final Map<CFGNode, Block> blockOf;
+    private final Map<CFGNode, Integer> positionOf;
+
+    private BasicBlocks(List<Block> blocks,
+                        Map<CFGNode, Block> blockOf,
+                        Map<CFGNode, Integer> positionOf) {
+        this.blocks = Collections.unmodifiableList(blocks);
+        this.blockOf = blockOf;
+        this.positionOf = positionOf;
+    }
+
+    /**
+     * Returns the basic blocks of the nodes reachable from {@code cfg}. The
+     * first block starts with {@code cfg}.
+     */
+    public static BasicBlocks of(CFGStartNode cfg) {
+        List<Block> blocks = new ArrayList<>();
+        Map<CFGNode, Block> blockOf = new HashMap<>();
+        Map<CFGNode, Integer> positionOf = new HashMap<>();
+
+        Set<CFGNode> seen = new HashSet<>();
+        Queue<CFGNode> leaders = new ArrayDeque<>();
+        leaders.add(cfg);
+        seen.add(cfg);
+        while (!leaders.isEmpty()) {
+            CFGNode node = leaders.remove();
+            List<CFGNode> nodes = new ArrayList<>();
+            nodes.add(node);
+            while (node.out().size() == 1
+                    && !isLeader(node.out().get(0), cfg)
+                    && seen.add(node.out().get(0))) {
+                node = node.out().get(0);
+                nodes.add(node);
+            }
+            for (CFGNode successor : node.out()) {
+                if (seen.add(successor)) {
+                    leaders.add(successor);
+                }
+            }
+            Block block = new Block(blocks.size(), nodes);
+            blocks.add(block);
+            for (int i = 0; i < nodes.size(); i++) {
+                blockOf.put(nodes.get(i), block);
+                positionOf.put(nodes.get(i), i);
+            }
+        }
+
+        for (Block block : blocks) {
+            for (CFGNode successor : block.last().out()) {
+                Block next = blockOf.get(successor);
+                if (!block.successors.contains(next)) {
+                    block.successors.add(next);
+                    next.predecessors.add(block);
+                }
+            }
+        }
+        return new BasicBlocks(blocks, blockOf, positionOf);
+    }
+
+    /**
+     * A node starts a block unless its only predecessor has no other
+     * successor.
+     */
+    private static boolean isLeader(CFGNode node, CFGStartNode cfg) {
+        return node == cfg
+            || node.in().size() != 1
+            || node.in().get(0).out().size() != 1;
+    }
+
+    /**
+     * The blocks, starting with the block of the start node.
+     */
+    public List<Block> blocks() {
+        return blocks;
+    }
+
+    public Block entry() {
+        return blocks.get(0);
+    }
+
+    public int size() {
+        return blocks.size();
+    }
+
+    /**
+     * Returns the block of {@code node}, or {@code null} if {@code node} is
+     * not reachable from the start node.
+     */
+    public Block blockOf(CFGNode node) {
+        return blockOf.get(node);
+    }
+
+    /**
+     * Returns the position of {@code node} within its block.
+     */
+    public int positionOf(CFGNode node) {
+        return positionOf.get(node);
+    }
+
+}
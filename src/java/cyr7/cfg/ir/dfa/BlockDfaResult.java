@@ -0,0 +1,122 @@
+package cyr7.cfg.ir.dfa;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.dfa.BasicBlocks.Block;
+import cyr7.cfg.ir.nodes.CFGNode;
+
+/**
+ * The result of a dataflow analysis solved over basic blocks by
+ * {@link BlockWorklistAnalysis}: one value for each node, the value that
+ * {@link WorklistAnalysis} would give it. That is the value before the node
+ * for a forward analysis, and the value after the node for a backward one.
+ * <p>
+ * Only the values at the boundaries of blocks are kept while the analysis is
+ * solved. The values of the nodes of a block are recovered by sweeping the
+ * transfer functions of the nodes through the block the first time that
+ * any of them is asked for.
+ */
+public final class BlockDfaResult<L> {
+
+    /**
+     * Computes the values of the nodes of a block from the value at its
+     * boundary.
+     */
+    @FunctionalInterface
+    interface Sweep<L> {
+        void sweep(List<CFGNode> nodes, L boundary, Object[] values);
+    }
+
+    private final BasicBlocks blocks;
+    private final Object[] boundaries;
+    private final Object[][] values;
+    private final Sweep<L> sweep;
+
+    BlockDfaResult(BasicBlocks blocks, Object[] boundaries, Sweep<L> sweep) {
+        this.blocks = blocks;
+        this.boundaries = boundaries;
+        this.values = new Object[blocks.size()][];
+        this.sweep = sweep;
+    }
+
+    public BasicBlocks blocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the value of {@code node}, or {@code null} if it is not
+     * reachable from the start of the CFG.
+     */
+    @SuppressWarnings("unchecked")
+    public L get(CFGNode node) {
+        Block block = blocks.blockOf(node);
+        if (block == null) {
+            return null;
+        }
+        return (L) valuesOf(block)[blocks.positionOf(node)];
+    }
+
+    /**
+     * Returns the value at the boundary of {@code block}: the value before
+     * its first node for a forward analysis, and the value after its last
+     * node for a backward one. Unlike {@link #get}, this does not recover
+     * the values of the other nodes of the block.
+     */
+    @SuppressWarnings("unchecked")
+    public L boundary(Block block) {
+        return (L) boundaries[block.index()];
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] valuesOf(Block block) {
+        Object[] blockValues = values[block.index()];
+        if (blockValues == null) {
+            blockValues = new Object[block.nodes().size()];
+            sweep.sweep(block.nodes(), (L) boundaries[block.index()], blockValues);
+            values[block.index()] = blockValues;
+        }
+        return blockValues;
+    }
+
+    /**
+     * Returns the values of the nodes as a map, which recovers the values of
+     * a block only when one of its nodes is looked up or the map is
+     * iterated.
+     */
+    public Map<CFGNode, L> asMap() {
+        return new AbstractMap<>() {
+
+            private Map<CFGNode, L> all;
+
+            @Override
+            public L get(Object key) {
+                return key instanceof CFGNode ? BlockDfaResult.this.get((CFGNode) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof CFGNode && blocks.blockOf((CFGNode) key) != null;
+            }
+
+            @Override
+            public Set<Entry<CFGNode, L>> entrySet() {
+                if (all == null) {
+                    all = new HashMap<>();
+                    for (Block block : blocks.blocks()) {
+                        for (CFGNode node : block.nodes()) {
+                            all.put(node, BlockDfaResult.this.get(node));
+                        }
+                    }
+                }
+                return Collections.unmodifiableSet(all.entrySet());
+            }
+
+        };
+    }
+
+}
@@ -0,0 +1,184 @@
+package cyr7.cfg.ir.dfa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import cyr7.cfg.ir.dfa.BasicBlocks.Block;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.util.DataflowStatistics;
+import cyr7.util.PriorityWorklist;
+import cyr7.util.WorklistOrder;
+
+/**
+ * Solves dataflow analyses over the basic blocks of a CFG rather than over
+ * its nodes. Each block is visited through the summary of its transfer
+ * functions that the analysis gives, and only the values at the boundaries
+ * of blocks are stored, so both the number of visits and the number of
+ * values shrink by the average length of a block. The results agree with
+ * those of {@link WorklistAnalysis}.
+ */
+public final class BlockWorklistAnalysis {
+
+    /**
+     * Runs {@code analysis} over the blocks reachable from {@code cfg}, and
+     * returns the value before each node.
+     */
+    public static <L> BlockDfaResult<L> analyze(
+            CFGStartNode cfg,
+            ForwardDataflowAnalysis<L> analysis) {
+        return analyze(BasicBlocks.of(cfg), analysis);
+    }
+
+    /**
+     * Runs {@code analysis} over {@code blocks}, so that several analyses of
+     * the same CFG can share its blocks.
+     */
+    public static <L> BlockDfaResult<L> analyze(
+            BasicBlocks blocks,
+            ForwardDataflowAnalysis<L> analysis) {
+
+        final WorklistOrder<Block> order
+            = WorklistOrder.of(blocks.entry(), Block::successors);
+        final PriorityWorklist worklist = PriorityWorklist.full(order.size());
+
+        final int size = blocks.size();
+        final Object[] in = new Object[size];
+        // The value on each out edge of each block, by the index of the edge
+        // rather than by its successor, since both edges of an if can go to
+        // the same node and carry different values.
+        final Object[][] out = new Object[size][];
+        final List<Function<L, List<L>>> summaries = new ArrayList<>(size);
+        for (Block block : blocks.blocks()) {
+            Object[] outEdges = new Object[block.last().out().size()];
+            Arrays.fill(outEdges, analysis.topValue());
+            out[block.index()] = outEdges;
+            summaries.add(analysis.summarize(block.nodes()));
+        }
+
+        long visits = 0;
+        while (!worklist.isEmpty()) {
+            final Block block = order.node(worklist.poll());
+            final CFGNode first = block.first();
+            L inValue = null;
+            for (Block pred : block.predecessors()) {
+                final List<CFGNode> predOut = pred.last().out();
+                for (int i = 0; i < predOut.size(); i++) {
+                    if (predOut.get(i) == first) {
+                        L edgeValue = BlockWorklistAnalysis.<L>value(out[pred.index()], i);
+                        inValue = inValue == null
+                            ? edgeValue
+                            : analysis.meet(inValue, edgeValue);
+                    }
+                }
+            }
+            if (inValue == null) {
+                inValue = analysis.topValue();
+            }
+            in[block.index()] = inValue;
+            List<L> output = summaries.get(block.index()).apply(inValue);
+            visits++;
+            final List<CFGNode> outNodes = block.last().out();
+            final Object[] outEdges = out[block.index()];
+            for (int i = 0; i < outNodes.size(); i++) {
+                L newOutValue = output.get(i);
+                if (!outEdges[i].equals(newOutValue)) {
+                    outEdges[i] = newOutValue;
+                    worklist.add(order.indexOf(blocks.blockOf(outNodes.get(i))));
+                }
+            }
+        }
+        DataflowStatistics.record(visits);
+
+        return new BlockDfaResult<>(blocks, in, (nodes, boundary, values) -> {
+            L value = boundary;
+            for (int i = 0; i < nodes.size(); i++) {
+                values[i] = value;
+                if (i + 1 < nodes.size()) {
+                    value = nodes.get(i).acceptForward(analysis.transfer(), value).get(0);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs {@code analysis} over the blocks reachable from {@code cfg}, and
+     * returns the value after each node.
+     */
+    public static <L> BlockDfaResult<L> analyze(
+            CFGStartNode cfg,
+            BackwardDataflowAnalysis<L> analysis) {
+        return analyze(BasicBlocks.of(cfg), analysis);
+    }
+
+    /**
+     * Runs {@code analysis} over {@code blocks}, so that several analyses of
+     * the same CFG can share its blocks.
+     */
+    public static <L> BlockDfaResult<L> analyze(
+            BasicBlocks blocks,
+            BackwardDataflowAnalysis<L> analysis) {
+
+        final WorklistOrder<Block> order
+            = WorklistOrder.of(blocks.entry(), Block::successors);
+        final PriorityWorklist worklist = PriorityWorklist.full(order.size());
+
+        final int size = blocks.size();
+        final Object[] in = new Object[size];
+        final Object[] out = new Object[size];
+        final List<UnaryOperator<L>> summaries = new ArrayList<>(size);
+        for (Block block : blocks.blocks()) {
+            in[block.index()] = analysis.topValue();
+            out[block.index()] = analysis.topValue();
+            summaries.add(analysis.summarize(block.nodes()));
+        }
+
+        long visits = 0;
+        while (!worklist.isEmpty()) {
+            final Block block = order.backwardNode(worklist.poll());
+
+            L outValue = block.last().out()
+                .stream()
+                .map(n -> BlockWorklistAnalysis.<L>value(in, blocks.blockOf(n)))
+                .reduce(analysis::meet)
+                .orElse(analysis.topValue());
+            out[block.index()] = outValue;
+
+            L inValue = summaries.get(block.index()).apply(outValue);
+            visits++;
+            if (!in[block.index()].equals(inValue)) {
+                in[block.index()] = inValue;
+                for (Block pred : block.predecessors()) {
+                    worklist.add(order.backwardIndexOf(pred));
+                }
+            }
+        }
+        DataflowStatistics.record(visits);
+
+        return new BlockDfaResult<>(blocks, out, (nodes, boundary, values) -> {
+            L value = boundary;
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                values[i] = value;
+                if (i > 0) {
+                    value = nodes.get(i).acceptBackward(analysis.transfer(), value);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <L> L value(Object[] values, Block block) {
+        return (L) values[block.index()];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <L> L value(Object[] values, int index) {
+        return (L) values[index];
+    }
+
+    private BlockWorklistAnalysis() { }
+
+}
@@ -1,10 +1,11 @@
 package cyr7.cfg.ir.dfa;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Consumer;
+import java.util.StringJoiner;
+import java.util.TreeSet;
 
 import cyr7.cfg.ir.dfa.CCPAnalysis.LatticeElement;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
@@ -19,7 +20,7 @@ import cyr7.ir.BinOpInterpreter;
 import cyr7.ir.interpret.Configuration;
 import cyr7.ir.nodes.*;
 import cyr7.ir.nodes.IRBinOp.OpType;
-import cyr7.util.Sets;
+import cyr7.util.PersistentMap;
 import cyr7.visitor.MyIRVisitor;
 import kotlin.NotImplementedError;
 import org.jetbrains.annotations.NotNull;
@@ -31,9 +32,14 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
         return n.startsWith(Configuration.ABSTRACT_ARG_PREFIX);
     }
 
+    /**
+     * Every edge starts out {@link LatticeElement#unreachable unreachable},
+     * and only the start of the CFG is reachable before any edge is
+     * followed, so that the values of the edges can only go down.
+     */
     @Override
     public LatticeElement topValue() {
-        return LatticeElement.top;
+        return LatticeElement.unreachable;
     }
 
     @Override
@@ -43,22 +49,22 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
 
     @Override
     public LatticeElement meet(LatticeElement lhs, LatticeElement rhs) {
-        if (lhs.unreachable() && rhs.unreachable()) {
-            return LatticeElement.unreachable;
-        }
-
-        Set<String> variables = Sets.union(lhs.variables(), rhs.variables());
-
-        Map<String, VLatticeElement> values = new HashMap<>(variables.size());
-        for (String variable : variables) {
-            values.put(variable,
-                    meet(lhs.getValue(variable), rhs.getValue(variable)));
+        if (lhs.unreachable()) {
+            return rhs;
+        } else if (rhs.unreachable()) {
+            return lhs;
         }
-        return LatticeElement.reachable(values);
+        return ReachableLatticeElement.meet(
+            (ReachableLatticeElement) lhs,
+            (ReachableLatticeElement) rhs);
     }
 
-    private static VLatticeElement meet(VLatticeElement lhs,
-                                        VLatticeElement rhs) {
+    /**
+     * Returns the meet of the values {@code lhs} and {@code rhs} of a
+     * variable.
+     */
+    public static VLatticeElement meet(VLatticeElement lhs,
+                                       VLatticeElement rhs) {
         if (lhs.isTop() || rhs.isBot()) {
             return rhs;
         } else if (lhs.isBot() || rhs.isTop()) {
@@ -178,10 +184,14 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
     public interface LatticeElement {
 
         static LatticeElement reachable(Map<String, VLatticeElement> values) {
-            return new ReachableLatticeElement(values);
+            return ReachableLatticeElement.of(values);
         }
 
-        LatticeElement top = reachable(new HashMap<>(0));
+        /**
+         * The element at the start of a function, which is reachable and
+         * maps every variable to {@link VLatticeElement#top}.
+         */
+        LatticeElement entry = reachable(Map.of());
 
         LatticeElement unreachable = new LatticeElement() {
             @Override
@@ -200,8 +210,7 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
             }
 
             @Override
-            public LatticeElement modified(
-                Consumer<Map<String, VLatticeElement>> modify) {
+            public LatticeElement with(String variable, VLatticeElement value) {
                 throw new UnsupportedOperationException();
             }
 
@@ -213,30 +222,58 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
 
         boolean unreachable();
 
+        /**
+         * The variables whose values are not {@link VLatticeElement#top}.
+         */
         Set<String> variables();
 
         VLatticeElement getValue(String variable);
 
         /**
-         * Copies an internal mapping and performs {@code modify} on the copied
-         * mapping.
-         * <p>
-         * Then, a new {@link LatticeElement LatticeElement} with the
-         * new mapping and the reachability status is returned.
-         *
-         * @param modify
-         * @return
+         * Returns a {@link LatticeElement LatticeElement} that maps
+         * {@code variable} to {@code value}, and every other variable to
+         * its value in this element.
          */
-        LatticeElement modified(Consumer<Map<String, VLatticeElement>> modify);
+        LatticeElement with(String variable, VLatticeElement value);
 
     }
 
+    /**
+     * A reachable lattice element, stored as a persistent map of the values
+     * of the variables that are not {@link VLatticeElement#top}. An update
+     * shares all but a path of the map with the element it was made from,
+     * so the elements kept at every node of a CFG take space for the
+     * variables assigned at each node rather than for every variable.
+     */
     private final static class ReachableLatticeElement implements LatticeElement {
 
-        private final Map<String, VLatticeElement> immutableValues;
+        private final PersistentMap<String, VLatticeElement> values;
 
-        public ReachableLatticeElement(Map<String, VLatticeElement> values) {
-            this.immutableValues = Map.copyOf(values);
+        private ReachableLatticeElement(PersistentMap<String, VLatticeElement> values) {
+            this.values = values;
+        }
+
+        static ReachableLatticeElement of(Map<String, VLatticeElement> values) {
+            PersistentMap<String, VLatticeElement> map = PersistentMap.empty();
+            for (Map.Entry<String, VLatticeElement> entry : values.entrySet()) {
+                if (!entry.getValue().isTop()) {
+                    map = map.with(entry.getKey(), entry.getValue());
+                }
+            }
+            return new ReachableLatticeElement(map);
+        }
+
+        static LatticeElement meet(ReachableLatticeElement lhs,
+                                   ReachableLatticeElement rhs) {
+            // A variable in only one element is top in the other, and the
+            // meet of top and a value is that value.
+            final var values = lhs.values.merge(rhs.values, CCPAnalysis::meet);
+            if (values == lhs.values) {
+                return lhs;
+            } else if (values == rhs.values) {
+                return rhs;
+            }
+            return new ReachableLatticeElement(values);
         }
 
         @Override
@@ -246,27 +283,32 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
 
         @Override
         public Set<String> variables() {
-            return immutableValues.keySet();
+            Set<String> variables = new TreeSet<>();
+            values.forEach((variable, value) -> variables.add(variable));
+            return Collections.unmodifiableSet(variables);
         }
 
         @Override
         public VLatticeElement getValue(String variable) {
-            return immutableValues.getOrDefault(variable,
-                VLatticeElement.top);
+            final VLatticeElement value = values.get(variable);
+            return value != null ? value : VLatticeElement.top;
         }
 
         @Override
-        public LatticeElement modified(Consumer<Map<String,
-            VLatticeElement>> modify) {
-            Map<String, VLatticeElement> copy =
-                new HashMap<>(immutableValues);
-            modify.accept(copy);
-            return LatticeElement.reachable(copy);
+        public LatticeElement with(String variable, VLatticeElement value) {
+            final var updated = value.isTop()
+                ? values.without(variable)
+                : values.with(variable, value);
+            return updated == values ? this : new ReachableLatticeElement(updated);
         }
 
         @Override
         public String toString() {
-            return immutableValues.toString();
+            StringJoiner joiner = new StringJoiner(", ", "{", "}");
+            for (String variable : variables()) {
+                joiner.add(variable + "=" + values.get(variable));
+            }
+            return joiner.toString();
         }
 
         @Override
@@ -274,12 +316,12 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
             if (this == o) return true;
             if (o == null || getClass() != o.getClass()) return false;
             ReachableLatticeElement that = (ReachableLatticeElement) o;
-            return Objects.equals(immutableValues, that.immutableValues);
+            return values.equals(that.values);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(immutableValues);
+            return values.hashCode();
         }
 
     }
@@ -301,11 +343,11 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
                 return LatticeElement.unreachable;
             }
 
-            return in.modified(values -> {
-                for (String variable : n.call.collectors()) {
-                    values.put(variable, VLatticeElement.bot);
-                }
-            });
+            LatticeElement out = in;
+            for (String variable : n.call.collectors()) {
+                out = out.with(variable, VLatticeElement.bot);
+            }
+            return out;
         }
 
         @Override
@@ -366,11 +408,9 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
 
         @Override
         public LatticeElement transfer(CFGStartNode n, LatticeElement in) {
-            if (in.unreachable()) {
-                return LatticeElement.unreachable;
-            }
-
-            return LatticeElement.top;
+            // The start of the CFG is always reachable, and nothing flows
+            // into it.
+            return LatticeElement.entry;
         }
 
         @Override
@@ -379,20 +419,11 @@ public enum CCPAnalysis implements ForwardDataflowAnalysis<LatticeElement> {
                 return LatticeElement.unreachable;
             }
 
-            if (n.uses().stream().allMatch(s -> {
-                final var value = in.getValue(s);
-                return !(value.isBot() || value.isTop());
-            })) {
-                return in.modified(values -> {
-                    VLatticeElement result =
-                        n.value.accept(new AbstractInterpreter(in));
-                    values.put(n.variable, result);
-                });
-            } else {
-                return in.modified(values -> {
-                    values.put(n.variable, VLatticeElement.bot);
-                });
-            }
+            // An operand that is still top makes the value top rather than
+            // bot, which keeps the transfer monotone: the value can go
+            // down to a constant or to bot once the operand does.
+            return in.with(n.variable,
+                n.value.accept(new AbstractInterpreter(in)));
         }
 
         @Override
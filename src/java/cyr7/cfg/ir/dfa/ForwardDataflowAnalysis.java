@@ -1,5 +1,10 @@
 package cyr7.cfg.ir.dfa;
 
+import java.util.List;
+import java.util.function.Function;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+
 /**
  * A dataflow analysis.
  *
@@ -13,4 +18,20 @@ public interface ForwardDataflowAnalysis<L> {
     ForwardTransferFunction<L> transfer();
     L meet(L lhs, L rhs);
 
-}
\ No newline at end of file
+    /**
+     * Returns the transfer function of {@code block}, a straight-line
+     * sequence of nodes, which maps the value before the first node to the
+     * values on the out edges of the last, in the order of its
+     * {@link CFGNode#out()}.
+     */
+    default Function<L, List<L>> summarize(List<CFGNode> block) {
+        return in -> {
+            L value = in;
+            for (int i = 0; i < block.size() - 1; i++) {
+                value = block.get(i).acceptForward(transfer(), value).get(0);
+            }
+            return block.get(block.size() - 1).acceptForward(transfer(), value);
+        };
+    }
+
+}
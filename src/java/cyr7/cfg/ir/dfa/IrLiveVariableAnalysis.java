@@ -1,30 +1,88 @@
 package cyr7.cfg.ir.dfa;
 
-import java.util.Collections;
-import java.util.Objects;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
 import cyr7.cfg.ir.nodes.CFGCallNode;
 import cyr7.cfg.ir.nodes.CFGIfNode;
 import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGReturnNode;
 import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
-import cyr7.util.Sets;
+import cyr7.ir.TempTable;
 
-public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVarLattice> {
-    INSTANCE;
+/**
+ * Live variable analysis of the CFG of one function, whose temps are given
+ * dense ids in a {@link TempTable}, usually the {@link CFGStartNode#temps()
+ * temps} of the function, so an instance must only be used to analyze one
+ * function. The uses and defs of each node are the ids that the node keeps,
+ * so they are only numbered again after the node changes.
+ * <p>
+ * Sets of temps are sorted arrays of their ids rather than bit vectors, since
+ * a value is kept for every node and a bit vector for each would take space
+ * for every temp of the function at every node.
+ */
+public final class IrLiveVariableAnalysis
+        implements BackwardDataflowAnalysis<IrLiveVarLattice> {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final TempTable temps;
+    private final BackwardTransferFunction<IrLiveVarLattice> transfer =
+        new LiveVarTransferFunction();
+
+    private final Map<CFGNode, int[]> nodeKills = new HashMap<>();
+
+    /**
+     * Creates an analysis that numbers the temps of the function in a table
+     * of its own.
+     */
+    public IrLiveVariableAnalysis() {
+        this(new TempTable());
+    }
+
+    /**
+     * Creates an analysis of a function whose temps are numbered in
+     * {@code temps}.
+     */
+    public IrLiveVariableAnalysis(TempTable temps) {
+        this.temps = temps;
+    }
+
+    private int[] uses(CFGNode n) {
+        return n.uses(temps);
+    }
+
+    private int[] defs(CFGNode n) {
+        return n.defs(temps);
+    }
+
+    /**
+     * The variables that {@code n} defines without using them, which are
+     * never live before {@code n}.
+     */
+    private int[] kills(CFGNode n) {
+        return nodeKills.computeIfAbsent(n,
+            node -> difference(defs(node), uses(node)));
+    }
 
     @Override
     public IrLiveVarLattice topValue() {
-        return new IrLiveVarLattice();
+        return new IrLiveVarLattice(temps, NO_IDS);
     }
 
     @Override
     public BackwardTransferFunction<IrLiveVarLattice> transfer() {
-        return LiveVarTransferFunction.INSTANCE;
+        return transfer;
     }
 
     @Override
@@ -32,19 +90,112 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
         return IrLiveVarLattice.meet(lhs, rhs);
     }
 
+    /**
+     * The variables that a block uses before defining them, and the
+     * variables it defines, so that in[block] = use[block] ∪ (out[block] —
+     * def[block]) costs the same however long the block is.
+     */
+    @Override
+    public UnaryOperator<IrLiveVarLattice> summarize(List<CFGNode> block) {
+        int[] use = NO_IDS;
+        int[] def = NO_IDS;
+        for (int i = block.size() - 1; i >= 0; i--) {
+            CFGNode n = block.get(i);
+            use = union(difference(use, defs(n)), uses(n));
+            def = union(def, defs(n));
+        }
+        final int[] blockUse = use;
+        final int[] kill = difference(def, use);
+        return out -> transfer(blockUse, out, kill);
+    }
+
+    /**
+     * Returns use ∪ (out — kill), where {@code kill} holds the defined
+     * variables that are not in {@code use}. Most nodes leave the live
+     * variables as they are, so the result is only copied out of
+     * {@code out} when it differs from it.
+     */
+    private IrLiveVarLattice transfer(int[] use, IrLiveVarLattice out,
+                                      int[] kill) {
+        if (containsAll(out.liveIds, use) && !intersects(out.liveIds, kill)) {
+            return out;
+        }
+        return new IrLiveVarLattice(temps,
+            union(difference(out.liveIds, kill), use));
+    }
+
+    private static boolean containsAll(int[] lhs, int[] rhs) {
+        int i = 0;
+        for (int id : rhs) {
+            while (i < lhs.length && lhs[i] < id) {
+                i++;
+            }
+            if (i == lhs.length || lhs[i] != id) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean intersects(int[] lhs, int[] rhs) {
+        int i = 0, j = 0;
+        while (i < lhs.length && j < rhs.length) {
+            if (lhs[i] < rhs[j]) {
+                i++;
+            } else if (lhs[i] > rhs[j]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] union(int[] lhs, int[] rhs) {
+        if (rhs.length == 0) {
+            return lhs;
+        } else if (lhs.length == 0) {
+            return rhs;
+        }
+        int[] result = new int[lhs.length + rhs.length];
+        int size = 0, i = 0, j = 0;
+        while (i < lhs.length || j < rhs.length) {
+            if (j == rhs.length || (i < lhs.length && lhs[i] < rhs[j])) {
+                result[size++] = lhs[i++];
+            } else if (i == lhs.length || rhs[j] < lhs[i]) {
+                result[size++] = rhs[j++];
+            } else {
+                result[size++] = lhs[i++];
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static int[] difference(int[] lhs, int[] rhs) {
+        if (lhs.length == 0 || rhs.length == 0) {
+            return lhs;
+        }
+        int[] result = new int[lhs.length];
+        int size = 0, j = 0;
+        for (int id : lhs) {
+            while (j < rhs.length && rhs[j] < id) {
+                j++;
+            }
+            if (j == rhs.length || rhs[j] != id) {
+                result[size++] = id;
+            }
+        }
+        return size == result.length ? lhs : Arrays.copyOf(result, size);
+    }
+
     /**
      * Transfer function is defined as: in[n] = use[n] ∪ (out[n] — def [n])
      * @author ayang
      *
      */
-    public enum LiveVarTransferFunction implements BackwardTransferFunction<IrLiveVarLattice> {
-        INSTANCE;
-
-        private IrLiveVarLattice transfer(Set<String> use, Set<String> out, Set<String> def) {
-            Set<String> diff = Sets.difference(out, def);
-            Set<String> total = Sets.union(use, diff);
-            return new IrLiveVarLattice(total);
-        }
+    private final class LiveVarTransferFunction
+            implements BackwardTransferFunction<IrLiveVarLattice> {
 
         /**
          *  All variables in arguments are used.
@@ -53,7 +204,7 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
          */
         @Override
         public IrLiveVarLattice transfer(CFGCallNode n, IrLiveVarLattice out) {
-            return transfer(n.uses(), out.liveVars, n.defs());
+            return IrLiveVariableAnalysis.this.transfer(uses(n), out, kills(n));
         }
 
         /**
@@ -63,7 +214,7 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
          */
         @Override
         public IrLiveVarLattice transfer(CFGIfNode n, IrLiveVarLattice out) {
-            return transfer(n.uses(), out.liveVars, Collections.emptySet());
+            return IrLiveVariableAnalysis.this.transfer(uses(n), out, kills(n));
         }
 
         /**
@@ -73,7 +224,7 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
          */
         @Override
         public IrLiveVarLattice transfer(CFGMemAssignNode n, IrLiveVarLattice out) {
-            return transfer(n.uses(), out.liveVars, Collections.emptySet());
+            return IrLiveVariableAnalysis.this.transfer(uses(n), out, kills(n));
         }
 
         /**
@@ -81,8 +232,7 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
          */
         @Override
         public IrLiveVarLattice transfer(CFGReturnNode n, IrLiveVarLattice out) {
-            return transfer(Collections.emptySet(),
-                            out.liveVars, Collections.emptySet());
+            return out;
         }
 
         /**
@@ -92,30 +242,31 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
          */
         @Override
         public IrLiveVarLattice transfer(CFGVarAssignNode n, IrLiveVarLattice out) {
-            return transfer(n.uses(), out.liveVars, n.defs());
+            return IrLiveVariableAnalysis.this.transfer(uses(n), out, kills(n));
         }
 
         @Override
         public IrLiveVarLattice transfer(CFGSelfLoopNode n,
                 IrLiveVarLattice out) {
-            return transfer(Collections.emptySet(),
-                    out.liveVars, Collections.emptySet());
+            return out;
         }
 
         @Override
         public IrLiveVarLattice transfer(CFGBlockNode n, IrLiveVarLattice out) {
-            return transfer(n.uses(), out.liveVars, n.defs());
+            return IrLiveVariableAnalysis.this.transfer(uses(n), out, kills(n));
         }
     }
 
     /**
-     * The lattice is a set of strings, i.e. the set of live variables.
-     *
+     * The lattice is a set of variables, i.e. the set of live variables,
+     * stored as the sorted ids in the {@link TempTable} of the analysis that
+     * computed it. A lattice value is never modified once it has been
+     * created, and is only comparable to the values of the same analysis.
      */
     public static class IrLiveVarLattice {
         @Override
         public int hashCode() {
-            return Objects.hash(liveVars);
+            return Arrays.hashCode(liveIds);
         }
 
         @Override
@@ -127,28 +278,47 @@ public enum IrLiveVariableAnalysis implements BackwardDataflowAnalysis<IrLiveVar
                 return false;
             }
             IrLiveVarLattice other = (IrLiveVarLattice) obj;
-            return Objects.equals(liveVars, other.liveVars);
+            return temps == other.temps && Arrays.equals(liveIds, other.liveIds);
         }
 
-        public final Set<String> liveVars;
+        private final TempTable temps;
+        private final int[] liveIds;
 
-        public IrLiveVarLattice() {
-            this.liveVars = Collections.emptySet();
+        private IrLiveVarLattice(TempTable temps, int[] liveIds) {
+            this.temps = temps;
+            this.liveIds = liveIds;
         }
 
-        public IrLiveVarLattice(Set<String> liveVars) {
-            this.liveVars = Collections.unmodifiableSet(liveVars);
+        public boolean isLive(String variable) {
+            int id = temps.find(variable);
+            return id >= 0 && Arrays.binarySearch(liveIds, id) >= 0;
         }
 
         /**
-         * The meet operator for this lattice is set union.
+         * The names of the live variables.
+         */
+        public Set<String> liveVars() {
+            Set<String> names = new HashSet<>(liveIds.length * 2);
+            for (int id : liveIds) {
+                names.add(temps.name(id));
+            }
+            return names;
+        }
+
+        /**
+         * The meet operator for this lattice is set union. A new value is only
+         * made when neither side contains the other.
          */
         public static IrLiveVarLattice meet(IrLiveVarLattice lhs,
                                             IrLiveVarLattice rhs) {
-            if (rhs == null) {
-                System.out.println();
+            if (containsAll(lhs.liveIds, rhs.liveIds)) {
+                return lhs;
+            }
+            if (containsAll(rhs.liveIds, lhs.liveIds)) {
+                return rhs;
             }
-            return new IrLiveVarLattice(Sets.union(lhs.liveVars, rhs.liveVars));
+            return new IrLiveVarLattice(lhs.temps,
+                union(lhs.liveIds, rhs.liveIds));
         }
 
     }
@@ -0,0 +1,459 @@
+package cyr7.cfg.ir.dfa;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGNodeFactory;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.ir.interpret.Configuration;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+/**
+ * The CFG of a function in static single assignment form, as built by
+ * {@link SSATransformer#convert}. Every variable of the CFG is defined by at
+ * most one node or phi-function, and each definition knows its uses, so
+ * analyses can follow values from definitions to uses directly instead of
+ * through every node in between.
+ * <p>
+ * The phi-functions are kept beside the CFG rather than in it: the
+ * phi-functions of a node take effect on entry to the node, before its own
+ * statement. The CFG is therefore not a program on its own until
+ * {@link #destruct()} turns the phi-functions back into copies.
+ * <p>
+ * Passes may change the CFG while it is in this form, as long as they keep
+ * the phi-functions right, for which this class provides the changes that
+ * move or remove edges. The definitions and uses are those of the reachable
+ * nodes, and are found again after {@link #changed()} is called.
+ */
+public final class SSAForm {
+
+    /**
+     * A phi-function {@code target = φ(arguments)} at the start of a node
+     * with several predecessors.
+     */
+    public static final class Phi {
+
+        private CFGNode node;
+        private final String variable;
+        private String target;
+        private final Map<CFGNode, String> arguments = new LinkedHashMap<>();
+
+        private Phi(CFGNode node, String variable) {
+            this.node = node;
+            this.variable = variable;
+            this.target = variable;
+        }
+
+        /**
+         * The node on entry to which this phi-function takes effect.
+         */
+        public CFGNode node() {
+            return node;
+        }
+
+        /**
+         * The variable of the original CFG that this phi-function merges.
+         */
+        public String variable() {
+            return variable;
+        }
+
+        public String target() {
+            return target;
+        }
+
+        /**
+         * The argument of this phi-function for each predecessor of
+         * {@link #node()} that is reachable from the start of the CFG.
+         */
+        public Map<CFGNode, String> arguments() {
+            return Collections.unmodifiableMap(arguments);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s=φ(%s)", target,
+                String.join(", ", arguments.values()));
+        }
+
+    }
+
+    /**
+     * Separates the name of a variable from its version.
+     */
+    private static final char VERSION_SEPARATOR = '$';
+
+    private final CFGStartNode cfg;
+    private final Map<CFGNode, List<Phi>> phis = new LinkedHashMap<>();
+    private final Map<String, CFGNode> definitions = new HashMap<>();
+    private final Map<String, Phi> phiDefinitions = new HashMap<>();
+    private final Map<String, Set<CFGNode>> uses = new HashMap<>();
+    private final Map<String, Set<Phi>> phiUses = new HashMap<>();
+    private final Map<String, Integer> versions = new HashMap<>();
+
+    /**
+     * Whether the definitions and uses have to be found again.
+     */
+    private boolean stale = true;
+    private boolean destructed = false;
+
+    SSAForm(CFGStartNode cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * Returns whether {@code variable} is given versions in SSA form. The
+     * arguments and return values of the function, and the collector of
+     * discarded results, are left alone.
+     */
+    static boolean isRenamed(String variable) {
+        return !variable.startsWith(Configuration.ABSTRACT_ARG_PREFIX)
+            && !variable.startsWith(Configuration.ABSTRACT_RET_PREFIX)
+            && !variable.equals("_");
+    }
+
+    public CFGStartNode cfg() {
+        return cfg;
+    }
+
+    /**
+     * Returns the phi-functions of {@code node}, in the order that they are
+     * translated into copies.
+     */
+    public List<Phi> phis(CFGNode node) {
+        return Collections.unmodifiableList(phis.getOrDefault(node, List.of()));
+    }
+
+    /**
+     * Returns the phi-functions of every node.
+     */
+    public List<Phi> phis() {
+        return phis.values()
+            .stream()
+            .flatMap(List::stream)
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * Returns the variables that are defined by a node or a phi-function.
+     * A variable that is used but not in this set holds the value that it
+     * had on entry to the function.
+     */
+    public Set<String> variables() {
+        findChains();
+        Set<String> variables = new LinkedHashSet<>(definitions.keySet());
+        variables.addAll(phiDefinitions.keySet());
+        return Collections.unmodifiableSet(variables);
+    }
+
+    /**
+     * Returns the node that defines {@code variable}, or {@code null} if it
+     * is defined by a phi-function or not at all.
+     */
+    public CFGNode definition(String variable) {
+        findChains();
+        return definitions.get(variable);
+    }
+
+    /**
+     * Returns the phi-function that defines {@code variable}, or
+     * {@code null} if it is defined by a node or not at all.
+     */
+    public Phi phiDefinition(String variable) {
+        findChains();
+        return phiDefinitions.get(variable);
+    }
+
+    /**
+     * Returns whether {@code variable} is defined by a node or a
+     * phi-function, and so has a single definition that dominates its uses.
+     */
+    public boolean defines(String variable) {
+        return definition(variable) != null || phiDefinition(variable) != null;
+    }
+
+    /**
+     * Returns the nodes whose statements use {@code variable}.
+     */
+    public Set<CFGNode> uses(String variable) {
+        findChains();
+        return Collections.unmodifiableSet(
+            uses.getOrDefault(variable, Set.of()));
+    }
+
+    /**
+     * Returns the phi-functions that take {@code variable} as an argument.
+     */
+    public Set<Phi> phiUses(String variable) {
+        findChains();
+        return Collections.unmodifiableSet(
+            phiUses.getOrDefault(variable, Set.of()));
+    }
+
+    Phi addPhi(CFGNode node, String variable) {
+        Phi phi = new Phi(node, variable);
+        phis.computeIfAbsent(node, n -> new ArrayList<>(1)).add(phi);
+        return phi;
+    }
+
+    /**
+     * Returns a new version of {@code variable} that is not used anywhere,
+     * which is given its id in the {@link CFGStartNode#temps() temps} of the
+     * function.
+     */
+    String freshVersion(String variable) {
+        int version = versions.merge(variable, 1, Integer::sum);
+        String name = variable + VERSION_SEPARATOR + version;
+        cfg.temps().id(name);
+        return name;
+    }
+
+    void define(Phi phi, String target) {
+        phi.target = target;
+    }
+
+    void use(Phi phi, CFGNode predecessor, String argument) {
+        phi.arguments.put(predecessor, argument);
+    }
+
+    /**
+     * Records that the CFG has been changed, so that the definitions and
+     * uses are found again when they are next asked for.
+     */
+    public void changed() {
+        stale = true;
+    }
+
+    /**
+     * Finds the definitions and uses of the nodes that are reachable from
+     * the start of the CFG, and of the phi-functions, if they are stale.
+     */
+    private void findChains() {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        definitions.clear();
+        phiDefinitions.clear();
+        uses.clear();
+        phiUses.clear();
+
+        final Set<CFGNode> visited = new HashSet<>();
+        final Deque<CFGNode> worklist = new ArrayDeque<>();
+        visited.add(cfg);
+        worklist.add(cfg);
+        while (!worklist.isEmpty()) {
+            final CFGNode node = worklist.remove();
+            for (String def : node.defs()) {
+                if (isRenamed(def)) {
+                    definitions.put(def, node);
+                }
+            }
+            for (String use : node.uses()) {
+                uses.computeIfAbsent(use, v -> new LinkedHashSet<>()).add(node);
+            }
+            for (CFGNode out : node.out()) {
+                if (visited.add(out)) {
+                    worklist.add(out);
+                }
+            }
+        }
+
+        for (List<Phi> nodePhis : phis.values()) {
+            for (Phi phi : nodePhis) {
+                phiDefinitions.put(phi.target, phi);
+                for (String argument : phi.arguments.values()) {
+                    phiUses.computeIfAbsent(argument, v -> new LinkedHashSet<>())
+                        .add(phi);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes {@code phi}, whose target is not used.
+     */
+    public void remove(Phi phi) {
+        final List<Phi> nodePhis = phis.get(phi.node);
+        nodePhis.remove(phi);
+        if (nodePhis.isEmpty()) {
+            phis.remove(phi.node);
+        }
+        stale = true;
+    }
+
+    /**
+     * Replaces each argument of a phi-function that is a key of
+     * {@code replacements} with its value.
+     *
+     * @return {@code true} if any argument was replaced.
+     */
+    public boolean replaceArguments(Map<String, String> replacements) {
+        boolean replaced = false;
+        for (List<Phi> nodePhis : phis.values()) {
+            for (Phi phi : nodePhis) {
+                for (Map.Entry<CFGNode, String> argument : phi.arguments.entrySet()) {
+                    final String replacement = replacements.get(argument.getValue());
+                    if (replacement != null) {
+                        argument.setValue(replacement);
+                        replaced = true;
+                    }
+                }
+            }
+        }
+        stale |= replaced;
+        return replaced;
+    }
+
+    /**
+     * Moves the phi-functions of {@code from} to {@code to}, after every
+     * edge into {@code from} has been moved to {@code to} and {@code to}
+     * has been linked to {@code from}.
+     */
+    public void movePhis(CFGNode from, CFGNode to) {
+        final List<Phi> moved = phis.remove(from);
+        if (moved == null) {
+            return;
+        }
+        for (Phi phi : moved) {
+            phi.node = to;
+        }
+        phis.put(to, moved);
+        stale = true;
+    }
+
+    /**
+     * Removes the edge from {@code predecessor}, which is unreachable, from
+     * the edges into {@code node}, along with the arguments of the
+     * phi-functions of {@code node} for it.
+     */
+    public void unlink(CFGNode predecessor, CFGNode node) {
+        node.in().removeAll(Collections.singleton(predecessor));
+        for (Phi phi : phis.getOrDefault(node, List.of())) {
+            phi.arguments.remove(predecessor);
+        }
+        stale = true;
+    }
+
+    /**
+     * Removes {@code node}, whose statement has no effect on the path to
+     * {@code successor}, from the CFG by linking its predecessors to
+     * {@code successor}, one of its successors. The arguments of the
+     * phi-functions of {@code successor} for {@code node} become their
+     * arguments for each predecessor of {@code node}, and the phi-functions
+     * of its other successors lose their arguments for {@code node}.
+     *
+     * @return {@code false}, leaving the CFG unchanged, if {@code node} has
+     *         phi-functions of its own or is its own predecessor, or if a
+     *         predecessor of {@code node} is already a predecessor of
+     *         {@code successor} and {@code successor} has phi-functions.
+     */
+    public boolean bypass(CFGNode node, CFGNode successor) {
+        final List<CFGNode> predecessors = List.copyOf(node.in());
+        final List<Phi> successorPhis = phis.getOrDefault(successor, List.of());
+        if (phis.containsKey(node)
+                || successor == node
+                || predecessors.contains(node)
+                || (!successorPhis.isEmpty()
+                    && predecessors.stream().anyMatch(successor.in()::contains))) {
+            return false;
+        }
+
+        for (Phi phi : successorPhis) {
+            final String argument = phi.arguments.remove(node);
+            if (argument != null) {
+                for (CFGNode predecessor : predecessors) {
+                    phi.arguments.put(predecessor, argument);
+                }
+            }
+        }
+        for (CFGNode out : node.out()) {
+            if (out != successor) {
+                unlink(node, out);
+            }
+        }
+        for (CFGNode predecessor : predecessors) {
+            predecessor.replaceOutEdge(node, successor);
+        }
+        node.in().clear();
+        successor.in().removeAll(Collections.singleton(node));
+        stale = true;
+        return true;
+    }
+
+    /**
+     * Translates the CFG out of SSA form by replacing the phi-functions with
+     * copies on the edges into their nodes, splitting each edge with the
+     * copies of its arguments. The phi-functions of a node are evaluated in
+     * parallel, so a node with several phi-functions first copies its
+     * arguments into fresh variables, and only then copies those into the
+     * targets on entry to the node. The copies that this leaves are for copy
+     * propagation and dead code elimination to remove.
+     * <p>
+     * This form cannot be used afterwards.
+     */
+    public void destruct() {
+        if (destructed) {
+            throw new IllegalStateException("Already translated out of SSA form");
+        }
+        destructed = true;
+
+        phis.forEach((node, nodePhis) -> {
+            final Location location = node.location();
+            final CFGNodeFactory make = new CFGNodeFactory(location);
+            final List<CFGNode> predecessors = List.copyOf(node.in());
+
+            final String[] sources = new String[nodePhis.size()];
+            CFGNode entry = node;
+            for (int i = nodePhis.size() - 1; i >= 0; i--) {
+                Phi phi = nodePhis.get(i);
+                if (nodePhis.size() == 1) {
+                    sources[i] = phi.target;
+                } else {
+                    sources[i] = freshVersion(phi.variable);
+                    entry = make.VarAssign(phi.target,
+                        cfg.temps().temp(location, sources[i]), entry);
+                }
+            }
+
+            for (CFGNode predecessor : predecessors) {
+                CFGNode copies = entry;
+                for (int i = nodePhis.size() - 1; i >= 0; i--) {
+                    String argument = nodePhis.get(i).arguments.get(predecessor);
+                    if (argument == null) {
+                        // The predecessor is unreachable.
+                        copies = null;
+                        break;
+                    }
+                    if (!argument.equals(sources[i])) {
+                        copies = make.VarAssign(sources[i],
+                            cfg.temps().temp(location, argument), copies);
+                    }
+                }
+                if (copies != null && copies != node) {
+                    predecessor.replaceOutEdge(node, copies);
+                    node.in().remove(predecessor);
+                }
+            }
+        });
+
+        phis.clear();
+        stale = false;
+        definitions.clear();
+        phiDefinitions.clear();
+        uses.clear();
+        phiUses.clear();
+    }
+
+}
@@ -1,335 +1,304 @@
 package cyr7.cfg.ir.dfa;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
-import cyr7.cfg.ir.dfa.loops.DominatorAnalysis;
-import cyr7.cfg.ir.dfa.loops.DominatorUtil;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
+import cyr7.cfg.ir.dfa.SSAForm.Phi;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
 import cyr7.cfg.ir.nodes.CFGCallNode;
 import cyr7.cfg.ir.nodes.CFGIfNode;
 import cyr7.cfg.ir.nodes.CFGMemAssignNode;
 import cyr7.cfg.ir.nodes.CFGNode;
-import cyr7.cfg.ir.nodes.CFGNodeFactory;
 import cyr7.cfg.ir.nodes.CFGReturnNode;
 import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
-import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.IRTempReplacer;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
-import cyr7.ir.nodes.IRPhiFuncNode;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRExpr;
+
+/**
+ * Converts the CFG of a function into {@link SSAForm static single
+ * assignment form}.
+ * <p>
+ * See chapter 19 of Appel: phi-functions are placed on the iterated
+ * dominance frontiers of the definitions of each variable, but only where
+ * the variable is live (pruned SSA), and variables are then renamed by a
+ * walk of the dominator tree.
+ */
+public final class SSATransformer {
+
+    private SSATransformer() {}
 
-public class SSATransformer {
-
-    public static CFGStartNode convert(CFGStartNode start) {
-        // Create the dominance frontier.
-        final var result = WorklistAnalysis.analyze(start, DominatorAnalysis.INSTANCE);
-        final var domFrontier = DominatorUtil.generateMap(result.out());
-
-        final var defsites = getDefsites(start);
-        final var phiLocations = computePhiFuncLoc(defsites, domFrontier, start);
-
-        final var phiFuncsInserted = insertPhiFunctions(phiLocations, start);
-
-        return start;
+    /**
+     * Converts {@code start} into SSA form, changing it in place.
+     */
+    public static SSAForm convert(CFGStartNode start) {
+        return convert(start,
+            DominatorTree.of(start),
+            BlockWorklistAnalysis.analyze(start,
+                new IrLiveVariableAnalysis(start.temps())).asMap());
     }
 
-    private static CFGStartNode insertPhiFunctions(
-            final Map<String, Set<CFGNode>> phiLocations,
-            final CFGStartNode start) {
+    /**
+     * Converts {@code start} into SSA form, changing it in place.
+     *
+     * @param dominators The dominator tree of {@code start}.
+     * @param liveVariables The result of {@link IrLiveVariableAnalysis} on
+     *                      {@code start}.
+     * @throws UnsupportedOperationException if the CFG contains a
+     *                                       {@link CFGBlockNode}.
+     */
+    public static SSAForm convert(CFGStartNode start,
+                                  DominatorTree dominators,
+                                  Map<CFGNode, IrLiveVarLattice> liveVariables) {
+        final SSAForm form = new SSAForm(start);
+        placePhis(form, dominators, liveVariables);
+        rename(form, dominators);
+        return form;
+    }
 
-        // Invert the phiLocation mapping
-        final Map<CFGNode, Set<String>> requiredPhiFuncMap = new HashMap<>();
-        phiLocations.forEach((var, nodeSet) -> {
-            nodeSet.forEach(node -> {
-                if (requiredPhiFuncMap.containsKey(node)) {
-                    requiredPhiFuncMap.get(node).add(var);
-                } else {
-                    requiredPhiFuncMap.put(node, new HashSet<>());
-                    requiredPhiFuncMap.get(node).add(var);
+    /**
+     * Places a phi-function for each variable on the iterated dominance
+     * frontier of its definitions, wherever the variable is live on entry.
+     * <p>
+     * See page 407 (Algorithm 19.6) of Appel.
+     */
+    private static void placePhis(SSAForm form,
+                                  DominatorTree dominators,
+                                  Map<CFGNode, IrLiveVarLattice> liveVariables) {
+        final Map<String, Set<CFGNode>> defsites = new LinkedHashMap<>();
+        for (CFGNode node : dominators.nodes()) {
+            for (String def : node.defs()) {
+                if (SSAForm.isRenamed(def)) {
+                    defsites.computeIfAbsent(def, v -> new LinkedHashSet<>())
+                        .add(node);
                 }
-            });
-        });
+            }
+        }
 
-        final var visitor = new PhiFunctionInsertVisitor(requiredPhiFuncMap);
-        requiredPhiFuncMap.keySet().forEach(node -> {
-            node.accept(visitor);
+        defsites.forEach((variable, sites) -> {
+            final Deque<CFGNode> worklist = new ArrayDeque<>(sites);
+            final Set<CFGNode> enqueued = new HashSet<>(sites);
+            final Set<CFGNode> placed = new HashSet<>();
+            while (!worklist.isEmpty()) {
+                final CFGNode node = worklist.remove();
+                for (CFGNode y : dominators.frontier(node)) {
+                    if (!placed.add(y)) {
+                        continue;
+                    }
+                    if (isLiveIn(variable, y, liveVariables)) {
+                        form.addPhi(y, variable);
+                    }
+                    if (enqueued.add(y)) {
+                        worklist.add(y);
+                    }
+                }
+            }
         });
-
-        return start;
     }
 
-    private static class PhiFunctionInsertVisitor implements IrCFGVisitor<CFGNode> {
-
-        private final Map<CFGNode, Set<String>> requiredPhiFuncMap;
-
-        public PhiFunctionInsertVisitor(
-                Map<CFGNode, Set<String>> requiredPhiFuncMap) {
-            this.requiredPhiFuncMap = requiredPhiFuncMap;
+    private static boolean isLiveIn(String variable,
+                                    CFGNode node,
+                                    Map<CFGNode, IrLiveVarLattice> liveVariables) {
+        if (node.uses().contains(variable)) {
+            return true;
         }
+        IrLiveVarLattice liveOut = liveVariables.get(node);
+        return liveOut != null
+            && liveOut.isLive(variable)
+            && !node.defs().contains(variable);
+    }
 
-        @Override
-        public CFGNode visit(CFGCallNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final var originalOutNode = n.outNode();
-                originalOutNode.in().remove(n);
-                n.replaceOutEdge(originalOutNode, new CFGStubNode());
-                CFGNode base = n;
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, originalOutNode);
-                final List<CFGNode> incoming = List.copyOf(n.in());
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
+    /**
+     * Gives each definition a new version of its variable, and each use the
+     * version that reaches it, by walking the dominator tree from its root.
+     * The walk is iterative, so that deep dominator trees do not overflow
+     * the stack.
+     * <p>
+     * See page 409 (Algorithm 19.7) of Appel.
+     */
+    private static void rename(SSAForm form, DominatorTree dominators) {
+        final RenameVisitor renamer = new RenameVisitor(form);
+        final Deque<CFGNode> pending = new ArrayDeque<>();
+        final Map<CFGNode, List<String>> pushed = new HashMap<>();
+        pending.push(dominators.root());
+        while (!pending.isEmpty()) {
+            final CFGNode node = pending.peek();
+            final List<String> pushedAtNode = pushed.get(node);
+            if (pushedAtNode == null) {
+                pushed.put(node, renamer.enter(node));
+                for (CFGNode child : dominators.children(node)) {
+                    pending.push(child);
                 }
-                return blockNode;
             } else {
-                return n;
+                pending.pop();
+                renamer.exit(pushedAtNode);
             }
         }
+    }
 
-        @Override
-        public CFGNode visit(CFGIfNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final List<CFGNode> incoming = List.copyOf(n.in());
+    /**
+     * Renames the uses and definitions of one node at a time. The current
+     * version of each variable is on top of its stack, and a variable
+     * without versions on its stack is used as it was on entry to the
+     * function.
+     */
+    private static final class RenameVisitor implements IrCFGVisitor<Void> {
 
-                if (setOfVars.size() == 1) {
-                    for (String var: setOfVars) {
-                        final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                        final var phiNode = make.VarAssign(var, phi, n);
-                        for (CFGNode in: incoming) {
-                            n.in().remove(in);
-                            in.replaceOutEdge(n, phiNode);
-                        }
-                    }
-                    return n;
-                }
+        private final SSAForm form;
+        private final Map<String, Deque<String>> stacks = new HashMap<>();
 
-                CFGNode base = new CFGStubNode();
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, n);
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
+        /**
+         * The variables whose stacks have been pushed by the node being
+         * visited.
+         */
+        private List<String> pushed;
+
+        RenameVisitor(SSAForm form) {
+            this.form = form;
+        }
+
+        /**
+         * Renames the phi-functions and the statement of {@code node}, and
+         * fills in the arguments of the phi-functions of its successors.
+         *
+         * @return The variables whose stacks have been pushed.
+         */
+        List<String> enter(CFGNode node) {
+            pushed = new ArrayList<>();
+            for (Phi phi : form.phis(node)) {
+                form.define(phi, define(phi.variable()));
+            }
+            node.accept(this);
+            for (CFGNode successor : node.out()) {
+                for (Phi phi : form.phis(successor)) {
+                    form.use(phi, node, current(phi.variable()));
                 }
-                return blockNode;
-            } else {
-                return n;
             }
+            return pushed;
         }
 
-        @Override
-        public CFGNode visit(CFGVarAssignNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final var originalOutNode = n.outNode();
-                originalOutNode.in().remove(n);
-                n.replaceOutEdge(originalOutNode, new CFGStubNode());
-                CFGNode base = n;
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, originalOutNode);
-                final List<CFGNode> incoming = List.copyOf(n.in());
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
-                }
-                return blockNode;
-            } else {
-                return n;
+        /**
+         * Pops the versions that a node pushed.
+         */
+        void exit(List<String> pushedAtNode) {
+            for (String variable : pushedAtNode) {
+                stacks.get(variable).pop();
             }
         }
 
-        @Override
-        public CFGNode visit(CFGMemAssignNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final var originalOutNode = n.outNode();
-                originalOutNode.in().remove(n);
-                n.replaceOutEdge(originalOutNode, new CFGStubNode());
-                CFGNode base = n;
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, originalOutNode);
-                final List<CFGNode> incoming = List.copyOf(n.in());
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
+        private String current(String variable) {
+            Deque<String> stack = stacks.get(variable);
+            return stack == null || stack.isEmpty() ? variable : stack.peek();
+        }
+
+        private String define(String variable) {
+            String version = form.freshVersion(variable);
+            stacks.computeIfAbsent(variable, v -> new ArrayDeque<>())
+                .push(version);
+            pushed.add(variable);
+            return version;
+        }
+
+        /**
+         * Maps each variable used by {@code n} to its current version.
+         */
+        private Map<String, String> versions(CFGNode n) {
+            final Map<String, String> versions = new HashMap<>();
+            for (String use : n.uses()) {
+                String version = current(use);
+                if (SSAForm.isRenamed(use) && !version.equals(use)) {
+                    versions.put(use, version);
                 }
-                return blockNode;
-            } else {
-                return n;
             }
+            return versions;
         }
 
-        @Override
-        public CFGNode visit(CFGReturnNode n) {
-            return n;
+        private IRExpr rename(IRExpr expr, Map<String, String> versions) {
+            return versions.isEmpty()
+                ? expr
+                : IRTempReplacer.replace(expr, versions, form.cfg().temps());
         }
 
         @Override
-        public CFGNode visit(CFGStartNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final var originalOutNode = n.outNode();
-                originalOutNode.in().remove(n);
-                n.replaceOutEdge(originalOutNode, new CFGStubNode());
-                CFGNode base = n;
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, originalOutNode);
-                final List<CFGNode> incoming = List.copyOf(n.in());
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
-                }
-                return blockNode;
-            } else {
-                return n;
+        public Void visit(CFGCallNode n) {
+            final Map<String, String> versions = versions(n);
+            final List<IRExpr> args = n.call.args()
+                .stream()
+                .map(arg -> rename(arg, versions))
+                .collect(Collectors.toList());
+            final List<String> collectors = new ArrayList<>();
+            for (String collector : n.call.collectors()) {
+                collectors.add(SSAForm.isRenamed(collector)
+                    ? define(collector)
+                    : collector);
             }
+            n.call = new IRCallStmt(n.location(), collectors,
+                rename(n.call.target(), versions), args);
+            n.refreshDfaSets();
+            return null;
         }
 
         @Override
-        public CFGNode visit(CFGSelfLoopNode n) {
-            return n;
+        public Void visit(CFGIfNode n) {
+            n.cond = rename(n.cond, versions(n));
+            n.refreshDfaSets();
+            return null;
         }
 
         @Override
-        public CFGNode visit(CFGBlockNode n) {
-            final CFGNodeFactory make = new CFGNodeFactory(n.location());
-            final var paramSize = n.in().size();
-            if (paramSize > 1 && requiredPhiFuncMap.containsKey(n)) {
-                final var setOfVars = requiredPhiFuncMap.get(n);
-                final List<CFGNode> incoming = List.copyOf(n.in());
-
-                if (setOfVars.size() == 1) {
-                    for (String var: setOfVars) {
-                        final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                        final var phiNode = make.VarAssign(var, phi, n);
-                        for (CFGNode in: incoming) {
-                            n.in().remove(in);
-                            in.replaceOutEdge(n, phiNode);
-                        }
-                    }
-                    return n;
-                }
-                CFGNode base = new CFGStubNode();
-                for (String var: setOfVars) {
-                    final var phi = new IRPhiFuncNode(n.location(), var, paramSize);
-                    base = make.VarAssign(var, phi, base);
-                }
-                final var blockNode = new CFGBlockNode(n.location(), base, n);
-                for (CFGNode in: incoming) {
-                    n.in().remove(in);
-                    in.replaceOutEdge(n, blockNode);
-                }
-                return blockNode;
-            } else {
-                return n;
+        public Void visit(CFGVarAssignNode n) {
+            n.value = rename(n.value, versions(n));
+            if (n.defs().contains(n.variable) && SSAForm.isRenamed(n.variable)) {
+                n.variable = define(n.variable);
             }
+            n.refreshDfaSets();
+            return null;
         }
 
-    }
-
+        @Override
+        public Void visit(CFGMemAssignNode n) {
+            final Map<String, String> versions = versions(n);
+            n.target = rename(n.target, versions);
+            n.value = rename(n.value, versions);
+            n.refreshDfaSets();
+            return null;
+        }
 
-    /**
-     * Returns a map of defined variables to the set of nodes that those
-     * variables are defined in.
-     *
-     * <p>
-     * See page 407 (Algorithm 19.6) of Appel for algorithm.
-     *
-     * @param start
-     * @return
-     */
-    private static Map<String, Set<CFGNode>> getDefsites(CFGStartNode start) {
-        Set<CFGNode> visited = new HashSet<>();
-        Deque<CFGNode> worklist = new ArrayDeque<>();
-        Map<String, Set<CFGNode>> defsites = new HashMap<>();
-        worklist.add(start);
+        @Override
+        public Void visit(CFGReturnNode n) {
+            return null;
+        }
 
-        while (!worklist.isEmpty()) {
-            final var node = worklist.remove();
-            node.defs().forEach(def -> {
-                if (defsites.containsKey(def)) {
-                    defsites.get(def).add(node);
-                } else {
-                    defsites.put(def, new HashSet<>());
-                    defsites.get(def).add(node);
-                }
-            });
-            visited.add(node);
-            for (CFGNode out: node.out()) {
-                if (!visited.contains(out)) {
-                    worklist.add(out);
-                }
-            }
+        @Override
+        public Void visit(CFGStartNode n) {
+            return null;
         }
-        return defsites;
-    }
 
+        @Override
+        public Void visit(CFGSelfLoopNode n) {
+            return null;
+        }
 
-    /**
-     * Computes the set of nodes a variable needs to have a phi-function.
-     * @param defsites Variable v -> Set of CFGNodes where v is defined.
-     * @param domFrontier CFGNode n -> Set of CFGNodes that dominate n.
-     * @param start The start node a function.
-     * @return
-     */
-    private static Map<String, Set<CFGNode>> computePhiFuncLoc(
-            final Map<String, Set<CFGNode>> defsites,
-            final Map<CFGNode, Set<CFGNode>> domFrontier,
-            final CFGStartNode start) {
-        final Set<String> variables = Set.copyOf(defsites.keySet());
-        final Deque<CFGNode> worklist = new ArrayDeque<>();
-        final Map<String, Set<CFGNode>> nodesRequiringPhiForVar = new HashMap<>();
-        for (String a: variables) {
-            worklist.addAll(defsites.get(a));
-            nodesRequiringPhiForVar.put(a, new HashSet<>());
-            while (!worklist.isEmpty()) {
-                final var node = worklist.remove();
-                final var nodesInFrontier = domFrontier.get(node);
-                for (CFGNode y: nodesInFrontier) {
-                    if (!nodesRequiringPhiForVar.get(a).contains(y)) {
-                        nodesRequiringPhiForVar.get(a).add(y);
-                        if (!y.defs().contains(a)) {
-                            worklist.add(y);
-                        }
-                    }
-                }
-            }
+        @Override
+        public Void visit(CFGBlockNode n) {
+            throw new UnsupportedOperationException(
+                "Cannot convert block nodes into SSA form.");
         }
-        return nodesRequiringPhiForVar;
-    }
 
+    }
 
 }
@@ -2,8 +2,6 @@ package cyr7.cfg.ir.dfa;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -13,7 +11,9 @@ import java.util.Set;
 
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
-import polyglot.util.Pair;
+import cyr7.util.DataflowStatistics;
+import cyr7.util.PriorityWorklist;
+import cyr7.util.WorklistOrder;
 
 public final class WorklistAnalysis {
 
@@ -24,71 +24,57 @@ public final class WorklistAnalysis {
         return runAnalysis(start, reachable, analysis);
     }
 
-
+    /**
+     * Runs {@code analysis} over the nodes reachable from {@code start} with
+     * a first-in, first-out worklist that starts with every node, in no
+     * particular order.
+     */
     public static <L> DfaResult<L> runPrevAnalysis(
             CFGStartNode start,
             ForwardDataflowAnalysis<L> analysis) {
         return runAnalysis(start, getAllNodes(start), analysis);
     }
 
+    /**
+     * Runs {@code analysis} over the nodes reachable from {@code cfg}. Nodes
+     * are visited in the order given by {@link WorklistOrder}: strongly
+     * connected component by component, in reverse postorder within each,
+     * and a node that is already waiting is not added to the worklist again.
+     */
     public static <L> DfaResult<L> analyze(
             CFGStartNode cfg,
             ForwardDataflowAnalysis<L> analysis) {
 
-        Set<CFGNode> inQueue = getAllNodes(cfg);
-
-        final var worklistPrecomputation = getSccForwardWorklist(cfg);
-        final var worklist = worklistPrecomputation.part1();
-        final var nodeToScc = worklistPrecomputation.part2();
+        final WorklistOrder<CFGNode> order = WorklistOrder.of(cfg, CFGNode::out);
+        final PriorityWorklist worklist = PriorityWorklist.full(order.size());
 
         Map<CFGNode, L> in = new HashMap<>();
-        Map<CFGNode, Map<CFGNode, L>> out = new HashMap<>();
-        for (CFGNode node : inQueue) {
-            HashMap<CFGNode, L> outEdges = new HashMap<>(1, 1);
-            for (CFGNode outNode : node.out()) {
-                outEdges.put(outNode, analysis.topValue());
-            }
-            out.put(node, outEdges);
+        Map<CFGNode, List<L>> out = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            CFGNode node = order.node(i);
+            out.put(node, topValues(node, analysis));
         }
-        in.put(cfg, analysis.topValue());
 
+        long visits = 0;
         while (!worklist.isEmpty()) {
-            final var scc = worklist.remove();
-            final var subWorklist = new ArrayDeque<>(scc.nodes);
-            while (!subWorklist.isEmpty()) {
-                final var node = subWorklist.remove();
-                inQueue.remove(node);
-                L inValue = node.in()
-                        .stream()
-                        .map(n -> out.get(n).get(node))
-                        .reduce(analysis::meet)
-                        // the set of in-nodes to a node should never be empty
-                        // unless it's the start node for a forward analysis or a
-                        // return node for a backward analysis
-                        .orElse(analysis.topValue());
-                in.put(node, inValue);
-                List<L> output = node.acceptForward(analysis.transfer(), inValue);
-                final List<CFGNode> outNodes = node.out();
-                final int numOfOutNodes = outNodes.size();
-                for (int i = 0; i < numOfOutNodes; i++) {
-                    CFGNode outEdge = outNodes.get(i);
-                    L newOutValue = output.get(i);
-                    L oldOutValue = out.get(node).get(outEdge);
-                    if (!oldOutValue.equals(newOutValue)) {
-                        out.get(node).put(outEdge, newOutValue);
-                        if (scc.nodes.contains(outEdge)) {
-                            subWorklist.add(outEdge);
-                            inQueue.add(outEdge);
-                        } else if (!inQueue.contains(outEdge)) {
-                            final var nextScc = nodeToScc.get(outEdge);
-                            worklist.add(nextScc);
-                            nextScc.nodes.forEach(inQueue::add);
-                        }
-                    }
+            final CFGNode node = order.node(worklist.poll());
+            L inValue = inValue(node, out, analysis);
+            in.put(node, inValue);
+            List<L> output = node.acceptForward(analysis.transfer(), inValue);
+            visits++;
+            final List<CFGNode> outNodes = node.out();
+            final List<L> outEdges = out.get(node);
+            final int numOfOutNodes = outNodes.size();
+            for (int i = 0; i < numOfOutNodes; i++) {
+                L newOutValue = output.get(i);
+                if (!outEdges.get(i).equals(newOutValue)) {
+                    outEdges.set(i, newOutValue);
+                    worklist.add(order.indexOf(outNodes.get(i)));
                 }
             }
         }
-        return new DfaResult<>(in, out);
+        DataflowStatistics.record(visits);
+        return new DfaResult<>(in, bySuccessor(out, analysis));
     }
 
     private static <L> DfaResult<L> runAnalysis(
@@ -99,15 +85,12 @@ public final class WorklistAnalysis {
         Queue<CFGNode> worklist = new ArrayDeque<>(allNodes);
 
         Map<CFGNode, L> in = new HashMap<>();
-        Map<CFGNode, Map<CFGNode, L>> out = new HashMap<>();
+        Map<CFGNode, List<L>> out = new HashMap<>();
         for (CFGNode node : allNodes) {
-            HashMap<CFGNode, L> outEdges = new HashMap<>(1, 1);
-            for (CFGNode outNode : node.out()) {
-                outEdges.put(outNode, analysis.topValue());
-            }
-            out.put(node, outEdges);
+            out.put(node, topValues(node, analysis));
         }
 
+        long visits = 0;
         while (!worklist.isEmpty()) {
             CFGNode node = worklist.remove();
             if (!allNodes.contains(node)) {
@@ -117,113 +100,135 @@ public final class WorklistAnalysis {
             if (node == start) {
                 inValue = analysis.topValue();
             } else {
-                inValue = node.in()
-                    .stream()
-                    .map(n -> out.get(n).get(node))
-                    .reduce(analysis::meet)
-                    // the set of in-nodes to a node should never be empty
-                    // unless it's the start node for a forward analysis or a
-                    // return node for a backward analysis
-                    .orElse(analysis.topValue());
+                inValue = inValue(node, out, analysis);
             }
             in.put(node, inValue);
             List<L> output = node.acceptForward(analysis.transfer(), inValue);
+            visits++;
             final List<CFGNode> outNodes = node.out();
+            final List<L> outEdges = out.get(node);
             final int numOfOutNodes = outNodes.size();
             for (int i = 0; i < numOfOutNodes; i++) {
-                CFGNode outEdge = outNodes.get(i);
                 L newOutValue = output.get(i);
-                L oldOutValue = out.get(node).get(outEdge);
-                if (!oldOutValue.equals(newOutValue)) {
-                    out.get(node).put(outEdge, newOutValue);
-                    worklist.add(outEdge);
+                if (!outEdges.get(i).equals(newOutValue)) {
+                    outEdges.set(i, newOutValue);
+                    worklist.add(outNodes.get(i));
                 }
             }
         }
-        return new DfaResult<>(in, out);
+        DataflowStatistics.record(visits);
+        return new DfaResult<>(in, bySuccessor(out, analysis));
     }
 
-
-    private static Pair<Queue<StronglyConnectedComponent>,
-                    Map<CFGNode, StronglyConnectedComponent>>
-                            getSccForwardWorklist(CFGStartNode start) {
-        Set<CFGNode> visited = new HashSet<>();
-        Queue<CFGNode> postOrderTraversal = new ArrayDeque<>();
-        Deque<CFGNode> nextNodeToVisit = new ArrayDeque<>();
-        nextNodeToVisit.add(start);
-
-        while (!nextNodeToVisit.isEmpty()) {
-            final var nextNode = nextNodeToVisit.pop();
-            postOrderTraversal.add(nextNode);
-            visited.add(nextNode);
-            for (CFGNode out: nextNode.out()) {
-                if (!visited.contains(out)) {
-                    nextNodeToVisit.push(out);
-                }
-            }
+    /**
+     * The initial values of the out edges of {@code node}. Values are kept by
+     * the index of the edge rather than by its successor, since both edges
+     * of an if can go to the same node and carry different values.
+     */
+    private static <L> List<L> topValues(CFGNode node,
+                                         ForwardDataflowAnalysis<L> analysis) {
+        List<L> values = new ArrayList<>(node.out().size());
+        for (int i = 0; i < node.out().size(); i++) {
+            values.add(analysis.topValue());
         }
+        return values;
+    }
 
-        Map<CFGNode, StronglyConnectedComponent> nodeToScc = new HashMap<>();
-        Queue<StronglyConnectedComponent> worklist = new ArrayDeque<>();
-        List<CFGNode> component = new ArrayList<>();
-        while (!postOrderTraversal.isEmpty()) {
-            final var nextNode = postOrderTraversal.remove();
-            component.add(nextNode);
-            if (postOrderTraversal.isEmpty()
-                    || !postOrderTraversal.peek().out().contains(nextNode)) {
-                final var scc = new StronglyConnectedComponent(component);
-                worklist.add(scc);
-                component.forEach(node -> nodeToScc.put(node, scc));
-                component = new ArrayList<>();
+    /**
+     * The meet of the values on every edge into {@code node} from a node
+     * in {@code out}.
+     */
+    private static <L> L inValue(CFGNode node,
+                                 Map<CFGNode, List<L>> out,
+                                 ForwardDataflowAnalysis<L> analysis) {
+        L inValue = null;
+        final List<CFGNode> preds = node.in();
+        for (int p = 0; p < preds.size(); p++) {
+            final CFGNode pred = preds.get(p);
+            final List<L> predOut = out.get(pred);
+            if (predOut == null || preds.indexOf(pred) != p) {
+                continue;
+            }
+            for (int i = 0; i < pred.out().size(); i++) {
+                if (pred.out().get(i) == node) {
+                    inValue = inValue == null
+                        ? predOut.get(i)
+                        : analysis.meet(inValue, predOut.get(i));
+                }
             }
         }
-        return new Pair<>(worklist, nodeToScc);
+        // the set of in-nodes to a node should never be empty unless it's
+        // the start node for a forward analysis
+        return inValue != null ? inValue : analysis.topValue();
     }
 
-    private static class StronglyConnectedComponent {
-        public final List<CFGNode> nodes;
-        public StronglyConnectedComponent(List<CFGNode> nodes) {
-            this.nodes = Collections.unmodifiableList(nodes);
-        }
+    /**
+     * The values on the out edges of each node by successor, meeting the
+     * values of edges that go to the same successor.
+     */
+    private static <L> Map<CFGNode, Map<CFGNode, L>> bySuccessor(
+            Map<CFGNode, List<L>> out,
+            ForwardDataflowAnalysis<L> analysis) {
+        Map<CFGNode, Map<CFGNode, L>> result = new HashMap<>();
+        out.forEach((node, values) -> {
+            Map<CFGNode, L> outEdges = new HashMap<>(1, 1);
+            for (int i = 0; i < values.size(); i++) {
+                outEdges.merge(node.out().get(i), values.get(i), analysis::meet);
+            }
+            result.put(node, outEdges);
+        });
+        return result;
     }
 
+    /**
+     * Runs {@code analysis} over the nodes reachable from {@code cfg},
+     * visiting them in the backward order given by {@link WorklistOrder},
+     * and returns the out value of each node.
+     */
     public static <L> Map<CFGNode, L> analyze(
             CFGStartNode cfg,
             BackwardDataflowAnalysis<L> analysis) {
 
-            Set<CFGNode> allNodes = getAllNodes(cfg);
-            Queue<CFGNode> worklist = new ArrayDeque<>(allNodes);
-
-            Map<CFGNode, L> in = new HashMap<>();
-            Map<CFGNode, L> out = new HashMap<>();
+        final WorklistOrder<CFGNode> order = WorklistOrder.of(cfg, CFGNode::out);
+        final PriorityWorklist worklist = PriorityWorklist.full(order.size());
 
-            for (CFGNode node : allNodes) {
-                out.put(node, analysis.topValue());
-                in.put(node, analysis.topValue());
-            }
+        Map<CFGNode, L> in = new HashMap<>();
+        Map<CFGNode, L> out = new HashMap<>();
+        for (int i = 0; i < order.size(); i++) {
+            out.put(order.node(i), analysis.topValue());
+            in.put(order.node(i), analysis.topValue());
+        }
 
-            while (!worklist.isEmpty()) {
-                CFGNode node = worklist.remove();
-
-                L outValue = node.out()
-                    .stream()
-                    .map(in::get)
-                    .reduce(analysis::meet)
-                    // the set of in-nodes to a node should never be empty
-                    // unless it's the start node for a forward analysis or a
-                    // return node for a backward analysis
-                    .orElse(analysis.topValue());
-                out.put(node, outValue);
-
-                L originalInValue = in.get(node);
-                L inValue= node.acceptBackward(analysis.transfer(), outValue);
-                if (!originalInValue.equals(inValue)) {
-                    in.put(node, inValue);
-                    worklist.addAll(node.in());
+        long visits = 0;
+        while (!worklist.isEmpty()) {
+            CFGNode node = order.backwardNode(worklist.poll());
+
+            L outValue = node.out()
+                .stream()
+                .map(in::get)
+                .reduce(analysis::meet)
+                // the set of in-nodes to a node should never be empty
+                // unless it's the start node for a forward analysis or a
+                // return node for a backward analysis
+                .orElse(analysis.topValue());
+            out.put(node, outValue);
+
+            L originalInValue = in.get(node);
+            L inValue = node.acceptBackward(analysis.transfer(), outValue);
+            visits++;
+            if (!originalInValue.equals(inValue)) {
+                in.put(node, inValue);
+                for (CFGNode pred : node.in()) {
+                    int index = order.backwardIndexOf(pred);
+                    if (index >= 0) {
+                        worklist.add(index);
+                    }
                 }
             }
-            return out;
         }
+        DataflowStatistics.record(visits);
+        return out;
+    }
 
     private static Set<CFGNode> getAllNodes(CFGStartNode cfg) {
         Set<CFGNode> nodes = new HashSet<>();
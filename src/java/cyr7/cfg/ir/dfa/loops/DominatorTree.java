@@ -0,0 +1,277 @@
+package cyr7.cfg.ir.dfa.loops;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+
+/**
+ * The dominator tree of the nodes reachable from the start of a CFG.
+ * <p>
+ * The immediate dominators are computed over the indices of the nodes in
+ * reverse postorder with the algorithm of Cooper, Harvey and Kennedy, "A
+ * Simple, Fast Dominance Algorithm", which needs a few passes over the
+ * nodes and no set of dominators per node. The tree is then numbered in
+ * preorder, so that whether one node dominates another is answered in
+ * constant time by whether its number falls within the other's subtree.
+ */
+public final class DominatorTree {
+
+    private static final int UNDEFINED = -1;
+
+    private final List<CFGNode> nodes;
+    private final Map<CFGNode, Integer> indices;
+    private final int[] idoms;
+    private final int[][] children;
+    private final int[] preorder;
+    private final int[] subtreeSizes;
+    private List<Set<CFGNode>> frontiers;
+
+    /**
+     * Returns the dominator tree of the nodes reachable from {@code start}.
+     */
+    public static DominatorTree of(CFGStartNode start) {
+        return new DominatorTree(start);
+    }
+
+    private DominatorTree(CFGStartNode start) {
+        this.nodes = reversePostorder(start);
+        this.indices = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            indices.put(nodes.get(i), i);
+        }
+
+        final int size = nodes.size();
+        final int[][] predecessors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            predecessors[i] = nodes.get(i).in()
+                .stream()
+                .filter(indices::containsKey)
+                .mapToInt(indices::get)
+                .toArray();
+        }
+
+        this.idoms = new int[size];
+        Arrays.fill(idoms, UNDEFINED);
+        idoms[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < size; i++) {
+                int idom = UNDEFINED;
+                for (int predecessor : predecessors[i]) {
+                    if (idoms[predecessor] != UNDEFINED) {
+                        idom = idom == UNDEFINED
+                            ? predecessor
+                            : intersect(predecessor, idom);
+                    }
+                }
+                if (idoms[i] != idom) {
+                    idoms[i] = idom;
+                    changed = true;
+                }
+            }
+        }
+
+        final int[] childCounts = new int[size];
+        for (int i = 1; i < size; i++) {
+            childCounts[idoms[i]]++;
+        }
+        this.children = new int[size][];
+        for (int i = 0; i < size; i++) {
+            children[i] = new int[childCounts[i]];
+            childCounts[i] = 0;
+        }
+        for (int i = 1; i < size; i++) {
+            children[idoms[i]][childCounts[idoms[i]]++] = i;
+        }
+
+        this.preorder = new int[size];
+        this.subtreeSizes = new int[size];
+        numberSubtrees();
+    }
+
+    /**
+     * Returns the nodes reachable from {@code start} in reverse postorder,
+     * which places every node after its dominators.
+     */
+    private static List<CFGNode> reversePostorder(CFGStartNode start) {
+        final List<CFGNode> postorder = new ArrayList<>();
+        final Set<CFGNode> visited = new LinkedHashSet<>();
+        final List<CFGNode> stack = new ArrayList<>();
+        final List<Integer> nextSuccessor = new ArrayList<>();
+        stack.add(start);
+        nextSuccessor.add(0);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            final int top = stack.size() - 1;
+            final CFGNode node = stack.get(top);
+            final int next = nextSuccessor.get(top);
+            if (next < node.out().size()) {
+                nextSuccessor.set(top, next + 1);
+                CFGNode successor = node.out().get(next);
+                if (visited.add(successor)) {
+                    stack.add(successor);
+                    nextSuccessor.add(0);
+                }
+            } else {
+                stack.remove(top);
+                nextSuccessor.remove(top);
+                postorder.add(node);
+            }
+        }
+        Collections.reverse(postorder);
+        return postorder;
+    }
+
+    /**
+     * Walks up the tree from {@code a} and {@code b} to their nearest common
+     * dominator. A dominator comes before the nodes that it dominates in
+     * reverse postorder, so the later of the two is always the one to move.
+     */
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = idoms[a];
+            }
+            while (b > a) {
+                b = idoms[b];
+            }
+        }
+        return a;
+    }
+
+    private void numberSubtrees() {
+        final int[] stack = new int[nodes.size()];
+        final int[] nextChild = new int[nodes.size()];
+        int depth = 0;
+        int number = 0;
+        stack[0] = 0;
+        preorder[0] = number++;
+        while (depth >= 0) {
+            final int node = stack[depth];
+            if (nextChild[node] < children[node].length) {
+                final int child = children[node][nextChild[node]++];
+                preorder[child] = number++;
+                stack[++depth] = child;
+            } else {
+                subtreeSizes[node] = number - preorder[node];
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * The nodes reachable from the start node, in reverse postorder.
+     */
+    public List<CFGNode> nodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public CFGNode root() {
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns whether {@code node} is reachable from the start node.
+     */
+    public boolean contains(CFGNode node) {
+        return indices.containsKey(node);
+    }
+
+    /**
+     * Returns the immediate dominator of {@code node}, or {@code null} if
+     * {@code node} is the start node or is unreachable.
+     */
+    public CFGNode idom(CFGNode node) {
+        Integer index = indices.get(node);
+        if (index == null || index == 0) {
+            return null;
+        }
+        return nodes.get(idoms[index]);
+    }
+
+    /**
+     * Returns the nodes whose immediate dominator is {@code node}.
+     */
+    public List<CFGNode> children(CFGNode node) {
+        Integer index = indices.get(node);
+        if (index == null) {
+            return List.of();
+        }
+        List<CFGNode> result = new ArrayList<>(children[index].length);
+        for (int child : children[index]) {
+            result.add(nodes.get(child));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether {@code dominator} dominates {@code node}. Every
+     * reachable node dominates itself, and no unreachable node dominates or
+     * is dominated by any node.
+     */
+    public boolean dominates(CFGNode dominator, CFGNode node) {
+        Integer d = indices.get(dominator);
+        Integer n = indices.get(node);
+        if (d == null || n == null) {
+            return false;
+        }
+        return preorder[d] <= preorder[n]
+            && preorder[n] < preorder[d] + subtreeSizes[d];
+    }
+
+    public boolean strictlyDominates(CFGNode dominator, CFGNode node) {
+        return dominator != node && dominates(dominator, node);
+    }
+
+    /**
+     * Returns the dominance frontier of {@code node}: the nodes that it does
+     * not strictly dominate but that have a predecessor that it dominates.
+     * The frontiers of all nodes are computed the first time that any of
+     * them is asked for.
+     */
+    public Set<CFGNode> frontier(CFGNode node) {
+        Integer index = indices.get(node);
+        if (index == null) {
+            return Set.of();
+        }
+        if (frontiers == null) {
+            frontiers = computeFrontiers();
+        }
+        return Collections.unmodifiableSet(frontiers.get(index));
+    }
+
+    private List<Set<CFGNode>> computeFrontiers() {
+        final List<Set<CFGNode>> result = new ArrayList<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            result.add(new LinkedHashSet<>(0));
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            final CFGNode node = nodes.get(i);
+            final int[] predecessors = node.in()
+                .stream()
+                .filter(indices::containsKey)
+                .mapToInt(indices::get)
+                .toArray();
+            if (predecessors.length < 2) {
+                continue;
+            }
+            for (int runner : predecessors) {
+                while (runner != idoms[i]) {
+                    result.get(runner).add(node);
+                    runner = idoms[runner];
+                }
+            }
+        }
+        return result;
+    }
+
+}
@@ -6,7 +6,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import cyr7.cfg.ir.dfa.WorklistAnalysis;
 import cyr7.cfg.ir.dfa.loops.DominatorAnalysis.InfiniteSet;
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
@@ -26,29 +25,24 @@ public final class DominatorUtil {
             generateDominanceTree(Map<String, CFGStartNode> cfgs) {
         final Map<String, Map<CFGNode, Set<CFGNode>>> domTreeFunction = new HashMap<>();
         cfgs.forEach((functionName, cfg) -> {
-            domTreeFunction.put(functionName, new HashMap<>());
-            final var domTree = domTreeFunction.get(functionName);
-            final var analysisResult =
-                    WorklistAnalysis.analyze(cfg, DominatorAnalysis.INSTANCE);
-            // In() is the same as out() without the self node.
-            final var dominatedRelation = analysisResult.in();
-            dominatedRelation.forEach((dominated, dominatorSet) -> {
-                final var out = Sets.union(Set.of(dominated), dominatorSet);
-                out.forEach(dominator -> {
-                    if (domTree.containsKey(dominator)) {
-                        domTree.get(dominator).add(dominated);
-                    } else {
-                        domTree.put(dominator, new HashSet<>());
-                        domTree.get(dominator).add(dominated);
-                    }
-                });
-            });
+            final var tree = DominatorTree.of(cfg);
+            final Map<CFGNode, Set<CFGNode>> domTree = new HashMap<>();
+            for (CFGNode dominated : tree.nodes()) {
+                for (CFGNode dominator = dominated;
+                     dominator != null;
+                     dominator = tree.idom(dominator)) {
+                    domTree.computeIfAbsent(dominator, n -> new HashSet<>())
+                        .add(dominated);
+                }
+            }
+            domTreeFunction.put(functionName, domTree);
         });
         return domTreeFunction;
     }
 
 
-    // Generates a map of CFG nodes to all nodes that dominate them
+    // Generates a map of CFG nodes to all nodes that dominate them, from the
+    // result of DominatorAnalysis
     public static Map<CFGNode, Set<CFGNode>> generateMap(
             Map<CFGNode, Map<CFGNode, Set<CFGNode>>> worklistOutput) {
         Map<CFGNode, Set<CFGNode>> map = new HashMap<>();
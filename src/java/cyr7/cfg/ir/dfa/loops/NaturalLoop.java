@@ -0,0 +1,168 @@
+package cyr7.cfg.ir.dfa.loops;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+
+/**
+ * A natural loop of a CFG: a header, and the nodes that can reach a back
+ * edge into the header without passing through it. A back edge is an edge
+ * whose target dominates its source, so the header dominates every node of
+ * the loop, and the loop can only be entered through its header.
+ * <p>
+ * See section 18.1 of Appel.
+ */
+public final class NaturalLoop {
+
+    private final CFGNode header;
+    private final List<CFGNode> latches;
+    private final Set<CFGNode> nodes;
+
+    /**
+     * The loops that contain this one.
+     */
+    private final List<NaturalLoop> enclosing = new ArrayList<>();
+
+    /**
+     * Returns the natural loops of the nodes of {@code dominators}. Loops
+     * with the same header are merged into one, and every loop comes before
+     * the loops that contain it.
+     */
+    public static List<NaturalLoop> find(DominatorTree dominators) {
+        final Map<CFGNode, List<CFGNode>> latches = new LinkedHashMap<>();
+        for (CFGNode node : dominators.nodes()) {
+            for (CFGNode successor : node.out()) {
+                if (dominators.dominates(successor, node)) {
+                    latches.computeIfAbsent(successor, h -> new ArrayList<>())
+                        .add(node);
+                }
+            }
+        }
+        final List<NaturalLoop> loops = new ArrayList<>(latches.size());
+        latches.forEach((header, tails) ->
+            loops.add(new NaturalLoop(header, tails, dominators)));
+        // Two natural loops are either disjoint or nested, so an inner loop
+        // is always the smaller of the two.
+        loops.sort(Comparator.comparingInt(loop -> loop.nodes.size()));
+        for (int i = 0; i < loops.size(); i++) {
+            for (int j = i + 1; j < loops.size(); j++) {
+                if (loops.get(j).contains(loops.get(i).header)) {
+                    loops.get(i).enclosing.add(loops.get(j));
+                }
+            }
+        }
+        return loops;
+    }
+
+    private NaturalLoop(CFGNode header,
+                        List<CFGNode> latches,
+                        DominatorTree dominators) {
+        this.header = header;
+        this.latches = List.copyOf(latches);
+        this.nodes = new LinkedHashSet<>();
+        nodes.add(header);
+        final Deque<CFGNode> worklist = new ArrayDeque<>();
+        for (CFGNode latch : latches) {
+            if (nodes.add(latch)) {
+                worklist.push(latch);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            for (CFGNode predecessor : worklist.pop().in()) {
+                if (dominators.contains(predecessor)
+                        && nodes.add(predecessor)) {
+                    worklist.push(predecessor);
+                }
+            }
+        }
+    }
+
+    public CFGNode header() {
+        return header;
+    }
+
+    /**
+     * The sources of the back edges into the header.
+     */
+    public List<CFGNode> latches() {
+        return latches;
+    }
+
+    /**
+     * The nodes of the loop, including its header.
+     */
+    public Set<CFGNode> nodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    public boolean contains(CFGNode node) {
+        return nodes.contains(node);
+    }
+
+    /**
+     * Returns the nodes outside of the loop that are successors of nodes in
+     * the loop.
+     */
+    public Set<CFGNode> exits() {
+        final Set<CFGNode> exits = new LinkedHashSet<>();
+        for (CFGNode node : nodes) {
+            for (CFGNode successor : node.out()) {
+                if (!nodes.contains(successor)) {
+                    exits.add(successor);
+                }
+            }
+        }
+        return exits;
+    }
+
+    /**
+     * Makes {@code node}, which has been placed on an edge between two nodes
+     * of the loop, a node of the loop and of the loops that contain it.
+     */
+    public void add(CFGNode node) {
+        nodes.add(node);
+        for (NaturalLoop loop : enclosing) {
+            loop.nodes.add(node);
+        }
+    }
+
+    /**
+     * Removes {@code node}, which has been taken out of the CFG, from the
+     * loop and from the loops that contain it.
+     */
+    public void remove(CFGNode node) {
+        nodes.remove(node);
+        for (NaturalLoop loop : enclosing) {
+            loop.nodes.remove(node);
+        }
+    }
+
+    /**
+     * Places {@code preheader} on every edge that enters the loop, so that
+     * it runs once each time the loop is entered. {@code preheader} must
+     * have been constructed with the header as its only successor. Nodes
+     * placed by successive calls run in the order in which they were placed.
+     * The preheader becomes a node of the loops that contain this one.
+     */
+    public void insertPreheader(CFGNode preheader) {
+        for (CFGNode entry : List.copyOf(header.in())) {
+            if (entry != preheader && !nodes.contains(entry)) {
+                entry.replaceOutEdge(header, preheader);
+                header.in().remove(entry);
+            }
+        }
+        for (NaturalLoop loop : enclosing) {
+            loop.nodes.add(preheader);
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package cyr7.cfg.ir.dfa.pre;
+
+import cyr7.cfg.ir.dfa.BackwardDataflowAnalysis;
+import cyr7.cfg.ir.dfa.BackwardTransferFunction;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.util.BitVector;
+
+/**
+ * The expressions that are anticipated at each node: those that every path
+ * from the node evaluates before any of their operands change. An
+ * expression can be evaluated early wherever it is anticipated without
+ * making any path compute something that it did not compute before.
+ * <p>
+ * The lattice is a set of {@link LocalExpressions expression} ids, whose top
+ * is every expression and whose meet is intersection. The transfer function
+ * is in[n] = evaluated[n] ∪ (out[n] — killed[n]). Nothing is anticipated
+ * before a return or an infinite loop.
+ */
+public final class AnticipatedExpressionsAnalysis
+        implements BackwardDataflowAnalysis<BitVector> {
+
+    private final LocalExpressions expressions;
+    private final BackwardTransferFunction<BitVector> transfer;
+
+    public AnticipatedExpressionsAnalysis(LocalExpressions expressions) {
+        this.expressions = expressions;
+        this.transfer = new TransferFunction();
+    }
+
+    @Override
+    public BitVector topValue() {
+        return new BitVector(expressions.all());
+    }
+
+    @Override
+    public BackwardTransferFunction<BitVector> transfer() {
+        return transfer;
+    }
+
+    @Override
+    public BitVector meet(BitVector lhs, BitVector rhs) {
+        final BitVector intersection = new BitVector(lhs);
+        intersection.and(rhs);
+        return intersection;
+    }
+
+    private final class TransferFunction
+            implements BackwardTransferFunction<BitVector> {
+
+        private BitVector transfer(CFGNode n, BitVector out) {
+            final BitVector in = new BitVector(out);
+            expressions.kill(n, in);
+            expressions.evaluate(n, in);
+            return in;
+        }
+
+        @Override
+        public BitVector transfer(CFGCallNode n, BitVector out) {
+            return transfer((CFGNode) n, out);
+        }
+
+        @Override
+        public BitVector transfer(CFGIfNode n, BitVector out) {
+            return transfer((CFGNode) n, out);
+        }
+
+        @Override
+        public BitVector transfer(CFGMemAssignNode n, BitVector out) {
+            return transfer((CFGNode) n, out);
+        }
+
+        @Override
+        public BitVector transfer(CFGReturnNode n, BitVector out) {
+            return new BitVector();
+        }
+
+        @Override
+        public BitVector transfer(CFGVarAssignNode n, BitVector out) {
+            return transfer((CFGNode) n, out);
+        }
+
+        @Override
+        public BitVector transfer(CFGSelfLoopNode n, BitVector out) {
+            return new BitVector();
+        }
+
+        @Override
+        public BitVector transfer(CFGBlockNode n, BitVector out) {
+            return new BitVector();
+        }
+
+    }
+
+}
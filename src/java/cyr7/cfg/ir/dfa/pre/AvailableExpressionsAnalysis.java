@@ -0,0 +1,104 @@
+package cyr7.cfg.ir.dfa.pre;
+
+import cyr7.cfg.ir.dfa.ForwardDataflowAnalysis;
+import cyr7.cfg.ir.dfa.ForwardTransferFunction;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.util.BitVector;
+
+/**
+ * The expressions that are available after each node: those that every path
+ * to the node has evaluated since their operands last changed.
+ * <p>
+ * The lattice is a set of {@link LocalExpressions expression} ids, whose top
+ * is every expression and whose meet is intersection. The transfer function
+ * is out[n] = (evaluated[n] ∪ in[n]) — killed[n]. Nothing is available at
+ * the start of the function.
+ */
+public final class AvailableExpressionsAnalysis
+        implements ForwardDataflowAnalysis<BitVector> {
+
+    private final LocalExpressions expressions;
+    private final ForwardTransferFunction<BitVector> transfer;
+
+    public AvailableExpressionsAnalysis(LocalExpressions expressions) {
+        this.expressions = expressions;
+        this.transfer = new TransferFunction();
+    }
+
+    @Override
+    public BitVector topValue() {
+        return new BitVector(expressions.all());
+    }
+
+    @Override
+    public ForwardTransferFunction<BitVector> transfer() {
+        return transfer;
+    }
+
+    @Override
+    public BitVector meet(BitVector lhs, BitVector rhs) {
+        final BitVector intersection = new BitVector(lhs);
+        intersection.and(rhs);
+        return intersection;
+    }
+
+    private final class TransferFunction
+            implements ForwardTransferFunction<BitVector> {
+
+        private BitVector transfer(CFGNode n, BitVector in) {
+            final BitVector out = new BitVector(in);
+            expressions.evaluate(n, out);
+            expressions.kill(n, out);
+            return out;
+        }
+
+        @Override
+        public BitVector transfer(CFGCallNode n, BitVector in) {
+            return transfer((CFGNode) n, in);
+        }
+
+        @Override
+        public BitVector transferTrue(CFGIfNode n, BitVector in) {
+            return transfer((CFGNode) n, in);
+        }
+
+        @Override
+        public BitVector transferFalse(CFGIfNode n, BitVector in) {
+            return transfer((CFGNode) n, in);
+        }
+
+        @Override
+        public BitVector transfer(CFGMemAssignNode n, BitVector in) {
+            return transfer((CFGNode) n, in);
+        }
+
+        @Override
+        public BitVector transfer(CFGStartNode n, BitVector in) {
+            return new BitVector();
+        }
+
+        @Override
+        public BitVector transfer(CFGVarAssignNode n, BitVector in) {
+            return transfer((CFGNode) n, in);
+        }
+
+        @Override
+        public BitVector transfer(CFGSelfLoopNode n, BitVector in) {
+            return in;
+        }
+
+        @Override
+        public BitVector transfer(CFGBlockNode n, BitVector in) {
+            return new BitVector();
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+package cyr7.cfg.ir.dfa.pre;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cyr7.cfg.ir.dfa.BasicBlocks;
+import cyr7.cfg.ir.dfa.BasicBlocks.Block;
+import cyr7.cfg.ir.dfa.BlockDfaResult;
+import cyr7.cfg.ir.dfa.BlockWorklistAnalysis;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.util.BitVector;
+
+/**
+ * The placement of the expressions of a CFG that lazy code motion computes:
+ * each expression is evaluated on the edges where it is needed as late as
+ * possible without being evaluated more than once on any path, and every
+ * evaluation that is then redundant is removed. No path evaluates an
+ * expression more often than before, so invariant expressions that every
+ * iteration of a loop evaluates are moved out of the loop.
+ * <p>
+ * The placement is found by four analyses. The expressions that are
+ * anticipated at a node are those that every path from it evaluates. An
+ * expression is placed earliest on an edge if it is anticipated at its
+ * target, not available at its source, and could not have been placed
+ * before the source. It is then postponed along the edges that follow for
+ * as long as every path to them could postpone it, and is placed latest
+ * where it can be postponed no further.
+ * <p>
+ * See Knoop, Rüthing and Steffen, Lazy Code Motion, and Drechsler and
+ * Stadel, A Variation of Knoop, Rüthing, and Steffen's Lazy Code Motion,
+ * whose formulation on edges is used here.
+ */
+public final class LazyCodeMotion {
+
+    private final LocalExpressions expressions;
+    private final Map<CFGNode, Map<CFGNode, int[]>> insertions =
+        new HashMap<>();
+    private final Map<CFGNode, int[]> latest = new HashMap<>();
+    private final Map<CFGNode, int[]> redundant = new HashMap<>();
+
+    /**
+     * Places the expressions of the nodes reachable from {@code start}.
+     */
+    public static LazyCodeMotion of(CFGStartNode start) {
+        return new LazyCodeMotion(start);
+    }
+
+    /**
+     * The analyses are solved over basic blocks, so that only the values at
+     * the boundaries of blocks are stored. The placements on the edges and
+     * at the nodes within a block are found by sweeping the transfer
+     * functions through it, and only those that are not empty are kept,
+     * as arrays of ids.
+     */
+    private LazyCodeMotion(CFGStartNode start) {
+        this.expressions = LocalExpressions.of(start);
+        if (expressions.size() == 0) {
+            return;
+        }
+        final BasicBlocks blocks = BasicBlocks.of(start);
+
+        final var anticipation = new AnticipatedExpressionsAnalysis(expressions);
+        final BlockDfaResult<BitVector> anticipated =
+            BlockWorklistAnalysis.analyze(blocks, anticipation);
+        final var availability = new AvailableExpressionsAnalysis(expressions);
+        final BlockDfaResult<BitVector> available =
+            BlockWorklistAnalysis.analyze(blocks, availability);
+
+        final Map<CFGNode, Map<CFGNode, int[]>> earliest = new HashMap<>();
+        final BitVector[] anticipatedIn = new BitVector[blocks.size()];
+        for (Block block : blocks.blocks()) {
+            final List<CFGNode> nodes = block.nodes();
+            BitVector anticipatedOut = anticipated.boundary(block);
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                final CFGNode node = nodes.get(i);
+                if (i < nodes.size() - 1) {
+                    // Within a block, what is anticipated after the node is
+                    // anticipated at its successor, and nothing that the node
+                    // kills is available after it, so what is placed earliest
+                    // is what it kills of what is anticipated after it.
+                    final BitVector placed = new BitVector(anticipatedOut);
+                    if (!(node instanceof CFGStartNode)) {
+                        final BitVector earlier = new BitVector(anticipatedOut);
+                        expressions.kill(node, earlier);
+                        placed.andNot(earlier);
+                    }
+                    put(earliest, node, nodes.get(i + 1), placed);
+                }
+                anticipatedOut = node.acceptBackward(anticipation.transfer(),
+                    anticipatedOut);
+            }
+            anticipatedIn[block.index()] = anticipatedOut;
+        }
+        for (Block block : blocks.blocks()) {
+            final CFGNode last = block.last();
+            final List<BitVector> availableOut = availability
+                .summarize(block.nodes())
+                .apply(available.boundary(block));
+            // The expressions that could be evaluated before the source
+            // instead.
+            final BitVector earlier = new BitVector(anticipated.boundary(block));
+            expressions.kill(last, earlier);
+            for (int i = 0; i < last.out().size(); i++) {
+                final CFGNode successor = last.out().get(i);
+                final BitVector placed = new BitVector(
+                    anticipatedIn[blocks.blockOf(successor).index()]);
+                placed.andNot(availableOut.get(i));
+                if (!(last instanceof CFGStartNode)) {
+                    placed.andNot(earlier);
+                }
+                put(earliest, last, successor, placed);
+            }
+        }
+
+        final var postponement =
+            new PostponableExpressionsAnalysis(expressions, earliest);
+        final BlockDfaResult<BitVector> postponable =
+            BlockWorklistAnalysis.analyze(blocks, postponement);
+
+        for (Block block : blocks.blocks()) {
+            final List<CFGNode> nodes = block.nodes();
+            BitVector postponed = postponable.boundary(block);
+            for (int i = 0; i < nodes.size(); i++) {
+                final CFGNode node = nodes.get(i);
+                final BitVector here = new BitVector();
+                final BitVector removed = new BitVector();
+                for (int id : expressions.evaluated(node)) {
+                    if (postponed.get(id)) {
+                        here.set(id);
+                    } else {
+                        removed.set(id);
+                    }
+                }
+                put(latest, node, here);
+                put(redundant, node, removed);
+
+                final List<BitVector> out =
+                    node.acceptForward(postponement.transfer(), postponed);
+                if (i < nodes.size() - 1) {
+                    // Within a block, the edge carries what is postponed to
+                    // the successor, so nothing is inserted on it.
+                    postponed = out.get(0);
+                    continue;
+                }
+                for (int j = 0; j < node.out().size(); j++) {
+                    final CFGNode successor = node.out().get(j);
+                    final BitVector inserted = new BitVector(out.get(j));
+                    inserted.andNot(postponable.boundary(blocks.blockOf(successor)));
+                    put(insertions, node, successor, inserted);
+                }
+            }
+        }
+    }
+
+    private static void put(Map<CFGNode, int[]> map, CFGNode node,
+                            BitVector ids) {
+        if (!ids.isEmpty()) {
+            map.put(node, ids.stream().toArray());
+        }
+    }
+
+    private static void put(Map<CFGNode, Map<CFGNode, int[]>> map,
+                            CFGNode node, CFGNode successor, BitVector ids) {
+        if (!ids.isEmpty()) {
+            map.computeIfAbsent(node, n -> new HashMap<>())
+                .put(successor, ids.stream().toArray());
+        }
+    }
+
+    private static BitVector toBitVector(int[] ids) {
+        final BitVector set = new BitVector();
+        if (ids != null) {
+            for (int id : ids) {
+                set.set(id);
+            }
+        }
+        return set;
+    }
+
+    public LocalExpressions expressions() {
+        return expressions;
+    }
+
+    /**
+     * The expressions to evaluate on each edge out of {@code node}, by the
+     * target of the edge. Edges where nothing is evaluated are left out.
+     */
+    public Map<CFGNode, BitVector> insertions(CFGNode node) {
+        final Map<CFGNode, BitVector> edges = new HashMap<>();
+        insertions.getOrDefault(node, Collections.emptyMap())
+            .forEach((successor, ids) -> edges.put(successor, toBitVector(ids)));
+        return edges;
+    }
+
+    /**
+     * The expressions that {@code node} evaluates at their latest placement,
+     * which it must still evaluate.
+     */
+    public BitVector latest(CFGNode node) {
+        return toBitVector(latest.get(node));
+    }
+
+    /**
+     * The expressions that {@code node} evaluates that have already been
+     * evaluated on every path to it.
+     */
+    public BitVector redundant(CFGNode node) {
+        return toBitVector(redundant.get(node));
+    }
+
+}
@@ -0,0 +1,334 @@
+package cyr7.cfg.ir.dfa.pre;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRName;
+import cyr7.ir.nodes.IRTemp;
+import cyr7.ir.visit.IRExprTraps;
+import cyr7.ir.visit.IRExprVarsVisitor;
+import cyr7.util.BitVector;
+import cyr7.util.WorklistOrder;
+
+/**
+ * The expressions that partial redundancy elimination may move, numbered
+ * densely so that sets of them are {@link BitVector}s, and the local
+ * properties of each node that it is built on: the expressions that a node
+ * evaluates, and the expressions whose values it may change.
+ * <p>
+ * An expression is any operation, load or cast whose operands are
+ * temporaries, constants or other such expressions. Only the expressions
+ * that some path may evaluate more than once are numbered: those that
+ * several nodes evaluate, or that a node in a loop does. Any other
+ * expression is already evaluated only where it is needed, and leaving it
+ * out keeps the sets of the analyses, which are as wide as the numbered
+ * expressions, from growing with the size of the function. The properties
+ * of the nodes are kept as sorted arrays of ids, since most nodes evaluate
+ * and kill only a few expressions.
+ * <p>
+ * A node evaluates its expressions before it assigns anything, so an
+ * expression that is both evaluated and killed by a node is available
+ * after the node only if it is not killed.
+ */
+public final class LocalExpressions {
+
+    private static final int[] NONE = new int[0];
+
+    /**
+     * The properties of a node.
+     */
+    private static final class Local {
+        int[] evaluated = NONE;
+        int[] killed = NONE;
+        boolean killsLoads;
+        boolean killsFailing;
+    }
+
+    private final List<CFGNode> nodes;
+    private final List<IRExpr> expressions = new ArrayList<>();
+    private final Map<IRExpr, Integer> ids = new HashMap<>();
+    private final Map<CFGNode, Local> locals = new HashMap<>();
+    private final BitVector all = new BitVector();
+    private final BitVector loads = new BitVector();
+    private final BitVector failing = new BitVector();
+
+    /**
+     * Numbers the expressions of the nodes reachable from {@code start}.
+     */
+    public static LocalExpressions of(CFGStartNode start) {
+        return new LocalExpressions(start);
+    }
+
+    private LocalExpressions(CFGStartNode start) {
+        final Set<CFGNode> visited = new LinkedHashSet<>();
+        final Deque<CFGNode> worklist = new ArrayDeque<>();
+        worklist.push(start);
+        while (!worklist.isEmpty()) {
+            final CFGNode node = worklist.pop();
+            if (visited.add(node)) {
+                node.out().forEach(worklist::push);
+            }
+        }
+        this.nodes = List.copyOf(visited);
+
+        // Number every expression first, and count the nodes that evaluate
+        // it, so that only the ones that may be evaluated more than once
+        // keep their ids.
+        final List<IRExpr> found = new ArrayList<>();
+        final Map<IRExpr, Integer> foundIds = new HashMap<>();
+        final Map<CFGNode, int[]> foundBy = new HashMap<>();
+        final Set<CFGNode> looping = new HashSet<>();
+        final WorklistOrder<CFGNode> order = WorklistOrder.of(start, CFGNode::out);
+        final int[] componentSizes = new int[order.componentCount()];
+        for (int i = 0; i < order.size(); i++) {
+            componentSizes[order.componentOf(i)]++;
+        }
+        for (CFGNode node : nodes) {
+            final BitVector evaluated = new BitVector();
+            for (IRExpr root : roots(node)) {
+                collect(root, found, foundIds, evaluated);
+            }
+            if (!evaluated.isEmpty()) {
+                foundBy.put(node, evaluated.stream().toArray());
+                if (node.out().contains(node)
+                        || componentSizes[order.componentOf(order.indexOf(node))] > 1) {
+                    looping.add(node);
+                }
+            }
+        }
+        final int[] evaluations = new int[found.size()];
+        foundBy.forEach((node, evaluated) -> {
+            for (int id : evaluated) {
+                // A node in a loop may evaluate the expression again.
+                evaluations[id] += looping.contains(node) ? 2 : 1;
+            }
+        });
+
+        // Inner expressions are evaluated wherever the expressions that
+        // contain them are, so they are kept whenever those are, and keep
+        // their lower ids.
+        final int[] renumbered = new int[found.size()];
+        for (int id = 0; id < found.size(); id++) {
+            if (evaluations[id] > 1) {
+                renumbered[id] = expressions.size();
+                ids.put(found.get(id), expressions.size());
+                expressions.add(found.get(id));
+            } else {
+                renumbered[id] = -1;
+            }
+        }
+
+        final Map<String, int[]> readers = new HashMap<>();
+        final Map<String, List<Integer>> reading = new HashMap<>();
+        for (int id = 0; id < expressions.size(); id++) {
+            final IRExpr expr = expressions.get(id);
+            all.set(id);
+            for (String variable : expr.accept(IRExprVarsVisitor.INSTANCE)) {
+                reading.computeIfAbsent(variable, v -> new ArrayList<>()).add(id);
+            }
+            if (readsMemory(expr)) {
+                loads.set(id);
+            }
+            if (IRExprTraps.mayFail(expr)) {
+                failing.set(id);
+            }
+        }
+        reading.forEach((variable, list) -> readers.put(variable,
+            list.stream().mapToInt(Integer::intValue).toArray()));
+
+        for (CFGNode node : nodes) {
+            final Local local = new Local();
+            final int[] evaluated = foundBy.getOrDefault(node, NONE);
+            local.evaluated = Arrays.stream(evaluated)
+                .map(id -> renumbered[id])
+                .filter(id -> id >= 0)
+                .toArray();
+            local.killed = killed(node.defs(), readers);
+            if (node instanceof CFGMemAssignNode) {
+                local.killsLoads = true;
+            } else if (node instanceof CFGCallNode) {
+                // A call may write memory, and may not return, so an
+                // expression that may fail is not evaluated on every path
+                // through it.
+                local.killsLoads = true;
+                local.killsFailing = true;
+            }
+            locals.put(node, local);
+        }
+    }
+
+    /**
+     * Returns the ids of the expressions that read any of {@code defs}, in
+     * increasing order.
+     */
+    private static int[] killed(Set<String> defs, Map<String, int[]> readers) {
+        if (defs.size() == 1) {
+            return readers.getOrDefault(defs.iterator().next(), NONE);
+        }
+        return defs.stream()
+            .flatMapToInt(def -> Arrays.stream(readers.getOrDefault(def, NONE)))
+            .distinct()
+            .sorted()
+            .toArray();
+    }
+
+    /**
+     * Returns the expressions that {@code node} evaluates, outermost last.
+     * The target of a store is not evaluated, though its address is.
+     */
+    public static List<IRExpr> roots(CFGNode node) {
+        if (node instanceof CFGVarAssignNode) {
+            return List.of(((CFGVarAssignNode) node).value);
+        } else if (node instanceof CFGMemAssignNode) {
+            final CFGMemAssignNode n = (CFGMemAssignNode) node;
+            final IRExpr address = n.target instanceof IRMem
+                ? ((IRMem) n.target).expr()
+                : n.target;
+            return List.of(address, n.value);
+        } else if (node instanceof CFGIfNode) {
+            return List.of(((CFGIfNode) node).cond);
+        } else if (node instanceof CFGCallNode) {
+            return ((CFGCallNode) node).call.args();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Numbers the expressions in {@code expr}, inner ones first, in
+     * {@code found}, and adds their ids to {@code evaluated}. Returns whether
+     * {@code expr} is made only of expressions and their operands.
+     */
+    private static boolean collect(IRExpr expr, List<IRExpr> found,
+                                   Map<IRExpr, Integer> foundIds,
+                                   BitVector evaluated) {
+        if (expr instanceof IRTemp
+                || expr instanceof IRInteger
+                || expr instanceof IRName) {
+            return true;
+        }
+        final boolean pure;
+        if (expr instanceof IRBinOp) {
+            final IRBinOp binOp = (IRBinOp) expr;
+            final boolean left = collect(binOp.left(), found, foundIds, evaluated);
+            final boolean right = collect(binOp.right(), found, foundIds, evaluated);
+            pure = left && right;
+        } else if (expr instanceof IRMem) {
+            pure = collect(((IRMem) expr).expr(), found, foundIds, evaluated);
+        } else if (expr instanceof IRCast) {
+            pure = collect(((IRCast) expr).getValue(), found, foundIds, evaluated);
+        } else {
+            pure = false;
+        }
+        if (pure) {
+            evaluated.set(foundIds.computeIfAbsent(expr, e -> {
+                found.add(e);
+                return found.size() - 1;
+            }));
+        }
+        return pure;
+    }
+
+    private static boolean readsMemory(IRExpr expr) {
+        if (expr instanceof IRMem) {
+            final IRMem mem = (IRMem) expr;
+            return mem.memType() != IRMem.MemType.IMMUTABLE
+                || readsMemory(mem.expr());
+        }
+        if (expr instanceof IRBinOp) {
+            final IRBinOp binOp = (IRBinOp) expr;
+            return readsMemory(binOp.left()) || readsMemory(binOp.right());
+        }
+        if (expr instanceof IRCast) {
+            return readsMemory(((IRCast) expr).getValue());
+        }
+        return false;
+    }
+
+    /**
+     * The nodes reachable from the start node.
+     */
+    public List<CFGNode> nodes() {
+        return nodes;
+    }
+
+    public int size() {
+        return expressions.size();
+    }
+
+    public IRExpr expression(int id) {
+        return expressions.get(id);
+    }
+
+    /**
+     * Returns the id of {@code expr}, or -1 if no node evaluates it.
+     */
+    public int id(IRExpr expr) {
+        return ids.getOrDefault(expr, -1);
+    }
+
+    /**
+     * The set of every expression. The returned vector must not be modified.
+     */
+    public BitVector all() {
+        return all;
+    }
+
+    /**
+     * The ids of the expressions that {@code node} evaluates, in increasing
+     * order. The returned array must not be modified.
+     */
+    public int[] evaluated(CFGNode node) {
+        final Local local = locals.get(node);
+        return local == null ? NONE : local.evaluated;
+    }
+
+    /**
+     * Adds the expressions that {@code node} evaluates to {@code set}.
+     */
+    public void evaluate(CFGNode node, BitVector set) {
+        for (int id : evaluated(node)) {
+            set.set(id);
+        }
+    }
+
+    /**
+     * Removes the expressions whose values {@code node} may change from
+     * {@code set}.
+     */
+    public void kill(CFGNode node, BitVector set) {
+        final Local local = locals.get(node);
+        if (local == null) {
+            return;
+        }
+        for (int id : local.killed) {
+            set.clear(id);
+        }
+        if (local.killsLoads) {
+            set.andNot(loads);
+        }
+        if (local.killsFailing) {
+            set.andNot(failing);
+        }
+    }
+
+}
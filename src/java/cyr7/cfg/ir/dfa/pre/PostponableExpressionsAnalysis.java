@@ -0,0 +1,132 @@
+package cyr7.cfg.ir.dfa.pre;
+
+import java.util.Collections;
+import java.util.Map;
+
+import cyr7.cfg.ir.dfa.ForwardDataflowAnalysis;
+import cyr7.cfg.ir.dfa.ForwardTransferFunction;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.util.BitVector;
+
+/**
+ * The expressions whose evaluation can be postponed to each edge: those
+ * that every path to the edge could have evaluated at their earliest
+ * placement, and that no node since has evaluated.
+ * <p>
+ * The lattice is a set of {@link LocalExpressions expression} ids, whose top
+ * is every expression and whose meet is intersection. The value on the edge
+ * from n to s is earliest[n, s] ∪ (in[n] — evaluated[n]), and on the edges
+ * out of the start node it is earliest[n, s].
+ */
+public final class PostponableExpressionsAnalysis
+        implements ForwardDataflowAnalysis<BitVector> {
+
+    private final LocalExpressions expressions;
+    private final Map<CFGNode, Map<CFGNode, int[]>> earliest;
+    private final ForwardTransferFunction<BitVector> transfer;
+
+    /**
+     * @param earliest The ids of the expressions placed earliest on each
+     *                 edge, by the source and then the target of the edge.
+     *                 Edges where nothing is placed may be left out.
+     */
+    public PostponableExpressionsAnalysis(
+            LocalExpressions expressions,
+            Map<CFGNode, Map<CFGNode, int[]>> earliest) {
+        this.expressions = expressions;
+        this.earliest = earliest;
+        this.transfer = new TransferFunction();
+    }
+
+    @Override
+    public BitVector topValue() {
+        return new BitVector(expressions.all());
+    }
+
+    @Override
+    public ForwardTransferFunction<BitVector> transfer() {
+        return transfer;
+    }
+
+    @Override
+    public BitVector meet(BitVector lhs, BitVector rhs) {
+        final BitVector intersection = new BitVector(lhs);
+        intersection.and(rhs);
+        return intersection;
+    }
+
+    private final class TransferFunction
+            implements ForwardTransferFunction<BitVector> {
+
+        private BitVector transfer(CFGNode n, CFGNode successor, BitVector in) {
+            final BitVector out = new BitVector(in);
+            for (int id : expressions.evaluated(n)) {
+                out.clear(id);
+            }
+            placeEarliest(n, successor, out);
+            return out;
+        }
+
+        private void placeEarliest(CFGNode n, CFGNode successor, BitVector out) {
+            final int[] placed = earliest
+                .getOrDefault(n, Collections.emptyMap())
+                .get(successor);
+            if (placed != null) {
+                for (int id : placed) {
+                    out.set(id);
+                }
+            }
+        }
+
+        @Override
+        public BitVector transfer(CFGCallNode n, BitVector in) {
+            return transfer(n, n.outNode(), in);
+        }
+
+        @Override
+        public BitVector transferTrue(CFGIfNode n, BitVector in) {
+            return transfer(n, n.trueBranch(), in);
+        }
+
+        @Override
+        public BitVector transferFalse(CFGIfNode n, BitVector in) {
+            return transfer(n, n.falseBranch(), in);
+        }
+
+        @Override
+        public BitVector transfer(CFGMemAssignNode n, BitVector in) {
+            return transfer(n, n.outNode(), in);
+        }
+
+        @Override
+        public BitVector transfer(CFGStartNode n, BitVector in) {
+            final BitVector out = new BitVector();
+            placeEarliest(n, n.outNode(), out);
+            return out;
+        }
+
+        @Override
+        public BitVector transfer(CFGVarAssignNode n, BitVector in) {
+            return transfer(n, n.outNode(), in);
+        }
+
+        @Override
+        public BitVector transfer(CFGSelfLoopNode n, BitVector in) {
+            return transfer(n, n, in);
+        }
+
+        @Override
+        public BitVector transfer(CFGBlockNode n, BitVector in) {
+            return new BitVector();
+        }
+
+    }
+
+}
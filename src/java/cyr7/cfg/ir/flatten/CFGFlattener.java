@@ -5,8 +5,8 @@ import java.util.Map;
 
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
-import cyr7.ir.DefaultIdGenerator;
 import cyr7.ir.IdGenerator;
+import cyr7.ir.ScopedIdGenerator;
 import cyr7.ir.nodes.IRCompUnit;
 import cyr7.ir.nodes.IRFuncDecl;
 import cyr7.ir.nodes.IRSeq;
@@ -16,12 +16,17 @@ public class CFGFlattener {
 
     private CFGFlattener() {}
 
+    /**
+     * Flattens the CFG of each function in {@code cfgMap}. The labels of each
+     * function are scoped to the function's name, so the flattened code of a
+     * function does not depend on the other functions in {@code cfgMap}.
+     */
     public static IRCompUnit flatten(Map<String, CFGStartNode> cfgMap,
                 IRCompUnit compUnit) {
         Map<String, IRFuncDecl> functions = new HashMap<>();
-        IdGenerator generator = new DefaultIdGenerator();
         cfgMap.forEach((functionName, startNode) -> {
-            IRSeq flattened = flatten(startNode, generator);
+            IRSeq flattened = flatten(startNode,
+                ScopedIdGenerator.forFunction(functionName));
             IRFuncDecl function = new IRFuncDecl(startNode.location(),
                         functionName, flattened, compUnit.getFunction(functionName).type());
             functions.put(functionName, function);
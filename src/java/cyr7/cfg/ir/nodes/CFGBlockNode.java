@@ -163,6 +163,7 @@ public class CFGBlockNode extends CFGNode {
         this.initDefSet();
         this.initUseSet();
         this.initGenSet();
+        this.dfaSetsChanged();
     }
 
     private void initUseSet() {
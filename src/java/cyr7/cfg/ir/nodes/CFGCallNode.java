@@ -9,6 +9,7 @@ import java.util.stream.Collectors;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.IRCallStmt;
 import cyr7.ir.visit.IRExprVarsVisitor;
 import java_cup.runtime.ComplexSymbolFactory.Location;
@@ -104,6 +105,11 @@ public class CFGCallNode extends CFGNode {
         return Collections.unmodifiableSet(this.killSet);
     }
 
+    @Override
+    protected int[] useIds(TempTable temps) {
+        return temps.sortedUseIds(call.args());
+    }
+
     @Override
     public void refreshDfaSets() {
         this.useSet = call.args().stream().flatMap(arg -> {
@@ -111,5 +117,6 @@ public class CFGCallNode extends CFGNode {
         }).collect(Collectors.toSet());
         this.defSet = Set.copyOf(call.collectors());
         this.killSet = Set.copyOf(call.collectors());
+        this.dfaSetsChanged();
     }
 }
@@ -8,6 +8,7 @@ import java.util.Set;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.IRExpr;
 import cyr7.ir.visit.IRExprVarsVisitor;
 import java_cup.runtime.ComplexSymbolFactory.Location;
@@ -114,8 +115,14 @@ public class CFGIfNode extends CFGNode {
         return Collections.emptySet();
     }
 
+    @Override
+    protected int[] useIds(TempTable temps) {
+        return temps.sortedUseIds(List.of(cond));
+    }
+
     @Override
     public void refreshDfaSets() {
         this.useSet = cond.accept(IRExprVarsVisitor.INSTANCE);
+        this.dfaSetsChanged();
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.util.Set;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.IRExpr;
 import cyr7.ir.visit.IRExprVarsVisitor;
 import cyr7.util.Sets;
@@ -106,10 +107,16 @@ public class CFGMemAssignNode extends CFGNode {
         return Collections.emptySet();
     }
 
+    @Override
+    protected int[] useIds(TempTable temps) {
+        return temps.sortedUseIds(List.of(target, value));
+    }
+
     @Override
     public void refreshDfaSets() {
         this.useSet = Sets.union(
                 value.accept(IRExprVarsVisitor.INSTANCE),
                 target.accept(IRExprVarsVisitor.INSTANCE));
+        this.dfaSetsChanged();
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.util.Set;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
 public abstract class CFGNode {
@@ -27,6 +28,15 @@ public abstract class CFGNode {
 
     private final Location location;
 
+    /**
+     * The table that {@link #defIds} and {@link #useIds} are ids in, or
+     * {@code null} if they have not been numbered since the dataflow sets of
+     * this node were last refreshed.
+     */
+    private TempTable idTable = null;
+    private int[] defIds;
+    private int[] useIds;
+
     protected CFGNode(Location location) {
         this.in = new ArrayList<>(1);
         this.location = location;
@@ -68,6 +78,52 @@ public abstract class CFGNode {
     public abstract Set<String> defs();
     public abstract Set<String> uses();
 
+    /**
+     * Returns the ids in {@code temps}, the {@link CFGStartNode#temps() temps}
+     * of the function of this node, of the variables that this node defines,
+     * in increasing order. The ids are kept with the node until its dataflow
+     * sets are refreshed, and the returned array must not be modified.
+     */
+    public final int[] defs(TempTable temps) {
+        numberDfaSets(temps);
+        return defIds;
+    }
+
+    /**
+     * Returns the ids in {@code temps} of the variables that this node uses,
+     * in increasing order, as {@link #defs(TempTable)} does for the variables
+     * that it defines.
+     */
+    public final int[] uses(TempTable temps) {
+        numberDfaSets(temps);
+        return useIds;
+    }
+
+    private void numberDfaSets(TempTable temps) {
+        if (idTable != temps) {
+            defIds = temps.sortedIds(defs());
+            useIds = useIds(temps);
+            idTable = temps;
+        }
+    }
+
+    /**
+     * Returns the ids in {@code temps} of {@link #uses()}, in increasing
+     * order. Nodes whose uses are the temps of their expressions read the
+     * ids that those temps carry instead of looking them up by name.
+     */
+    protected int[] useIds(TempTable temps) {
+        return temps.sortedIds(uses());
+    }
+
+    /**
+     * Discards the ids of the defs and uses of this node, which every
+     * {@link #refreshDfaSets()} that changes them must call.
+     */
+    protected final void dfaSetsChanged() {
+        idTable = null;
+    }
+
     public abstract Map<String, String> gens();
     public abstract Set<String> kills();
 
@@ -8,15 +8,26 @@ import java.util.Set;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 
 public class CFGStartNode extends CFGNode {
 
     private CFGNode out;
+    private final TempTable temps;
 
     public CFGStartNode(Location location, CFGNode out) {
+        this(location, out, new TempTable());
+    }
+
+    /**
+     * Creates the start of the CFG of a function whose temps are numbered in
+     * {@code temps}.
+     */
+    public CFGStartNode(Location location, CFGNode out, TempTable temps) {
         super(location);
         this.out = out;
+        this.temps = temps;
         this.updateIns();
         assert repOk();
     }
@@ -30,6 +41,17 @@ public class CFGStartNode extends CFGNode {
         return out;
     }
 
+    /**
+     * The ids of the temps of the function of this CFG. The temps of a CFG
+     * that is built from IR carry their ids in this table, as do the temps
+     * that passes add through {@link cyr7.cfg.ir.opt.FreshTemps FreshTemps}
+     * or SSA form. A temp that carries no id is given the next id when it is
+     * first looked up.
+     */
+    public TempTable temps() {
+        return temps;
+    }
+
     @Override
     public <T> T accept(IrCFGVisitor<T> visitor) {
         return visitor.visit(this);
@@ -65,7 +87,7 @@ public class CFGStartNode extends CFGNode {
     @Override
     public CFGNode copy(List<CFGNode> out) {
         assert out.size() == 1;
-        return new CFGStartNode(this.location(), out.get(0));
+        return new CFGStartNode(this.location(), out.get(0), temps);
     }
 
     @Override
@@ -9,6 +9,7 @@ import java.util.Set;
 import cyr7.cfg.ir.dfa.BackwardTransferFunction;
 import cyr7.cfg.ir.dfa.ForwardTransferFunction;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import cyr7.ir.interpret.Configuration;
 import cyr7.ir.nodes.IRExpr;
 import cyr7.ir.nodes.IRTemp;
@@ -109,6 +110,13 @@ public class CFGVarAssignNode extends CFGNode {
         return Collections.unmodifiableSet(this.killSet);
     }
 
+    @Override
+    protected int[] useIds(TempTable temps) {
+        return useSet.isEmpty()
+            ? new int[0]
+            : temps.sortedUseIds(List.of(value));
+    }
+
     @Override
     public void refreshDfaSets() {
         if (this.value instanceof IRTemp
@@ -132,5 +140,6 @@ public class CFGVarAssignNode extends CFGNode {
                 genSet.put(variable, source);
             }
         }
+        this.dfaSetsChanged();
     }
 }
@@ -2,7 +2,9 @@ package cyr7.cfg.ir.opt;
 
 import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -12,7 +14,9 @@ import java.util.stream.Collectors;
 
 import cyr7.cfg.ir.dfa.CCPAnalysis;
 import cyr7.cfg.ir.dfa.CCPAnalysis.LatticeElement;
-import cyr7.cfg.ir.dfa.DfaResult;
+import cyr7.cfg.ir.dfa.CCPAnalysis.VLatticeElement;
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.SSAForm.Phi;
 import cyr7.cfg.ir.dfa.WorklistAnalysis;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
 import cyr7.cfg.ir.nodes.CFGCallNode;
@@ -27,6 +31,7 @@ import cyr7.cfg.ir.nodes.CFGVarAssignNode;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
 import cyr7.ir.nodes.IRCallStmt;
 import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
 
 public class CCPOptimization {
 
@@ -34,9 +39,27 @@ public class CCPOptimization {
 
     public static CFGStartNode optimize(CFGNode start) {
         CFGStartNode startNode = (CFGStartNode)start;
-        final var ccpResult = WorklistAnalysis.analyze(startNode,
-                                CCPAnalysis.INSTANCE);
-        final var visitor = new CcpCfgTransformationVisitor(ccpResult);
+        optimize(startNode, WorklistAnalysis.analyze(startNode,
+                CCPAnalysis.INSTANCE).in());
+        return startNode;
+    }
+
+    /**
+     * Performs one passing of conditional constant propagation over the CFG
+     * of {@code start}, whose constants are given by {@code constants}, the
+     * in lattices of {@link CCPAnalysis}.
+     * <p>
+     * Variables with a constant value are replaced by that value, and
+     * assignments of a constant value assign the value directly. An
+     * {@link CFGIfNode if} whose condition is constant is replaced by the
+     * branch that it takes, and the nodes that are found to be unreachable
+     * are unlinked from the rest of the CFG.
+     *
+     * @return {@code true} if the CFG was changed.
+     */
+    public static boolean optimize(CFGStartNode start,
+                                   Map<CFGNode, LatticeElement> constants) {
+        final var visitor = new CcpCfgTransformationVisitor(constants);
         final Set<CFGNode> visited = new HashSet<>();
         final Queue<CFGNode> nextNodes = new ArrayDeque<>();
         nextNodes.add(start);
@@ -57,25 +80,331 @@ public class CCPOptimization {
             }
 
         }
-        return startNode;
+        return visitor.changed;
+    }
+
+    /**
+     * Performs one passing of sparse conditional constant propagation over a
+     * CFG in SSA form.
+     * <p>
+     * See section 19.3 of Appel. Edges are followed from the start of the
+     * CFG once they are found to be executable, and a variable whose value
+     * changes is followed to its uses, so a statement is only evaluated
+     * again when one of its operands changes. Variables with a constant
+     * value are then replaced by that value, as in
+     * {@link #optimize(CFGStartNode, Map)}. An {@link CFGIfNode if} that
+     * only takes one branch is bypassed, or has both of its edges go to that
+     * branch if the phi-functions around it do not allow that, and the edges
+     * from nodes that are never executed are unlinked.
+     *
+     * @return {@code true} if the CFG was changed.
+     */
+    public static boolean optimize(SSAForm form) {
+        return new SparseConstantPropagation(form).run();
+    }
+
+    /**
+     * Sparse conditional constant propagation over one CFG in SSA form.
+     */
+    private static final class SparseConstantPropagation
+            implements IrCFGVisitor<Void> {
+
+        private final SSAForm form;
+
+        /**
+         * The values of the variables that are not top.
+         */
+        private final Map<String, VLatticeElement> values = new HashMap<>();
+
+        /**
+         * The executable nodes, and the executable edges out of each.
+         */
+        private final Map<CFGNode, Set<CFGNode>> executable = new LinkedHashMap<>();
+
+        private final Queue<List<CFGNode>> edges = new ArrayDeque<>();
+        private final Queue<String> changedVariables = new ArrayDeque<>();
+
+        private SparseConstantPropagation(SSAForm form) {
+            this.form = form;
+        }
+
+        private boolean run() {
+            executable.put(form.cfg(), new HashSet<>());
+            form.cfg().accept(this);
+            while (!edges.isEmpty() || !changedVariables.isEmpty()) {
+                if (!edges.isEmpty()) {
+                    final List<CFGNode> edge = edges.remove();
+                    final CFGNode from = edge.get(0);
+                    final CFGNode to = edge.get(1);
+                    if (!executable.get(from).add(to)) {
+                        continue;
+                    }
+                    for (Phi phi : form.phis(to)) {
+                        evaluate(phi);
+                    }
+                    if (!executable.containsKey(to)) {
+                        executable.put(to, new HashSet<>());
+                        to.accept(this);
+                    }
+                } else {
+                    final String variable = changedVariables.remove();
+                    for (CFGNode use : form.uses(variable)) {
+                        if (executable.containsKey(use)) {
+                            use.accept(this);
+                        }
+                    }
+                    for (Phi phi : form.phiUses(variable)) {
+                        if (executable.containsKey(phi.node())) {
+                            evaluate(phi);
+                        }
+                    }
+                }
+            }
+            return rewrite();
+        }
+
+        private boolean isExecutable(CFGNode from, CFGNode to) {
+            return executable.getOrDefault(from, Set.of()).contains(to);
+        }
+
+        /**
+         * Returns the value of {@code variable}. A variable without a single
+         * definition may have any value.
+         */
+        private VLatticeElement value(String variable) {
+            if (!form.defines(variable)) {
+                return VLatticeElement.bot;
+            }
+            return values.getOrDefault(variable, VLatticeElement.top);
+        }
+
+        private void lower(String variable, VLatticeElement value) {
+            final VLatticeElement previous = value(variable);
+            final VLatticeElement lowered = CCPAnalysis.meet(previous, value);
+            if (!lowered.equals(previous)) {
+                values.put(variable, lowered);
+                changedVariables.add(variable);
+            }
+        }
+
+        /**
+         * Returns the values of the variables that {@code n} uses, or
+         * {@code null} if any of them is still top.
+         */
+        private LatticeElement operands(CFGNode n) {
+            final Map<String, VLatticeElement> operands = new HashMap<>();
+            for (String use : n.uses()) {
+                final VLatticeElement value = value(use);
+                if (value.isTop()) {
+                    return null;
+                }
+                operands.put(use, value);
+            }
+            return LatticeElement.reachable(operands);
+        }
+
+        private void evaluate(Phi phi) {
+            VLatticeElement value = VLatticeElement.top;
+            for (Map.Entry<CFGNode, String> argument : phi.arguments().entrySet()) {
+                if (isExecutable(argument.getKey(), phi.node())) {
+                    value = CCPAnalysis.meet(value, value(argument.getValue()));
+                }
+            }
+            lower(phi.target(), value);
+        }
+
+        private void follow(CFGNode n) {
+            for (CFGNode out : n.out()) {
+                edges.add(List.of(n, out));
+            }
+        }
+
+        @Override
+        public Void visit(CFGCallNode n) {
+            for (String collector : n.call.collectors()) {
+                if (form.definition(collector) == n) {
+                    lower(collector, VLatticeElement.bot);
+                }
+            }
+            follow(n);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGIfNode n) {
+            final LatticeElement operands = operands(n);
+            if (operands == null) {
+                return null;
+            }
+            final var branches = n.acceptForward(
+                CCPAnalysis.INSTANCE.transfer(), operands);
+            for (int i = 0; i < branches.size(); i++) {
+                if (!branches.get(i).unreachable()) {
+                    edges.add(List.of(n, n.out().get(i)));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGVarAssignNode n) {
+            final LatticeElement operands = operands(n);
+            if (operands != null && form.definition(n.variable) == n) {
+                lower(n.variable, n.acceptForward(
+                    CCPAnalysis.INSTANCE.transfer(), operands)
+                    .get(0)
+                    .getValue(n.variable));
+            }
+            follow(n);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGMemAssignNode n) {
+            follow(n);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGReturnNode n) {
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGStartNode n) {
+            follow(n);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGSelfLoopNode n) {
+            follow(n);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGBlockNode n) {
+            throw new UnsupportedOperationException(
+                "Cannot propagate constants through block nodes in SSA form.");
+        }
+
+        /**
+         * Replaces the variables of the executable nodes that have constant
+         * values, and then removes the edges that are never taken.
+         */
+        private boolean rewrite() {
+            boolean changed = false;
+            for (CFGNode n : executable.keySet()) {
+                if (n instanceof CFGVarAssignNode
+                        && form.definition(((CFGVarAssignNode) n).variable) == n) {
+                    final CFGVarAssignNode assign = (CFGVarAssignNode) n;
+                    final VLatticeElement value = value(assign.variable);
+                    if (!value.isTop() && !value.isBot()) {
+                        // Folds away the arithmetic of a constant value.
+                        final IRExpr constant =
+                            new IRInteger(n.location(), value.value());
+                        if (!constant.equals(assign.value)) {
+                            assign.value = constant;
+                            assign.refreshDfaSets();
+                            changed = true;
+                        }
+                        continue;
+                    }
+                }
+                final Map<String, VLatticeElement> constants = new HashMap<>();
+                for (String use : n.uses()) {
+                    constants.put(use, value(use));
+                }
+                final LatticeElement lattice = LatticeElement.reachable(constants);
+                changed |= CFGExprReplacer.replace(n,
+                    expr -> IRTempToConstant.replace(expr, lattice));
+            }
+
+            // Bypassing an if changes the branches of the nodes before it,
+            // so the branch that each if takes is found first.
+            final Map<CFGIfNode, Boolean> folds = new LinkedHashMap<>();
+            for (CFGNode n : List.copyOf(executable.keySet())) {
+                for (CFGNode predecessor : List.copyOf(n.in())) {
+                    if (!executable.containsKey(predecessor)) {
+                        form.unlink(predecessor, n);
+                        changed = true;
+                    }
+                }
+                if (n instanceof CFGIfNode) {
+                    final CFGIfNode ifNode = (CFGIfNode) n;
+                    final boolean takesTrue =
+                        isExecutable(ifNode, ifNode.trueBranch());
+                    if (takesTrue != isExecutable(ifNode, ifNode.falseBranch())) {
+                        folds.put(ifNode, takesTrue);
+                    }
+                }
+            }
+            for (Map.Entry<CFGIfNode, Boolean> fold : folds.entrySet()) {
+                changed |= fold(fold.getKey(), fold.getValue());
+            }
+            if (changed) {
+                form.changed();
+            }
+            return changed;
+        }
+
+        /**
+         * Bypasses {@code n}, which only takes its true branch if
+         * {@code takesTrue} and only its false branch otherwise. If the
+         * phi-functions around {@code n} do not allow that, both of its
+         * edges are made to go to the branch that it takes, so that the
+         * nodes that are never executed are no longer reachable through it.
+         */
+        private boolean fold(CFGIfNode n, boolean takesTrue) {
+            final CFGNode trueBranch = n.trueBranch();
+            final CFGNode falseBranch = n.falseBranch();
+            if (trueBranch == falseBranch) {
+                return false;
+            }
+            final CFGNode taken = takesTrue ? trueBranch : falseBranch;
+            if (form.bypass(n, taken)) {
+                return true;
+            }
+            final CFGNode untaken = takesTrue ? falseBranch : trueBranch;
+            form.unlink(n, untaken);
+            n.replaceOutEdge(untaken, taken);
+            n.cond = new IRInteger(n.location(), takesTrue ? 1 : 0);
+            n.refreshDfaSets();
+            return true;
+        }
+
     }
 
     private static class CcpCfgTransformationVisitor implements IrCFGVisitor<CFGNode> {
 
         private final Map<CFGNode, LatticeElement> incomingLattices;
-        private final Map<CFGNode, Map<CFGNode, LatticeElement>> outgoingLattices;
 
-        public CcpCfgTransformationVisitor(DfaResult<LatticeElement> ccpResult) {
-            // May be it is more helpful to know both the outs and ins of nodes.
-            this.incomingLattices = ccpResult.in();
-            this.outgoingLattices = ccpResult.out();
+        /**
+         * Whether the CFG has been changed.
+         */
+        private boolean changed = false;
+
+        public CcpCfgTransformationVisitor(Map<CFGNode, LatticeElement> incomingLattices) {
+            this.incomingLattices = incomingLattices;
+        }
+
+        private IRExpr replace(IRExpr expr, LatticeElement lattice) {
+            IRExpr replaced = IRTempToConstant.replace(expr, lattice);
+            changed |= !replaced.equals(expr);
+            return replaced;
+        }
+
+        private void unlink(CFGNode n) {
+            for (CFGNode out : n.out()) {
+                changed |= out.in().removeAll(Collections.singleton(n));
+            }
         }
 
         @Override
         public CFGNode visit(CFGBlockNode n) {
             var incoming = incomingLattices.get(n);
             if (incoming.unreachable()) {
-                n.outNode().in().removeAll(Collections.singleton(n));
+                unlink(n);
                 return n;
             } else {
                 n.block = new CFGBlockDeadCodeVisitor(incoming, n).replaceBlock();
@@ -89,12 +418,12 @@ public class CCPOptimization {
             final var incomingLattice = incomingLattices.get(n);
             if (incomingLattice.unreachable()) {
                 // Remove this node as the incoming node of the next.
-                n.outNode().in().removeAll(Collections.singleton(n));
+                unlink(n);
                 return n;
             }
             final IRCallStmt call = n.call;
             List<IRExpr> updatedArgs = call.args().stream().map(arg -> {
-                return IRTempToConstant.replace(arg, incomingLattice);
+                return replace(arg, incomingLattice);
             }).collect(Collectors.toList());
 
             n.call = new IRCallStmt(n.location(),
@@ -108,53 +437,71 @@ public class CCPOptimization {
         @Override
         public CFGNode visit(CFGIfNode n) {
             final var incomingLattice = incomingLattices.get(n);
-            final var outgoingLattice = outgoingLattices.get(n);
 
             final var trueBranch = n.trueBranch();
             final var falseBranch = n.falseBranch();
 
             if (incomingLattice.unreachable()) {
                 // Remove this node as the incoming node of the next.
-                trueBranch.in().removeAll(Collections.singleton(n));
-                falseBranch.in().removeAll(Collections.singleton(n));
+                unlink(n);
                 return n;
             }
 
-            n.cond = IRTempToConstant.replace(n.cond, incomingLattice);
-            if (outgoingLattice.get(trueBranch).unreachable()) {
+            final var outgoingLattices = n.acceptForward(
+                CCPAnalysis.INSTANCE.transfer(), incomingLattice);
+            n.cond = replace(n.cond, incomingLattice);
+            if (trueBranch == falseBranch) {
+                // Both edges lead to the same node, which stays reachable
+                // whichever edge is taken, so it is the node to link to.
+                if (outgoingLattices.get(0).unreachable()
+                        || outgoingLattices.get(1).unreachable()) {
+                    bypass(n, trueBranch);
+                }
+            } else if (outgoingLattices.get(0).unreachable()) {
                 // Remove this node and link the previous nodes to the
                 // false branch
-                final var incomingNodes = new LinkedList<>(n.in());
-                for (CFGNode incoming: incomingNodes) {
-                    n.in().removeAll(Collections.singleton(incoming));
-                    incoming.replaceOutEdge(n, falseBranch);
-                }
-                falseBranch.in().removeAll(Collections.singleton(n));
-                trueBranch.in().removeAll(Collections.singleton(n));
-            } else if (outgoingLattice.get(falseBranch).unreachable()) {
+                bypass(n, falseBranch);
+            } else if (outgoingLattices.get(1).unreachable()) {
                 // Remove this node and link the previous nodes to the
                 // true branch
-                final var incomingNodes = new LinkedList<>(n.in());
-                for (CFGNode incoming: incomingNodes) {
-                    n.in().removeAll(Collections.singleton(incoming));
-                    incoming.replaceOutEdge(n, trueBranch);
-                }
-                trueBranch.in().removeAll(Collections.singleton(n));
-                falseBranch.in().removeAll(Collections.singleton(n));
+                bypass(n, trueBranch);
             }
             n.refreshDfaSets();
             return n;
         }
 
+        /**
+         * Links the previous nodes of {@code n} to {@code branch}, the only
+         * branch that {@code n} can take.
+         */
+        private void bypass(CFGIfNode n, CFGNode branch) {
+            final var incomingNodes = new LinkedList<>(n.in());
+            for (CFGNode incoming: incomingNodes) {
+                n.in().removeAll(Collections.singleton(incoming));
+                incoming.replaceOutEdge(n, branch);
+            }
+            unlink(n);
+            changed = true;
+        }
+
         @Override
         public CFGNode visit(CFGVarAssignNode n) {
             final var lattice = incomingLattices.get(n);
             if (lattice.unreachable()) {
                 // Remove this node as the incoming node of the next.
-                n.outNode().in().removeAll(Collections.singleton(n));
+                unlink(n);
                 return n;
             }
-            n.value = IRTempToConstant.replace(n.value, lattice);
+            final var result = n.acceptForward(CCPAnalysis.INSTANCE.transfer(),
+                lattice).get(0).getValue(n.variable);
+            if (!result.isTop() && !result.isBot()) {
+                // Folds away the arithmetic of a constant value.
+                final IRExpr constant = new IRInteger(n.location(), result.value());
+                changed |= !constant.equals(n.value);
+                n.value = constant;
+            } else {
+                n.value = replace(n.value, lattice);
+            }
             n.refreshDfaSets();
             return n;
         }
@@ -164,11 +511,11 @@ public class CCPOptimization {
             final var lattice = incomingLattices.get(n);
             if (lattice.unreachable()) {
                 // Remove this node as the incoming node of the next.
-                n.outNode().in().removeAll(Collections.singleton(n));
+                unlink(n);
                 return n;
             }
-            n.value = IRTempToConstant.replace(n.value, lattice);
-            n.target = IRTempToConstant.replace(n.target, lattice);
+            n.value = replace(n.value, lattice);
+            n.target = replace(n.target, lattice);
             n.refreshDfaSets();
             return n;
         }
@@ -180,12 +527,7 @@ public class CCPOptimization {
 
         @Override
         public CFGNode visit(CFGStartNode n) {
-            final var lattice = incomingLattices.get(n);
-            if (lattice.unreachable()) {
-                // Remove this node as the incoming node of the next.
-                n.outNode().in().removeAll(Collections.singleton(n));
-                return n;
-            }
+            // The start is always reachable, although nothing flows into it.
             return n;
         }
 
@@ -0,0 +1,114 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRExpr;
+
+/**
+ * Replaces the expressions that a single statement evaluates, for the passes
+ * that rewrite the uses of variables one statement at a time.
+ */
+final class CFGExprReplacer implements IrCFGVisitor<Boolean> {
+
+    /**
+     * Replaces each expression {@code e} that {@code statement} evaluates
+     * with {@code replacement.apply(e)}. The variables that a statement
+     * assigns are left alone.
+     *
+     * @return {@code true} if any expression was changed.
+     */
+    static boolean replace(CFGNode statement, UnaryOperator<IRExpr> replacement) {
+        return statement.accept(new CFGExprReplacer(replacement));
+    }
+
+    private final UnaryOperator<IRExpr> replacement;
+
+    private CFGExprReplacer(UnaryOperator<IRExpr> replacement) {
+        this.replacement = replacement;
+    }
+
+    @Override
+    public Boolean visit(CFGCallNode n) {
+        final List<IRExpr> args = n.call.args()
+            .stream()
+            .map(replacement)
+            .collect(Collectors.toList());
+        final IRExpr target = replacement.apply(n.call.target());
+        if (args.equals(n.call.args()) && target.equals(n.call.target())) {
+            return false;
+        }
+        n.call = new IRCallStmt(n.location(), n.call.collectors(), target, args);
+        n.refreshDfaSets();
+        return true;
+    }
+
+    @Override
+    public Boolean visit(CFGIfNode n) {
+        final IRExpr cond = replacement.apply(n.cond);
+        if (cond.equals(n.cond)) {
+            return false;
+        }
+        n.cond = cond;
+        n.refreshDfaSets();
+        return true;
+    }
+
+    @Override
+    public Boolean visit(CFGVarAssignNode n) {
+        final IRExpr value = replacement.apply(n.value);
+        if (value.equals(n.value)) {
+            return false;
+        }
+        n.value = value;
+        n.refreshDfaSets();
+        return true;
+    }
+
+    @Override
+    public Boolean visit(CFGMemAssignNode n) {
+        final IRExpr target = replacement.apply(n.target);
+        final IRExpr value = replacement.apply(n.value);
+        if (target.equals(n.target) && value.equals(n.value)) {
+            return false;
+        }
+        n.target = target;
+        n.value = value;
+        n.refreshDfaSets();
+        return true;
+    }
+
+    @Override
+    public Boolean visit(CFGReturnNode n) {
+        return false;
+    }
+
+    @Override
+    public Boolean visit(CFGStartNode n) {
+        return false;
+    }
+
+    @Override
+    public Boolean visit(CFGSelfLoopNode n) {
+        return false;
+    }
+
+    @Override
+    public Boolean visit(CFGBlockNode n) {
+        throw new UnsupportedOperationException(
+            "Cannot replace the expressions of a block node.");
+    }
+
+}
@@ -0,0 +1,132 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.optimize.IRConstFoldVisitor;
+
+public class ConstantFoldingOptimization {
+
+    private ConstantFoldingOptimization() {}
+
+    /**
+     * Folds the constant subexpressions of every node in the CFG of
+     * {@code start}, in the same way that {@link IRConstFoldVisitor} folds
+     * the statements of a function body. The shape of the CFG is unchanged.
+     *
+     * @return {@code true} if any expression was folded.
+     */
+    public static boolean optimize(CFGStartNode start) {
+        final var visitor = new CFGConstFoldVisitor();
+        Set<CFGNode> visited = new HashSet<>();
+        Queue<CFGNode> nextNodes = new ArrayDeque<>();
+        nextNodes.add(start);
+        visited.add(start);
+
+        while (!nextNodes.isEmpty()) {
+            var next = nextNodes.remove();
+            next.accept(visitor);
+            for (CFGNode out: next.out()) {
+                if (visited.add(out)) {
+                    nextNodes.add(out);
+                }
+            }
+        }
+        return visitor.changed;
+    }
+
+    private static class CFGConstFoldVisitor implements IrCFGVisitor<CFGNode> {
+
+        private final IRConstFoldVisitor folder = new IRConstFoldVisitor();
+
+        /**
+         * Whether any expression has been folded.
+         */
+        private boolean changed = false;
+
+        private IRExpr fold(IRExpr expr) {
+            IRExpr folded = expr.accept(folder).assertFirst();
+            changed |= !folded.equals(expr);
+            return folded;
+        }
+
+        @Override
+        public CFGNode visit(CFGCallNode n) {
+            final IRExpr target = fold(n.call.target());
+            final List<IRExpr> args = n.call.args().stream()
+                .map(this::fold)
+                .collect(Collectors.toList());
+            n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                target, args);
+            n.refreshDfaSets();
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGIfNode n) {
+            n.cond = fold(n.cond);
+            n.refreshDfaSets();
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGVarAssignNode n) {
+            n.value = fold(n.value);
+            n.refreshDfaSets();
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGMemAssignNode n) {
+            n.target = fold(n.target);
+            n.value = fold(n.value);
+            n.refreshDfaSets();
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGBlockNode n) {
+            var node = n.block;
+            while (!(node instanceof CFGStubNode)) {
+                node.accept(this);
+                node = node.out().get(0);
+            }
+            n.refreshDfaSets();
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGReturnNode n) {
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGStartNode n) {
+            return n;
+        }
+
+        @Override
+        public CFGNode visit(CFGSelfLoopNode n) {
+            return n;
+        }
+
+    }
+
+}
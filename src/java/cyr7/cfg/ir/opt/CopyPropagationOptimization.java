@@ -4,6 +4,7 @@ import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -12,6 +13,7 @@ import java.util.stream.Collectors;
 
 import cyr7.cfg.ir.dfa.CopyPropagationAnalysis;
 import cyr7.cfg.ir.dfa.CopyPropagationAnalysis.CopyPropLattice;
+import cyr7.cfg.ir.dfa.SSAForm;
 import cyr7.cfg.ir.dfa.WorklistAnalysis;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
 import cyr7.cfg.ir.nodes.CFGCallNode;
@@ -24,8 +26,10 @@ import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.IRCallStmt;
 import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRTemp;
 
 public class CopyPropagationOptimization {
 
@@ -43,11 +47,23 @@ public class CopyPropagationOptimization {
      *         one passing of copy propagation.
      */
     public static CFGStartNode optimize(CFGNode start) {
-        // Mapping from CFGNode to the out lattices.
         CFGStartNode startNode = (CFGStartNode)start;
-        final var visitor = new CFGVarReplacementVisitor(
-                WorklistAnalysis.analyze((CFGStartNode)start,
+        optimize(startNode, WorklistAnalysis.analyze(startNode,
                 CopyPropagationAnalysis.INSTANCE).in());
+        return startNode;
+    }
+
+    /**
+     * Performs one passing of copy propagation over the CFG of
+     * {@code start}, whose copies are given by {@code copies}, the in
+     * lattices of {@link CopyPropagationAnalysis}.
+     *
+     * @return {@code true} if any temporary was replaced.
+     */
+    public static boolean optimize(CFGStartNode start,
+                                   Map<CFGNode, CopyPropLattice> copies) {
+        final var visitor = new CFGVarReplacementVisitor(copies,
+            start.temps());
         Set<CFGNode> visited = new HashSet<>();
         Queue<CFGNode> nextNodes = new ArrayDeque<>();
         nextNodes.add(start);
@@ -68,16 +84,83 @@ public class CopyPropagationOptimization {
             }
 
         }
-        return startNode;
+        return visitor.changed;
+    }
+
+    /**
+     * Performs one passing of copy propagation over a CFG in SSA form.
+     * <p>
+     * Each variable {@code x} that is assigned a copy of a variable
+     * {@code y} with a single definition is replaced by {@code y} at every
+     * use, including the arguments of phi-functions. The definition of
+     * {@code y} dominates the copy, which dominates every use of {@code x},
+     * so {@code y} holds the same value at each of them. The copies are left
+     * for dead code elimination to remove.
+     *
+     * @return {@code true} if any temporary was replaced.
+     */
+    public static boolean optimize(SSAForm form) {
+        final Map<String, String> copies = new HashMap<>();
+        for (String variable : form.variables()) {
+            if (form.definition(variable) instanceof CFGVarAssignNode) {
+                final IRExpr value =
+                    ((CFGVarAssignNode) form.definition(variable)).value;
+                if (value instanceof IRTemp
+                        && form.defines(((IRTemp) value).name())) {
+                    copies.put(variable, ((IRTemp) value).name());
+                }
+            }
+        }
+
+        final Map<String, String> sources = resolve(copies);
+        final Set<CFGNode> uses = new LinkedHashSet<>();
+        for (String variable : sources.keySet()) {
+            uses.addAll(form.uses(variable));
+        }
+        boolean changed = false;
+        for (CFGNode use : uses) {
+            changed |= CFGExprReplacer.replace(use,
+                expr -> IRTempReplacer.replace(expr, sources,
+                    form.cfg().temps()));
+        }
+        changed |= form.replaceArguments(sources);
+        if (changed) {
+            form.changed();
+        }
+        return changed;
+    }
+
+    /**
+     * Maps each variable in {@code copies} to the variable at the start of
+     * its chain of copies.
+     */
+    private static Map<String, String> resolve(Map<String, String> copies) {
+        final Map<String, String> resolved = new HashMap<>();
+        for (String variable : copies.keySet()) {
+            String source = copies.get(variable);
+            while (copies.containsKey(source)) {
+                source = copies.get(source);
+            }
+            resolved.put(variable, source);
+        }
+        return resolved;
     }
 
     private static class CFGVarReplacementVisitor
                                     implements IrCFGVisitor<CFGNode> {
 
         private Map<CFGNode, CopyPropLattice> result;
+        private final TempTable temps;
+
+        /**
+         * Whether any temporary has been replaced.
+         */
+        private boolean changed = false;
 
-        public CFGVarReplacementVisitor(Map<CFGNode, CopyPropLattice> result) {
+        public CFGVarReplacementVisitor(Map<CFGNode, CopyPropLattice> result,
+                                        TempTable temps) {
             this.result = Collections.unmodifiableMap(result);
+            this.temps = temps;
         }
 
         @Override
@@ -85,8 +168,9 @@ public class CopyPropagationOptimization {
             final var lattice = this.result.get(n);
 
             final List<IRExpr> args = n.call.args().stream().map(arg -> {
-                return IRTempReplacer.replace(arg, lattice.copies);
+                return IRTempReplacer.replace(arg, lattice.copies, temps);
             }).collect(Collectors.toList());
+            changed |= !args.equals(n.call.args());
             final var call = new IRCallStmt(n.location(), n.call.collectors(),
                     n.call.target(), args);
             n.call = call;
@@ -100,7 +184,8 @@ public class CopyPropagationOptimization {
             // For copy propagation, true and false are the same.
             final var lattice = this.result.get(n);
 
-            final var condition = IRTempReplacer.replace(n.cond, lattice.copies);
+            final var condition = IRTempReplacer.replace(n.cond, lattice.copies, temps);
+            changed |= !condition.equals(n.cond);
             n.cond = condition;
             n.refreshDfaSets();
             return n;
@@ -110,7 +195,8 @@ public class CopyPropagationOptimization {
         public CFGNode visit(CFGVarAssignNode n) {
             final var lattice = this.result.get(n);
 
-            final var value = IRTempReplacer.replace(n.value, lattice.copies);
+            final var value = IRTempReplacer.replace(n.value, lattice.copies, temps);
+            changed |= !value.equals(n.value);
             n.value = value;
             n.refreshDfaSets();
             return n;
@@ -119,8 +205,9 @@ public class CopyPropagationOptimization {
         @Override
         public CFGNode visit(CFGMemAssignNode n) {
             final var lattice = this.result.get(n);
-            final var value = IRTempReplacer.replace(n.value, lattice.copies);
-            final var mem = IRTempReplacer.replace(n.target, lattice.copies);
+            final var value = IRTempReplacer.replace(n.value, lattice.copies, temps);
+            final var mem = IRTempReplacer.replace(n.target, lattice.copies, temps);
+            changed |= !value.equals(n.value) || !mem.equals(n.target);
             n.value = value;
             n.target = mem;
             n.refreshDfaSets();
@@ -130,7 +217,9 @@ public class CopyPropagationOptimization {
         @Override
         public CFGNode visit(CFGBlockNode n) {
             final var lattice = new HashMap<>(this.result.get(n).copies);
-            n.block = new CFGBlockVarReplacementVisitor(lattice, n).replaceBlock();
+            final var replacer = new CFGBlockVarReplacementVisitor(lattice, n);
+            n.block = replacer.replaceBlock();
+            changed |= replacer.changed;
             n.refreshDfaSets();
             return n;
         }
@@ -154,6 +243,7 @@ public class CopyPropagationOptimization {
 
             private final Map<String, String> copies;
             private final CFGNode topNode;
+            private boolean changed = false;
 
             public CFGBlockVarReplacementVisitor(Map<String, String> copies, CFGBlockNode node) {
                 this.copies = new HashMap<>(copies);
@@ -173,6 +263,7 @@ public class CopyPropagationOptimization {
                 final var updatedArgs = n.call.args().stream().map(arg -> {
                     return IRTempReplacer.replace(arg, copies);
                 }).collect(Collectors.toList());
+                changed |= !updatedArgs.equals(n.call.args());
                 n.call = new IRCallStmt(n.location(),
                         n.call.collectors(), n.call.target(), updatedArgs);
                 n.refreshDfaSets();
@@ -184,7 +275,9 @@ public class CopyPropagationOptimization {
 
             @Override
             public CFGNode visit(CFGVarAssignNode n) {
-                n.value = IRTempReplacer.replace(n.value, copies);
+                final var value = IRTempReplacer.replace(n.value, copies);
+                changed |= !value.equals(n.value);
+                n.value = value;
                 n.refreshDfaSets();
 
                 copies.keySet().removeAll(n.kills());
@@ -195,8 +288,11 @@ public class CopyPropagationOptimization {
 
             @Override
             public CFGNode visit(CFGMemAssignNode n) {
-                n.target = IRTempReplacer.replace(n.target, copies);
-                n.value = IRTempReplacer.replace(n.value, copies);
+                final var target = IRTempReplacer.replace(n.target, copies);
+                final var value = IRTempReplacer.replace(n.value, copies);
+                changed |= !target.equals(n.target) || !value.equals(n.value);
+                n.target = target;
+                n.value = value;
                 n.refreshDfaSets();
 
                 copies.keySet().removeAll(n.kills());
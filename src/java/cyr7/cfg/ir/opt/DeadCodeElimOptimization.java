@@ -1,10 +1,13 @@
 package cyr7.cfg.ir.opt;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -12,6 +15,8 @@ import java.util.stream.Collectors;
 
 import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis;
 import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.SSAForm.Phi;
 import cyr7.cfg.ir.dfa.WorklistAnalysis;
 import cyr7.cfg.ir.nodes.CFGBlockNode;
 import cyr7.cfg.ir.nodes.CFGCallNode;
@@ -25,6 +30,7 @@ import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
 import cyr7.cfg.ir.visitor.IrCFGVisitor;
 import cyr7.ir.interpret.Configuration;
+import cyr7.ir.nodes.IRInteger;
 import cyr7.ir.visit.IRExprVarsVisitor;
 
 public class DeadCodeElimOptimization {
@@ -42,15 +48,26 @@ public class DeadCodeElimOptimization {
      *         one passing of dead code elimination.
      */
     public static CFGStartNode optimize(CFGNode start) {
-        // Mapping from CFGNode to the out lattices.
         CFGStartNode startNode = (CFGStartNode)start;
-        var result = WorklistAnalysis.analyze((CFGStartNode)start,
-                                   IrLiveVariableAnalysis.INSTANCE);
+        optimize(startNode, WorklistAnalysis.analyze(startNode,
+                                   new IrLiveVariableAnalysis(startNode.temps())));
+        return startNode;
+    }
+
+    /**
+     * Performs one passing of dead code elimination over the CFG of
+     * {@code start}, whose live variables are given by {@code liveVars},
+     * the out lattices of {@link IrLiveVariableAnalysis}.
+     *
+     * @return {@code true} if any node was removed.
+     */
+    public static boolean optimize(CFGStartNode start,
+                                   Map<CFGNode, IrLiveVarLattice> liveVars) {
         Set<CFGNode> visited = new HashSet<>();
         Queue<CFGNode> nextNodes = new LinkedList<>();
         nextNodes.add(start);
 
-        final ReplaceDeadCodeVisitor visitor = new ReplaceDeadCodeVisitor(result);
+        final ReplaceDeadCodeVisitor visitor = new ReplaceDeadCodeVisitor(liveVars);
 
         while (!nextNodes.isEmpty()) {
             var next = nextNodes.remove();
@@ -71,13 +88,110 @@ public class DeadCodeElimOptimization {
             }
 
         }
-        return startNode;
+        return visitor.changed;
+    }
+
+    /**
+     * Performs one passing of dead code elimination over a CFG in SSA form.
+     * <p>
+     * A variable is live if it is used by a statement other than the
+     * assignment of a variable, by the assignment of a live variable, or by
+     * a phi-function whose target is live. Each use leads straight to the
+     * single definition of its variable, so a whole chain of dead
+     * assignments is found in one passing. The assignments and
+     * phi-functions of the other variables are removed. An assignment that
+     * cannot be removed without breaking the phi-functions around it is
+     * left in place, assigning {@code 0} instead.
+     *
+     * @return {@code true} if the CFG was changed.
+     */
+    public static boolean optimize(SSAForm form) {
+        final List<CFGVarAssignNode> assignments = new ArrayList<>();
+        final Set<String> live = new HashSet<>();
+        final Deque<String> worklist = new ArrayDeque<>();
+        for (CFGNode node : reachable(form.cfg())) {
+            if (node instanceof CFGVarAssignNode
+                    && form.definition(((CFGVarAssignNode) node).variable) == node) {
+                assignments.add((CFGVarAssignNode) node);
+                continue;
+            }
+            for (String use : node.uses()) {
+                if (live.add(use)) {
+                    worklist.add(use);
+                }
+            }
+        }
+
+        while (!worklist.isEmpty()) {
+            final String variable = worklist.remove();
+            final Collection<String> uses;
+            if (form.definition(variable) instanceof CFGVarAssignNode) {
+                uses = form.definition(variable).uses();
+            } else if (form.phiDefinition(variable) != null) {
+                uses = form.phiDefinition(variable).arguments().values();
+            } else {
+                continue;
+            }
+            for (String use : uses) {
+                if (live.add(use)) {
+                    worklist.add(use);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (CFGVarAssignNode assignment : assignments) {
+            if (live.contains(assignment.variable)) {
+                continue;
+            }
+            if (form.bypass(assignment, assignment.outNode())) {
+                changed = true;
+            } else if (!(assignment.value instanceof IRInteger)) {
+                assignment.value = new IRInteger(assignment.location(), 0);
+                assignment.refreshDfaSets();
+                changed = true;
+            }
+        }
+        for (Phi phi : form.phis()) {
+            if (!live.contains(phi.target())) {
+                form.remove(phi);
+                changed = true;
+            }
+        }
+        if (changed) {
+            form.changed();
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the nodes that are reachable from {@code start}, in
+     * breadth-first order.
+     */
+    private static List<CFGNode> reachable(CFGStartNode start) {
+        final List<CFGNode> nodes = new ArrayList<>();
+        final Set<CFGNode> visited = new HashSet<>();
+        visited.add(start);
+        nodes.add(start);
+        for (int i = 0; i < nodes.size(); i++) {
+            for (CFGNode out : nodes.get(i).out()) {
+                if (visited.add(out)) {
+                    nodes.add(out);
+                }
+            }
+        }
+        return nodes;
     }
 
     private static class ReplaceDeadCodeVisitor implements IrCFGVisitor<CFGNode> {
 
         private Map<CFGNode, IrLiveVarLattice> result;
 
+        /**
+         * Whether any node has been removed.
+         */
+        private boolean changed = false;
+
         private boolean isAReturn(String n) {
             return n.startsWith(Configuration.ABSTRACT_RET_PREFIX);
         }
@@ -104,9 +218,8 @@ public class DeadCodeElimOptimization {
         public CFGNode visit(CFGVarAssignNode n) {
             // If variable is not defined, then remove from graph. Unless
             // it is being assigned to a return value temp.
-            Set<String> liveVars = this.result.get(n).liveVars;
             if (!this.isAReturn(n.variable)
-                    && !liveVars.contains(n.variable)) {
+                    && !this.result.get(n).isLive(n.variable)) {
                 // Remove n from the graph.
                 // For every incoming node, replace their out node with
                 // this node's out node.
@@ -116,6 +229,7 @@ public class DeadCodeElimOptimization {
                     }
                 }
                 n.outNode().in().remove(n);
+                changed = true;
                 return n;
             } else {
                 return n;
@@ -124,8 +238,10 @@ public class DeadCodeElimOptimization {
 
         @Override
         public CFGNode visit(CFGBlockNode n) {
-            n.block = new CFGBlockDeadCodeVisitor(this.result.get(n).liveVars, n)
-                        .replaceBlock();
+            final var eliminator
+                = new CFGBlockDeadCodeVisitor(this.result.get(n).liveVars(), n);
+            n.block = eliminator.replaceBlock();
+            changed |= eliminator.changed;
             n.refreshDfaSets();
             return n;
         }
@@ -155,6 +271,7 @@ public class DeadCodeElimOptimization {
             private final Set<String> defined;
             private final CFGNode firstNode;
             private final Deque<CFGNode> ordering;
+            private boolean changed = false;
 
             private boolean isAReturn(String n) {
                 return n.startsWith(Configuration.ABSTRACT_RET_PREFIX);
@@ -199,6 +316,7 @@ public class DeadCodeElimOptimization {
                         incoming.replaceOutEdge(n, n.outNode());
                     }
                     n.outNode().in().remove(n);
+                    changed = true;
                 } else {
                     defined.remove(n.variable);
                     defined.addAll(n.value.accept(IRExprVarsVisitor.INSTANCE));
@@ -0,0 +1,95 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.ir.TempTable;
+import cyr7.ir.nodes.IRTemp;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+/**
+ * Names the temporaries that optimizations add to the CFG of one function.
+ * A name is a prefix that starts with an underscore, such as {@code _vn},
+ * followed by a number. Xi identifiers cannot start with an underscore, so
+ * these names never clash with the variables of the program.
+ * <p>
+ * The CFG is scanned once, when the names are created, and the numbers of
+ * each prefix continue after the greatest one already in use. Every pass
+ * over the function should therefore take its names from the same instance.
+ * Each fresh temporary is given its id in the {@link CFGStartNode#temps()
+ * temps} of the function when it is named.
+ */
+public final class FreshTemps {
+
+    /**
+     * The greatest number used with each prefix so far.
+     */
+    private final Map<String, Integer> numbers = new HashMap<>();
+    private final TempTable table;
+
+    private FreshTemps(TempTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Returns the names of the temporaries that can be added to the CFG of
+     * {@code start}.
+     */
+    public static FreshTemps of(CFGStartNode start) {
+        final FreshTemps temps = new FreshTemps(start.temps());
+        final Set<CFGNode> visited = new HashSet<>();
+        final Deque<CFGNode> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            final CFGNode node = stack.pop();
+            if (visited.add(node)) {
+                node.uses().forEach(temps::count);
+                node.defs().forEach(temps::count);
+                node.out().forEach(stack::push);
+            }
+        }
+        return temps;
+    }
+
+    /**
+     * Returns a fresh temporary named {@code prefix} followed by a number.
+     * The prefix must start with an underscore and must not end with a
+     * digit.
+     */
+    public String next(String prefix) {
+        final String name = prefix + numbers.merge(prefix, 1, Integer::sum);
+        table.id(name);
+        return name;
+    }
+
+    /**
+     * Returns a use of the temporary {@code name} of this function that
+     * carries its id.
+     */
+    public IRTemp temp(Location location, String name) {
+        return table.temp(location, name);
+    }
+
+    private void count(String name) {
+        int digits = name.length();
+        while (digits > 0 && Character.isDigit(name.charAt(digits - 1))) {
+            digits--;
+        }
+        if (!name.startsWith("_") || digits == name.length()) {
+            return;
+        }
+        try {
+            numbers.merge(name.substring(0, digits),
+                Integer.parseInt(name.substring(digits)), Math::max);
+        } catch (NumberFormatException e) {
+            // Too large to have been named here.
+        }
+    }
+
+}
@@ -2,6 +2,7 @@ package cyr7.cfg.ir.opt;
 
 import java.util.Map;
 
+import cyr7.ir.TempTable;
 import cyr7.ir.nodes.*;
 import cyr7.visitor.MyIRVisitor;
 import kotlin.NotImplementedError;
@@ -28,15 +29,28 @@ public class IRTempReplacer {
      * @return The expression {@code expr} with temporaries replaced.
      */
     public static IRExpr replace(IRExpr expr, Map<String, String> mapping) {
-        return expr.accept(new IRReplaceTempVisitor(mapping));
+        return expr.accept(new IRReplaceTempVisitor(mapping, null));
+    }
+
+    /**
+     * Replaces the variables used in {@code expr} as
+     * {@link #replace(IRExpr, Map)} does, and gives each replacement its id
+     * in {@code temps}, the temps of the function of {@code expr}.
+     */
+    public static IRExpr replace(IRExpr expr, Map<String, String> mapping,
+                                 TempTable temps) {
+        return expr.accept(new IRReplaceTempVisitor(mapping, temps));
     }
 
     private static class IRReplaceTempVisitor implements MyIRVisitor<IRExpr> {
 
         private final Map<String, String> mapping;
+        private final TempTable temps;
 
-        public IRReplaceTempVisitor(Map<String, String> mapping) {
+        public IRReplaceTempVisitor(Map<String, String> mapping,
+                                    TempTable temps) {
             this.mapping = mapping;
+            this.temps = temps;
         }
 
         @Override
@@ -81,7 +95,13 @@ public class IRTempReplacer {
             while (this.mapping.containsKey(key)) {
                 key = this.mapping.get(key);
             }
-            return new IRTemp(n.location(), key);
+            if (key.equals(n.name())) {
+                // Keeps the id that the temp carries.
+                return n;
+            }
+            return temps != null
+                ? temps.temp(n.location(), key)
+                : new IRTemp(n.location(), key);
         }
 
         @Override
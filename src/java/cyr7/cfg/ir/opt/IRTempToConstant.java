@@ -1,6 +1,7 @@
 package cyr7.cfg.ir.opt;
 
 import cyr7.cfg.ir.dfa.CCPAnalysis.LatticeElement;
+import cyr7.cfg.ir.dfa.CCPAnalysis.VLatticeElement;
 import cyr7.ir.nodes.*;
 import cyr7.visitor.MyIRVisitor;
 import kotlin.NotImplementedError;
@@ -66,12 +67,9 @@ public class IRTempToConstant {
 
         @Override
         public IRExpr visit(IRTemp n) {
-            String variable = n.name();
-            if (this.lattice.variables().contains(variable)
-                    && !this.lattice.getValue(variable).isBot()
-                    && !this.lattice.getValue(variable).isTop()) {
-                long constant = this.lattice.getValue(variable).value();
-                return new IRInteger(n.location(), constant);
+            VLatticeElement value = this.lattice.getValue(n.name());
+            if (!value.isBot() && !value.isTop()) {
+                return new IRInteger(n.location(), value.value());
             }
             return n;
         }
@@ -0,0 +1,365 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.dfa.loops.NaturalLoop;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRName;
+import cyr7.ir.nodes.IRTemp;
+import cyr7.ir.visit.IRExprTraps;
+
+public final class LoopInvariantCodeMotionOptimization {
+
+    private LoopInvariantCodeMotionOptimization() {}
+
+    /**
+     * Prefix of the temporaries that hold hoisted computations.
+     */
+    private static final String TEMP_PREFIX = "_licm";
+
+    /**
+     * The function that is called when an array is indexed out of bounds. It
+     * does not return, and so writes no memory that the loop could read.
+     */
+    private static final String OUT_OF_BOUNDS = "_xi_out_of_bounds";
+
+    /**
+     * Hoists the loop-invariant computations out of every loop of the CFG
+     * of {@code start}.
+     *
+     * @param start The {@link CFGStartNode start} node of the IR CFG.
+     * @return The same {@code start} node, with invariant computations
+     *         moved into the preheaders of the loops.
+     */
+    public static CFGStartNode optimize(CFGNode start) {
+        CFGStartNode startNode = (CFGStartNode)start;
+        run(startNode, DominatorTree.of(startNode), FreshTemps.of(startNode));
+        return startNode;
+    }
+
+    /**
+     * Hoists the loop-invariant computations out of every natural loop of
+     * the CFG of {@code start}, inner loops first.
+     * <p>
+     * An expression is invariant in a loop if every temporary that it reads
+     * is either not defined in the loop, or defined in the loop only once,
+     * by a copy of an invariant value that dominates the expression. A load
+     * is also invariant only if the loop contains no store and no call that
+     * could write memory. Each largest invariant expression that is not a
+     * temporary or a constant is computed once into a fresh temporary by a
+     * node on the edges that enter the loop, its preheader, and the
+     * temporary is read in its place. Equal invariant expressions share one
+     * temporary.
+     * <p>
+     * An expression that may fail, that is a load or a division by a value
+     * other than a constant besides 0 and -1, is only hoisted if the loop
+     * evaluates it every time it is entered: its node must dominate every
+     * node that leaves or repeats the loop, and no call may come before it in
+     * the loop. Hence the length of an array in the guard of a loop is loaded
+     * once, but loads in the body of a loop that may not run, such as a
+     * {@code while} loop whose guard is its header, are left where they are.
+     * <p>
+     * See section 18.2 of Appel.
+     *
+     * @param dominators The dominator tree of {@code start}.
+     * @param temps The names of the temporaries added to {@code start}.
+     * @return {@code true} if any computation was hoisted.
+     */
+    public static boolean run(CFGStartNode start, DominatorTree dominators,
+                              FreshTemps temps) {
+        final Hoister hoister = new Hoister(dominators, temps);
+        boolean changed = false;
+        for (NaturalLoop loop : NaturalLoop.find(dominators)) {
+            changed |= hoister.hoist(loop);
+        }
+        return changed;
+    }
+
+    private static final class Hoister {
+
+        private final DominatorTree dominators;
+        private final FreshTemps temps;
+
+        // The state of the loop being hoisted from.
+        private NaturalLoop loop;
+        private Map<String, Integer> defCounts;
+        private boolean memoryIsInvariant;
+        /**
+         * The temporaries that are defined in the loop only by a copy of an
+         * invariant value, mapped to their definitions.
+         */
+        private Map<String, CFGVarAssignNode> copies;
+        /**
+         * The hoisted expressions, mapped to the temporaries that hold them.
+         */
+        private Map<IRExpr, String> hoisted;
+        private Map<CFGNode, Boolean> evaluatedOnEntry;
+        private boolean changed;
+
+        Hoister(DominatorTree dominators, FreshTemps temps) {
+            this.dominators = dominators;
+            this.temps = temps;
+        }
+
+        boolean hoist(NaturalLoop loop) {
+            this.loop = loop;
+            this.defCounts = new HashMap<>();
+            this.memoryIsInvariant = true;
+            this.copies = new HashMap<>();
+            this.hoisted = new HashMap<>();
+            this.evaluatedOnEntry = new HashMap<>();
+            this.changed = false;
+
+            for (CFGNode node : loop.nodes()) {
+                if (node instanceof CFGBlockNode) {
+                    return false;
+                }
+                for (String def : node.defs()) {
+                    defCounts.merge(def, 1, Integer::sum);
+                }
+                if (node instanceof CFGMemAssignNode
+                        || (node instanceof CFGCallNode
+                            && !isOutOfBounds((CFGCallNode) node))) {
+                    memoryIsInvariant = false;
+                }
+            }
+
+            // Visiting the nodes in reverse postorder visits the definition
+            // of each copy before the nodes that it dominates.
+            final List<CFGNode> nodes = new ArrayList<>();
+            for (CFGNode node : dominators.nodes()) {
+                if (loop.contains(node)) {
+                    nodes.add(node);
+                }
+            }
+            for (CFGNode node : nodes) {
+                rewrite(node);
+            }
+            return changed;
+        }
+
+        private static boolean isOutOfBounds(CFGCallNode n) {
+            return n.call.target() instanceof IRName
+                && ((IRName) n.call.target()).name().equals(OUT_OF_BOUNDS);
+        }
+
+        private void rewrite(CFGNode node) {
+            final UnaryOperator<IRExpr> rewriter = expr -> hoist(expr, node);
+            if (node instanceof CFGVarAssignNode) {
+                final var n = (CFGVarAssignNode) node;
+                n.value = rewriter.apply(n.value);
+                n.refreshDfaSets();
+                if (defCounts.get(n.variable) == 1 && isLeaf(n.value)
+                        && isInvariant(n.value, node)) {
+                    copies.put(n.variable, n);
+                }
+            } else if (node instanceof CFGMemAssignNode) {
+                final var n = (CFGMemAssignNode) node;
+                if (n.target instanceof IRMem) {
+                    final IRMem target = (IRMem) n.target;
+                    final IRExpr address = rewriter.apply(target.expr());
+                    if (address != target.expr()) {
+                        n.target = new IRMem(target.location(), address,
+                            target.memType());
+                    }
+                }
+                n.value = rewriter.apply(n.value);
+                n.refreshDfaSets();
+            } else if (node instanceof CFGIfNode) {
+                final var n = (CFGIfNode) node;
+                n.cond = rewriter.apply(n.cond);
+                n.refreshDfaSets();
+            } else if (node instanceof CFGCallNode) {
+                final var n = (CFGCallNode) node;
+                final List<IRExpr> args = new ArrayList<>();
+                for (IRExpr arg : n.call.args()) {
+                    args.add(rewriter.apply(arg));
+                }
+                n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                    n.call.target(), args);
+                n.refreshDfaSets();
+            }
+        }
+
+        private static boolean isLeaf(IRExpr expr) {
+            return expr instanceof IRTemp
+                || expr instanceof IRInteger
+                || expr instanceof IRName;
+        }
+
+        /**
+         * Replaces the largest invariant expressions in {@code expr}, which
+         * is evaluated at {@code node}, by the temporaries that hold them.
+         */
+        private IRExpr hoist(IRExpr expr, CFGNode node) {
+            if (isLeaf(expr)) {
+                return expr;
+            }
+            if (isInvariant(expr, node) && (!IRExprTraps.mayFail(expr)
+                    || evaluatedOnEntry.computeIfAbsent(node,
+                        this::isEvaluatedOnEntry))) {
+                final IRExpr value = substituteCopies(expr);
+                String temp = hoisted.get(value);
+                if (temp == null) {
+                    temp = temps.next(TEMP_PREFIX);
+                    hoisted.put(value, temp);
+                    loop.insertPreheader(new CFGVarAssignNode(
+                        value.location(), temp, value, loop.header()));
+                }
+                changed = true;
+                return temps.temp(expr.location(), temp);
+            }
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final IRExpr left = hoist(binOp.left(), node);
+                final IRExpr right = hoist(binOp.right(), node);
+                return left == binOp.left() && right == binOp.right()
+                    ? expr
+                    : new IRBinOp(expr.location(), binOp.opType(), left, right);
+            }
+            if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                final IRExpr address = hoist(mem.expr(), node);
+                return address == mem.expr()
+                    ? expr
+                    : new IRMem(expr.location(), address, mem.memType());
+            }
+            if (expr instanceof IRCast) {
+                final IRCast cast = (IRCast) expr;
+                final IRExpr value = hoist(cast.getValue(), node);
+                return value == cast.getValue()
+                    ? expr
+                    : new IRCast(expr.location(), value, cast.getFromType(),
+                        cast.getTargetType());
+            }
+            return expr;
+        }
+
+        /**
+         * Returns whether {@code expr} has the same value each time that
+         * {@code node} is evaluated in the loop.
+         */
+        private boolean isInvariant(IRExpr expr, CFGNode node) {
+            if (expr instanceof IRInteger || expr instanceof IRName) {
+                return true;
+            }
+            if (expr instanceof IRTemp) {
+                final String name = ((IRTemp) expr).name();
+                if (!defCounts.containsKey(name)) {
+                    return true;
+                }
+                final CFGVarAssignNode copy = copies.get(name);
+                return copy != null
+                    && dominators.strictlyDominates(copy, node);
+            }
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                return isInvariant(binOp.left(), node)
+                    && isInvariant(binOp.right(), node);
+            }
+            if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                return (memoryIsInvariant
+                        || mem.memType() == IRMem.MemType.IMMUTABLE)
+                    && isInvariant(mem.expr(), node);
+            }
+            if (expr instanceof IRCast) {
+                return isInvariant(((IRCast) expr).getValue(), node);
+            }
+            return false;
+        }
+
+        /**
+         * Replaces the temporaries in {@code expr} that are copies defined
+         * in the loop by the values that they copy, which are available
+         * before the loop.
+         */
+        private IRExpr substituteCopies(IRExpr expr) {
+            if (expr instanceof IRTemp) {
+                final CFGVarAssignNode copy = copies.get(((IRTemp) expr).name());
+                return copy == null ? expr : substituteCopies(copy.value);
+            }
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                return new IRBinOp(expr.location(), binOp.opType(),
+                    substituteCopies(binOp.left()),
+                    substituteCopies(binOp.right()));
+            }
+            if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                return new IRMem(expr.location(),
+                    substituteCopies(mem.expr()), mem.memType());
+            }
+            if (expr instanceof IRCast) {
+                final IRCast cast = (IRCast) expr;
+                return new IRCast(expr.location(),
+                    substituteCopies(cast.getValue()),
+                    cast.getFromType(), cast.getTargetType());
+            }
+            return expr;
+        }
+
+        /**
+         * Returns whether {@code node} is evaluated each time that the loop
+         * is entered, before any call in the loop. It then dominates every
+         * node that leaves the loop or jumps back to its header, and no call
+         * in the loop reaches it without passing through the header.
+         */
+        private boolean isEvaluatedOnEntry(CFGNode node) {
+            if (!dominators.contains(node)) {
+                return false;
+            }
+            for (CFGNode other : loop.nodes()) {
+                final boolean leavesOrRepeats = other.out()
+                    .stream()
+                    .anyMatch(successor -> successor == loop.header()
+                        || !loop.contains(successor));
+                if (leavesOrRepeats && !dominators.dominates(node, other)) {
+                    return false;
+                }
+            }
+
+            final Set<CFGNode> visited = new HashSet<>();
+            final Deque<CFGNode> worklist = new ArrayDeque<>();
+            if (node != loop.header()) {
+                worklist.addAll(node.in());
+            }
+            while (!worklist.isEmpty()) {
+                final CFGNode predecessor = worklist.pop();
+                if (!loop.contains(predecessor) || !visited.add(predecessor)) {
+                    continue;
+                }
+                if (predecessor instanceof CFGCallNode) {
+                    return false;
+                }
+                if (predecessor != loop.header()) {
+                    worklist.addAll(predecessor.in());
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
@@ -1,18 +1,17 @@
 package cyr7.cfg.ir.opt;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.BiPredicate;
 
-import cyr7.cfg.ir.dfa.DfaResult;
-import cyr7.cfg.ir.dfa.WorklistAnalysis;
 import cyr7.cfg.ir.dfa.loops.BasicInductionVariableUtil;
-import cyr7.cfg.ir.dfa.loops.DominatorAnalysis;
-import cyr7.cfg.ir.dfa.loops.DominatorUtil;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
 import cyr7.cfg.ir.nodes.CFGIfNode;
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGStartNode;
@@ -34,29 +33,50 @@ public class LoopUnrollingOptimization {
 
     public static CFGStartNode optimize(CFGNode start) {
         CFGStartNode startNode = (CFGStartNode)start;
-        DfaResult<Set<CFGNode>> result =
-                WorklistAnalysis.analyze(startNode, DominatorAnalysis.INSTANCE);
-
-        Map<CFGNode, Set<CFGNode>> cleanedDominators = DominatorUtil.generateMap(result.out());
-        runIVAnalysis(cleanedDominators);
+        optimize(startNode, DominatorTree.of(startNode));
         return startNode;
     }
 
+    /**
+     * Unrolls the loops of the CFG of {@code start}, whose dominators are
+     * given by {@code dominators}.
+     *
+     * @return {@code true} if any loop was unrolled.
+     */
+    public static boolean optimize(CFGStartNode start,
+                                   DominatorTree dominators) {
+        return unrollLoops(dominators.nodes(), dominators::dominates);
+    }
+
     public static void runIVAnalysis(
             Map<CFGNode, Set<CFGNode>> dominators) {
+        unrollLoops(dominators.keySet(), (dominator, node) ->
+            dominators.containsKey(node)
+                && dominators.get(node).contains(dominator));
+    }
+
+    /**
+     * Unrolls the loops among {@code nodes}, where
+     * {@code dominates.test(d, n)} tells whether {@code d} dominates
+     * {@code n}.
+     */
+    private static boolean unrollLoops(
+            Collection<CFGNode> nodes,
+            BiPredicate<CFGNode, CFGNode> dominates) {
+
+        boolean changed = false;
 
         Set<CFGNode> nodesAnalyzed = new HashSet<>();
         Set<CFGNode> headersRemoved = new HashSet<>();
 
-        for(Map.Entry<CFGNode, Set<CFGNode>> pair: dominators.entrySet()) {
-            CFGNode node = pair.getKey();
+        for (CFGNode node: List.copyOf(nodes)) {
             for(CFGNode out: node.out()) {
                 // If there is an out edge to a dominator of this node, there's a loop
-                if (pair.getValue().contains(out) && !nodesAnalyzed.contains(out)) {
+                if (dominates.test(out, node) && !nodesAnalyzed.contains(out)) {
                     Set<CFGNode> tailNodes = new HashSet<>();
                     for (CFGNode tailNode: out.in()) {
                         // Take union of backwards search from all tailnodes from the head
-                        if (dominators.containsKey(tailNode) && dominators.get(tailNode).contains(out)) {
+                        if (dominates.test(out, tailNode)) {
                             tailNodes.add(tailNode);
                         }
                     }
@@ -64,6 +84,7 @@ public class LoopUnrollingOptimization {
                     nodesAnalyzed.addAll(reachable);
 
                     CFGNode newUnrolledHead = LoopUnrollingOptimization.optimizeLoop(out, reachable);
+                    changed |= newUnrolledHead != out;
                     for(CFGNode inc: out.in()) {
                         if (!reachable.contains(inc) && !headersRemoved.contains(inc)) {
                             inc.replaceOutEdge(out, newUnrolledHead);
@@ -74,6 +95,7 @@ public class LoopUnrollingOptimization {
                 }
             }
         }
+        return changed;
     }
 
     // Precondition: tail is dominated by head.
@@ -0,0 +1,280 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cyr7.cfg.ir.dfa.pre.LazyCodeMotion;
+import cyr7.cfg.ir.dfa.pre.LocalExpressions;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRMem;
+import cyr7.util.BitVector;
+
+public final class PartialRedundancyEliminationOptimization {
+
+    private PartialRedundancyEliminationOptimization() {}
+
+    /**
+     * Prefix of the temporaries that hold moved expressions.
+     */
+    private static final String TEMP_PREFIX = "_pre";
+
+    /**
+     * Removes the partially redundant expressions of the CFG of
+     * {@code start}.
+     *
+     * @param start The {@link CFGStartNode start} node of the IR CFG.
+     * @return The same {@code start} node, with redundant expressions
+     *         replaced by temporaries.
+     */
+    public static CFGStartNode optimize(CFGNode start) {
+        CFGStartNode startNode = (CFGStartNode)start;
+        run(startNode, LazyCodeMotion.of(startNode), FreshTemps.of(startNode));
+        return startNode;
+    }
+
+    /**
+     * Moves the expressions of the CFG of {@code start} to the placement
+     * found by lazy code motion. Each expression that some node can reuse is
+     * given a fresh temporary. The temporary is set on the edges where
+     * {@code placement} inserts the expression and by the nodes that still
+     * evaluate it, and read in place of the expression by the nodes where
+     * it is redundant. An expression that is redundant on some paths to a
+     * node is thus evaluated on the others, and one that every iteration of
+     * a loop evaluates is evaluated before the loop, without any path
+     * evaluating it more often than before.
+     * <p>
+     * Expressions that no node reuses are left alone, and so are the
+     * temporaries left without uses, for dead code elimination.
+     *
+     * @param placement The result of {@link LazyCodeMotion} on {@code start}.
+     * @param temps The names of the temporaries added to {@code start}.
+     * @return {@code true} if any expression was replaced.
+     */
+    public static boolean run(CFGStartNode start, LazyCodeMotion placement,
+                              FreshTemps temps) {
+        final LocalExpressions expressions = placement.expressions();
+        final BitVector moved = new BitVector();
+        for (CFGNode node : expressions.nodes()) {
+            if (node instanceof CFGBlockNode) {
+                return false;
+            }
+            moved.or(placement.redundant(node));
+        }
+        if (moved.isEmpty()) {
+            return false;
+        }
+
+        final Mover mover = new Mover(expressions, moved, temps);
+        for (CFGNode node : expressions.nodes()) {
+            placement.insertions(node).forEach((successor, inserted) ->
+                mover.insert(node, successor, inserted));
+        }
+        for (CFGNode node : expressions.nodes()) {
+            mover.rewrite(node, placement.redundant(node),
+                placement.latest(node));
+        }
+        return true;
+    }
+
+    private static final class Mover {
+
+        private final LocalExpressions expressions;
+        private final BitVector moved;
+        private final FreshTemps temps;
+        /**
+         * The temporaries that hold the moved expressions, by their ids.
+         */
+        private final Map<Integer, String> holders = new HashMap<>();
+
+        // The nodes to place before the node being rewritten.
+        private final List<String> placedTemps = new ArrayList<>();
+        private final List<IRExpr> placedValues = new ArrayList<>();
+
+        Mover(LocalExpressions expressions, BitVector moved,
+              FreshTemps temps) {
+            this.expressions = expressions;
+            this.moved = moved;
+            this.temps = temps;
+        }
+
+        private String temp(int id) {
+            return holders.computeIfAbsent(id, i -> temps.next(TEMP_PREFIX));
+        }
+
+        /**
+         * Evaluates {@code inserted} on the edge from {@code node} to
+         * {@code successor}. Inner expressions are numbered before the
+         * expressions that contain them, and so are evaluated first and
+         * read from their temporaries by the expressions that contain them.
+         */
+        void insert(CFGNode node, CFGNode successor, BitVector inserted) {
+            final BitVector ids = new BitVector(inserted);
+            ids.and(moved);
+            if (ids.isEmpty()) {
+                return;
+            }
+            final Map<IRExpr, IRExpr> evaluated = new HashMap<>();
+            final List<String> insertedTemps = new ArrayList<>();
+            final List<IRExpr> insertedValues = new ArrayList<>();
+            ids.forEach(id -> {
+                final IRExpr expr = expressions.expression(id);
+                insertedTemps.add(temp(id));
+                insertedValues.add(substitute(expr, evaluated));
+                evaluated.put(expr, temps.temp(expr.location(), temp(id)));
+            });
+            CFGNode next = successor;
+            for (int i = insertedTemps.size() - 1; i >= 0; i--) {
+                next = new CFGVarAssignNode(insertedValues.get(i).location(),
+                    insertedTemps.get(i), insertedValues.get(i), next);
+            }
+            node.replaceOutEdge(successor, next);
+            successor.in().remove(node);
+        }
+
+        /**
+         * Returns {@code expr} with the outermost of its subexpressions that
+         * are keys of {@code evaluated} replaced by their values.
+         */
+        private static IRExpr substitute(IRExpr expr,
+                                         Map<IRExpr, IRExpr> evaluated) {
+            final IRExpr value = evaluated.get(expr);
+            if (value != null) {
+                return value;
+            }
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                return new IRBinOp(expr.location(), binOp.opType(),
+                    substitute(binOp.left(), evaluated),
+                    substitute(binOp.right(), evaluated));
+            }
+            if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                return new IRMem(expr.location(),
+                    substitute(mem.expr(), evaluated), mem.memType());
+            }
+            if (expr instanceof IRCast) {
+                final IRCast cast = (IRCast) expr;
+                return new IRCast(expr.location(),
+                    substitute(cast.getValue(), evaluated),
+                    cast.getFromType(), cast.getTargetType());
+            }
+            return expr;
+        }
+
+        /**
+         * Replaces the {@code redundant} expressions of {@code node} by their
+         * temporaries, and sets the temporaries of its {@code latest}
+         * expressions right before it.
+         */
+        void rewrite(CFGNode node, BitVector redundant, BitVector latest) {
+            final BitVector ids = new BitVector(redundant);
+            ids.or(latest);
+            ids.and(moved);
+            if (ids.isEmpty()) {
+                return;
+            }
+            final List<CFGNode> predecessors = List.copyOf(node.in());
+            placedTemps.clear();
+            placedValues.clear();
+            if (node instanceof CFGVarAssignNode) {
+                final var n = (CFGVarAssignNode) node;
+                n.value = rewrite(n.value, redundant);
+            } else if (node instanceof CFGMemAssignNode) {
+                final var n = (CFGMemAssignNode) node;
+                if (n.target instanceof IRMem) {
+                    final IRMem target = (IRMem) n.target;
+                    final IRExpr address = rewrite(target.expr(), redundant);
+                    if (address != target.expr()) {
+                        n.target = new IRMem(target.location(), address,
+                            target.memType());
+                    }
+                } else {
+                    n.target = rewrite(n.target, redundant);
+                }
+                n.value = rewrite(n.value, redundant);
+            } else if (node instanceof CFGIfNode) {
+                final var n = (CFGIfNode) node;
+                n.cond = rewrite(n.cond, redundant);
+            } else if (node instanceof CFGCallNode) {
+                final var n = (CFGCallNode) node;
+                final List<IRExpr> args = new ArrayList<>();
+                for (IRExpr arg : n.call.args()) {
+                    args.add(rewrite(arg, redundant));
+                }
+                n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                    n.call.target(), args);
+            }
+            node.refreshDfaSets();
+
+            if (placedTemps.isEmpty()) {
+                return;
+            }
+            CFGNode next = node;
+            for (int i = placedTemps.size() - 1; i >= 0; i--) {
+                next = new CFGVarAssignNode(placedValues.get(i).location(),
+                    placedTemps.get(i), placedValues.get(i), next);
+            }
+            for (CFGNode predecessor : predecessors) {
+                predecessor.replaceOutEdge(node, next);
+                node.in().remove(predecessor);
+            }
+        }
+
+        /**
+         * Returns {@code expr} with its redundant expressions replaced by
+         * their temporaries. Every other moved expression, inner ones first,
+         * is set to its temporary before the node and read from it.
+         */
+        private IRExpr rewrite(IRExpr expr, BitVector redundant) {
+            final IRExpr rewritten;
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final IRExpr left = rewrite(binOp.left(), redundant);
+                final IRExpr right = rewrite(binOp.right(), redundant);
+                rewritten = left == binOp.left() && right == binOp.right()
+                    ? expr
+                    : new IRBinOp(expr.location(), binOp.opType(), left, right);
+            } else if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                final IRExpr address = rewrite(mem.expr(), redundant);
+                rewritten = address == mem.expr()
+                    ? expr
+                    : new IRMem(expr.location(), address, mem.memType());
+            } else if (expr instanceof IRCast) {
+                final IRCast cast = (IRCast) expr;
+                final IRExpr value = rewrite(cast.getValue(), redundant);
+                rewritten = value == cast.getValue()
+                    ? expr
+                    : new IRCast(expr.location(), value, cast.getFromType(),
+                        cast.getTargetType());
+            } else {
+                return expr;
+            }
+
+            final int id = expressions.id(expr);
+            if (id < 0 || !moved.get(id)) {
+                return rewritten;
+            }
+            final String temp = temp(id);
+            if (!redundant.get(id) && !placedTemps.contains(temp)) {
+                placedTemps.add(temp);
+                placedValues.add(rewritten);
+            }
+            return temps.temp(expr.location(), temp);
+        }
+
+    }
+
+}
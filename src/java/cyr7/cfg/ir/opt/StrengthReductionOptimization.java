@@ -0,0 +1,681 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.dfa.BlockWorklistAnalysis;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.dfa.loops.NaturalLoop;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRName;
+import cyr7.ir.nodes.IRTemp;
+
+public final class StrengthReductionOptimization {
+
+    private StrengthReductionOptimization() {}
+
+    /**
+     * Prefix of the temporaries that hold derived induction variables and
+     * the bounds that they are compared against.
+     */
+    private static final String TEMP_PREFIX = "_sr";
+
+    /**
+     * The greatest magnitude of the constants that a basic induction
+     * variable may start from and be compared against, and of the sum of its
+     * steps, for its comparisons to be replaced.
+     */
+    private static final long SMALL = Integer.MAX_VALUE;
+
+    /**
+     * The greatest factor of a derived induction variable that comparisons
+     * are replaced by, which is the size of an array element.
+     */
+    private static final long MAX_FACTOR = 8;
+
+    /**
+     * Performs strength reduction on every loop of the CFG of {@code start}.
+     *
+     * @param start The {@link CFGStartNode start} node of the IR CFG.
+     * @return The same {@code start} node, with the multiplications of
+     *         induction variables in loops replaced by additions.
+     */
+    public static CFGStartNode optimize(CFGNode start) {
+        CFGStartNode startNode = (CFGStartNode)start;
+        run(startNode, DominatorTree.of(startNode),
+            BlockWorklistAnalysis.analyze(startNode,
+                new IrLiveVariableAnalysis(startNode.temps())).asMap(),
+            FreshTemps.of(startNode));
+        return startNode;
+    }
+
+    /**
+     * Performs strength reduction on every natural loop of the CFG of
+     * {@code start}, inner loops first.
+     * <p>
+     * A basic induction variable {@code i} of a loop is one whose only
+     * definitions in the loop are {@code i = i + k} or {@code i = i - k} for
+     * constants {@code k}. Every expression {@code a + i * c} or
+     * {@code i * c} in the loop, where {@code c} is a constant and {@code a}
+     * is not defined in the loop, is replaced by a fresh temporary
+     * {@code s}, which is set to the expression in the preheader of the
+     * loop and increased by {@code k * c} right after each {@code i = i + k}.
+     * A multiplication per iteration thus becomes an addition per increment,
+     * which turns the scaled indices of array accesses into pointers that
+     * are bumped by the size of an element.
+     * <p>
+     * If afterwards {@code i} is used in the loop only by its increments and
+     * by comparisons {@code i < n} with values {@code n} that are not defined
+     * in the loop, and is not live where the loop exits, the comparisons are
+     * replaced by {@code s < a + n * c} for an {@code s} with
+     * {@code 0 < c <= 8}, and the increments of {@code i} are removed. This
+     * is only done where neither side of the new comparisons can overflow:
+     * <ul>
+     * <li>{@code i} starts from a small constant and only grows by small
+     * steps, and the loop exits as soon as the header finds that
+     * {@code i} has passed its bound,
+     * <li>every {@code n} is a small constant or holds the length of an
+     * array, and
+     * <li>{@code a} is absent or is an array whose length is one of the
+     * {@code n}.
+     * </ul>
+     * An array and its length are both bounded by the size of memory, far
+     * below 2<sup>63</sup>, so {@code i} and every {@code a + i * c} stay
+     * within the range of a 64-bit integer.
+     * <p>
+     * See section 18.3 of Appel.
+     *
+     * @param dominators The dominator tree of {@code start}.
+     * @param liveVariables The result of {@link IrLiveVariableAnalysis} on
+     *                      {@code start}.
+     * @param temps The names of the temporaries added to {@code start}.
+     * @return {@code true} if any expression was reduced.
+     */
+    public static boolean run(CFGStartNode start,
+                              DominatorTree dominators,
+                              Map<CFGNode, IrLiveVarLattice> liveVariables,
+                              FreshTemps temps) {
+        final List<NaturalLoop> loops = NaturalLoop.find(dominators);
+        final Reducer reducer = new Reducer(liveVariables, loops, temps);
+        boolean changed = false;
+        for (NaturalLoop loop : loops) {
+            changed |= reducer.reduce(loop);
+        }
+        return changed;
+    }
+
+    /**
+     * A derived induction variable {@code offset + base * factor}, held by
+     * {@code temp}. The offset is {@code null} if there is none.
+     */
+    private static final class Derived {
+        final String base;
+        final IRExpr offset;
+        final long factor;
+        final String temp;
+        final IRExpr value;
+
+        Derived(String base, IRExpr offset, long factor, String temp,
+                IRExpr value) {
+            this.base = base;
+            this.offset = offset;
+            this.factor = factor;
+            this.temp = temp;
+            this.value = value;
+        }
+    }
+
+    private static final class Reducer {
+
+        private final Map<CFGNode, IrLiveVarLattice> liveVariables;
+        private final List<NaturalLoop> loops;
+        private final Set<CFGNode> headers = new HashSet<>();
+        private final FreshTemps temps;
+
+        // The state of the loop being reduced.
+        private NaturalLoop loop;
+        private Set<String> loopDefs;
+        private Map<String, List<CFGVarAssignNode>> increments;
+        private Map<List<Object>, Derived> derived;
+
+        Reducer(Map<CFGNode, IrLiveVarLattice> liveVariables,
+                List<NaturalLoop> loops,
+                FreshTemps temps) {
+            this.liveVariables = liveVariables;
+            this.loops = loops;
+            this.temps = temps;
+            for (NaturalLoop loop : loops) {
+                headers.add(loop.header());
+            }
+        }
+
+        private String freshTemp() {
+            return temps.next(TEMP_PREFIX);
+        }
+
+        boolean reduce(NaturalLoop loop) {
+            this.loop = loop;
+            this.loopDefs = new HashSet<>();
+            this.increments = new LinkedHashMap<>();
+            this.derived = new LinkedHashMap<>();
+
+            final Map<String, Integer> defCounts = new HashMap<>();
+            for (CFGNode node : loop.nodes()) {
+                if (node instanceof CFGBlockNode) {
+                    return false;
+                }
+                for (String def : node.defs()) {
+                    loopDefs.add(def);
+                    defCounts.merge(def, 1, Integer::sum);
+                }
+                if (node instanceof CFGVarAssignNode) {
+                    final var n = (CFGVarAssignNode) node;
+                    if (n.defs().contains(n.variable) && step(n) != null) {
+                        increments.computeIfAbsent(n.variable,
+                            v -> new ArrayList<>()).add(n);
+                    }
+                }
+            }
+            increments.entrySet().removeIf(entry ->
+                entry.getValue().size() != defCounts.get(entry.getKey()));
+            if (increments.isEmpty()) {
+                return false;
+            }
+
+            for (CFGNode node : List.copyOf(loop.nodes())) {
+                rewrite(node);
+            }
+            if (derived.isEmpty()) {
+                return false;
+            }
+
+            for (Derived d : derived.values()) {
+                final var init = new CFGVarAssignNode(d.value.location(),
+                    d.temp, d.value, loop.header());
+                loop.insertPreheader(init);
+                for (CFGVarAssignNode increment : increments.get(d.base)) {
+                    final CFGNode next = increment.outNode();
+                    final IRExpr bump = new IRBinOp(increment.location(),
+                        OpType.ADD_INT,
+                        temps.temp(increment.location(), d.temp),
+                        new IRInteger(increment.location(),
+                            step(increment) * d.factor));
+                    final var update = new CFGVarAssignNode(
+                        increment.location(), d.temp, bump, next);
+                    increment.replaceOutEdge(next, update);
+                    next.in().remove(increment);
+                    loop.add(update);
+                }
+            }
+
+            for (String base : List.copyOf(increments.keySet())) {
+                eliminate(base);
+            }
+            return true;
+        }
+
+        /**
+         * Returns the constant that {@code n} adds to its variable, or
+         * {@code null} if it is not of the form {@code i = i + k} or
+         * {@code i = i - k}.
+         */
+        private static Long step(CFGVarAssignNode n) {
+            if (!(n.value instanceof IRBinOp)) {
+                return null;
+            }
+            final IRBinOp value = (IRBinOp) n.value;
+            final IRExpr left = value.left();
+            final IRExpr right = value.right();
+            if (value.opType() == OpType.ADD_INT) {
+                if (isTemp(left, n.variable) && right instanceof IRInteger) {
+                    return ((IRInteger) right).value();
+                }
+                if (isTemp(right, n.variable) && left instanceof IRInteger) {
+                    return ((IRInteger) left).value();
+                }
+            } else if (value.opType() == OpType.SUB_INT
+                    && isTemp(left, n.variable)
+                    && right instanceof IRInteger) {
+                return -((IRInteger) right).value();
+            }
+            return null;
+        }
+
+        private static boolean isTemp(IRExpr expr, String name) {
+            return expr instanceof IRTemp && ((IRTemp) expr).name().equals(name);
+        }
+
+        private boolean isInvariant(IRExpr expr) {
+            if (expr instanceof IRTemp) {
+                return !loopDefs.contains(((IRTemp) expr).name());
+            }
+            return expr instanceof IRInteger || expr instanceof IRName;
+        }
+
+        /**
+         * Returns the derived induction variable whose value is {@code expr},
+         * creating it if needed, or {@code null} if {@code expr} is not of
+         * the form {@code a + i * c} or {@code i * c}.
+         */
+        private Derived match(IRExpr expr) {
+            if (!(expr instanceof IRBinOp)) {
+                return null;
+            }
+            final IRBinOp binOp = (IRBinOp) expr;
+            if (binOp.opType() == OpType.ADD_INT) {
+                if (isInvariant(binOp.left())) {
+                    return match(expr, binOp.left(), binOp.right());
+                }
+                if (isInvariant(binOp.right())) {
+                    return match(expr, binOp.right(), binOp.left());
+                }
+                return null;
+            }
+            return match(expr, null, expr);
+        }
+
+        private Derived match(IRExpr expr, IRExpr offset, IRExpr product) {
+            if (!(product instanceof IRBinOp)
+                    || ((IRBinOp) product).opType() != OpType.MUL_INT) {
+                return null;
+            }
+            final IRExpr left = ((IRBinOp) product).left();
+            final IRExpr right = ((IRBinOp) product).right();
+            final IRTemp base;
+            final long factor;
+            if (left instanceof IRTemp && right instanceof IRInteger) {
+                base = (IRTemp) left;
+                factor = ((IRInteger) right).value();
+            } else if (right instanceof IRTemp && left instanceof IRInteger) {
+                base = (IRTemp) right;
+                factor = ((IRInteger) left).value();
+            } else {
+                return null;
+            }
+            if (!increments.containsKey(base.name())) {
+                return null;
+            }
+            return derived.computeIfAbsent(
+                Arrays.asList(base.name(), offset, factor),
+                key -> new Derived(base.name(), offset, factor, freshTemp(),
+                    expr));
+        }
+
+        /**
+         * Replaces the derived induction variables in {@code expr} by their
+         * temporaries.
+         */
+        private IRExpr reduce(IRExpr expr) {
+            final Derived d = match(expr);
+            if (d != null) {
+                return temps.temp(expr.location(), d.temp);
+            }
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final IRExpr left = reduce(binOp.left());
+                final IRExpr right = reduce(binOp.right());
+                return left == binOp.left() && right == binOp.right()
+                    ? expr
+                    : new IRBinOp(expr.location(), binOp.opType(), left, right);
+            }
+            if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                final IRExpr address = reduce(mem.expr());
+                return address == mem.expr()
+                    ? expr
+                    : new IRMem(expr.location(), address, mem.memType());
+            }
+            if (expr instanceof IRCast) {
+                final IRCast cast = (IRCast) expr;
+                final IRExpr value = reduce(cast.getValue());
+                return value == cast.getValue()
+                    ? expr
+                    : new IRCast(expr.location(), value, cast.getFromType(),
+                        cast.getTargetType());
+            }
+            return expr;
+        }
+
+        private void rewrite(CFGNode node) {
+            if (node instanceof CFGVarAssignNode) {
+                final var n = (CFGVarAssignNode) node;
+                n.value = reduce(n.value);
+            } else if (node instanceof CFGMemAssignNode) {
+                final var n = (CFGMemAssignNode) node;
+                n.target = reduce(n.target);
+                n.value = reduce(n.value);
+            } else if (node instanceof CFGIfNode) {
+                final var n = (CFGIfNode) node;
+                n.cond = reduce(n.cond);
+            } else if (node instanceof CFGCallNode) {
+                final var n = (CFGCallNode) node;
+                final List<IRExpr> args = new ArrayList<>();
+                for (IRExpr arg : n.call.args()) {
+                    args.add(reduce(arg));
+                }
+                n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                    n.call.target(), args);
+            }
+            node.refreshDfaSets();
+        }
+
+        /**
+         * Replaces the comparisons of the basic induction variable
+         * {@code base} by comparisons of one of its derived induction
+         * variables, and removes its increments, if it is used for nothing
+         * else and the new comparisons cannot overflow.
+         */
+        private void eliminate(String base) {
+            final List<CFGIfNode> comparisons = new ArrayList<>();
+            final List<CFGVarAssignNode> baseIncrements = increments.get(base);
+            for (CFGVarAssignNode increment : baseIncrements) {
+                // The headers of the loops must stay in place.
+                if (headers.contains(increment)) {
+                    return;
+                }
+            }
+            for (CFGNode node : loop.nodes()) {
+                if (!node.uses().contains(base)
+                        || baseIncrements.contains(node)) {
+                    continue;
+                }
+                if (node instanceof CFGIfNode
+                        && bound((CFGIfNode) node, base) != null) {
+                    comparisons.add((CFGIfNode) node);
+                } else {
+                    return;
+                }
+            }
+            for (CFGNode exit : loop.exits()) {
+                if (isLiveIn(base, exit)) {
+                    return;
+                }
+            }
+            if (!isBounded(base, comparisons)) {
+                return;
+            }
+            final Derived d = derived.values()
+                .stream()
+                .filter(candidate -> candidate.base.equals(base)
+                    && candidate.factor > 0
+                    && candidate.factor <= MAX_FACTOR
+                    && (candidate.offset == null
+                        || isArray(candidate.offset, comparisons, base)))
+                .findFirst()
+                .orElse(null);
+            if (d == null) {
+                return;
+            }
+
+            for (CFGIfNode comparison : comparisons) {
+                final IRBinOp cond = (IRBinOp) comparison.cond;
+                final IRExpr bound = bound(comparison, base);
+                final IRExpr scaled = scale(d, bound);
+                final IRExpr reduced = temps.temp(cond.location(), d.temp);
+                comparison.cond = isTemp(cond.left(), base)
+                    ? new IRBinOp(cond.location(), cond.opType(), reduced, scaled)
+                    : new IRBinOp(cond.location(), cond.opType(), scaled, reduced);
+                comparison.refreshDfaSets();
+            }
+            for (CFGVarAssignNode increment : baseIncrements) {
+                final CFGNode next = increment.outNode();
+                for (CFGNode predecessor : List.copyOf(increment.in())) {
+                    predecessor.replaceOutEdge(increment, next);
+                }
+                next.in().remove(increment);
+                loop.remove(increment);
+            }
+            increments.remove(base);
+        }
+
+        /**
+         * Returns {@code n} if {@code node} branches on a comparison
+         * {@code base < n}, {@code n < base} or the like, where {@code n} is
+         * not defined in the loop, and {@code null} otherwise.
+         */
+        private IRExpr bound(CFGIfNode node, String base) {
+            if (!(node.cond instanceof IRBinOp)) {
+                return null;
+            }
+            final IRBinOp cond = (IRBinOp) node.cond;
+            switch (cond.opType()) {
+                case LT:
+                case LEQ:
+                case GT:
+                case GEQ:
+                case EQ:
+                case NEQ:
+                    break;
+                default:
+                    return null;
+            }
+            if (isTemp(cond.left(), base) && isInvariant(cond.right())) {
+                return cond.right();
+            }
+            if (isTemp(cond.right(), base) && isInvariant(cond.left())) {
+                return cond.left();
+            }
+            return null;
+        }
+
+        /**
+         * Returns whether {@code base} starts from a small constant, only
+         * grows by small steps, is compared by the header of the loop against
+         * a bound that it must not pass, and is only compared against small
+         * constants and lengths of arrays. The values of {@code base} in the
+         * loop then lie between its start and the bound of the header plus
+         * its steps.
+         */
+        private boolean isBounded(String base, List<CFGIfNode> comparisons) {
+            if (!isSmall(entryValue(base))) {
+                return false;
+            }
+            long steps = 0;
+            for (CFGVarAssignNode increment : increments.get(base)) {
+                final long step = step(increment);
+                if (step <= 0 || isInInnerLoop(increment)) {
+                    return false;
+                }
+                steps += Math.min(step, SMALL + 1);
+            }
+            if (steps > SMALL) {
+                return false;
+            }
+            if (!(loop.header() instanceof CFGIfNode)
+                    || !comparisons.contains(loop.header())
+                    || !isUpperBound((CFGIfNode) loop.header(), base)) {
+                return false;
+            }
+            for (CFGIfNode comparison : comparisons) {
+                final IRExpr bound = bound(comparison, base);
+                if (!isSmall(bound) && length(bound) == null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isSmall(IRExpr expr) {
+            return expr instanceof IRInteger
+                && Math.abs(((IRInteger) expr).value()) <= SMALL;
+        }
+
+        /**
+         * Returns the value that {@code variable} is set to on every path
+         * into the loop, or {@code null} if it is unknown. Only the path of
+         * nodes with a single predecessor that leads to the loop is searched,
+         * and the value is only returned if the variables that it uses keep
+         * their values until the loop.
+         */
+        private IRExpr entryValue(String variable) {
+            CFGNode node = null;
+            for (CFGNode entry : loop.header().in()) {
+                if (!loop.contains(entry)) {
+                    if (node != null) {
+                        return null;
+                    }
+                    node = entry;
+                }
+            }
+            final Set<CFGNode> visited = new HashSet<>();
+            final Set<String> redefined = new HashSet<>();
+            while (node != null && visited.add(node)) {
+                if (node.defs().contains(variable)) {
+                    if (!(node instanceof CFGVarAssignNode)) {
+                        return null;
+                    }
+                    for (String use : node.uses()) {
+                        if (redefined.contains(use)) {
+                            return null;
+                        }
+                    }
+                    return ((CFGVarAssignNode) node).value;
+                }
+                redefined.addAll(node.defs());
+                node = node.in().size() == 1 ? node.in().get(0) : null;
+            }
+            return null;
+        }
+
+        /**
+         * Returns whether {@code node} is in a loop nested in the loop being
+         * reduced, where it may run more than once per iteration.
+         */
+        private boolean isInInnerLoop(CFGNode node) {
+            for (NaturalLoop inner : loops) {
+                if (inner.header() != loop.header()
+                        && loop.contains(inner.header())
+                        && inner.contains(node)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns whether {@code header} stays in the loop only while
+         * {@code base} has not passed its bound, that is while
+         * {@code base < n} or {@code base <= n}.
+         */
+        private boolean isUpperBound(CFGIfNode header, String base) {
+            final IRBinOp cond = (IRBinOp) header.cond;
+            final boolean left = isTemp(cond.left(), base);
+            final boolean staysIfTrue = loop.contains(header.trueBranch())
+                && !loop.contains(header.falseBranch());
+            final boolean staysIfFalse = loop.contains(header.falseBranch())
+                && !loop.contains(header.trueBranch());
+            switch (cond.opType()) {
+                case LT:
+                case LEQ:
+                    return left ? staysIfTrue : staysIfFalse;
+                case GT:
+                case GEQ:
+                    return left ? staysIfFalse : staysIfTrue;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Returns {@code a} if {@code bound} is a temporary that holds the
+         * length {@code MEM(a - 8)} of an array {@code a} on entry to the
+         * loop, and {@code null} otherwise.
+         */
+        private String length(IRExpr bound) {
+            if (!(bound instanceof IRTemp)) {
+                return null;
+            }
+            final IRExpr value = entryValue(((IRTemp) bound).name());
+            if (!(value instanceof IRMem)
+                    || !(((IRMem) value).expr() instanceof IRBinOp)) {
+                return null;
+            }
+            final IRBinOp address = (IRBinOp) ((IRMem) value).expr();
+            if (address.opType() == OpType.SUB_INT
+                    && address.left() instanceof IRTemp
+                    && address.right() instanceof IRInteger
+                    && ((IRInteger) address.right()).value() == 8) {
+                return ((IRTemp) address.left()).name();
+            }
+            return null;
+        }
+
+        /**
+         * Returns whether {@code offset} is an array whose length is
+         * compared against {@code base} by one of {@code comparisons}.
+         */
+        private boolean isArray(IRExpr offset, List<CFGIfNode> comparisons,
+                                String base) {
+            if (!(offset instanceof IRTemp)) {
+                return false;
+            }
+            for (CFGIfNode comparison : comparisons) {
+                if (((IRTemp) offset).name().equals(
+                        length(bound(comparison, base)))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the value that {@code d} has when its base induction
+         * variable is {@code bound}. Unless it is a constant, the value is
+         * computed into a fresh temporary in the preheader of the loop.
+         */
+        private IRExpr scale(Derived d, IRExpr bound) {
+            final var location = bound.location();
+            if (d.offset == null && bound instanceof IRInteger) {
+                return new IRInteger(location,
+                    ((IRInteger) bound).value() * d.factor);
+            }
+            IRExpr value = new IRBinOp(location, OpType.MUL_INT, bound,
+                new IRInteger(location, d.factor));
+            if (d.offset != null) {
+                value = new IRBinOp(location, OpType.ADD_INT, d.offset, value);
+            }
+            final String temp = freshTemp();
+            loop.insertPreheader(new CFGVarAssignNode(location, temp, value,
+                loop.header()));
+            return temps.temp(location, temp);
+        }
+
+        /**
+         * Returns whether {@code variable} is live on entry to {@code node}.
+         * Nodes that were added after the live variables were computed are
+         * assumed to use every variable.
+         */
+        private boolean isLiveIn(String variable, CFGNode node) {
+            if (node.uses().contains(variable)) {
+                return true;
+            }
+            final IrLiveVarLattice liveOut = liveVariables.get(node);
+            return liveOut == null
+                || (liveOut.isLive(variable)
+                    && !node.defs().contains(variable));
+        }
+
+    }
+
+}
@@ -0,0 +1,770 @@
+package cyr7.cfg.ir.opt;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.nodes.CFGBlockNode;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGSelfLoopNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.visitor.IrCFGVisitor;
+import cyr7.ir.interpret.Configuration;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRName;
+import cyr7.ir.nodes.IRTemp;
+
+public final class ValueNumberingOptimization {
+
+    private ValueNumberingOptimization() {}
+
+    /**
+     * Prefix of the temporaries that hold values which are computed more than
+     * once.
+     */
+    private static final String TEMP_PREFIX = "_vn";
+
+    /**
+     * Performs one passing of global value numbering.
+     *
+     * @param start The {@link CFGStartNode start} node of the IR CFG.
+     * @return The same {@code start} node, but with redundant expressions
+     *         replaced by temporaries.
+     */
+    public static CFGStartNode optimize(CFGNode start) {
+        CFGStartNode startNode = (CFGStartNode)start;
+        run(startNode, DominatorTree.of(startNode), FreshTemps.of(startNode));
+        return startNode;
+    }
+
+    /**
+     * Performs one passing of global value numbering over the CFG of
+     * {@code start}, whose dominator tree is {@code dominators}.
+     * <p>
+     * The nodes are visited in a preorder walk of the dominator tree. An
+     * expression whose value has already been computed by a dominating node,
+     * or earlier in the same node, is replaced by a temporary that holds the
+     * value. If the earlier computation was not assigned to a temporary that
+     * still holds the value, it is moved into a fresh temporary that is
+     * assigned just before the earlier node.
+     * <p>
+     * Two expressions have the same value if they apply the same operator to
+     * operands with the same values. A temporary that is defined once has
+     * the same value wherever its definition dominates. Any other
+     * temporary, and memory, is labelled at each node with the definition,
+     * store or call that it was last changed by, or with the node where the
+     * values of several predecessors meet. Two reads of it with the same
+     * label see the same value, so stores and calls kill the loads before
+     * them, and redefinitions kill the expressions over the temporary.
+     * <p>
+     * Inside a {@link CFGBlockNode}, values are numbered from one statement
+     * to the next, but no computation is moved out of the block.
+     *
+     * @param temps The names of the temporaries added to {@code start}.
+     * @return {@code true} if any expression was replaced.
+     */
+    public static boolean run(CFGStartNode start, DominatorTree dominators,
+                              FreshTemps temps) {
+        return run(start, dominators, temps, null);
+    }
+
+    /**
+     * Performs one passing of global value numbering over the CFG of
+     * {@code start}, as {@link #run(CFGStartNode, DominatorTree, FreshTemps)}
+     * does, where {@code form} is the SSA form of {@code start}, or
+     * {@code null} if it is not in SSA form. A computation that is moved
+     * before a node with phi-functions takes the phi-functions with it, so
+     * that it still sees their targets.
+     */
+    public static boolean run(CFGStartNode start, DominatorTree dominators,
+                              FreshTemps temps, SSAForm form) {
+        return new ValueNumberingVisitor(start, dominators, temps, form).run();
+    }
+
+    /**
+     * The value of an expression.
+     */
+    private static final class Value {
+
+        private final int id;
+
+        /**
+         * The temporary that holds this value, or {@code null} if there is
+         * none yet.
+         */
+        private String holder;
+
+        /**
+         * The label of {@link #holder} while it holds this value, or
+         * {@link #STABLE} if the holder is only defined once.
+         */
+        private int holderLabel = STABLE;
+
+        /**
+         * The statement that computes this value in {@link #occurrence}, or
+         * {@code null} if the value is that of a temporary or constant.
+         */
+        private CFGNode host;
+        private IRExpr occurrence;
+
+        /**
+         * Whether {@link #occurrence} can be moved into a temporary that is
+         * assigned before {@link #host}.
+         */
+        private boolean movable;
+
+        private Value(int id) {
+            this.id = id;
+        }
+
+    }
+
+    private static final int STABLE = -1;
+
+    /**
+     * An expression with its temporaries replaced, and its value.
+     */
+    private static final class Numbered {
+
+        private final IRExpr expr;
+        private final Value value;
+
+        private Numbered(IRExpr expr, Value value) {
+            this.expr = expr;
+            this.value = value;
+        }
+
+    }
+
+    private static final class ValueNumberingVisitor implements IrCFGVisitor<Void> {
+
+        private final CFGStartNode start;
+        private final DominatorTree dominators;
+        private final FreshTemps temps;
+        private final SSAForm form;
+
+        /**
+         * The reachable node that defines each temporary that is defined
+         * exactly once.
+         */
+        private final Map<String, CFGNode> definitions = new HashMap<>();
+
+        /**
+         * The index of the label of each temporary that is defined more than
+         * once. Index {@code 0} is the label of memory.
+         */
+        private final Map<String, Integer> labelled = new HashMap<>();
+
+        private final Map<CFGNode, int[]> labelsIn = new HashMap<>();
+        private final Map<CFGNode, int[]> labelsOut = new HashMap<>();
+        private int labelCount = 1;
+
+        private final Map<List<Object>, Value> table = new HashMap<>();
+        private final Map<CFGNode, Map<IRExpr, Value>> occurrences = new HashMap<>();
+        private int valueCount = 0;
+
+        /**
+         * The keys recorded while visiting the current node of the dominator
+         * tree, and the values that they shadowed.
+         */
+        private List<Map.Entry<List<Object>, Value>> recorded;
+
+        /**
+         * The values of the expression being numbered, which are recorded
+         * once it is back in its statement.
+         */
+        private final Map<List<Object>, Value> pending = new LinkedHashMap<>();
+
+        private CFGNode node;
+        private CFGNode statement;
+        private int[] labels;
+        private Set<String> definedInBlock = null;
+        private boolean changed = false;
+
+        private ValueNumberingVisitor(CFGStartNode start,
+                                      DominatorTree dominators,
+                                      FreshTemps temps,
+                                      SSAForm form) {
+            this.start = start;
+            this.dominators = dominators;
+            this.temps = temps;
+            this.form = form;
+        }
+
+        private boolean run() {
+            findDefinitions();
+            computeLabels();
+
+            final Deque<CFGNode> stack = new ArrayDeque<>();
+            final Map<CFGNode, List<Map.Entry<List<Object>, Value>>> undo =
+                new HashMap<>();
+            stack.push(start);
+            while (!stack.isEmpty()) {
+                final CFGNode top = stack.peek();
+                final var recordedAtTop = undo.get(top);
+                if (recordedAtTop == null) {
+                    recorded = new ArrayList<>();
+                    undo.put(top, recorded);
+                    node = top;
+                    top.accept(this);
+                    for (CFGNode child : dominators.children(top)) {
+                        stack.push(child);
+                    }
+                } else {
+                    stack.pop();
+                    for (int i = recordedAtTop.size() - 1; i >= 0; i--) {
+                        final var entry = recordedAtTop.get(i);
+                        if (entry.getValue() == null) {
+                            table.remove(entry.getKey());
+                        } else {
+                            table.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private static List<CFGNode> statements(CFGNode n) {
+            if (!(n instanceof CFGBlockNode)) {
+                return List.of(n);
+            }
+            final List<CFGNode> statements = new ArrayList<>();
+            CFGNode statement = ((CFGBlockNode) n).block;
+            while (!(statement instanceof CFGStubNode)) {
+                statements.add(statement);
+                statement = statement.out().get(0);
+            }
+            return statements;
+        }
+
+        private void findDefinitions() {
+            final Map<String, Integer> counts = new HashMap<>();
+            for (CFGNode n : dominators.nodes()) {
+                for (CFGNode statement : statements(n)) {
+                    for (String def : statement.defs()) {
+                        if (counts.merge(def, 1, Integer::sum) == 1) {
+                            definitions.put(def, n);
+                        } else {
+                            definitions.remove(def);
+                            labelled.putIfAbsent(def, labelled.size() + 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Labels memory and each temporary that is defined more than once on
+         * entry to every statement. A node takes the labels of its forward
+         * predecessors where they agree and a label of its own where they do
+         * not. A node that is entered by a back edge takes labels of its own
+         * throughout. A label is therefore only found at nodes that are
+         * dominated by the node that created it.
+         */
+        private void computeLabels() {
+            final List<CFGNode> nodes = dominators.nodes();
+            final Map<CFGNode, Integer> order = new HashMap<>(nodes.size() * 2);
+            for (int i = 0; i < nodes.size(); i++) {
+                order.put(nodes.get(i), i);
+            }
+
+            for (int i = 0; i < nodes.size(); i++) {
+                final CFGNode n = nodes.get(i);
+                int[] in = null;
+                if (i == 0) {
+                    in = new int[labelled.size() + 1];
+                } else {
+                    boolean loopHeader = false;
+                    int merge = 0;
+                    for (CFGNode predecessor : n.in()) {
+                        final Integer p = order.get(predecessor);
+                        if (p == null) {
+                            continue;
+                        }
+                        if (p >= i) {
+                            loopHeader = true;
+                            break;
+                        }
+                        final int[] out = labelsOut.get(predecessor);
+                        if (in == null) {
+                            in = out;
+                        } else if (!Arrays.equals(in, out)) {
+                            if (merge == 0) {
+                                merge = labelCount++;
+                            }
+                            final int[] meet = in.clone();
+                            for (int k = 0; k < meet.length; k++) {
+                                if (meet[k] != out[k]) {
+                                    meet[k] = merge;
+                                }
+                            }
+                            in = meet;
+                        }
+                    }
+                    if (loopHeader) {
+                        in = new int[labelled.size() + 1];
+                        Arrays.fill(in, labelCount++);
+                    }
+                }
+
+                for (CFGNode statement : statements(n)) {
+                    labelsIn.put(statement, in);
+                    in = transfer(statement, in);
+                    labelsOut.put(statement, in);
+                }
+                labelsOut.put(n, in);
+            }
+        }
+
+        private int[] transfer(CFGNode statement, int[] in) {
+            int[] out = in;
+            if (statement instanceof CFGMemAssignNode
+                    || statement instanceof CFGCallNode) {
+                out = in.clone();
+                out[0] = labelCount++;
+            }
+            for (String def : statement.defs()) {
+                final Integer index = labelled.get(def);
+                if (index != null) {
+                    if (out == in) {
+                        out = in.clone();
+                    }
+                    out[index] = labelCount++;
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Returns whether the temporary {@code name}, which is defined at
+         * most once, is defined before the current statement on every path.
+         */
+        private boolean isDefinedBefore(String name) {
+            final CFGNode definition = definitions.get(name);
+            if (definition == null) {
+                return true;
+            }
+            if (definition == node) {
+                return definedInBlock != null && definedInBlock.contains(name);
+            }
+            return dominators.strictlyDominates(definition, node);
+        }
+
+        private static boolean isHolder(String name) {
+            return !name.startsWith(Configuration.ABSTRACT_ARG_PREFIX)
+                && !name.startsWith(Configuration.ABSTRACT_RET_PREFIX)
+                && !name.equals("_");
+        }
+
+        private void record(List<Object> key, Value value) {
+            recorded.add(new SimpleEntry<>(key, table.put(key, value)));
+        }
+
+        private List<Object> tempKey(String name) {
+            final Integer index = labelled.get(name);
+            if (index != null) {
+                return List.of("temp", name, labels[index]);
+            }
+            return isDefinedBefore(name) ? List.of("temp", name) : null;
+        }
+
+        private static boolean isCommutative(OpType op) {
+            switch (op) {
+                case ADD_INT:
+                case MUL_INT:
+                case HMUL_INT:
+                case AND:
+                case OR:
+                case XOR:
+                case EQ:
+                case NEQ:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static List<Object> binOpKey(OpType op, Value left, Value right) {
+            if (isCommutative(op) && left.id > right.id) {
+                return List.of(op, right.id, left.id);
+            }
+            return List.of(op, left.id, right.id);
+        }
+
+        private List<Object> memKey(IRMem mem, Value address) {
+            if (mem.memType() == IRMem.MemType.IMMUTABLE) {
+                return List.of(mem.memType(), address.id);
+            }
+            return List.of(mem.memType(), address.id, labels[0]);
+        }
+
+        private static List<Object> leafKey(IRExpr expr) {
+            if (expr instanceof IRInteger) {
+                return List.of("int", ((IRInteger) expr).value());
+            } else {
+                return List.of("name", ((IRName) expr).name());
+            }
+        }
+
+        /**
+         * Returns the value of {@code expr} if it has already been computed,
+         * or {@code null}.
+         */
+        private Value lookup(IRExpr expr) {
+            if (expr instanceof IRTemp) {
+                final List<Object> key = tempKey(((IRTemp) expr).name());
+                return key == null ? null : table.get(key);
+            } else if (expr instanceof IRInteger || expr instanceof IRName) {
+                return table.get(leafKey(expr));
+            } else if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final Value left = lookup(binOp.left());
+                final Value right = left == null ? null : lookup(binOp.right());
+                return right == null
+                    ? null
+                    : table.get(binOpKey(binOp.opType(), left, right));
+            } else if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                final Value address = lookup(mem.expr());
+                return address == null ? null : table.get(memKey(mem, address));
+            }
+            return null;
+        }
+
+        private Value leaf(List<Object> key) {
+            if (key == null) {
+                return null;
+            }
+            Value value = table.get(key);
+            if (value == null) {
+                value = new Value(valueCount++);
+                record(key, value);
+            }
+            return value;
+        }
+
+        private Value computed(List<Object> key, IRExpr occurrence) {
+            final Value existing = pending.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            final Value value = new Value(valueCount++);
+            value.host = statement;
+            value.occurrence = occurrence;
+            value.movable = definedInBlock == null;
+            pending.put(key, value);
+            return value;
+        }
+
+        /**
+         * Replaces the subexpressions of {@code expr} whose values are held
+         * by temporaries, and numbers the rest.
+         */
+        private Numbered number(IRExpr expr) {
+            if (expr instanceof IRTemp) {
+                return new Numbered(expr, leaf(tempKey(((IRTemp) expr).name())));
+            } else if (expr instanceof IRInteger || expr instanceof IRName) {
+                return new Numbered(expr, leaf(leafKey(expr)));
+            } else if (!(expr instanceof IRBinOp || expr instanceof IRMem)) {
+                return new Numbered(expr, null);
+            }
+
+            final Value available = lookup(expr);
+            if (available != null) {
+                final String holder = holder(available);
+                if (holder != null) {
+                    changed = true;
+                    return new Numbered(temps.temp(expr.location(), holder),
+                        available);
+                }
+            }
+
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final Numbered left = number(binOp.left());
+                final Numbered right = number(binOp.right());
+                final IRExpr numbered =
+                    left.expr == binOp.left() && right.expr == binOp.right()
+                        ? binOp
+                        : new IRBinOp(binOp.location(), binOp.opType(),
+                            left.expr, right.expr);
+                if (left.value == null || right.value == null) {
+                    return new Numbered(numbered, null);
+                }
+                return new Numbered(numbered, computed(
+                    binOpKey(binOp.opType(), left.value, right.value), numbered));
+            } else {
+                final IRMem mem = (IRMem) expr;
+                final Numbered address = number(mem.expr());
+                final IRExpr numbered = address.expr == mem.expr()
+                    ? mem
+                    : new IRMem(mem.location(), address.expr, mem.memType());
+                if (address.value == null) {
+                    return new Numbered(numbered, null);
+                }
+                return new Numbered(numbered,
+                    computed(memKey(mem, address.value), numbered));
+            }
+        }
+
+        /**
+         * Records the values of the expression that has just been numbered,
+         * which is now in its statement.
+         */
+        private void recordPending() {
+            pending.forEach((key, value) -> {
+                occurrences.computeIfAbsent(value.host, h -> new IdentityHashMap<>())
+                    .put(value.occurrence, value);
+                record(key, value);
+            });
+            pending.clear();
+        }
+
+        /**
+         * Returns a temporary that holds {@code value} at the current
+         * statement, moving its computation into a fresh temporary if needed,
+         * or {@code null} if there is none.
+         */
+        private String holder(Value value) {
+            if (value.holder != null && (value.holderLabel == STABLE
+                    || labels[labelled.get(value.holder)] == value.holderLabel)) {
+                return value.holder;
+            }
+            if (value.host == null || !value.movable) {
+                return null;
+            }
+
+            final CFGNode host = value.host;
+            final IRExpr occurrence = value.occurrence;
+            final String temp = temps.next(TEMP_PREFIX);
+            substitute(host, occurrence, temps.temp(occurrence.location(), temp));
+
+            final CFGVarAssignNode computation = new CFGVarAssignNode(
+                occurrence.location(), temp, occurrence, host);
+            for (CFGNode predecessor : List.copyOf(host.in())) {
+                if (predecessor != computation) {
+                    predecessor.replaceOutEdge(host, computation);
+                    host.in().remove(predecessor);
+                }
+            }
+            if (form != null) {
+                form.movePhis(host, computation);
+            }
+            moveOccurrences(occurrence, host, computation);
+
+            value.holder = temp;
+            value.holderLabel = STABLE;
+            return temp;
+        }
+
+        private void moveOccurrences(IRExpr expr, CFGNode from, CFGNode to) {
+            final Map<IRExpr, Value> fromOccurrences = occurrences.get(from);
+            final Value value = fromOccurrences.remove(expr);
+            if (value != null) {
+                value.host = to;
+                occurrences.computeIfAbsent(to, h -> new IdentityHashMap<>())
+                    .put(expr, value);
+            }
+            if (expr instanceof IRBinOp) {
+                moveOccurrences(((IRBinOp) expr).left(), from, to);
+                moveOccurrences(((IRBinOp) expr).right(), from, to);
+            } else if (expr instanceof IRMem) {
+                moveOccurrences(((IRMem) expr).expr(), from, to);
+            }
+        }
+
+        /**
+         * Replaces {@code target} in the statement {@code host} by
+         * {@code replacement}.
+         */
+        private void substitute(CFGNode host, IRExpr target, IRExpr replacement) {
+            final Map<IRExpr, Value> hosted = occurrences.get(host);
+            if (host instanceof CFGVarAssignNode) {
+                final var n = (CFGVarAssignNode) host;
+                n.value = substitute(hosted, n.value, target, replacement);
+            } else if (host instanceof CFGMemAssignNode) {
+                final var n = (CFGMemAssignNode) host;
+                n.target = substitute(hosted, n.target, target, replacement);
+                n.value = substitute(hosted, n.value, target, replacement);
+            } else if (host instanceof CFGIfNode) {
+                final var n = (CFGIfNode) host;
+                n.cond = substitute(hosted, n.cond, target, replacement);
+            } else if (host instanceof CFGCallNode) {
+                final var n = (CFGCallNode) host;
+                final List<IRExpr> args = new ArrayList<>();
+                for (IRExpr arg : n.call.args()) {
+                    args.add(substitute(hosted, arg, target, replacement));
+                }
+                n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                    n.call.target(), args);
+            }
+            host.refreshDfaSets();
+        }
+
+        /**
+         * Replaces {@code target} in {@code expr}, keeping track of the values
+         * of the rebuilt expressions.
+         */
+        private static IRExpr substitute(Map<IRExpr, Value> hosted,
+                                         IRExpr expr,
+                                         IRExpr target,
+                                         IRExpr replacement) {
+            if (expr == target) {
+                return replacement;
+            }
+            final IRExpr rebuilt;
+            if (expr instanceof IRBinOp) {
+                final IRBinOp binOp = (IRBinOp) expr;
+                final IRExpr left = substitute(hosted, binOp.left(), target, replacement);
+                final IRExpr right = substitute(hosted, binOp.right(), target, replacement);
+                if (left == binOp.left() && right == binOp.right()) {
+                    return expr;
+                }
+                rebuilt = new IRBinOp(binOp.location(), binOp.opType(), left, right);
+            } else if (expr instanceof IRMem) {
+                final IRMem mem = (IRMem) expr;
+                final IRExpr address = substitute(hosted, mem.expr(), target, replacement);
+                if (address == mem.expr()) {
+                    return expr;
+                }
+                rebuilt = new IRMem(mem.location(), address, mem.memType());
+            } else {
+                return expr;
+            }
+            final Value value = hosted.remove(expr);
+            if (value != null) {
+                value.occurrence = rebuilt;
+                hosted.put(rebuilt, value);
+            }
+            return rebuilt;
+        }
+
+        private void enter(CFGNode statement) {
+            this.statement = statement;
+            this.labels = labelsIn.get(statement);
+        }
+
+        @Override
+        public Void visit(CFGCallNode n) {
+            enter(n);
+            for (int i = 0; i < n.call.args().size(); i++) {
+                final IRExpr arg = number(n.call.args().get(i)).expr;
+                final List<IRExpr> args = new ArrayList<>(n.call.args());
+                args.set(i, arg);
+                n.call = new IRCallStmt(n.location(), n.call.collectors(),
+                    n.call.target(), args);
+                recordPending();
+            }
+            n.refreshDfaSets();
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGIfNode n) {
+            enter(n);
+            n.cond = number(n.cond).expr;
+            n.refreshDfaSets();
+            recordPending();
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGVarAssignNode n) {
+            enter(n);
+            final Numbered value = number(n.value);
+            n.value = value.expr;
+            n.refreshDfaSets();
+            if (value.value == null || !n.defs().contains(n.variable)) {
+                recordPending();
+                return null;
+            }
+
+            final Integer index = labelled.get(n.variable);
+            final int label = index == null ? STABLE : labelsOut.get(n)[index];
+            if (value.value.holder == null
+                    && value.value.host == n
+                    && value.value.occurrence == n.value
+                    && isHolder(n.variable)) {
+                value.value.holder = n.variable;
+                value.value.holderLabel = label;
+            }
+            recordPending();
+            record(index == null
+                ? List.of("temp", n.variable)
+                : List.of("temp", n.variable, label), value.value);
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGMemAssignNode n) {
+            enter(n);
+            if (n.target instanceof IRMem) {
+                final IRMem target = (IRMem) n.target;
+                final IRExpr address = number(target.expr()).expr;
+                if (address != target.expr()) {
+                    n.target = new IRMem(target.location(), address,
+                        target.memType());
+                }
+            } else {
+                n.target = number(n.target).expr;
+            }
+            recordPending();
+            n.value = number(n.value).expr;
+            n.refreshDfaSets();
+            recordPending();
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGBlockNode n) {
+            definedInBlock = new HashSet<>();
+            for (CFGNode statement : statements(n)) {
+                statement.accept(this);
+                definedInBlock.addAll(statement.defs());
+            }
+            definedInBlock = null;
+            n.refreshDfaSets();
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGReturnNode n) {
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGStartNode n) {
+            return null;
+        }
+
+        @Override
+        public Void visit(CFGSelfLoopNode n) {
+            return null;
+        }
+
+    }
+
+}
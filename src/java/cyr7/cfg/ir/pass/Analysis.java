@@ -0,0 +1,37 @@
+package cyr7.cfg.ir.pass;
+
+/**
+ * An analysis of the CFG of a function whose result may be shared by the
+ * passes that run over the CFG, until a pass changes the CFG in a way that
+ * invalidates it.
+ *
+ * @see FunctionAnalyses
+ */
+public enum Analysis {
+
+    /**
+     * The constant values of the variables on entry to each node, and
+     * whether the node is reachable, computed by
+     * {@link cyr7.cfg.ir.dfa.CCPAnalysis}.
+     */
+    CONSTANTS,
+
+    /**
+     * The copies available on entry to each node, computed by
+     * {@link cyr7.cfg.ir.dfa.CopyPropagationAnalysis}.
+     */
+    COPIES,
+
+    /**
+     * The variables live on exit from each node, computed by
+     * {@link cyr7.cfg.ir.dfa.IrLiveVariableAnalysis}.
+     */
+    LIVE_VARIABLES,
+
+    /**
+     * The dominator tree, computed by
+     * {@link cyr7.cfg.ir.dfa.loops.DominatorTree}.
+     */
+    DOMINATORS
+
+}
@@ -0,0 +1,51 @@
+package cyr7.cfg.ir.pass;
+
+import java.util.Set;
+
+import cyr7.cfg.ir.nodes.CFGStartNode;
+
+/**
+ * A transformation of the CFG of a function, run by the
+ * {@link PassManager}.
+ */
+public interface CFGPass {
+
+    /**
+     * Returns the name of the pass in a {@link Pipeline} description.
+     */
+    String name();
+
+    /**
+     * Returns a description of the pass, under which its timings are
+     * recorded.
+     */
+    default String description() {
+        return name();
+    }
+
+    /**
+     * Runs the pass once over {@code cfg}, changing it in place. The analyses
+     * of {@code cfg} are taken from {@code analyses}.
+     *
+     * @return {@code true} if the pass changed {@code cfg}.
+     */
+    boolean run(CFGStartNode cfg, FunctionAnalyses analyses);
+
+    /**
+     * Returns whether the pass can run while the CFG is in SSA form, keeping
+     * its phi-functions right. The {@link PassManager} translates the CFG
+     * out of SSA form before it runs any other pass.
+     */
+    default boolean runsOnSSAForm() {
+        return false;
+    }
+
+    /**
+     * Returns the analyses that are still valid after the pass changes a
+     * CFG. A pass that does not change the CFG preserves every analysis.
+     */
+    default Set<Analysis> preserves() {
+        return Set.of();
+    }
+
+}
@@ -0,0 +1,131 @@
+package cyr7.cfg.ir.pass;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import cyr7.cfg.ir.dfa.BlockWorklistAnalysis;
+import cyr7.cfg.ir.dfa.CCPAnalysis;
+import cyr7.cfg.ir.dfa.CCPAnalysis.LatticeElement;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis.CopyPropLattice;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+
+/**
+ * The analyses of the CFG of one function. Each analysis is computed the
+ * first time that a pass asks for it, and is reused by later passes until
+ * it is invalidated by a pass that changes the CFG.
+ * <p>
+ * The names of the temporaries that passes add to the CFG are shared by
+ * every pass, and are never invalidated.
+ * <p>
+ * Once a pass has converted the CFG into SSA form, the form is kept here for
+ * the passes that run on it, until the {@link PassManager} translates the
+ * CFG back out of it. The dataflow analyses do not see its phi-functions.
+ */
+public final class FunctionAnalyses {
+
+    private final CFGStartNode cfg;
+    private final Map<Analysis, Object> results = new EnumMap<>(Analysis.class);
+    private int computations = 0;
+    private FreshTemps temps = null;
+    private SSAForm ssaForm = null;
+
+    public FunctionAnalyses(CFGStartNode cfg) {
+        this.cfg = cfg;
+    }
+
+    /**
+     * The names of the temporaries that passes add to the CFG.
+     */
+    public FreshTemps temps() {
+        if (temps == null) {
+            temps = FreshTemps.of(cfg);
+        }
+        return temps;
+    }
+
+    /**
+     * The SSA form of the CFG, if the CFG is in SSA form.
+     */
+    public Optional<SSAForm> ssaForm() {
+        return Optional.ofNullable(ssaForm);
+    }
+
+    void enterSSAForm(SSAForm form) {
+        ssaForm = form;
+    }
+
+    /**
+     * Translates the CFG out of SSA form, discarding every analysis.
+     *
+     * @return {@code true} if the CFG was in SSA form.
+     */
+    boolean leaveSSAForm() {
+        if (ssaForm == null) {
+            return false;
+        }
+        ssaForm.destruct();
+        ssaForm = null;
+        results.clear();
+        return true;
+    }
+
+    public Map<CFGNode, LatticeElement> constants() {
+        return get(Analysis.CONSTANTS, () -> BlockWorklistAnalysis.analyze(cfg,
+            CCPAnalysis.INSTANCE).asMap());
+    }
+
+    public Map<CFGNode, CopyPropLattice> copies() {
+        return get(Analysis.COPIES, () -> BlockWorklistAnalysis.analyze(cfg,
+            CopyPropagationAnalysis.INSTANCE).asMap());
+    }
+
+    public Map<CFGNode, IrLiveVarLattice> liveVariables() {
+        return get(Analysis.LIVE_VARIABLES, () -> BlockWorklistAnalysis.analyze(cfg,
+            new IrLiveVariableAnalysis(cfg.temps())).asMap());
+    }
+
+    public DominatorTree dominators() {
+        return get(Analysis.DOMINATORS, () -> DominatorTree.of(cfg));
+    }
+
+    /**
+     * Returns the number of times that any analysis has been computed.
+     */
+    public int computations() {
+        return computations;
+    }
+
+    /**
+     * Discards every analysis that is not in {@code preserved}, after a pass
+     * has changed the CFG. The definitions and uses of the SSA form are
+     * found again.
+     */
+    void retainOnly(Set<Analysis> preserved) {
+        results.keySet().retainAll(preserved);
+        if (ssaForm != null) {
+            ssaForm.changed();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Analysis analysis, Supplier<T> compute) {
+        Object result = results.get(analysis);
+        if (result == null) {
+            result = compute.get();
+            computations++;
+            results.put(analysis, result);
+        }
+        return (T) result;
+    }
+
+}
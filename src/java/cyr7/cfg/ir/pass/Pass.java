@@ -0,0 +1,180 @@
+package cyr7.cfg.ir.pass;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+import cyr7.cfg.ir.dfa.SSATransformer;
+import cyr7.cfg.ir.dfa.pre.LazyCodeMotion;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.opt.CCPOptimization;
+import cyr7.cfg.ir.opt.ConstantFoldingOptimization;
+import cyr7.cfg.ir.opt.CopyPropagationOptimization;
+import cyr7.cfg.ir.opt.DeadCodeElimOptimization;
+import cyr7.cfg.ir.opt.LoopInvariantCodeMotionOptimization;
+import cyr7.cfg.ir.opt.LoopUnrollingOptimization;
+import cyr7.cfg.ir.opt.PartialRedundancyEliminationOptimization;
+import cyr7.cfg.ir.opt.StrengthReductionOptimization;
+import cyr7.cfg.ir.opt.ValueNumberingOptimization;
+
+/**
+ * The passes that the compiler provides.
+ */
+public enum Pass implements CFGPass {
+
+    SSA("conversion into static single assignment form") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            if (analyses.ssaForm().isPresent()) {
+                return false;
+            }
+            var form = SSATransformer.convert(cfg, analyses.dominators(),
+                analyses.liveVariables());
+            analyses.enterSSAForm(form);
+            return !form.variables().isEmpty();
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            return true;
+        }
+    },
+
+    CP("conditional constant propagation") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            var form = analyses.ssaForm();
+            if (form.isPresent()) {
+                return CCPOptimization.optimize(form.get());
+            }
+            return CCPOptimization.optimize(cfg, analyses.constants());
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            return true;
+        }
+    },
+
+    VN("global value numbering") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return ValueNumberingOptimization.run(cfg, analyses.dominators(),
+                analyses.temps(), analyses.ssaForm().orElse(null));
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            return true;
+        }
+    },
+
+    COPY("copy propagation") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            var form = analyses.ssaForm();
+            if (form.isPresent()) {
+                return CopyPropagationOptimization.optimize(form.get());
+            }
+            return CopyPropagationOptimization.optimize(cfg, analyses.copies());
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            return true;
+        }
+    },
+
+    DCE("dead code elimination") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            var form = analyses.ssaForm();
+            if (form.isPresent()) {
+                return DeadCodeElimOptimization.optimize(form.get());
+            }
+            return DeadCodeElimOptimization.optimize(cfg,
+                analyses.liveVariables());
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            return true;
+        }
+    },
+
+    LICM("loop-invariant code motion") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return LoopInvariantCodeMotionOptimization.run(cfg,
+                analyses.dominators(), analyses.temps());
+        }
+    },
+
+    SR("strength reduction") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return StrengthReductionOptimization.run(cfg,
+                analyses.dominators(), analyses.liveVariables(),
+                analyses.temps());
+        }
+    },
+
+    PRE("partial redundancy elimination") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return PartialRedundancyEliminationOptimization.run(cfg,
+                LazyCodeMotion.of(cfg), analyses.temps());
+        }
+    },
+
+    LU("loop unrolling") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return LoopUnrollingOptimization.optimize(cfg, analyses.dominators());
+        }
+    },
+
+    CF("constant folding") {
+        @Override
+        public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+            return ConstantFoldingOptimization.optimize(cfg);
+        }
+
+        @Override
+        public boolean runsOnSSAForm() {
+            // Folding rewrites expressions without changing the shape of
+            // the CFG, so the phi-functions are unaffected.
+            return true;
+        }
+
+        @Override
+        public Set<Analysis> preserves() {
+            // Folding rewrites expressions without changing the shape of
+            // the CFG.
+            return EnumSet.of(Analysis.DOMINATORS);
+        }
+    };
+
+    private final String description;
+
+    Pass(String description) {
+        this.description = description;
+    }
+
+    @Override
+    public String description() {
+        return description;
+    }
+
+    /**
+     * Returns the pass named {@code name}, ignoring case.
+     */
+    public static Optional<Pass> parse(String name) {
+        try {
+            return Optional.of(Pass.valueOf(name.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package cyr7.cfg.ir.pass;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A sequence of passes that is run repeatedly, until either none of the
+ * passes changes the CFG or the sequence has run {@link #maxIterations()}
+ * times.
+ */
+public final class PassGroup {
+
+    /**
+     * Returns a group that runs {@code passes} once.
+     */
+    public static PassGroup once(List<? extends CFGPass> passes) {
+        return new PassGroup(passes, 1);
+    }
+
+    /**
+     * Returns a group that runs {@code passes} until they stop changing the
+     * CFG, at most {@code maxIterations} times.
+     */
+    public static PassGroup fixpoint(List<? extends CFGPass> passes,
+                                     int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException(
+                "A pass group must run at least once: " + maxIterations);
+        }
+        return new PassGroup(passes, maxIterations);
+    }
+
+    private final List<CFGPass> passes;
+    private final int maxIterations;
+
+    private PassGroup(List<? extends CFGPass> passes, int maxIterations) {
+        this.passes = List.copyOf(passes);
+        this.maxIterations = maxIterations;
+    }
+
+    public List<CFGPass> passes() {
+        return passes;
+    }
+
+    public int maxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Returns the description of the group in a {@link Pipeline}.
+     */
+    @Override
+    public String toString() {
+        String names = passes.stream()
+            .map(pass -> pass.name().toLowerCase())
+            .collect(Collectors.joining(","));
+        return maxIterations == 1 ? names : names + "*" + maxIterations;
+    }
+
+}
@@ -0,0 +1,62 @@
+package cyr7.cfg.ir.pass;
+
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.util.PhaseTimings;
+
+/**
+ * Runs a {@link Pipeline} over the CFG of a function. Each analysis is
+ * computed at most once between changes to the CFG, and a group of passes
+ * stops as soon as a round of its passes leaves the CFG unchanged.
+ * <p>
+ * A CFG that a pass converts into SSA form stays in it for the passes that
+ * {@link CFGPass#runsOnSSAForm() run on SSA form}. It is translated back out
+ * before any other pass runs, or at the end of the pipeline, before the CFG
+ * is flattened.
+ */
+public final class PassManager {
+
+    private PassManager() {}
+
+    /**
+     * Runs {@code pipeline} over {@code cfg}, the CFG of {@code function},
+     * changing it in place. Each run of a pass is recorded in
+     * {@code timings} under the pass's description.
+     *
+     * @return The analyses of the optimized CFG that are still valid.
+     */
+    public static FunctionAnalyses run(Pipeline pipeline,
+                                       String function,
+                                       CFGStartNode cfg,
+                                       PhaseTimings timings) {
+        FunctionAnalyses analyses = new FunctionAnalyses(cfg);
+        for (PassGroup group : pipeline.groups()) {
+            boolean changed = true;
+            for (int i = 0; changed && i < group.maxIterations(); i++) {
+                changed = false;
+                for (CFGPass pass : group.passes()) {
+                    if (!pass.runsOnSSAForm()) {
+                        leaveSSAForm(function, analyses, timings);
+                    }
+                    boolean passChanged = timings.time(pass.description(),
+                        function, () -> pass.run(cfg, analyses));
+                    if (passChanged) {
+                        analyses.retainOnly(pass.preserves());
+                        changed = true;
+                    }
+                }
+            }
+        }
+        leaveSSAForm(function, analyses, timings);
+        return analyses;
+    }
+
+    private static void leaveSSAForm(String function,
+                                     FunctionAnalyses analyses,
+                                     PhaseTimings timings) {
+        if (analyses.ssaForm().isPresent()) {
+            timings.time("out-of-SSA translation", function,
+                analyses::leaveSSAForm);
+        }
+    }
+
+}
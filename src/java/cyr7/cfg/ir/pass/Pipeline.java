@@ -0,0 +1,105 @@
+package cyr7.cfg.ir.pass;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The groups of passes that are run over the CFG of each function, in
+ * order.
+ * <p>
+ * A pipeline is described by its groups separated by {@code ;}. A group is
+ * described by the names of its passes separated by {@code ,}, followed by
+ * {@code *N} if the group runs to a fixpoint at most {@code N} times, or by
+ * just {@code *} if it runs to a fixpoint at most
+ * {@link #DEFAULT_MAX_ITERATIONS} times. For instance,
+ * {@code copy,dce*;lu} propagates copies and eliminates dead code until
+ * neither changes the CFG, and then unrolls loops once.
+ */
+public final class Pipeline {
+
+    public static final int DEFAULT_MAX_ITERATIONS = 8;
+
+    public static Pipeline of(List<PassGroup> groups) {
+        return new Pipeline(groups);
+    }
+
+    /**
+     * Returns the pipeline described by {@code description}, or an empty
+     * optional if a pass is unknown or the description is malformed.
+     */
+    public static Optional<Pipeline> parse(String description) {
+        List<PassGroup> groups = new ArrayList<>();
+        for (String group : description.split(";")) {
+            group = group.strip();
+            if (group.isEmpty()) {
+                continue;
+            }
+            int maxIterations = 1;
+            int star = group.indexOf('*');
+            if (star != -1) {
+                String cap = group.substring(star + 1).strip();
+                try {
+                    maxIterations = cap.isEmpty()
+                        ? DEFAULT_MAX_ITERATIONS
+                        : Integer.parseInt(cap);
+                } catch (NumberFormatException e) {
+                    return Optional.empty();
+                }
+                if (maxIterations < 1) {
+                    return Optional.empty();
+                }
+                group = group.substring(0, star);
+            }
+            List<Pass> passes = new ArrayList<>();
+            for (String name : group.split(",")) {
+                Optional<Pass> pass = Pass.parse(name.strip());
+                if (pass.isEmpty()) {
+                    return Optional.empty();
+                }
+                passes.add(pass.get());
+            }
+            groups.add(maxIterations == 1
+                ? PassGroup.once(passes)
+                : PassGroup.fixpoint(passes, maxIterations));
+        }
+        return Optional.of(new Pipeline(groups));
+    }
+
+    private final List<PassGroup> groups;
+
+    private Pipeline(List<PassGroup> groups) {
+        this.groups = List.copyOf(groups);
+    }
+
+    public List<PassGroup> groups() {
+        return groups;
+    }
+
+    /**
+     * Returns this pipeline without {@code pass}, dropping groups that are
+     * left empty.
+     */
+    public Pipeline without(CFGPass pass) {
+        List<PassGroup> remaining = new ArrayList<>();
+        for (PassGroup group : groups) {
+            List<CFGPass> passes = new ArrayList<>(group.passes());
+            passes.remove(pass);
+            if (!passes.isEmpty()) {
+                remaining.add(group.maxIterations() == 1
+                    ? PassGroup.once(passes)
+                    : PassGroup.fixpoint(passes, group.maxIterations()));
+            }
+        }
+        return new Pipeline(remaining);
+    }
+
+    @Override
+    public String toString() {
+        return groups.stream()
+            .map(PassGroup::toString)
+            .collect(Collectors.joining(";"));
+    }
+
+}
@@ -0,0 +1,229 @@
+package cyr7.cli;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import cyr7.ast.Node;
+import cyr7.ast.expr.FunctionCallExprNode;
+import cyr7.ast.toplevel.FunctionDeclNode;
+import cyr7.ast.toplevel.XiProgramNode;
+import cyr7.ir.AstToIrVisitor;
+import cyr7.parser.SExpVisitor;
+import cyr7.x86.asm.ASMLine;
+import cyr7.x86.asm.ASMTextLine;
+
+/**
+ * The final assembly of functions that have already been compiled, stored in
+ * a directory on disk so that it outlives the compiler. The assembly of a
+ * function is looked up by the function's fingerprint, which covers
+ * everything that the assembly of the function depends on: its typed AST,
+ * the signatures of the functions it calls and the options that it was
+ * compiled with. With inlining, it also covers the functions of the same
+ * file that may be inlined into it. A function whose fingerprint is
+ * unchanged since it was last compiled therefore does not need to be
+ * compiled again.
+ * <p>
+ * A cache may be shared by any number of files, including files that are
+ * compiled concurrently.
+ */
+final class AssemblyCache {
+
+    /**
+     * Changes whenever the assembly generated for a function changes for
+     * reasons that the fingerprint does not cover, such as a change to the
+     * compiler itself, so that assembly cached by an older version of the
+     * compiler is not reused.
+     */
+    private static final String VERSION = "3";
+
+    private static final String EXTENSION = ".s";
+
+    private final Path directory;
+
+    AssemblyCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the assembly of the function with fingerprint
+     * {@code fingerprint}, if it has been cached. A cache entry that cannot
+     * be read is treated as missing.
+     */
+    Optional<List<ASMLine>> get(String fingerprint) {
+        Path file = directory.resolve(fingerprint + EXTENSION);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readAllLines(file).stream()
+                .map(ASMTextLine::new)
+                .collect(Collectors.toList()));
+        } catch (IOException e) {
+            CLI.debugPrint(e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Caches {@code lines}, the assembly of the function with fingerprint
+     * {@code fingerprint}. The entry is written to a temporary file that is
+     * then moved into place, so a concurrent {@link #get} never reads a
+     * partially written entry. Failing to write the entry only means that
+     * the function is compiled again next time.
+     */
+    void put(String fingerprint, List<ASMLine> lines) {
+        List<String> text = new ArrayList<>(lines.size());
+        for (ASMLine line : lines) {
+            text.add(line.getIntelAssembly());
+        }
+        try {
+            Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, fingerprint, ".tmp");
+            Files.write(temporary, text);
+            Files.move(temporary, directory.resolve(fingerprint + EXTENSION),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            CLI.debugPrint(e);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of each function of the typechecked program
+     * {@code program}, by assembly name, when it is compiled with
+     * {@code options}.
+     * <p>
+     * With inlining, the assembly of a function may contain the body of any
+     * function of {@code program} that it calls, directly or through other
+     * functions, and whether a body is inlined depends on how many calls to
+     * it {@code program} makes. The fingerprint of a function then also
+     * covers the {@link #fingerprint} of each such callee and the number of
+     * calls to it, so that editing a callee recompiles its callers.
+     */
+    static Map<String, String> fingerprints(XiProgramNode program,
+                                            CompilerOptions options) {
+        Map<String, String> own = new LinkedHashMap<>();
+        Map<String, SortedSet<String>> callees = new HashMap<>();
+        Map<String, Integer> calls = new HashMap<>();
+        for (FunctionDeclNode function : program.functions) {
+            String name = AstToIrVisitor.assemblyFunctionName(
+                function.header.identifier, function.header.getType());
+            own.put(name, fingerprint(function, options));
+            List<String> called = new ArrayList<>();
+            addCallees(function, called);
+            callees.put(name, new TreeSet<>(called));
+            called.forEach(callee -> calls.merge(callee, 1, Integer::sum));
+        }
+        if (!options.optConfig.inl()) {
+            return own;
+        }
+
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        own.forEach((name, fingerprint) -> {
+            SortedSet<String> reachable = new TreeSet<>();
+            Deque<String> worklist = new ArrayDeque<>(callees.get(name));
+            while (!worklist.isEmpty()) {
+                String callee = worklist.pop();
+                if (own.containsKey(callee) && reachable.add(callee)) {
+                    worklist.addAll(callees.get(callee));
+                }
+            }
+            List<String> components = new ArrayList<>();
+            components.add(fingerprint);
+            for (String callee : reachable) {
+                components.add(callee);
+                components.add(own.get(callee));
+                components.add(String.valueOf(calls.get(callee)));
+            }
+            fingerprints.put(name, hash(components));
+        });
+        return fingerprints;
+    }
+
+    /**
+     * Returns the fingerprint of the typechecked function {@code function}
+     * when it is compiled with {@code options}, without the functions that
+     * may be inlined into it.
+     */
+    static String fingerprint(FunctionDeclNode function,
+                              CompilerOptions options) {
+        StringWriter ast = new StringWriter();
+        SExpVisitor visitor = new SExpVisitor(ast);
+        function.accept(visitor);
+        visitor.flush();
+
+        SortedSet<String> callees = new TreeSet<>();
+        addCallees(function, callees);
+
+        List<String> components = List.of(
+            VERSION,
+            AstToIrVisitor.assemblyFunctionName(
+                function.header.identifier, function.header.getType()),
+            ast.toString(),
+            String.join(" ", callees),
+            String.join(" ", new TreeSet<>(options.optConfig.convertToCLI())),
+            options.optConfig.pipeline().toString(),
+            options.tiler.name(),
+            String.valueOf(options.asmConfig().commentedAssembly()),
+            String.valueOf(options.asmConfig().assemblyLevelAssertions()),
+            options.target.name());
+        return hash(components);
+    }
+
+    /**
+     * Adds the assembly name of every function called within {@code node}
+     * to {@code callees}, once per call. The assembly name of a function
+     * encodes its type, so a function whose callee changes signature gets a
+     * new fingerprint.
+     */
+    private static void addCallees(Node node, Collection<String> callees) {
+        if (node instanceof FunctionCallExprNode) {
+            FunctionCallExprNode call = (FunctionCallExprNode) node;
+            call.getFunctionType().ifPresent(type -> callees.add(
+                AstToIrVisitor.assemblyFunctionName(call.identifier, type)));
+        }
+        for (Node child : node.getChildren()) {
+            addCallees(child, callees);
+        }
+    }
+
+    private static String hash(List<String> components) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String component : components) {
+            // Prefix each component with its length, so that different
+            // components never produce the same input to the digest.
+            byte[] bytes = component.getBytes(StandardCharsets.UTF_8);
+            digest.update((bytes.length + ":").getBytes(StandardCharsets.UTF_8));
+            digest.update(bytes);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+}
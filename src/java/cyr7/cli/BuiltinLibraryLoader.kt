@@ -5,6 +5,7 @@ import java.io.*
 import java.lang.RuntimeException
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.util.concurrent.ConcurrentHashMap
 import java.util.jar.JarEntry
 import java.util.jar.JarFile
 
@@ -12,7 +13,11 @@ class BuiltinLibraryLoader(val libRoot: File) {
 
     sealed class Library {
         abstract fun get(filename: String): Reader?
+        abstract fun contains(filename: String): Boolean
         class JarLibrary(private val jarFile: JarFile, private val libraries: Map<String, JarEntry>): Library() {
+            override fun contains(filename: String): Boolean {
+                return libraries.containsKey(filename)
+            }
             override fun get(filename: String): Reader? {
                 return libraries[filename]?.let { e ->
                     val inputStream = jarFile.getInputStream(e)
@@ -21,6 +26,9 @@ class BuiltinLibraryLoader(val libRoot: File) {
             }
         }
         class FileLibrary(private val libraries: Map<String, File>): Library() {
+            override fun contains(filename: String): Boolean {
+                return libraries.containsKey(filename)
+            }
             override fun get(filename: String): Reader? {
                 return libraries[filename]?.let { f ->
                         val inputStream = FileInputStream(f)
@@ -31,6 +39,14 @@ class BuiltinLibraryLoader(val libRoot: File) {
     }
 
     private val library: Library
+
+    /**
+     * The contents of the builtin interfaces that have been read so far. The
+     * builtin interfaces cannot change while the compiler runs, so a loader
+     * reads each of them at most once.
+     */
+    private val builtinContents = ConcurrentHashMap<String, String>()
+
     init {
         val cl = this.javaClass.classLoader
         val libraryPath = cl.getResource("builtin")
@@ -62,10 +78,33 @@ class BuiltinLibraryLoader(val libRoot: File) {
         }
     }
     fun getIxiFileOpener(): IxiFileOpener {
-        return IxiFileOpener{ interfaceName -> this.getLibraryReader("$interfaceName.ixi")}
+        return object : IxiFileOpener {
+            override fun openIxiLibraryFile(name: String): Reader {
+                return getLibraryReader("$name.ixi")
+            }
+
+            override fun locate(name: String): String {
+                return getLibraryLocation("$name.ixi")
+            }
+        }
+    }
+
+    /**
+     * Returns where [filename] is read from: the builtin library if it has
+     * the file, and the library root otherwise.
+     */
+    private fun getLibraryLocation(filename: String): String {
+        return if (builtinContents.containsKey(filename) || library.contains(filename)) {
+            "builtin/$filename"
+        } else {
+            Paths.get(libRoot.absolutePath, filename).normalize().toString()
+        }
     }
     private fun getLibraryReader(filename: String): Reader {
-        return this.library.get(filename) ?: getLibraryFromUserSpace(filename)
+        val contents = builtinContents[filename]
+                ?: this.library.get(filename)?.use { it.readText() }
+                        ?.also { builtinContents[filename] = it }
+        return contents?.let { StringReader(it) } ?: getLibraryFromUserSpace(filename)
     }
     private fun getLibraryFromUserSpace(filename: String): Reader {
         val sourcePath = Paths.get(libRoot.absolutePath, filename)
@@ -1,18 +1,28 @@
 package cyr7.cli;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import org.apache.commons.cli.CommandLine;
@@ -25,18 +35,22 @@ import org.apache.commons.cli.ParseException;
 
 import cyr7.cfg.ir.CFGUtil;
 import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.pass.Pipeline;
 import cyr7.ir.IRUtil;
+import cyr7.ir.nodes.IRCompUnit;
 import cyr7.lexer.LexerUtil;
 import cyr7.parser.ParserUtil;
+import cyr7.typecheck.InterfaceCache;
 import cyr7.typecheck.TypeCheckUtil;
-import cyr7.x86.ASMUtil;
 import cyr7.x86.ASMUtil.TilerConf;
 
 public class CLI {
 
     private static final Optimization[] SUPPORTED_OPTIMIZATIONS = {
         Optimization.CF, Optimization.REG, Optimization.DCE, Optimization.COPY,
-        Optimization.LU
+        Optimization.LU, Optimization.SSA, Optimization.CP, Optimization.CSE,
+        Optimization.VN, Optimization.INL, Optimization.SR, Optimization.LICM,
+        Optimization.PRE
     };
 
     final static private String usage = "xic [options] <source files>";
@@ -47,36 +61,23 @@ public class CLI {
     final static private Options options = createOptions();
     final static private CommandLineParser parser = new DefaultParser();
 
-    private static boolean debugPrintingEnabled = false;
-    private static ASMUtil.TilerConf tiler = TilerConf.COMPLEX;
-
-    private static final OptConfig optConfig = OptConfig.of(SUPPORTED_OPTIMIZATIONS);
-
-    private static boolean wantsLexing = false;
-    private static boolean wantsParsing = false;
-    private static boolean wantsTypechecking = false;
-    private static boolean wantsInitialIRGen = false;
-    private static boolean wantsFinalIRGen = false;
-    private static boolean wantsIrGen = false;
-    private static boolean wantsInitialDotGen = false;
-    private static boolean wantsFinalDotGen = false;
-    private static boolean wantsMirRun = false;
-    private static boolean wantsIrRun = false;
-    private static boolean wantsAssembly = true;
-    public static boolean wantsCommentedAssembly = false;
-
     /**
-     * Enable assertions at the assembly level. This specifically enables
-     * checking for 16-byte alignment for function calls.
+     * Debug printing goes to standard error and is shared by every file that
+     * is being compiled, so it is the only setting kept outside of
+     * {@link CompilerOptions}. It is set again by every call to
+     * {@link #run}, so a request to a server does not inherit it from the
+     * requests before it.
      */
-    public static boolean assemblyLevelAssertionsEnabled = false;
+    private static volatile boolean debugPrintingEnabled = false;
 
-    private static File assemblyRoot = new File(".");
-    private static File sourceRoot = new File(".");
-    private static File libRoot = new File(".");
-    private static File destinationRoot = new File(".");
+    private static final Map<File, BuiltinLibraryLoader> libraryLoaders
+        = new ConcurrentHashMap<>();
 
-    private static OperatingSystem target = OperatingSystem.LINUX;
+    /**
+     * The signatures of the interfaces used by the files compiled so far. It
+     * is shared by every file, and by every request in server mode.
+     */
+    private static final InterfaceCache interfaceCache = new InterfaceCache();
 
     /**
      * Creates an {@code Options} instance of the CLI parser. <\br> In this
@@ -306,6 +307,74 @@ public class CLI {
             .desc("Enable comments about IR code in assembly.")
             .build();
 
+        Option server = Option
+            .builder("server")
+            .longOpt("server")
+            .desc("Run as a compile server, reading one command per line\n" +
+                    "from standard input")
+            .hasArg(false)
+            .numberOfArgs(0)
+            .required(false)
+            .build();
+
+        Option jobs = Option
+            .builder("j")
+            .longOpt("jobs")
+            .desc("Compile up to N source files at the same time, and optimize\n" +
+                    "the functions of each file concurrently")
+            .hasArg(true)
+            .argName("N")
+            .numberOfArgs(1)
+            .required(false)
+            .build();
+
+        Option reportTimings = Option
+            .builder("rt")
+            .longOpt("report-timings")
+            .desc("Report the wall time, CPU time and allocated bytes of each\n" +
+                    "phase and of each function")
+            .hasArg(false)
+            .numberOfArgs(0)
+            .required(false)
+            .build();
+
+        Option timingsFormat = Option
+            .builder("rtformat")
+            .longOpt("report-timings-format")
+            .desc("Write the timings report as a table (text, the default)\n" +
+                    "or as JSON (json)")
+            .hasArg(true)
+            .argName("format")
+            .numberOfArgs(1)
+            .required(false)
+            .build();
+
+        Option passes = Option
+            .builder("passes")
+            .longOpt("passes")
+            .desc("Run the given pipeline of passes over the CFG of each\n" +
+                    "function instead of the one implied by the -O flags, e.g.\n" +
+                    "'copy,dce*;lu' to repeat copy and dce until neither changes\n" +
+                    "the CFG and then unroll loops; 'copy,dce*4' caps the\n" +
+                    "repetitions at 4")
+            .hasArg(true)
+            .argName("pipeline")
+            .numberOfArgs(1)
+            .required(false)
+            .build();
+
+        Option incremental = Option
+            .builder("incremental")
+            .longOpt("incremental")
+            .desc("Reuse the assembly of functions that have not changed since\n" +
+                    "they were last compiled, caching assembly in the given\n" +
+                    "directory")
+            .hasArg(true)
+            .argName("path")
+            .numberOfArgs(1)
+            .required(false)
+            .build();
+
         return options.addOption(help)
                 .addOption(reportOpts)
                 .addOption(lex)
@@ -328,26 +397,32 @@ public class CLI {
                 .addOption(noAssembly)
                 .addOption(tiler)
                 .addOption(enableAssemblyLevelAssertions)
-                .addOption(assemblyComments);
+                .addOption(assemblyComments)
+                .addOption(jobs)
+                .addOption(incremental)
+                .addOption(passes)
+                .addOption(reportTimings)
+                .addOption(timingsFormat)
+                .addOption(server);
     }
 
     /**
      * Prints a synopsis of the options.
      */
-    private static void printHelpMessage() {
-        helpFormatter.printHelp(writer, consoleWidth, usage,
+    private static void printHelpMessage(PrintWriter out) {
+        helpFormatter.printHelp(out, consoleWidth, usage,
                 "where possible options include:", options, 0, leftPadding,
                 "\n");
-        writer.flush();
+        out.flush();
     }
 
     /**
      * Prints the version of xic.
      */
-    private static void printVersionMessage() {
-        writer.append("xic 1.0")
+    private static void printVersionMessage(PrintWriter out) {
+        out.append("xic 1.0")
                 .append(System.lineSeparator());
-        writer.flush();
+        out.flush();
     }
 
     /**
@@ -362,6 +437,15 @@ public class CLI {
      */
     static CommandLine parseCommand(String[] args)
             throws ParseException {
+        return parseCommand(args, OptConfig.of(SUPPORTED_OPTIMIZATIONS));
+    }
+
+    /**
+     * Parses the command given by {@code args}, recording the optimization
+     * flags in {@code optConfig}.
+     */
+    private static CommandLine parseCommand(String[] args, OptConfig optConfig)
+            throws ParseException {
         boolean hasBeenDisabled = false;
         boolean noModifier = true;
         for (int i = 0; i < args.length; i++) {
@@ -447,19 +531,51 @@ public class CLI {
     public static void main(String[] args) {
         // If no arguments or options given, print help.
         if (args.length == 0) {
-            printHelpMessage();
+            printHelpMessage(writer);
             writer.close();
             return;
         }
 
+        boolean serving;
+        try {
+            // Parsing replaces the optimization flags, so the arguments are
+            // copied for run.
+            serving = parseCommand(args.clone()).hasOption("server");
+        } catch (ParseException e) {
+            // Reported by run.
+            serving = false;
+        }
+
+        if (serving) {
+            CompileServer.serve(
+                new BufferedReader(new InputStreamReader(System.in)),
+                writer);
+        } else {
+            run(args, writer);
+        }
+        writer.flush();
+        writer.close();
+    }
+
+    /**
+     * Runs the compiler with the command line arguments {@code args}, writing
+     * messages to {@code out}. Every call has its own settings, so the same
+     * JVM can serve many invocations.
+     *
+     * @return The output files that were written, in the order of the source
+     * files.
+     */
+    static List<Path> run(String[] args, PrintWriter out) {
+        debugPrintingEnabled = false;
+        CompilerOptions options =
+            new CompilerOptions(OptConfig.of(SUPPORTED_OPTIMIZATIONS));
         CommandLine cmd;
         try {
-            cmd = parseCommand(args);
+            cmd = parseCommand(args, options.optConfig);
         } catch (ParseException e) {
-            writer.write(e.getMessage());
-            writer.flush();
-            writer.close();
-            return;
+            out.write(e.getMessage());
+            out.flush();
+            return List.of();
         }
 
         // For each option given, perform task corresponding to option.
@@ -467,40 +583,40 @@ public class CLI {
             String opt = t.getOpt();
             switch (opt) {
                 case "h":
-                    printHelpMessage();
+                    printHelpMessage(out);
                     break;
                 case "ro":
                     for (Optimization optimization : SUPPORTED_OPTIMIZATIONS) {
-                        writer.write(optimization.name().toLowerCase());
-                        writer.write('\n');
+                        out.write(optimization.name().toLowerCase());
+                        out.write('\n');
                     }
                     break;
                 case "l":
-                    wantsLexing = true;
+                    options.wantsLexing = true;
                     break;
                 case "p":
-                    wantsParsing = true;
+                    options.wantsParsing = true;
                     break;
                 case "t":
-                    wantsTypechecking = true;
+                    options.wantsTypechecking = true;
                     break;
                 case "ign":
-                    wantsIrGen = true;
+                    options.wantsIrGen = true;
                     break;
                 case "irn":
-                    wantsIrRun = true;
+                    options.wantsIrRun = true;
                     break;
                 case "mrn":
-                    wantsMirRun = true;
+                    options.wantsMirRun = true;
                     break;
                 case "D": {
                     String directory = cmd.getOptionValue("D");
-                    destinationRoot = new File(directory);
+                    options.destinationRoot = new File(directory);
                     break;
                 }
                 case "d": {
                     String directory = cmd.getOptionValue("d");
-                    assemblyRoot = new File(directory);
+                    options.assemblyRoot = new File(directory);
                     break;
                 }
                 case "oir": {
@@ -508,13 +624,13 @@ public class CLI {
                         Phase p = Phase.parse(option);
                         switch (p) {
                             case INITIAL:
-                                wantsInitialIRGen = true;
+                                options.wantsInitialIRGen = true;
                                 break;
                             case FINAL:
-                                wantsFinalIRGen = true;
+                                options.wantsFinalIRGen = true;
                                 break;
                             default:
-                                writer.write("Unrecognized phase option: " + cmd.getOptionValue("oir"));
+                                out.write("Unrecognized phase option: " + cmd.getOptionValue("oir"));
                                 break;
                         }
                     }
@@ -525,13 +641,13 @@ public class CLI {
                         Phase p = Phase.parse(option);
                         switch (p) {
                             case INITIAL:
-                                wantsInitialDotGen = true;
+                                options.wantsInitialDotGen = true;
                                 break;
                             case FINAL:
-                                wantsFinalDotGen = true;
+                                options.wantsFinalDotGen = true;
                                 break;
                             default:
-                                writer.write("Unrecognized phase option: " + cmd.getOptionValue("ocfg"));
+                                out.write("Unrecognized phase option: " + cmd.getOptionValue("ocfg"));
                                 break;
                         }
                     }
@@ -540,328 +656,383 @@ public class CLI {
                 case "O":
                     break;
                 case "tos": {
-                    target = OperatingSystem.parse(cmd.getOptionValue("tos"));
+                    options.target = OperatingSystem.parse(cmd.getOptionValue("tos"));
                     break;
                 }
                 case "sourcepath": {
                     String directory = cmd.getOptionValue("sourcepath");
-                    sourceRoot = new File(directory);
+                    options.sourceRoot = new File(directory);
                     break;
                 }
                 case "libpath": {
                     String directory = cmd.getOptionValue("libpath");
-                    libRoot = new File(directory);
+                    options.libRoot = new File(directory);
                     break;
                 }
                 case "v":
-                    printVersionMessage();
+                    printVersionMessage(out);
                     break;
                 case "debug":
                     debugPrintingEnabled = true;
                     break;
                 case "noASM":
-                    wantsAssembly = false;
+                    options.wantsAssembly = false;
                     break;
                 case "tiler":
                     switch (cmd.getOptionValue("tiler").toLowerCase()) {
-                        case "basic": tiler = TilerConf.BASIC; break;
-                        case "complex": tiler = TilerConf.COMPLEX; break;
-                        default: writer.write("Unrecognized tiler option: " + cmd.getOptionValue("tiler"));
+                        case "basic": options.tiler = TilerConf.BASIC; break;
+                        case "complex": options.tiler = TilerConf.COMPLEX; break;
+                        default: out.write("Unrecognized tiler option: " + cmd.getOptionValue("tiler"));
                     }
                     break;
 
                 case "enableAssemblyLevelAssertions":
-                    assemblyLevelAssertionsEnabled = true;
+                    options.assemblyLevelAssertionsEnabled = true;
                     break;
 
                 case "asmComments":
-                    wantsCommentedAssembly = true;
+                    options.wantsCommentedAssembly = true;
+                    break;
+
+                case "j":
+                    try {
+                        options.jobs = Integer.parseInt(cmd.getOptionValue("j"));
+                    } catch (NumberFormatException e) {
+                        out.write("Invalid number of jobs: " + cmd.getOptionValue("j") + "\n");
+                    }
+                    if (options.jobs < 1) {
+                        options.jobs = 1;
+                    }
+                    options.optConfig.setParallel(options.jobs > 1);
+                    break;
+
+                case "rt":
+                    options.wantsTimings = true;
+                    break;
+
+                case "rtformat":
+                    switch (cmd.getOptionValue("rtformat").toLowerCase()) {
+                        case "text": options.timingsAsJSON = false; break;
+                        case "json": options.timingsAsJSON = true; break;
+                        default: out.write("Unrecognized timings format: " + cmd.getOptionValue("rtformat") + "\n");
+                    }
+                    break;
+
+                case "passes": {
+                    String description = cmd.getOptionValue("passes");
+                    Optional<Pipeline> pipeline = Pipeline.parse(description);
+                    if (pipeline.isPresent()) {
+                        options.optConfig.setPipeline(pipeline.get());
+                    } else {
+                        out.write("Invalid pipeline of passes: " + description + "\n");
+                    }
+                    break;
+                }
+
+                case "incremental":
+                    options.assemblyCacheRoot =
+                        new File(cmd.getOptionValue("incremental"));
+                    break;
+
+                case "server":
+                    // Handled by main, and ignored in requests to a server.
                     break;
 
                 default:
-                    writer.write("No case for given for option: " + opt);
-                    writer.flush();
+                    out.write("No case for given for option: " + opt);
+                    out.flush();
                     break;
             }
         });
 
-        for (String filename : cmd.getArgs()) {
-            boolean isIXI;
-            if (filename.endsWith(".xi") || filename.endsWith(".ixi")) {
-                isIXI = filename.endsWith(".ixi");
-            } else {
-                continue;
-            }
+        List<String> filenames = new ArrayList<>(Arrays.asList(cmd.getArgs()));
+        filenames.removeIf(filename ->
+            !filename.endsWith(".xi") && !filename.endsWith(".ixi"));
 
-            Reader input = null;
-            Writer output = null;
+        if (!filenames.isEmpty() && options.target == OperatingSystem.UNSUPPORTED) {
+            out.write("Target operating system specified is unsupported.\n");
+            out.flush();
+            return List.of();
+        }
 
-            if (target == OperatingSystem.UNSUPPORTED) {
-                writer.write("Target operating system specified is unsupported.\n");
-                writer.flush();
-                writer.close();
-                return;
+        List<FileResult> results;
+        if (options.jobs > 1 && filenames.size() > 1) {
+            results = compileConcurrently(options, filenames);
+        } else {
+            results = new ArrayList<>();
+            for (String filename : filenames) {
+                results.add(compileFile(options, filename));
             }
+        }
 
-            if (wantsLexing) {
-                debugPrint("Lexing file: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)),
-                        "lexed");
-                    LexerUtil.lex(input, output, filename);
-                } catch (Exception e) {
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
+        List<Path> outputs = new ArrayList<>();
+        for (FileResult result : results) {
+            out.write(result.messages);
+            outputs.addAll(result.outputs);
+        }
+        out.flush();
+        return outputs;
+    }
 
-            if (wantsParsing) {
-                debugPrint("Parsing file: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(filename, getMainFilename(Path.of(filename)), "parsed");
-                    ParserUtil.parse(input, output, filename, isIXI);
-                } catch (Exception e) {
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
-            var opener = new BuiltinLibraryLoader(CLI.libRoot).getIxiFileOpener();
-            if (wantsTypechecking) {
-                debugPrint("Typechecking file: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(filename, getMainFilename(Path.of(filename)), "typed");
-                    TypeCheckUtil.typeCheck(
-                        input,
-                        output,
-                        filename,
-                        isIXI,
-                        opener);
-                } catch (Exception e) {
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
+    /**
+     * Compiles {@code filenames} on up to {@code options.jobs} threads. The
+     * results are in the order that the files were given, regardless of the
+     * order in which the files finish.
+     */
+    private static List<FileResult> compileConcurrently(
+            CompilerOptions options,
+            List<String> filenames) {
+        ExecutorService executor = Executors.newFixedThreadPool(
+            Math.min(options.jobs, filenames.size()));
+        List<FileResult> results = new ArrayList<>();
+        try {
+            List<Future<FileResult>> futures = new ArrayList<>();
+            for (String filename : filenames) {
+                futures.add(executor.submit(() -> compileFile(options, filename)));
             }
-
-            if (wantsInitialIRGen) {
-                debugPrint("Generate initial intermediate code for: " + filename);
+            for (int i = 0; i < futures.size(); i++) {
                 try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)) + "_initial",
-                        "ir");
-                    IRUtil.initialIRGen(
-                        input,
-                        output,
-                        filename,
-                        opener);
-                } catch (Exception e) {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
                     debugPrint(e);
-                    writer.write(e.getMessage());
+                    results.add(new FileResult(
+                        "Unexpected error occurred when compiling "
+                            + filenames.get(i) + ".\n",
+                        List.of()));
                 }
-                closeIOStreams(input, output);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
 
-            if (wantsFinalIRGen) {
-                debugPrint("Generate final intermediate code for: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)) + "_final",
-                        "ir");
-                    IRUtil.irGen(
-                        input,
-                        output,
-                        filename,
-                        opener,
-                        optConfig);
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
+    /**
+     * Runs every requested phase of the compiler on {@code filename}. The
+     * phases share one {@link CompilationSession}, so the file is read,
+     * parsed, typechecked and optimized at most once.
+     *
+     * @return The messages reported and the output files written while
+     * compiling {@code filename}.
+     */
+    private static FileResult compileFile(CompilerOptions options, String filename) {
+        StringWriter messages = new StringWriter();
+        PrintWriter diagnostics = new PrintWriter(messages);
+        List<Path> outputs = new ArrayList<>();
+
+        var opener = libraryLoader(options.libRoot).getIxiFileOpener();
+        CompilationSession session;
+        try (Reader input = getReader(options, filename)) {
+            session = CompilationSession.read(input, filename, opener,
+                interfaceCache, options);
+        } catch (Exception e) {
+            reportError(e, diagnostics);
+            diagnostics.flush();
+            return new FileResult(messages.toString(), outputs);
+        }
+        String mainFilename = getMainFilename(Path.of(filename));
 
-            if (wantsInitialDotGen) {
-                debugPrint("Generate initial dot for: " + filename);
-                try {
-                    Path path = Path.of(filename);
-                    input = getReader(filename);
-                    Map<String, CFGStartNode> functions =
-                        CFGUtil.generateAllInitialDot(
-                            input,
-                            filename,
-                            opener);
-                    for (String f : functions.keySet()) {
-                        String functionFilename =
-                            getMainFilename(path)
-                                + "_"
-                                + demangleFunction(f)
-                                + "_initial";
-                        System.out.println();
-                        output = getWriter(
-                            filename,
-                            functionFilename,
-                            "dot");
-                        CFGUtil.outputDotForFunctionIR(
-                            functions.get(f),
-                            output);
-                    }
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-            }
+        if (options.wantsLexing) {
+            debugPrint("Lexing file: " + filename);
+            writeOutput(options, filename, mainFilename, "lexed",
+                diagnostics, outputs, output -> LexerUtil.lex(session.source(), output, filename));
+        }
 
-            if (wantsFinalDotGen) {
-                debugPrint("Generate final dot for: " + filename);
-                try {
-                    Path path = Path.of(filename);
-                    input = getReader(filename);
-                    Map<String, CFGStartNode> functions =
-                        CFGUtil.generateAllFinalDot(
-                            input,
-                            filename,
-                            opener,
-                            optConfig);
-                    for (String f: functions.keySet()) {
-                        String functionFilename =
-                            getMainFilename(path)
-                                + "_"
-                                + demangleFunction(f)
-                                + "_final";
-                        output = getWriter(
-                            filename,
-                            functionFilename,
-                            "dot");
-                        CFGUtil.outputDotForFunctionIR(
-                            functions.get(f),
-                            output);
-                    }
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-            }
+        if (options.wantsParsing) {
+            debugPrint("Parsing file: " + filename);
+            writeOutput(options, filename, mainFilename, "parsed",
+                diagnostics, outputs, output -> ParserUtil.parse(session::ast, output));
+        }
 
-            if (wantsIrGen) {
-                debugPrint("Generate intermediate code for: " + filename);
-                try {
-                    Path path = Path.of(filename);
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)),
-                        "ir");
-                    IRUtil.irGen(
-                        input,
-                        output,
-                        path.getFileName().toString(),
-                        opener,
-                        optConfig);
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
+        if (options.wantsTypechecking) {
+            debugPrint("Typechecking file: " + filename);
+            writeOutput(options, filename, mainFilename, "typed",
+                diagnostics, outputs, output -> TypeCheckUtil.typeCheck(
+                    session::typedAst,
+                    output,
+                    diagnostics));
+        }
 
-            if (wantsMirRun) {
-                debugPrint("Generate and interpret middle-level intermediate " +
-                    "code for: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)),
-                        "mir_run");
-                    IRUtil.mirRun(
-                        input,
-                        output,
-                        filename,
-                        isIXI,
-                        opener);
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
+        if (options.wantsInitialIRGen) {
+            debugPrint("Generate initial intermediate code for: " + filename);
+            writeOutput(options, filename, mainFilename + "_initial", "ir",
+                diagnostics, outputs, output -> IRUtil.printSExp(session.initialLir(), output));
+        }
 
-            if (wantsIrRun) {
-                debugPrint("Generate and interpret intermediate code for: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)),
-                        "ir_run");
-                    IRUtil.irRun(
-                        input,
-                        output,
-                        filename,
-                        opener,
-                        optConfig);
-                } catch (Exception e) {
-                    debugPrint(e);
-                    writer.write(e.getMessage());
-                }
-                closeIOStreams(input, output);
-            }
+        if (options.wantsFinalIRGen) {
+            debugPrint("Generate final intermediate code for: " + filename);
+            writeOutput(options, filename, mainFilename + "_final", "ir",
+                diagnostics, outputs, output -> IRUtil.printSExp(session.lir(), output));
+        }
 
-            if (wantsAssembly) {
-                debugPrint("Generate and interpret assembly code for: " + filename);
-                try {
-                    input = getReader(filename);
-                    output = getWriter(
-                        filename,
-                        getMainFilename(Path.of(filename)),
-                        "s");
-                    ASMUtil.writeASM(
-                        input,
-                        output,
-                        filename,
-                        opener,
-                        optConfig,
-                        tiler);
-                } catch (Exception e) {
-                    debugPrint(e);
-                    if (e.getMessage() != null) {
-                        writer.write(e.getMessage());
-                    }
-                }
-                closeIOStreams(input, output);
+        if (options.wantsInitialDotGen) {
+            debugPrint("Generate initial dot for: " + filename);
+            writeDots(options, filename, "_initial", session::initialCfg,
+                diagnostics, outputs);
+        }
+
+        if (options.wantsFinalDotGen) {
+            debugPrint("Generate final dot for: " + filename);
+            writeDots(options, filename, "_final", session::finalCfg,
+                diagnostics, outputs);
+        }
+
+        if (options.wantsIrGen) {
+            debugPrint("Generate intermediate code for: " + filename);
+            writeOutput(options, filename, mainFilename, "ir",
+                diagnostics, outputs, output -> {
+                    // The compilation unit is named after the file, without
+                    // the directories leading to it.
+                    IRCompUnit lowered = session.lir();
+                    IRUtil.printSExp(
+                        new IRCompUnit(
+                            lowered.location(),
+                            mainFilename,
+                            lowered.functions()),
+                        output);
+                });
+        }
+
+        if (options.wantsMirRun) {
+            debugPrint("Generate and interpret middle-level intermediate " +
+                "code for: " + filename);
+            writeOutput(options, filename, mainFilename, "mir_run",
+                diagnostics, outputs, output -> IRUtil.mirRun(session.mir(), output));
+        }
+
+        if (options.wantsIrRun) {
+            debugPrint("Generate and interpret intermediate code for: " + filename);
+            writeOutput(options, filename, mainFilename, "ir_run",
+                diagnostics, outputs, output -> IRUtil.irRun(session.lir(), output));
+        }
+
+        if (options.wantsAssembly) {
+            debugPrint("Generate and interpret assembly code for: " + filename);
+            writeOutput(options, filename, mainFilename, "s",
+                diagnostics, outputs, session::writeASM);
+        }
+
+        if (options.wantsTimings) {
+            debugPrint("Report timings for: " + filename);
+            if (options.timingsAsJSON) {
+                writeOutput(options, filename, mainFilename, "timings.json",
+                    diagnostics, outputs, output -> session.timings().writeJSON(output, filename));
+            } else {
+                writeOutput(options, filename, mainFilename, "timings",
+                    diagnostics, outputs, output -> session.timings().writeText(output));
             }
         }
-        writer.flush();
-        writer.close();
+
+        diagnostics.flush();
+        return new FileResult(messages.toString(), outputs);
+    }
+
+    /**
+     * The messages reported and the output files written while compiling a
+     * single source file.
+     */
+    private static final class FileResult {
+
+        final String messages;
+        final List<Path> outputs;
+
+        FileResult(String messages, List<Path> outputs) {
+            this.messages = messages;
+            this.outputs = outputs;
+        }
+
+    }
+
+    /**
+     * Writes one output of a phase of the compiler.
+     */
+    @FunctionalInterface
+    private interface PhaseOutput {
+        void write(Writer output) throws Exception;
     }
 
-    private static Reader getReader(String filename) throws IOException {
+    /**
+     * Writes the output of a phase to {@code name.extension}, in the output
+     * directory of {@code filename}, and adds the file to {@code outputs}.
+     * Errors are reported to {@code diagnostics}.
+     */
+    private static void writeOutput(CompilerOptions options,
+                                    String filename,
+                                    String name,
+                                    String extension,
+                                    PrintWriter diagnostics,
+                                    List<Path> outputs,
+                                    PhaseOutput phase) {
+        File dest;
+        try {
+            dest = getOutputFile(options, filename, name, extension);
+        } catch (Exception e) {
+            reportError(e, diagnostics);
+            return;
+        }
+        try (Writer output = Files.newBufferedWriter(dest.toPath())) {
+            outputs.add(dest.toPath());
+            phase.write(output);
+        } catch (Exception e) {
+            reportError(e, diagnostics);
+        }
+    }
+
+    /**
+     * Writes the dot file of the CFG of each function in {@code cfgs}.
+     */
+    private static void writeDots(CompilerOptions options,
+                                  String filename,
+                                  String suffix,
+                                  Callable<Map<String, CFGStartNode>> cfgs,
+                                  PrintWriter diagnostics,
+                                  List<Path> outputs) {
+        Map<String, CFGStartNode> functions;
+        try {
+            functions = cfgs.call();
+        } catch (Exception e) {
+            reportError(e, diagnostics);
+            return;
+        }
+        functions.forEach((f, cfg) -> {
+            String functionFilename = getMainFilename(Path.of(filename))
+                + "_"
+                + demangleFunction(f)
+                + suffix;
+            writeOutput(options, filename, functionFilename, "dot",
+                diagnostics, outputs, output -> CFGUtil.outputDotForFunctionIR(cfg, output));
+        });
+    }
+
+    private static void reportError(Exception e, PrintWriter diagnostics) {
+        debugPrint(e);
+        if (e.getMessage() != null) {
+            diagnostics.write(e.getMessage());
+        }
+    }
+
+    private static Reader getReader(CompilerOptions options, String filename)
+            throws IOException {
         Path sourcePath;
         if (Paths.get(filename).isAbsolute()) {
             sourcePath = Paths.get(filename);
         } else {
-            sourcePath = Paths.get(sourceRoot.getAbsolutePath(), filename);
+            sourcePath = Paths.get(options.sourceRoot.getAbsolutePath(), filename);
         }
         debugPrint("Opening reader to: " + sourcePath);
         return new BufferedReader(new FileReader(sourcePath.toFile()));
     }
 
-    private static Writer getWriter(String relativePath, String filename, String fileExtension)
-            throws IOException {
+    private static File getOutputFile(CompilerOptions options, String relativePath,
+                                      String filename, String fileExtension) {
         String outputDirectory = "__xic_output";
         Path destPath;
         if (Path.of(relativePath).isAbsolute()) {
             destPath = Path.of(relativePath).getParent().resolve(outputDirectory);
         } else {
-            String absolutePath = destinationRoot.getAbsolutePath();
+            String absolutePath = options.destinationRoot.getAbsolutePath();
             destPath = Paths.get(absolutePath, relativePath).getParent().resolve(outputDirectory);
         }
         File dest = new File(destPath.toFile(), String.format("%s.%s", filename, fileExtension));
@@ -870,20 +1041,18 @@ public class CLI {
             dest.getParentFile().mkdirs();
         }
         debugPrint("Opening writer to: " + dest);
-        return new BufferedWriter(new FileWriter(dest));
+        return dest;
     }
 
-    private static void closeIOStreams(Reader input, Writer output) {
-        if (input != null && output != null) {
-            try {
-                output.flush();
-                output.close();
-                input.close();
-            } catch (IOException e) {
-                writer.write("Unexpected error occurred when closing "
-                        + "io stream.\n");
-            }
-        }
+    /**
+     * Returns the loader of the library interfaces in {@code libRoot}. Loaders
+     * are kept for the lifetime of the JVM, so that the builtin interfaces
+     * are only located and read once.
+     */
+    private static BuiltinLibraryLoader libraryLoader(File libRoot) {
+        return libraryLoaders.computeIfAbsent(
+            libRoot.getAbsoluteFile(),
+            BuiltinLibraryLoader::new);
     }
 
     public static void debugPrint(String v) {
@@ -904,7 +1073,7 @@ public class CLI {
         }
     }
 
-    public static void debugPrint(Exception e) {
+    public static void debugPrint(Throwable e) {
         if (debugPrintingEnabled) {
             e.printStackTrace();
         }
@@ -914,8 +1083,13 @@ public class CLI {
         debugPrintingEnabled = true;
     }
 
-    private static Reader getLibraryReader(String filename) throws IOException {
-        Path sourcePath = Paths.get(libRoot.getAbsolutePath(), filename);
+    static boolean isDebugPrintingEnabled() {
+        return debugPrintingEnabled;
+    }
+
+    private static Reader getLibraryReader(CompilerOptions options, String filename)
+            throws IOException {
+        Path sourcePath = Paths.get(options.libRoot.getAbsolutePath(), filename);
         debugPrint("Opening reader to: " + sourcePath);
         return new BufferedReader(new FileReader(sourcePath.toFile()));
     }
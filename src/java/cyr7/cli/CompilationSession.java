@@ -0,0 +1,319 @@
+package cyr7.cli;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+import cyr7.ast.Node;
+import cyr7.ast.toplevel.FunctionDeclNode;
+import cyr7.ast.toplevel.XiProgramNode;
+import cyr7.cfg.ir.constructor.CFGConstructor;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.ir.AstToIrVisitor;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.IdGenerator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.parser.ParserUtil;
+import cyr7.typecheck.InterfaceCache;
+import cyr7.typecheck.IxiFileOpener;
+import cyr7.typecheck.TypeCheckUtil;
+import cyr7.util.PhaseTimings;
+import cyr7.visitor.VisitorFactory;
+import cyr7.x86.ASMUtil;
+import cyr7.x86.asm.ASMLine;
+
+/**
+ * The artifacts of compiling a single source file. Each stage of the compiler
+ * runs at most once per session, the first time that its result is needed,
+ * and its result is reused by every later stage. An invocation that asks for
+ * several outputs of a file therefore reads, parses, typechecks and optimizes
+ * the file only once.
+ * <p>
+ * Every stage shares the session's {@link IdGenerator}, so names created by a
+ * later stage never collide with those of an earlier one. A session is not
+ * thread-safe.
+ */
+final class CompilationSession {
+
+    /**
+     * Reads the contents of {@code reader} and starts a session for them.
+     */
+    static CompilationSession read(Reader reader, String filename,
+                                   IxiFileOpener opener,
+                                   InterfaceCache interfaceCache,
+                                   CompilerOptions options) throws IOException {
+        StringWriter source = new StringWriter();
+        reader.transferTo(source);
+        return new CompilationSession(source.toString(), filename, opener,
+            interfaceCache, options);
+    }
+
+    private final String source;
+    private final String filename;
+    private final boolean isIXI;
+    private final IxiFileOpener opener;
+    private final InterfaceCache interfaceCache;
+    private final CompilerOptions options;
+    private final IdGenerator generator = new DefaultIdGenerator();
+    private final PhaseTimings timings;
+
+    private final Stage<Node> ast = new Stage<>(this::parse);
+    private final Stage<Node> typedAst = new Stage<>(this::typeCheck);
+    private final Stage<IRCompUnit> mir = new Stage<>(this::translate);
+    private final Stage<IRCompUnit> initialLir = new Stage<>(this::lowerInitial);
+    private final Stage<IRCompUnit> lir = new Stage<>(this::lower);
+    private final Stage<Map<String, CFGStartNode>> initialCfg
+        = new Stage<>(() -> CFGConstructor.constructCFG(initialLir()));
+    private final Stage<Map<String, CFGStartNode>> finalCfg
+        = new Stage<>(this::optimize);
+    private final Stage<List<ASMLine>> asm = new Stage<>(this::generateASM);
+
+    private CompilationSession(String source, String filename,
+                               IxiFileOpener opener,
+                               InterfaceCache interfaceCache,
+                               CompilerOptions options) {
+        this.source = source;
+        this.filename = filename;
+        this.isIXI = filename.endsWith(".ixi");
+        this.opener = opener;
+        this.interfaceCache = interfaceCache;
+        this.options = options;
+        this.timings = options.wantsTimings
+            ? PhaseTimings.enabled()
+            : PhaseTimings.disabled();
+    }
+
+    String filename() {
+        return filename;
+    }
+
+    boolean isIXI() {
+        return isIXI;
+    }
+
+    /**
+     * Returns how long each stage has taken so far, if timings were
+     * requested.
+     */
+    PhaseTimings timings() {
+        return timings;
+    }
+
+    /**
+     * Returns a reader over the contents of the source file.
+     */
+    Reader source() {
+        return new StringReader(source);
+    }
+
+    Node ast() throws Exception {
+        return ast.get();
+    }
+
+    Node typedAst() throws Exception {
+        return typedAst.get();
+    }
+
+    IRCompUnit mir() throws Exception {
+        return mir.get();
+    }
+
+    /**
+     * Returns the lowered intermediate code before any optimization.
+     */
+    IRCompUnit initialLir() throws Exception {
+        return initialLir.get();
+    }
+
+    /**
+     * Returns the lowered intermediate code after every enabled optimization,
+     * flattened from {@link #finalCfg()}.
+     */
+    IRCompUnit lir() throws Exception {
+        return lir.get();
+    }
+
+    Map<String, CFGStartNode> initialCfg() throws Exception {
+        return initialCfg.get();
+    }
+
+    /**
+     * Returns the CFG of each function after every enabled optimization.
+     */
+    Map<String, CFGStartNode> finalCfg() throws Exception {
+        return finalCfg.get();
+    }
+
+    List<ASMLine> asm() throws Exception {
+        return asm.get();
+    }
+
+    /**
+     * Writes the assembly of the file to {@code writer}. Unless the assembly
+     * has already been generated, or is assembled from cached functions,
+     * each function is written as soon as it has been allocated, and the
+     * assembly of the whole file is never held in memory.
+     */
+    void writeASM(Writer writer) throws Exception {
+        if (asm.isDone() || options.assemblyCacheRoot != null) {
+            ASMUtil.writeASM(asm(), writer);
+            return;
+        }
+        ASMUtil.writeASM(lir(), generator, options.optConfig, options.tiler,
+            options.asmConfig(), timings, writer);
+    }
+
+    private Node parse() throws Exception {
+        return ParserUtil.parseNode(source(), filename, isIXI, timings);
+    }
+
+    private Node typeCheck() throws Exception {
+        Node node = ast();
+        timings.time("typechecking", () -> {
+            TypeCheckUtil.typeCheck(node, opener, interfaceCache);
+            return null;
+        });
+        return node;
+    }
+
+    private IRCompUnit translate() throws Exception {
+        return translate(typedAst());
+    }
+
+    private IRCompUnit translate(Node program) {
+        return timings.time("AstToIrVisitor", () -> (IRCompUnit) program
+            .accept(VisitorFactory.Companion.astToIrVisitor(generator))
+            .assertSecond());
+    }
+
+    private IRCompUnit lowerInitial() throws Exception {
+        return IRUtil.lowerInitial(mir(), generator);
+    }
+
+    private Map<String, CFGStartNode> optimize() throws Exception {
+        return IRUtil.lowerToCFG(mir(), generator, options.optConfig, timings);
+    }
+
+    private IRCompUnit lower() throws Exception {
+        return IRUtil.flatten(finalCfg(), mir(), timings);
+    }
+
+    private List<ASMLine> generateASM() throws Exception {
+        if (options.assemblyCacheRoot != null
+                && typedAst() instanceof XiProgramNode) {
+            return generateIncrementalASM((XiProgramNode) typedAst());
+        }
+        return ASMUtil.generateASM(lir(), generator, options.optConfig,
+            options.tiler, options.asmConfig(), timings);
+    }
+
+    /**
+     * Generates the assembly of {@code program}, reusing the cached assembly
+     * of every function whose fingerprint is unchanged. Only the remaining
+     * functions are translated, optimized and allocated, and their assembly
+     * is added to the cache. With inlining, every function is translated and
+     * optimized, so that the changed functions inline the same callees as
+     * when the whole file is compiled, but still only the changed functions
+     * are allocated. The functions are emitted in the order in which they
+     * are declared.
+     */
+    private List<ASMLine> generateIncrementalASM(XiProgramNode program)
+            throws Exception {
+        AssemblyCache cache = new AssemblyCache(options.assemblyCacheRoot.toPath());
+
+        Map<String, String> allFingerprints =
+            AssemblyCache.fingerprints(program, options);
+        Map<String, List<ASMLine>> functions = new LinkedHashMap<>();
+        Map<String, String> fingerprints = new HashMap<>();
+        List<FunctionDeclNode> changed = new ArrayList<>();
+        for (FunctionDeclNode function : program.functions) {
+            String name = AstToIrVisitor.assemblyFunctionName(
+                function.header.identifier, function.header.getType());
+            String fingerprint = allFingerprints.get(name);
+            Optional<List<ASMLine>> cached = cache.get(fingerprint);
+            functions.put(name, cached.orElse(null));
+            if (cached.isEmpty()) {
+                fingerprints.put(name, fingerprint);
+                changed.add(function);
+            }
+        }
+        CLI.debugPrint("Functions reused from the assembly cache: "
+            + (functions.size() - changed.size()) + " of " + functions.size());
+
+        if (!changed.isEmpty()) {
+            XiProgramNode translated = options.optConfig.inl()
+                ? program
+                : new XiProgramNode(program.getLocation(), program.uses, changed);
+            IRCompUnit lowered = IRUtil.lower(translate(translated),
+                generator, options.optConfig, timings);
+            IRCompUnit compUnit = new IRCompUnit(lowered.location(),
+                lowered.name());
+            lowered.functions().forEach((name, function) -> {
+                if (functions.get(name) == null) {
+                    compUnit.appendFunc(function);
+                }
+            });
+            Map<String, List<ASMLine>> generated = ASMUtil.generateFunctionASM(
+                compUnit, generator, options.optConfig, options.tiler,
+                options.asmConfig(), timings);
+            generated.forEach((name, lines) -> {
+                if (fingerprints.containsKey(name)) {
+                    cache.put(fingerprints.get(name), lines);
+                }
+                functions.put(name, lines);
+            });
+        }
+
+        List<ASMLine> lines = new ArrayList<>();
+        functions.values().forEach(lines::addAll);
+        return lines;
+    }
+
+    /**
+     * The result of a stage, computed the first time it is requested. If the
+     * stage fails, the same exception is thrown every time its result is
+     * requested.
+     */
+    private static final class Stage<T> {
+
+        private final Callable<T> compute;
+        private boolean done = false;
+        private T result;
+        private Exception failure;
+
+        Stage(Callable<T> compute) {
+            this.compute = compute;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        T get() throws Exception {
+            if (!done) {
+                try {
+                    result = compute.call();
+                } catch (Exception e) {
+                    failure = e;
+                }
+                done = true;
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+
+    }
+
+}
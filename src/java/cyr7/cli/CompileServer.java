@@ -0,0 +1,79 @@
+package cyr7.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Serves compile requests in a single, long-running JVM, so that requests do
+ * not pay for JVM startup, class loading and a cold JIT.
+ * <p>
+ * Each request is one line holding the arguments of an {@code xic}
+ * invocation, separated by whitespace. The response to a request is made up
+ * of the messages that {@code xic} would print, one line
+ * {@code output <path>} for each file that was written, and a last line
+ * {@code done}. The server stops at the end of its input or at a line
+ * {@code exit}.
+ * <p>
+ * Requests do not share any settings. They do share the library loaders, so
+ * the builtin interfaces are only read once.
+ */
+final class CompileServer {
+
+    static final String OUTPUT_PREFIX = "output ";
+    static final String END_OF_RESPONSE = "done";
+    static final String EXIT = "exit";
+
+    /**
+     * Serves the requests read from {@code in}, writing each response to
+     * {@code out}.
+     */
+    static void serve(BufferedReader in, PrintWriter out) {
+        String request;
+        try {
+            while ((request = in.readLine()) != null) {
+                request = request.strip();
+                if (request.equals(EXIT)) {
+                    break;
+                }
+                if (!request.isEmpty()) {
+                    respond(request.split("\\s+"), out);
+                }
+            }
+        } catch (IOException e) {
+            CLI.debugPrint(e);
+        }
+    }
+
+    private static void respond(String[] args, PrintWriter out) {
+        StringWriter messages = new StringWriter();
+        List<Path> outputs;
+        try {
+            outputs = CLI.run(args, new PrintWriter(messages));
+        } catch (Throwable e) {
+            // A failed request must not bring down the server, even when it
+            // fails with an Error such as running out of memory: the memory
+            // of the request is freed once it is abandoned.
+            CLI.debugPrint(e);
+            messages.write("Unexpected error occurred when compiling: " + e);
+            outputs = List.of();
+        }
+
+        String message = messages.toString();
+        out.write(message);
+        if (!message.isEmpty() && !message.endsWith("\n")) {
+            out.println();
+        }
+        for (Path output : outputs) {
+            out.println(OUTPUT_PREFIX + output);
+        }
+        out.println(END_OF_RESPONSE);
+        out.flush();
+    }
+
+    private CompileServer() { }
+
+}
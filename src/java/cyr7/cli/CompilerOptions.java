@@ -0,0 +1,71 @@
+package cyr7.cli;
+
+import java.io.File;
+
+import cyr7.x86.ASMConfig;
+import cyr7.x86.ASMUtil.TilerConf;
+
+/**
+ * The settings of one invocation of the compiler. An instance is populated
+ * while the command line is parsed and is only read afterwards, so it can be
+ * shared by files that are compiled concurrently.
+ */
+final class CompilerOptions {
+
+    boolean wantsLexing = false;
+    boolean wantsParsing = false;
+    boolean wantsTypechecking = false;
+    boolean wantsInitialIRGen = false;
+    boolean wantsFinalIRGen = false;
+    boolean wantsIrGen = false;
+    boolean wantsInitialDotGen = false;
+    boolean wantsFinalDotGen = false;
+    boolean wantsMirRun = false;
+    boolean wantsIrRun = false;
+    boolean wantsAssembly = true;
+    boolean wantsCommentedAssembly = false;
+    boolean wantsTimings = false;
+
+    /**
+     * If {@code true}, the timings report is written as JSON instead of as a
+     * table.
+     */
+    boolean timingsAsJSON = false;
+
+    /**
+     * Enable assertions at the assembly level. This specifically enables
+     * checking for 16-byte alignment for function calls.
+     */
+    boolean assemblyLevelAssertionsEnabled = false;
+
+    TilerConf tiler = TilerConf.COMPLEX;
+    final OptConfig optConfig;
+
+    File assemblyRoot = new File(".");
+    File sourceRoot = new File(".");
+    File libRoot = new File(".");
+    File destinationRoot = new File(".");
+
+    OperatingSystem target = OperatingSystem.LINUX;
+
+    /**
+     * The number of source files that may be compiled at the same time.
+     */
+    int jobs = 1;
+
+    /**
+     * The directory of the {@link AssemblyCache}, or {@code null} if every
+     * function is compiled from scratch.
+     */
+    File assemblyCacheRoot = null;
+
+    CompilerOptions(OptConfig optConfig) {
+        this.optConfig = optConfig;
+    }
+
+    ASMConfig asmConfig() {
+        return ASMConfig.of(wantsCommentedAssembly,
+            assemblyLevelAssertionsEnabled);
+    }
+
+}
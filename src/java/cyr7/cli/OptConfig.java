@@ -1,11 +1,16 @@
 package cyr7.cli;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import cyr7.cfg.ir.pass.Pass;
+import cyr7.cfg.ir.pass.PassGroup;
+import cyr7.cfg.ir.pass.Pipeline;
+
 public final class OptConfig {
 
     public static OptConfig none() {
@@ -26,6 +31,18 @@ public final class OptConfig {
 
     private final HashSet<Optimization> enabledOptimizations;
 
+    /**
+     * If {@code true}, the functions of a compilation unit are optimized
+     * concurrently.
+     */
+    private boolean parallel = false;
+
+    /**
+     * The passes that are run over the CFG of each function, or {@code null}
+     * if they follow from the enabled optimizations.
+     */
+    private Pipeline pipeline = null;
+
     private OptConfig(Set<Optimization> enabledOptimizations) {
         this.enabledOptimizations = new HashSet<>(enabledOptimizations);
     }
@@ -61,6 +78,112 @@ public final class OptConfig {
         return enabledOptimizations.contains(Optimization.DCE);
     }
 
+    public boolean cp() {
+        return enabledOptimizations.contains(Optimization.CP);
+    }
+
+    public boolean cse() {
+        return enabledOptimizations.contains(Optimization.CSE);
+    }
+
+    public boolean vn() {
+        return enabledOptimizations.contains(Optimization.VN);
+    }
+
+    public boolean inl() {
+        return enabledOptimizations.contains(Optimization.INL);
+    }
+
+    public boolean licm() {
+        return enabledOptimizations.contains(Optimization.LICM);
+    }
+
+    public boolean sr() {
+        return enabledOptimizations.contains(Optimization.SR);
+    }
+
+    public boolean pre() {
+        return enabledOptimizations.contains(Optimization.PRE);
+    }
+
+    public boolean ssa() {
+        return enabledOptimizations.contains(Optimization.SSA);
+    }
+
+    public boolean parallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the passes that are run over the CFG of each function. Unless
+     * a pipeline has been set explicitly, the CFG is first converted into
+     * SSA form, on which conditional constant propagation, value numbering,
+     * copy propagation and dead code elimination run together until none of
+     * them changes the CFG. The CFG is translated out of SSA form before
+     * the loop optimizations, invariant code motion, strength reduction and
+     * partial redundancy elimination, which then run once, followed by
+     * another round of the passes before them if they are enabled. Loop
+     * unrolling then runs once, and constants are finally folded once more.
+     */
+    public Pipeline pipeline() {
+        if (pipeline != null) {
+            return pipeline;
+        }
+        List<PassGroup> groups = new ArrayList<>();
+        List<Pass> cleanup = new ArrayList<>();
+        if (ssa()) {
+            groups.add(PassGroup.once(List.of(Pass.SSA)));
+        }
+        if (cp()) {
+            cleanup.add(Pass.CP);
+        }
+        if (cse() || vn()) {
+            cleanup.add(Pass.VN);
+        }
+        if (copy()) {
+            cleanup.add(Pass.COPY);
+        }
+        if (dce()) {
+            cleanup.add(Pass.DCE);
+        }
+        if (!cleanup.isEmpty()) {
+            groups.add(PassGroup.fixpoint(cleanup,
+                Pipeline.DEFAULT_MAX_ITERATIONS));
+        }
+        List<Pass> loops = new ArrayList<>();
+        if (licm()) {
+            loops.add(Pass.LICM);
+        }
+        if (sr()) {
+            loops.add(Pass.SR);
+        }
+        if (pre()) {
+            loops.add(Pass.PRE);
+        }
+        if (!loops.isEmpty()) {
+            groups.add(PassGroup.once(loops));
+            if (!cleanup.isEmpty()) {
+                groups.add(PassGroup.fixpoint(cleanup,
+                    Pipeline.DEFAULT_MAX_ITERATIONS));
+            }
+        }
+        if (lu()) {
+            groups.add(PassGroup.once(List.of(Pass.LU)));
+        }
+        if (cf()) {
+            groups.add(PassGroup.once(List.of(Pass.CF)));
+        }
+        return Pipeline.of(groups);
+    }
+
+    public void setPipeline(Pipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
     public void set(Optimization opt, boolean enabled) {
         if (enabled) {
             enabledOptimizations.add(opt);
@@ -17,7 +17,8 @@ public enum Optimization {
     LICM,
     PRE,
     CP,
-    VN;
+    VN,
+    SSA;
 
     @Override
     public String toString() {
@@ -50,6 +51,8 @@ public enum Optimization {
                 return "Constant propagation";
             case VN:
                 return "Local value numbering";
+            case SSA:
+                return "Static single assignment form";
             default:
                 return "";
         }
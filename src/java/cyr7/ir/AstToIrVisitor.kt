@@ -31,39 +31,46 @@ import kotlin.collections.toList
 
 class AstToIrVisitor(val generator: IdGenerator): IAstToIrVisitor {
 
-    private fun assemblyFunctionName(name: String, f: FunctionType): String {
-        return assemblyFunctionName(name, f.input, f.output)
-    }
-
-    private fun assemblyFunctionName(n: String, inputType: ExpandedType,
-                                     outputType: ExpandedType): String {
-        val name = "_I" + n.replace("_", "__") + "_"
-        return name + typeIdentifier(outputType, false) + typeIdentifier(inputType, true)
-    }
-
-    private fun typeIdentifier(t: ExpandedType, isInput: Boolean): String {
-        return if (t.isSubtypeOfInt) {
-            "i"
-        } else if (t.isSubtypeOfBool) {
-            "b"
-        } else if (t.isSubtypeOfFloat) {
-            "f"
-        } else if (t.isUnit) {
-            if (isInput) "" else "p"
-        } else if (t.isSubtypeOfArray) {
-            "a" + typeIdentifier(ExpandedType(t.innerArrayType), isInput)
-        } else if (t.isTuple) {
-            val types = StringBuffer()
-            t.types.forEach { type: OrdinaryType ->
-                types.append(typeIdentifier(ExpandedType(type), isInput))
-            }
-            if (isInput) {
-                types.toString()
+    companion object {
+        /**
+         * Returns the name of the function [name] of type [f] in the generated
+         * code, which encodes the type of the function.
+         */
+        @JvmStatic
+        fun assemblyFunctionName(name: String, f: FunctionType): String {
+            return assemblyFunctionName(name, f.input, f.output)
+        }
+
+        private fun assemblyFunctionName(n: String, inputType: ExpandedType,
+                                         outputType: ExpandedType): String {
+            val name = "_I" + n.replace("_", "__") + "_"
+            return name + typeIdentifier(outputType, false) + typeIdentifier(inputType, true)
+        }
+
+        private fun typeIdentifier(t: ExpandedType, isInput: Boolean): String {
+            return if (t.isSubtypeOfInt) {
+                "i"
+            } else if (t.isSubtypeOfBool) {
+                "b"
+            } else if (t.isSubtypeOfFloat) {
+                "f"
+            } else if (t.isUnit) {
+                if (isInput) "" else "p"
+            } else if (t.isSubtypeOfArray) {
+                "a" + typeIdentifier(ExpandedType(t.innerArrayType), isInput)
+            } else if (t.isTuple) {
+                val types = StringBuffer()
+                t.types.forEach { type: OrdinaryType ->
+                    types.append(typeIdentifier(ExpandedType(type), isInput))
+                }
+                if (isInput) {
+                    types.toString()
+                } else {
+                    "t" + t.types.size + types.toString()
+                }
             } else {
-                "t" + t.types.size + types.toString()
+                throw IllegalArgumentException("invalid type for function")
             }
-        } else {
-            throw IllegalArgumentException("invalid type for function")
         }
     }
 
@@ -119,7 +126,7 @@ class AstToIrVisitor(val generator: IdGenerator): IAstToIrVisitor {
         val program = make.IRCompUnit(file)
         for (function in n.functions) {
             val funStmts = function.accept(this).assertSecond()
-            val funcName = this.assemblyFunctionName(function.header.identifier,
+            val funcName = assemblyFunctionName(function.header.identifier,
                     function.header.type)
             program.appendFunc(
                     make.IRFuncDecl(funcName, funStmts, function.header.type))
@@ -1,16 +1,23 @@
 package cyr7.ir;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import cyr7.ast.Node;
 import cyr7.cfg.ir.constructor.CFGConstructor;
 import cyr7.cfg.ir.flatten.CFGFlattener;
-import cyr7.cfg.ir.opt.CopyPropagationOptimization;
-import cyr7.cfg.ir.opt.DeadCodeElimOptimization;
-import cyr7.cfg.ir.opt.LoopUnrollingOptimization;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.pass.Pass;
+import cyr7.cfg.ir.pass.PassManager;
+import cyr7.cfg.ir.pass.Pipeline;
 import cyr7.cli.CLI;
 import cyr7.cli.OptConfig;
 import cyr7.ir.block.TraceOptimizer;
@@ -19,10 +26,12 @@ import cyr7.ir.lowering.LoweringVisitor;
 import cyr7.ir.nodes.IRCompUnit;
 import cyr7.ir.nodes.IRNode;
 import cyr7.ir.optimize.IRConstFoldVisitor;
+import cyr7.ir.optimize.IRInliner;
 import cyr7.ir.visit.CheckConstFoldedIRVisitor;
 import cyr7.parser.ParserUtil;
 import cyr7.typecheck.IxiFileOpener;
 import cyr7.typecheck.TypeCheckUtil;
+import cyr7.util.PhaseTimings;
 import cyr7.visitor.VisitorFactory;
 import edu.cornell.cs.cs4120.util.CodeWriterSExpPrinter;
 import edu.cornell.cs.cs4120.util.SExpPrinter;
@@ -35,99 +44,118 @@ public class IRUtil {
         IRCompUnit compUnit,
         IdGenerator generator,
         OptConfig optConfig) {
+        return lower(compUnit, generator, optConfig, PhaseTimings.disabled());
+    }
+
+    /**
+     * Lowers and optimizes {@code compUnit}, recording how long each pass
+     * takes in {@code timings}. Passes over CFGs are timed per function.
+     *
+     * @see #lowerToCFG(IRCompUnit, IdGenerator, OptConfig, PhaseTimings)
+     */
+    public static IRCompUnit lower(
+        IRCompUnit compUnit,
+        IdGenerator generator,
+        OptConfig optConfig,
+        PhaseTimings timings) {
+
+        IRCompUnit lowered = flatten(
+            lowerToCFG(compUnit, generator, optConfig, timings),
+            compUnit,
+            timings);
+
+        CLI.lazyDebugPrint(lowered, unit -> "Lowered MIR: \n" + unit);
+        CLI.debugPrint("Actually Const Folded? " + lowered.aggregateChildren(new CheckConstFoldedIRVisitor()));
+        CLI.debugPrint("Actually Canonical? " + lowered.aggregateChildren(new CheckConstFoldedIRVisitor()));
+        CLI.debugPrint("Optimizations Performed: " + optConfig.convertToCLI());
+        return lowered;
+    }
+
+    /**
+     * Lowers {@code compUnit} and returns the optimized CFG of each of its
+     * functions. If inlining is enabled, calls to small functions are
+     * inlined into the lowered compilation unit first. The CFG of a function
+     * is constructed once, directly from its reordered basic blocks, and
+     * every pass of the {@link OptConfig#pipeline() pipeline} of
+     * {@code optConfig} changes it in place, so the mid-end never rebuilds a
+     * CFG. The CFGs are flattened into lowered IR by {@link #flatten}.
+     */
+    public static Map<String, CFGStartNode> lowerToCFG(
+        IRCompUnit compUnit,
+        IdGenerator generator,
+        OptConfig optConfig,
+        PhaseTimings timings) {
 
         CLI.debugPrint("Constant Folding Enabled: " + optConfig.cf());
 
         CLI.lazyDebugPrint(compUnit, unit -> "MIR: \n" + unit);
 
         if (optConfig.cf()) {
-            IRNode node = compUnit.accept(new IRConstFoldVisitor()).assertSecond();
+            IRCompUnit mir = compUnit;
+            IRNode node = timings.time("IRConstFoldVisitor",
+                () -> mir.accept(new IRConstFoldVisitor()).assertSecond());
             compUnit = (IRCompUnit) node;
             CLI.lazyDebugPrint(compUnit, unit -> "Constant-Folded MIR: \n" + unit);
         }
 
-        compUnit = compUnit.accept(new LoweringVisitor(generator)).assertThird();
-        final var functionToBlocks =
-                TraceOptimizer.getOptimizedBasicBlocks(compUnit, generator);
-        final var alt = CFGConstructor.constructBlockCFG(functionToBlocks);
-
-        if (optConfig.copy()) {
-            alt.keySet().stream().forEach(functionName -> {
-                var optimizedCfg = alt.get(functionName);
-                optimizedCfg = CopyPropagationOptimization.optimize(optimizedCfg);
-                alt.put(functionName, optimizedCfg);
-            });
-        }
-        if (optConfig.dce()) {
-            // Perform dead code removal 3 times to be safe.
-            for (int i = 0; i < 3; i++) {
-                alt.keySet().stream().forEach(functionName -> {
-                    var optimizedCfg = alt.get(functionName);
-                    optimizedCfg = DeadCodeElimOptimization.optimize(optimizedCfg);
-                    alt.put(functionName, optimizedCfg);
-                });
-            }
-        }
-        if (optConfig.copy()) {
-            alt.keySet().stream().forEach(functionName -> {
-                var optimizedCfg = alt.get(functionName);
-                optimizedCfg = CopyPropagationOptimization.optimize(optimizedCfg);
-                alt.put(functionName, optimizedCfg);
-            });
-        }
-        if (optConfig.dce()) {
-            // Perform dead code removal 3 times to be safe.
-            for (int i = 0; i < 3; i++) {
-                alt.keySet().stream().forEach(functionName -> {
-                    var optimizedCfg = alt.get(functionName);
-                    optimizedCfg = DeadCodeElimOptimization.optimize(optimizedCfg);
-                    alt.put(functionName, optimizedCfg);
-                });
-            }
-        }
-        compUnit = CFGFlattener.flatten(alt, compUnit);
-        final var secondPhase = CFGConstructor.constructCFG(compUnit);
-        if (optConfig.copy()) {
-            secondPhase.keySet().stream().forEach(functionName -> {
-                var optimizedCfg = secondPhase.get(functionName);
-                optimizedCfg = CopyPropagationOptimization.optimize(optimizedCfg);
-                secondPhase.put(functionName, optimizedCfg);
-            });
-        }
-        if (optConfig.dce()) {
-            // Perform dead code removal 3 times to be safe.
-            for (int i = 0; i < 3; i++) {
-                secondPhase.keySet().stream().forEach(functionName -> {
-                    var optimizedCfg = secondPhase.get(functionName);
-                    optimizedCfg = DeadCodeElimOptimization.optimize(optimizedCfg);
-                    secondPhase.put(functionName, optimizedCfg);
-                });
-            }
-        }
-
-        compUnit = CFGFlattener.flatten(secondPhase, compUnit);
-
-        if (optConfig.lu()) {
-            final var loopUnrollCFG = CFGConstructor.constructCFG(compUnit);
-            loopUnrollCFG.keySet().stream().forEach(functionName -> {
-                if (!functionName.equals("_I*premain*_p")) {
-                    var optimizedCfg = loopUnrollCFG.get(functionName);
-                    optimizedCfg = LoopUnrollingOptimization.optimize(optimizedCfg);
-                    loopUnrollCFG.put(functionName, optimizedCfg);
-                }
-            });
-            compUnit = CFGFlattener.flatten(loopUnrollCFG, compUnit);
-        }
+        IRCompUnit folded = compUnit;
+        IRCompUnit lowered = timings.time("LoweringVisitor",
+            () -> folded.accept(new LoweringVisitor(generator)).assertThird());
+        IRCompUnit canonical = optConfig.inl()
+            ? timings.time("IRInliner",
+                () -> IRInliner.optimize(lowered, generator))
+            : lowered;
+        final var traces = timings.time("TraceOptimizer",
+            () -> TraceOptimizer.getOptimizedBasicBlocks(canonical, generator));
+        final var cfgs = timings.time("CFG construction",
+            () -> CFGConstructor.constructTraceCFG(traces, canonical.location()));
+
+        Pipeline pipeline = optConfig.pipeline();
+        Pipeline premainPipeline = pipeline.without(Pass.LU);
+        optimizeFunctions(cfgs, optConfig.parallel(), (functionName, cfg) -> {
+            PassManager.run(functionName.equals("_I*premain*_p")
+                    ? premainPipeline
+                    : pipeline,
+                functionName, cfg, timings);
+            return cfg;
+        });
+        return cfgs;
+    }
 
-        if (optConfig.cf()) {
-            compUnit = (IRCompUnit)compUnit.accept(new IRConstFoldVisitor()).assertSecond();
-        }
+    /**
+     * Flattens {@code cfgs}, the CFGs of the functions of {@code compUnit},
+     * into lowered IR. The CFGs themselves are left unchanged.
+     */
+    public static IRCompUnit flatten(
+        Map<String, CFGStartNode> cfgs,
+        IRCompUnit compUnit,
+        PhaseTimings timings) {
+        return timings.time("CFG flattening",
+            () -> CFGFlattener.flatten(cfgs, compUnit));
+    }
 
-        CLI.lazyDebugPrint(compUnit, unit -> "Lowered MIR: \n" + unit);
-        CLI.debugPrint("Actually Const Folded? " + compUnit.aggregateChildren(new CheckConstFoldedIRVisitor()));
-        CLI.debugPrint("Actually Canonical? " + compUnit.aggregateChildren(new CheckConstFoldedIRVisitor()));
-        CLI.debugPrint("Optimizations Performed: " + optConfig.convertToCLI());
-        return compUnit;
+    /**
+     * Replaces the CFG of each function in {@code cfgs} with the result of
+     * applying {@code optimization} to it. The functions of a compilation unit
+     * are optimized independently of one another, so if {@code parallel} is
+     * set they are optimized concurrently on the common fork/join pool. The
+     * resulting CFGs are the same as when the functions are optimized one by
+     * one.
+     */
+    private static void optimizeFunctions(
+        Map<String, CFGStartNode> cfgs,
+        boolean parallel,
+        BiFunction<String, CFGStartNode, CFGStartNode> optimization) {
+
+        var functionNames = new ArrayList<>(cfgs.keySet());
+        var stream = parallel
+            ? functionNames.parallelStream()
+            : functionNames.stream();
+        Map<String, CFGStartNode> optimized = stream.collect(
+            Collectors.toMap(
+                Function.identity(),
+                functionName -> optimization.apply(functionName, cfgs.get(functionName))));
+        cfgs.putAll(optimized);
     }
 
     public static void mirRun(
@@ -144,6 +172,15 @@ public class IRUtil {
         IRCompUnit compUnit = (IRCompUnit)
             result.accept(VisitorFactory.Companion.astToIrVisitor(generator)).assertSecond();
 
+        mirRun(compUnit, writer);
+    }
+
+    /**
+     * Interprets the middle-level intermediate code {@code compUnit}, writing
+     * the value returned by main to {@code writer}.
+     */
+    public static void mirRun(IRCompUnit compUnit, Writer writer)
+            throws IOException {
         IRSimulator sim = new IRSimulator(compUnit);
         long retVal = sim.call("_Imain_paai");
         writer.append(String.valueOf(retVal)).append(System.lineSeparator());
@@ -163,10 +200,7 @@ public class IRUtil {
             optConfig,
             new DefaultIdGenerator());
 
-        SExpPrinter printer
-            = new CodeWriterSExpPrinter(new PrintWriter(writer));
-        lowered.printSExp(printer);
-        printer.flush();
+        printSExp(lowered, writer);
     }
 
     public static void initialIRGen(
@@ -181,10 +215,7 @@ public class IRUtil {
                 fileOpener,
                 new DefaultIdGenerator());
 
-        SExpPrinter printer
-                = new CodeWriterSExpPrinter(new PrintWriter(writer));
-        lowered.printSExp(printer);
-        printer.flush();
+        printSExp(lowered, writer);
     }
 
     public static void irRun(
@@ -201,11 +232,30 @@ public class IRUtil {
             optConfig,
             new DefaultIdGenerator());
 
+        irRun(lowered, writer);
+    }
+
+    /**
+     * Interprets the lowered intermediate code {@code lowered}, writing the
+     * value returned by main to {@code writer}.
+     */
+    public static void irRun(IRCompUnit lowered, Writer writer)
+            throws IOException {
         IRSimulator sim = new IRSimulator(lowered);
         long retVal = sim.call("_Imain_paai", 0);
         writer.append(String.valueOf(retVal)).append(System.lineSeparator());
     }
 
+    /**
+     * Writes the S-expression of {@code node} to {@code writer}.
+     */
+    public static void printSExp(IRNode node, Writer writer) {
+        SExpPrinter printer
+            = new CodeWriterSExpPrinter(new PrintWriter(writer));
+        node.printSExp(printer);
+        printer.flush();
+    }
+
     public static String sexpr(IRNode node) {
         StringWriter writer = new StringWriter();
         SExpPrinter printer =
@@ -226,10 +276,40 @@ public class IRUtil {
 
         IRCompUnit compUnit = (IRCompUnit) result.accept(
                 VisitorFactory.Companion.astToIrVisitor(generator)).assertSecond();
+        return lowerInitial(compUnit, generator);
+    }
+
+    /**
+     * Lowers {@code compUnit} and reorders its basic blocks into traces,
+     * without performing any optimizations.
+     */
+    public static IRCompUnit lowerInitial(
+            IRCompUnit compUnit,
+            IdGenerator generator) {
         compUnit = compUnit.accept(new LoweringVisitor(generator)).assertThird();
         return TraceOptimizer.optimize(compUnit, generator);
     }
 
+    /**
+     * Returns the optimized CFG of each function in the file read from
+     * {@code reader}.
+     */
+    public static Map<String, CFGStartNode> generateCFG(
+        Reader reader,
+        String filename,
+        IxiFileOpener fileOpener,
+        OptConfig optConfig,
+        IdGenerator generator) throws Exception {
+
+        Node result = ParserUtil.parseNode(reader, filename, false);
+        TypeCheckUtil.typeCheck(result, fileOpener);
+
+        IRCompUnit compUnit = (IRCompUnit)
+            result.accept(VisitorFactory.Companion.astToIrVisitor(generator)).assertSecond();
+
+        return lowerToCFG(compUnit, generator, optConfig, PhaseTimings.disabled());
+    }
+
     public static IRCompUnit generateIR(
         Reader reader,
         String filename,
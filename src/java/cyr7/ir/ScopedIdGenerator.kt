@@ -0,0 +1,58 @@
+package cyr7.ir
+
+/**
+ * Generates temporary names and labels that belong to [scope], such as a
+ * single function of a compilation unit. Every name is suffixed with the
+ * scope, so generators of different scopes never create the same name and
+ * can be used by different threads at the same time. Argument and return
+ * value temps are not scoped.
+ */
+class ScopedIdGenerator(private val scope: String) : IdGenerator {
+    companion object {
+        /**
+         * Returns a generator scoped to the function named [name]. Characters
+         * of [name] that may not appear in an assembly label, and `_` itself,
+         * are escaped as `_`, their hex code and `_`, so the labels it
+         * creates can be emitted as they are, and functions with different
+         * names never share a scope.
+         */
+        @JvmStatic
+        fun forFunction(name: String): ScopedIdGenerator {
+            return ScopedIdGenerator(escape(name))
+        }
+
+        private fun escape(name: String): String {
+            val escaped = StringBuilder(name.length)
+            name.codePoints().forEach { c ->
+                if (c < 128 && Character.isLetterOrDigit(c)) {
+                    escaped.appendCodePoint(c)
+                } else {
+                    escaped.append('_').append(Integer.toHexString(c)).append('_')
+                }
+            }
+            return escaped.toString()
+        }
+    }
+
+    private val generator = DefaultIdGenerator()
+
+    override fun newLabel(): String {
+        return generator.newLabel() + "_" + scope
+    }
+
+    override fun newTemp(): String {
+        return generator.newTemp() + "_" + scope
+    }
+
+    override fun newTemp(description: String): String {
+        return generator.newTemp(description) + "_" + scope
+    }
+
+    override fun retTemp(n: Int): String {
+        return generator.retTemp(n)
+    }
+
+    override fun argTemp(n: Int): String {
+        return generator.argTemp(n)
+    }
+}
@@ -0,0 +1,175 @@
+package cyr7.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRTemp;
+import cyr7.util.BitVector;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+/**
+ * Assigns the temp names of one function, or of one run of the interpreter,
+ * dense integer ids, so that analyses can index arrays and bit vectors by
+ * temp instead of hashing and comparing names. Ids are given out in the order
+ * that names are first seen, starting from 0, so they are bounded by the
+ * number of temps that the owner of the table has seen.
+ * <p>
+ * A table is owned by whoever numbers the temps, such as an analysis of a
+ * function, and is dropped with it. Tables are not shared between threads.
+ * The table of the temps of a function's CFG is kept by its
+ * {@link cyr7.cfg.ir.nodes.CFGStartNode start node}. The {@link IRTemp}s of
+ * the CFG are given their ids in it when the CFG is built, and the temps that
+ * passes add are given theirs when they are made. The temps of the assembly
+ * of a function are numbered in a table of their own when its registers are
+ * allocated, as are the temps that spilling adds.
+ */
+public final class TempTable {
+
+    private final Map<String, Integer> idsByName = new HashMap<>();
+    private final List<String> namesById = new ArrayList<>();
+
+    /**
+     * Returns the id of the temp named {@code name}, giving it the next id if
+     * it has none yet.
+     */
+    public int id(String name) {
+        Integer id = idsByName.get(name);
+        if (id != null) {
+            return id;
+        }
+        namesById.add(name);
+        idsByName.put(name, namesById.size() - 1);
+        return namesById.size() - 1;
+    }
+
+    /**
+     * Returns the id of {@code temp}, which is the id that it carries if it
+     * was numbered in this table, so that it is only looked up by name if it
+     * was not.
+     */
+    public int id(IRTemp temp) {
+        int id = temp.id();
+        if (id >= 0 && id < namesById.size()
+                && namesById.get(id).equals(temp.name())) {
+            return id;
+        }
+        return id(temp.name());
+    }
+
+    /**
+     * Returns {@code temp}, carrying its id in this table. A temp that
+     * already carries its id is returned as it is.
+     */
+    public IRTemp number(IRTemp temp) {
+        int id = id(temp);
+        if (id == temp.id()) {
+            return temp;
+        }
+        return new IRTemp(temp.location(), temp.name(), id);
+    }
+
+    /**
+     * Returns a temp named {@code name} that carries its id in this table.
+     */
+    public IRTemp temp(Location location, String name) {
+        return new IRTemp(location, name, id(name));
+    }
+
+    /**
+     * Returns the ids of the temps named in {@code names}, in increasing
+     * order.
+     */
+    public int[] sortedIds(Collection<String> names) {
+        int[] result = new int[names.size()];
+        int i = 0;
+        for (String name : names) {
+            result[i++] = id(name);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Returns the ids of the temps used in {@code exprs}, in increasing order
+     * and without repeats, reading the ids that the temps carry.
+     */
+    public int[] sortedUseIds(List<IRExpr> exprs) {
+        BitVector ids = new BitVector();
+        for (IRExpr expr : exprs) {
+            addUseIds(expr, ids);
+        }
+        int[] result = new int[ids.cardinality()];
+        int i = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    private void addUseIds(IRExpr expr, BitVector ids) {
+        if (expr instanceof IRTemp) {
+            ids.set(id((IRTemp) expr));
+        } else if (expr instanceof IRBinOp) {
+            addUseIds(((IRBinOp) expr).left(), ids);
+            addUseIds(((IRBinOp) expr).right(), ids);
+        } else if (expr instanceof IRMem) {
+            addUseIds(((IRMem) expr).expr(), ids);
+        } else if (expr instanceof IRCast) {
+            addUseIds(((IRCast) expr).getValue(), ids);
+        }
+    }
+
+    /**
+     * Returns the id of the temp named {@code name}, or -1 if it has none.
+     */
+    public int find(String name) {
+        Integer id = idsByName.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the name of the temp with id {@code id}.
+     */
+    public String name(int id) {
+        return namesById.get(id);
+    }
+
+    /**
+     * Returns the number of ids that have been assigned, which bounds every
+     * id from above.
+     */
+    public int size() {
+        return namesById.size();
+    }
+
+    /**
+     * Returns the ids of the temps named in {@code names}.
+     */
+    public BitVector ids(Collection<String> names) {
+        BitVector result = new BitVector();
+        for (String name : names) {
+            result.set(id(name));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the temps whose ids are set in {@code ids}.
+     */
+    public Set<String> names(BitVector ids) {
+        Set<String> result = new HashSet<>(ids.cardinality() * 2);
+        ids.forEach(id -> result.add(name(id)));
+        return result;
+    }
+
+}
@@ -1,6 +1,7 @@
 package cyr7.ir.interpret
 
 import cyr7.cli.CLI
+import cyr7.ir.TempTable
 import cyr7.ir.interpret.exception.Trap
 import cyr7.ir.interpret.heap.XiHeapFactory
 import cyr7.ir.nodes.*
@@ -36,6 +37,8 @@ open class IRSimulator(cu: IRCompUnit, val heapSize: Int, stdout: PrintStream) {
     private val compUnit = imb.visit(cu) as IRCompUnit
     private val indexToInsn: Map<Long, IRNode> = imb.indexToInsn()
     private val nameToIndex: Map<String, Long> = imb.nameToIndex()
+    /** the ids of the registers of every frame of this simulation  */
+    private val temps = TempTable()
 
     constructor(cu: IRCompUnit, stdout: PrintStream) : this(cu, DEFAULT_HEAP_SIZE, stdout)
     constructor(cu: IRCompUnit): this(cu, System.out)
@@ -283,8 +286,10 @@ open class IRSimulator(cu: IRCompUnit, val heapSize: Int, stdout: PrintStream) {
             /** instruction pointer  */
             private val simulator: IRSimulator,
             private var ip: Long) {
-        /** local registers (register name -> value)  */
-        private val regs: MutableMap<String, Long>
+        /** local registers, indexed by the id of their name in the simulator's TempTable  */
+        private var regs = LongArray(64)
+        /** the ids of the registers that have been written to  */
+        private val written = BitSet()
         private val r = Random.asJavaRandom()
 
         /**
@@ -292,13 +297,20 @@ open class IRSimulator(cu: IRCompUnit, val heapSize: Int, stdout: PrintStream) {
          * @param tempName name of the register
          * @return the value at the given register
          */
-        operator fun get(tempName: String): Long {
-            if (!regs.containsKey(tempName)) {
+        operator fun get(tempName: String): Long = get(simulator.temps.id(tempName))
+
+        /**
+         * Fetch the value at the register with the given id
+         * @param id id of the register in the simulator's TempTable
+         * @return the value at the given register
+         */
+        operator fun get(id: Int): Long {
+            if (!written[id]) {
                 /* Referencing a temp before having written to it - initialize
                    with garbage */
-                put(tempName, r.nextLong())
+                put(id, r.nextLong())
             }
-            return regs[tempName]!!
+            return regs[id]
         }
 
         /**
@@ -306,8 +318,19 @@ open class IRSimulator(cu: IRCompUnit, val heapSize: Int, stdout: PrintStream) {
          * @param tempName name of the register
          * @param value value to be stored
          */
-        fun put(tempName: String, value: Long) {
-            regs[tempName] = value
+        fun put(tempName: String, value: Long) = put(simulator.temps.id(tempName), value)
+
+        /**
+         * Store a value into the register with the given id
+         * @param id id of the register in the simulator's TempTable
+         * @param value value to be stored
+         */
+        fun put(id: Int, value: Long) {
+            if (id >= regs.size) {
+                regs = regs.copyOf(maxOf(id + 1, regs.size * 2))
+            }
+            regs[id] = value
+            written.set(id)
         }
 
         /**
@@ -337,11 +360,9 @@ open class IRSimulator(cu: IRCompUnit, val heapSize: Int, stdout: PrintStream) {
             get() = simulator.indexToInsn[ip] ?: throw Trap("No next instruction.  Forgot RETURN?")
 
         fun regs(): Map<String, Long> {
-            return Collections.unmodifiableMap(regs)
-        }
-
-        init {
-            regs = HashMap()
+            val named = HashMap<String, Long>()
+            written.stream().forEach { named[simulator.temps.name(it)] = regs[it] }
+            return Collections.unmodifiableMap(named)
         }
     }
 }
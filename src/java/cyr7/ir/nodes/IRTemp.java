@@ -12,20 +12,43 @@ import java_cup.runtime.ComplexSymbolFactory.Location;
  */
 public class IRTemp extends IRExpr_c {
     private String name;
+    private final int id;
 
     /**
      *
      * @param name name of this temporary register
      */
     public IRTemp(Location location, String name) {
+        this(location, name, -1);
+    }
+
+    /**
+     *
+     * @param name name of this temporary register
+     * @param id id of this temporary register in the
+     *           {@link cyr7.ir.TempTable TempTable} of its function
+     */
+    public IRTemp(Location location, String name, int id) {
         super(location);
         this.name = name;
+        this.id = id;
     }
 
     public String name() {
         return name;
     }
 
+    /**
+     * The id of this temporary register in the
+     * {@link cyr7.ir.TempTable TempTable} of its function, or -1 if it has
+     * not been numbered, as in IR that has not been built into a CFG. Temps
+     * are still compared by name, so a numbered temp equals the unnumbered
+     * temp of the same name.
+     */
+    public int id() {
+        return id;
+    }
+
     @Override
     public String label() {
         return "TEMP(" + name + ")";
@@ -0,0 +1,410 @@
+package cyr7.ir.optimize;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import cyr7.ir.IdGenerator;
+import cyr7.ir.nodes.*;
+import cyr7.visitor.MyIRVisitor;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Inlines calls to small functions of a lowered compilation unit.
+ * <p>
+ * A call {@code c_1, ..., c_m = CALL(NAME(f), e_1, ..., e_n)} is replaced by
+ * moves of its arguments into fresh temporaries, followed by a copy of the
+ * body of {@code f} in which every temporary and label is renamed apart:
+ * {@code _ARGi} becomes the temporary holding the ith argument,
+ * {@code _RETi} becomes the ith collector, and every {@code RETURN} jumps to
+ * a label placed after the copy.
+ * <p>
+ * A function is inlined only if it is defined in the compilation unit and
+ * cannot reach itself through calls, and only if it is small: it has at most
+ * {@link #SMALL_FUNCTION} statements, or it is called from one place only and
+ * has at most {@link #SINGLE_CALL_FUNCTION} statements. Callees are inlined
+ * into before their callers, so a call inlined into a callee is inlined
+ * along with it, and no caller is grown past {@link #MAX_CALLER} statements.
+ */
+public final class IRInliner {
+
+    /**
+     * Functions with at most this many statements are inlined at every call.
+     */
+    static final int SMALL_FUNCTION = 24;
+
+    /**
+     * Functions called from one place only are inlined there if they have at
+     * most this many statements.
+     */
+    static final int SINGLE_CALL_FUNCTION = 160;
+
+    /**
+     * Calls are not inlined into functions that have grown to this many
+     * statements.
+     */
+    static final int MAX_CALLER = 4000;
+
+    private IRInliner() {}
+
+    /**
+     * Returns {@code compUnit} with calls to small functions inlined, or
+     * {@code compUnit} itself if no call is inlined. The functions of
+     * {@code compUnit} are kept, since they may be called from other
+     * compilation units.
+     *
+     * @param compUnit A lowered compilation unit.
+     * @param generator The generator of the temporaries and labels of
+     *                  {@code compUnit}.
+     */
+    public static IRCompUnit optimize(IRCompUnit compUnit,
+                                      IdGenerator generator) {
+        final Map<String, List<IRStmt>> bodies = new LinkedHashMap<>();
+        compUnit.functions().forEach((name, function) ->
+            bodies.put(name, flatten(function.body())));
+
+        final Map<String, List<String>> callees = new LinkedHashMap<>();
+        final Map<String, Integer> callSites = new HashMap<>();
+        bodies.forEach((name, body) -> {
+            final List<String> called = new ArrayList<>();
+            for (IRStmt stmt : body) {
+                callee(stmt).filter(bodies::containsKey).ifPresent(callee -> {
+                    called.add(callee);
+                    callSites.merge(callee, 1, Integer::sum);
+                });
+            }
+            callees.put(name, called);
+        });
+
+        final Set<String> recursive = recursiveFunctions(callees);
+        final Set<String> changed = new HashSet<>();
+        for (String caller : calleesFirst(callees)) {
+            final List<IRStmt> body = bodies.get(caller);
+            final List<IRStmt> result = new ArrayList<>(body.size());
+            int size = body.size();
+            for (IRStmt stmt : body) {
+                final String callee = callee(stmt)
+                    .filter(bodies::containsKey)
+                    .filter(f -> !recursive.contains(f))
+                    .orElse(null);
+                if (callee != null
+                        && isWorthInlining(bodies.get(callee).size(),
+                                           callSites.get(callee))
+                        && size + bodies.get(callee).size() <= MAX_CALLER) {
+                    final List<IRStmt> copy = inline((IRCallStmt) stmt,
+                        bodies.get(callee), generator);
+                    result.addAll(copy);
+                    size += copy.size() - 1;
+                    changed.add(caller);
+                } else {
+                    result.add(stmt);
+                }
+            }
+            bodies.put(caller, result);
+        }
+
+        if (changed.isEmpty()) {
+            return compUnit;
+        }
+        final IRCompUnit inlined =
+            new IRCompUnit(compUnit.location(), compUnit.name());
+        for (IRFuncDecl function : compUnit.functions().values()) {
+            if (changed.contains(function.name())) {
+                inlined.appendFunc(new IRFuncDecl(function.location(),
+                    function.name(),
+                    new IRSeq(function.body().location(),
+                        bodies.get(function.name())),
+                    function.type()));
+            } else {
+                inlined.appendFunc(function);
+            }
+        }
+        return inlined;
+    }
+
+    private static boolean isWorthInlining(int size, int callSites) {
+        return size <= SMALL_FUNCTION
+            || (callSites == 1 && size <= SINGLE_CALL_FUNCTION);
+    }
+
+    private static List<IRStmt> flatten(IRStmt stmt) {
+        final List<IRStmt> stmts = new ArrayList<>();
+        if (stmt instanceof IRSeq) {
+            for (IRStmt s : ((IRSeq) stmt).stmts()) {
+                stmts.addAll(flatten(s));
+            }
+        } else {
+            stmts.add(stmt);
+        }
+        return stmts;
+    }
+
+    /**
+     * Returns the name of the function called by {@code stmt}, if it is a
+     * call to a named function.
+     */
+    private static Optional<String> callee(IRStmt stmt) {
+        if (stmt instanceof IRCallStmt
+                && ((IRCallStmt) stmt).target() instanceof IRName) {
+            return Optional.of(((IRName) ((IRCallStmt) stmt).target()).name());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the functions that can call themselves, directly or through
+     * other functions.
+     */
+    private static Set<String> recursiveFunctions(
+            Map<String, List<String>> callees) {
+        final Set<String> recursive = new HashSet<>();
+        for (String function : callees.keySet()) {
+            final Set<String> reached = new HashSet<>();
+            final List<String> worklist =
+                new ArrayList<>(callees.get(function));
+            while (!worklist.isEmpty()) {
+                final String f = worklist.remove(worklist.size() - 1);
+                if (reached.add(f)) {
+                    worklist.addAll(callees.getOrDefault(f, List.of()));
+                }
+            }
+            if (reached.contains(function)) {
+                recursive.add(function);
+            }
+        }
+        return recursive;
+    }
+
+    /**
+     * Returns the functions in a postorder of the call graph, so that every
+     * function comes after the functions that it calls, unless they are
+     * recursive.
+     */
+    private static List<String> calleesFirst(
+            Map<String, List<String>> callees) {
+        final List<String> postorder = new ArrayList<>();
+        final Set<String> visited = new HashSet<>();
+        for (String root : callees.keySet()) {
+            if (!visited.add(root)) {
+                continue;
+            }
+            final List<String> stack = new ArrayList<>();
+            final List<Integer> nextCallee = new ArrayList<>();
+            stack.add(root);
+            nextCallee.add(0);
+            while (!stack.isEmpty()) {
+                final int top = stack.size() - 1;
+                final List<String> called = callees.get(stack.get(top));
+                final int next = nextCallee.get(top);
+                if (next < called.size()) {
+                    nextCallee.set(top, next + 1);
+                    if (visited.add(called.get(next))) {
+                        stack.add(called.get(next));
+                        nextCallee.add(0);
+                    }
+                } else {
+                    postorder.add(stack.remove(top));
+                    nextCallee.remove(top);
+                }
+            }
+        }
+        return postorder;
+    }
+
+    /**
+     * Returns the statements that replace {@code call}, a call to the
+     * function with body {@code body}.
+     */
+    private static List<IRStmt> inline(IRCallStmt call,
+                                       List<IRStmt> body,
+                                       IdGenerator generator) {
+        final Map<String, String> temps = new HashMap<>();
+        final Map<String, String> labels = new HashMap<>();
+        final List<IRStmt> stmts = new ArrayList<>(body.size() + 4);
+
+        for (int i = 0; i < call.args().size(); i++) {
+            final String arg = generator.newTemp();
+            temps.put(generator.argTemp(i), arg);
+            stmts.add(new IRMove(call.location(),
+                new IRTemp(call.location(), arg), call.args().get(i)));
+        }
+        for (int i = 0; i < call.collectors().size(); i++) {
+            final String collector = call.collectors().get(i);
+            if (!collector.equals("_")) {
+                temps.put(generator.retTemp(i), collector);
+            }
+        }
+        for (IRStmt stmt : body) {
+            if (stmt instanceof IRLabel) {
+                labels.put(((IRLabel) stmt).name(), generator.newLabel());
+            }
+        }
+
+        final String end = generator.newLabel();
+        final RenameVisitor renamer =
+            new RenameVisitor(temps, labels, end, generator);
+        for (IRStmt stmt : body) {
+            stmts.add((IRStmt) stmt.accept(renamer));
+        }
+        stmts.add(new IRLabel(call.location(), end));
+        return stmts;
+    }
+
+    /**
+     * Renames the temporaries and labels of the statements of an inlined
+     * function. A temporary without a name in {@code temps} is given a fresh
+     * one, and a {@code RETURN} becomes a jump to {@code end}.
+     */
+    private static final class RenameVisitor implements MyIRVisitor<IRNode> {
+
+        private final Map<String, String> temps;
+        private final Map<String, String> labels;
+        private final String end;
+        private final IdGenerator generator;
+
+        RenameVisitor(Map<String, String> temps,
+                      Map<String, String> labels,
+                      String end,
+                      IdGenerator generator) {
+            this.temps = temps;
+            this.labels = labels;
+            this.end = end;
+            this.generator = generator;
+        }
+
+        private String temp(String name) {
+            return temps.computeIfAbsent(name, t -> generator.newTemp());
+        }
+
+        private String label(String name) {
+            return labels.getOrDefault(name, name);
+        }
+
+        private IRExpr rename(IRExpr expr) {
+            return (IRExpr) expr.accept(this);
+        }
+
+        @Override
+        public IRNode visit(IRBinOp n) {
+            return new IRBinOp(n.location(), n.opType(),
+                rename(n.left()), rename(n.right()));
+        }
+
+        @Override
+        public IRNode visit(IRCall n) {
+            throw new UnsupportedOperationException(
+                "Only lowered functions are inlined.");
+        }
+
+        @Override
+        public IRNode visit(IRInteger n) {
+            return n;
+        }
+
+        @Override
+        public IRNode visit(@NotNull IRFloat n) {
+            return n;
+        }
+
+        @Override
+        public IRNode visit(IRESeq n) {
+            throw new UnsupportedOperationException(
+                "Only lowered functions are inlined.");
+        }
+
+        @Override
+        public IRNode visit(IRMem n) {
+            return new IRMem(n.location(), rename(n.expr()), n.memType());
+        }
+
+        @Override
+        public IRNode visit(IRName n) {
+            return labels.containsKey(n.name())
+                ? new IRName(n.location(), label(n.name()))
+                : n;
+        }
+
+        @Override
+        public IRNode visit(IRTemp n) {
+            return new IRTemp(n.location(), temp(n.name()));
+        }
+
+        @Override
+        public IRNode visit(@NotNull IRCast n) {
+            return new IRCast(n.location(), rename(n.getValue()),
+                n.getFromType(), n.getTargetType());
+        }
+
+        @Override
+        public IRNode visit(IRCallStmt n) {
+            final List<IRExpr> args = new ArrayList<>(n.args().size());
+            for (IRExpr arg : n.args()) {
+                args.add(rename(arg));
+            }
+            final List<String> collectors =
+                new ArrayList<>(n.collectors().size());
+            for (String collector : n.collectors()) {
+                collectors.add(collector.equals("_")
+                    ? collector
+                    : temp(collector));
+            }
+            return new IRCallStmt(n.location(), collectors,
+                rename(n.target()), args);
+        }
+
+        @Override
+        public IRNode visit(IRCJump n) {
+            return new IRCJump(n.location(), rename(n.cond()),
+                label(n.trueLabel()), n.falseLabel().map(this::label));
+        }
+
+        @Override
+        public IRNode visit(IRCompUnit n) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IRNode visit(IRExp n) {
+            return new IRExp(n.location(), rename(n.expr()));
+        }
+
+        @Override
+        public IRNode visit(IRFuncDecl n) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public IRNode visit(IRJump n) {
+            return new IRJump(n.location(), rename(n.target()));
+        }
+
+        @Override
+        public IRNode visit(IRLabel n) {
+            return new IRLabel(n.location(), label(n.name()));
+        }
+
+        @Override
+        public IRNode visit(IRMove n) {
+            return new IRMove(n.location(),
+                rename(n.target()), rename(n.source()));
+        }
+
+        @Override
+        public IRNode visit(IRReturn n) {
+            return new IRJump(n.location(), new IRName(n.location(), end));
+        }
+
+        @Override
+        public IRNode visit(IRSeq n) {
+            throw new UnsupportedOperationException(
+                "Only flattened function bodies are inlined.");
+        }
+
+    }
+
+}
@@ -0,0 +1,45 @@
+package cyr7.ir.visit;
+
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRCast;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+
+/**
+ * The rules for which lowered expressions may trap, shared by the
+ * optimizations that move an expression to a point where it may be
+ * evaluated on paths that did not evaluate it before.
+ */
+public final class IRExprTraps {
+
+    private IRExprTraps() {}
+
+    /**
+     * Returns whether evaluating {@code expr} may fail, as a load from an
+     * invalid address, a division by zero, or a division of the least
+     * integer by -1 does.
+     */
+    public static boolean mayFail(IRExpr expr) {
+        if (expr instanceof IRMem) {
+            return true;
+        }
+        if (expr instanceof IRBinOp) {
+            final IRBinOp binOp = (IRBinOp) expr;
+            if ((binOp.opType() == OpType.DIV_INT
+                    || binOp.opType() == OpType.MOD_INT)
+                    && !(binOp.right() instanceof IRInteger
+                        && ((IRInteger) binOp.right()).value() != 0
+                        && ((IRInteger) binOp.right()).value() != -1)) {
+                return true;
+            }
+            return mayFail(binOp.left()) || mayFail(binOp.right());
+        }
+        if (expr instanceof IRCast) {
+            return mayFail(((IRCast) expr).getValue());
+        }
+        return false;
+    }
+
+}
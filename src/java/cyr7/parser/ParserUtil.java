@@ -4,25 +4,37 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
 
-import cyr7.ast.AbstractNode;
 import cyr7.ast.Node;
 import cyr7.exceptions.lexer.LexerException;
 import cyr7.exceptions.parser.ParserException;
 import cyr7.lexer.MultiFileLexer;
+import cyr7.util.PhaseTimings;
 import java_cup.runtime.ComplexSymbolFactory;
+import java_cup.runtime.ComplexSymbolFactory.ComplexSymbol;
+import java_cup.runtime.Scanner;
 import java_cup.runtime.ScannerBuffer;
+import java_cup.runtime.Symbol;
 
 public class ParserUtil {
 
     public static boolean parse(Reader reader, Writer writer, String filename,
             boolean isIXI) throws IOException {
-        ScannerBuffer lexer = new ScannerBuffer(
-                new MultiFileLexer(reader, filename, isIXI));
+        return parse(() -> parseNode(reader, filename, isIXI), writer);
+    }
 
+    /**
+     * Writes the S-expression of the program returned by {@code parser} to
+     * {@code writer}, or the error message if {@code parser} fails.
+     */
+    public static boolean parse(Callable<Node> parser, Writer writer)
+            throws IOException {
         try {
-            XiParser p = new XiParser(lexer, new ComplexSymbolFactory());
-            AbstractNode node = (AbstractNode) p.parse().value;
+            Node node = parser.call();
             SExpVisitor visitor = new SExpVisitor(writer);
             node.accept(visitor);
             visitor.flush();
@@ -44,6 +56,71 @@ public class ParserUtil {
         return (Node) p.parse().value;
     }
 
+    /**
+     * Parses the contents of {@code reader}, timing lexing and parsing as
+     * separate phases. The whole file is lexed before it is parsed. A lexer
+     * error is only thrown once the parser reaches the token that caused
+     * it, so errors are reported exactly as by
+     * {@link #parseNode(Reader, String, boolean)}.
+     */
+    public static Node parseNode(Reader reader, String filename, boolean isIxi,
+                                 PhaseTimings timings) throws Exception {
+        if (!timings.isEnabled()) {
+            return parseNode(reader, filename, isIxi);
+        }
+        Scanner tokens = timings.time("lexing", () -> lex(
+            new MultiFileLexer(reader, filename, isIxi)));
+        return timings.time("parsing", () -> {
+            XiParser p = new XiParser(tokens, new ComplexSymbolFactory());
+            return (Node) p.parse().value;
+        });
+    }
+
+    /**
+     * Reads every token of {@code lexer}, and returns a scanner that replays
+     * them. If {@code lexer} fails, the scanner throws the same exception
+     * after the tokens that were read before the failure.
+     */
+    private static Scanner lex(Scanner lexer) {
+        List<Symbol> tokens = new ArrayList<>();
+        Exception failure = null;
+        try {
+            Symbol token;
+            do {
+                token = lexer.next_token();
+                tokens.add(token);
+            } while (token.sym != sym.EOF);
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        Exception lexerFailure = failure;
+        Iterator<Symbol> replay = tokens.iterator();
+        return () -> {
+            if (replay.hasNext()) {
+                return replay.next();
+            }
+            if (lexerFailure != null) {
+                throw lexerFailure;
+            }
+            return eof(tokens.get(tokens.size() - 1));
+        };
+    }
+
+    /**
+     * Returns a fresh copy of the EOF token {@code last}. The parser may
+     * read past EOF, and rejects a scanner that returns the same symbol
+     * object twice.
+     */
+    private static Symbol eof(Symbol last) {
+        if (last instanceof ComplexSymbol) {
+            ComplexSymbol token = (ComplexSymbol) last;
+            return new ComplexSymbolFactory().newSymbol(token.getName(),
+                token.sym, token.getLeft(), token.getRight(), token.value);
+        }
+        return new Symbol(last.sym, last.left, last.right, last.value);
+    }
+
     public static void printSExpr(Node node) {
         SExpVisitor visitor = new SExpVisitor(new PrintWriter(System.out));
         node.accept(visitor);
@@ -0,0 +1,102 @@
+package cyr7.typecheck;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cyr7.semantics.types.FunctionType;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+/**
+ * The function signatures declared by interface (*.ixi) files that have
+ * already been typechecked. An interface is looked up by its location, as
+ * {@link IxiFileOpener#locate(String)} gives it, and the hash of its
+ * contents, so interfaces of the same name in different library directories
+ * are kept apart, and an interface whose file has changed since it was cached
+ * is typechecked again.
+ * <p>
+ * A cache may be shared by any number of programs, including programs that
+ * are typechecked concurrently.
+ */
+public final class InterfaceCache {
+
+    /**
+     * A function declared by an interface.
+     */
+    static final class Signature {
+
+        final String identifier;
+        final FunctionType type;
+        final Location location;
+
+        Signature(String identifier, FunctionType type, Location location) {
+            this.identifier = identifier;
+            this.type = type;
+            this.location = location;
+        }
+
+    }
+
+    private static final class Entry {
+
+        final String contentHash;
+        final List<Signature> signatures;
+
+        Entry(String contentHash, List<Signature> signatures) {
+            this.contentHash = contentHash;
+            this.signatures = signatures;
+        }
+
+    }
+
+    /**
+     * Maps the location of an interface to the latest version of the
+     * interface that was typechecked there, so that at most one version of
+     * each interface file is kept.
+     */
+    private final ConcurrentHashMap<String, Entry> interfaces
+        = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the signatures declared by the interface at {@code location},
+     * if the interface has been cached with contents that hash to
+     * {@code contentHash}.
+     */
+    Optional<List<Signature>> get(String location, String contentHash) {
+        Entry entry = interfaces.get(location);
+        if (entry == null || !entry.contentHash.equals(contentHash)) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.signatures);
+    }
+
+    /**
+     * Caches the signatures declared by the interface at {@code location},
+     * whose contents hash to {@code contentHash}.
+     */
+    void put(String location, String contentHash, List<Signature> signatures) {
+        interfaces.put(location, new Entry(contentHash, List.copyOf(signatures)));
+    }
+
+    /**
+     * Returns the hash of the contents of an interface file.
+     */
+    static String hash(String contents) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(contents.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+}
@@ -21,5 +21,16 @@ public interface IxiFileOpener {
      * the specified libpath (or current directory if not specified) in the CLI.
      */
     Reader openIxiLibraryFile(String name) throws IOException;
+
+    /**
+     * Returns where the interface {@code name} is found, such as the path
+     * of its file, so that interfaces of the same name in different library
+     * directories are told apart. By default, the name is its own location.
+     *
+     * @param name Interface filename, without the extension.
+     */
+    default String locate(String name) {
+        return name;
+    }
     
 }
@@ -9,21 +9,52 @@ import cyr7.exceptions.semantics.SemanticException;
 import cyr7.parser.ParserUtil;
 import cyr7.visitor.PostOrderReduceTraversal;
 
+import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.concurrent.Callable;
 
 public class TypeCheckUtil {
 
     public static boolean typeCheck(Reader reader, Writer writer, String filename,
             boolean isIXI, IxiFileOpener opener) throws Exception {
+        PrintWriter stdout = new PrintWriter(System.out);
         try {
+            return typeCheck(reader, writer, filename, isIXI, opener, stdout);
+        } finally {
+            stdout.flush();
+        }
+    }
+
+    /**
+     * Typechecks the program read from {@code reader}, writing the result to
+     * {@code writer}. User-facing error messages are written to
+     * {@code diagnostics} instead of standard out, so that the messages of
+     * files compiled concurrently do not interleave.
+     */
+    public static boolean typeCheck(Reader reader, Writer writer, String filename,
+            boolean isIXI, IxiFileOpener opener, PrintWriter diagnostics)
+            throws Exception {
+        return typeCheck(() -> {
             Node result = ParserUtil.parseNode(reader, filename, isIXI);
-            result.accept(new TypeCheckVisitor(opener));
-            assert satisfiesInvariants(result);
+            typeCheck(result, opener);
+            return result;
+        }, writer, diagnostics);
+    }
+
+    /**
+     * Writes whether the program returned by {@code typeChecker} is a valid
+     * Xi program to {@code writer}. If {@code typeChecker} fails, the
+     * user-facing error message is written to {@code diagnostics}.
+     */
+    public static boolean typeCheck(Callable<Node> typeChecker, Writer writer,
+            PrintWriter diagnostics) throws Exception {
+        try {
+            typeChecker.call();
             writer.append("Valid Xi Program").append(System.lineSeparator());
             return true;
         } catch (InvalidInterfaceException e) {
-            printErrorToStdOut(e.getInterfaceErrorType(),
+            printErrorTo(diagnostics, e.getInterfaceErrorType(),
                     e.getInterfaceFilename(),
                     e.getInterfaceLine(),
                     e.getInterfaceCol(),
@@ -32,7 +63,7 @@ public class TypeCheckUtil {
                   .append(System.lineSeparator());
             return false;
         } catch (ParserException e) {
-            printErrorToStdOut(ErrorType.Syntax,
+            printErrorTo(diagnostics, ErrorType.Syntax,
                     e.filename,
                     e.line,
                     e.column,
@@ -40,7 +71,7 @@ public class TypeCheckUtil {
             writer.append(e.getMessage()).append(System.lineSeparator());
             return false;
         } catch (SemanticException e) {
-            printErrorToStdOut(ErrorType.Semantic,
+            printErrorTo(diagnostics, ErrorType.Semantic,
                     e.filename,
                     e.line,
                     e.col,
@@ -48,7 +79,7 @@ public class TypeCheckUtil {
             writer.append(e.getMessage()).append(System.lineSeparator());
             return false;
         } catch (LexerException e) {
-            printErrorToStdOut(ErrorType.Lexical,
+            printErrorTo(diagnostics, ErrorType.Lexical,
                     e.filename,
                     e.line,
                     e.col,
@@ -58,9 +89,9 @@ public class TypeCheckUtil {
         }
     }
 
-    private static void printErrorToStdOut(ErrorType type, String filename,
-            int line, int col, String msg) {
-        System.out.println(
+    private static void printErrorTo(PrintWriter diagnostics, ErrorType type,
+            String filename, int line, int col, String msg) {
+        diagnostics.println(
                 String.format("%s error beginning at %s:%d:%d: %s",
                         type, filename, line, col, msg));
     }
@@ -76,7 +107,17 @@ public class TypeCheckUtil {
      * @param n
      */
     public static void typeCheck(Node n, IxiFileOpener fileOpener) {
-        n.accept(new TypeCheckVisitor(fileOpener));
+        typeCheck(n, fileOpener, new InterfaceCache());
+    }
+
+    /**
+     * Typechecks an Xi Program node, reusing the signatures of the interfaces
+     * in {@code interfaceCache} and caching the signatures of interfaces that
+     * are not in it yet.
+     */
+    public static void typeCheck(Node n, IxiFileOpener fileOpener,
+            InterfaceCache interfaceCache) {
+        n.accept(new TypeCheckVisitor(fileOpener, interfaceCache));
         assert satisfiesInvariants(n);
     }
 
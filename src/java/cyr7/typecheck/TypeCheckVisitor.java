@@ -3,6 +3,8 @@ package cyr7.typecheck;
 import static cyr7.semantics.types.ExpandedType.supertypeOf;
 
 import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -82,15 +84,25 @@ final class TypeCheckVisitor implements AstVisitor<TypeCheckVisitor.Result> {
 
     private final Map<String, FunctionType> interfaceFuncDecls;
 
+    /**
+     * The signatures of interfaces that have already been typechecked.
+     */
+    private final InterfaceCache interfaceCache;
+
     private final AstVisitor<ComplexSymbolFactory.Location> pureChecker;
 
     /**
      * Initialize typecheck visitor with given Context {@code initialContext}.
      */
     TypeCheckVisitor(IxiFileOpener fileOpener) {
+        this(fileOpener, new InterfaceCache());
+    }
+
+    TypeCheckVisitor(IxiFileOpener fileOpener, InterfaceCache interfaceCache) {
         this.context = new HashMapStackContext();
         this.fileOpener = fileOpener;
         this.interfaceFuncDecls = new HashMap<>();
+        this.interfaceCache = interfaceCache;
         this.pureChecker = VisitorFactory.Companion.pureCheckVisitor();
     }
 
@@ -191,24 +203,47 @@ final class TypeCheckVisitor implements AstVisitor<TypeCheckVisitor.Result> {
      */
     @Override
     public Result visit(IxiProgramNode n) {
-        n.functionDeclarations.forEach(header -> {
-            FunctionType functionType = functionTypeOf(header);
-
-            if (interfaceFuncDecls.containsKey(header.identifier)
-                    && !interfaceFuncDecls.get(header.identifier)
-                            .equals(functionType)) {
-                throw new DuplicateIdentifierException(header.identifier,
-                        header.getLocation());
+        addInterfaceFunctions(signaturesOf(n));
+        return Result.ofVoid();
+    }
+
+    /**
+     * Returns the signature of each function declared by the interface
+     * {@code n}, in order of declaration.
+     */
+    private List<InterfaceCache.Signature> signaturesOf(IxiProgramNode n) {
+        return n.functionDeclarations.stream()
+                .map(header -> new InterfaceCache.Signature(header.identifier,
+                        functionTypeOf(header),
+                        header.getLocation()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Side effects: this method adds to {@code interfaceFuncDecls} a mapping
+     * [identifier -> type] for each of the {@code signatures}
+     *
+     * @throws DuplicateIdentifierException if a function is declared again
+     *                                      with a conflicting type.
+     */
+    private void addInterfaceFunctions(List<InterfaceCache.Signature> signatures) {
+        signatures.forEach(signature -> {
+            if (interfaceFuncDecls.containsKey(signature.identifier)
+                    && !interfaceFuncDecls.get(signature.identifier)
+                            .equals(signature.type)) {
+                throw new DuplicateIdentifierException(signature.identifier,
+                        signature.location);
             } else {
-                interfaceFuncDecls.put(header.identifier, functionType);
+                interfaceFuncDecls.put(signature.identifier, signature.type);
             }
         });
-        return Result.ofVoid();
     }
 
     /**
      * Type check a use node by type checking the ixi file associated with the
-     * use node.
+     * use node. The signatures of the ixi file are taken from
+     * {@code interfaceCache} if the file has not changed since it was last
+     * type checked.
      * <p>
      * Side effects: this method adds function mappings to
      * {@code interfaceFuncDecls}
@@ -219,10 +254,27 @@ final class TypeCheckVisitor implements AstVisitor<TypeCheckVisitor.Result> {
     @Override
     public Result visit(UseNode n) {
         try {
-            Reader reader = fileOpener.openIxiLibraryFile(n.interfaceName);
-            IxiProgramNode interfaceNode = (IxiProgramNode) ParserUtil
-                    .parseNode(reader, n.interfaceName + ".ixi", true);
-            interfaceNode.accept(this);
+            String contents;
+            try (Reader reader = fileOpener.openIxiLibraryFile(n.interfaceName)) {
+                StringWriter writer = new StringWriter();
+                reader.transferTo(writer);
+                contents = writer.toString();
+            }
+            String location = fileOpener.locate(n.interfaceName);
+            String contentHash = InterfaceCache.hash(contents);
+            Optional<List<InterfaceCache.Signature>> cached
+                    = interfaceCache.get(location, contentHash);
+            List<InterfaceCache.Signature> signatures;
+            if (cached.isPresent()) {
+                signatures = cached.get();
+            } else {
+                IxiProgramNode interfaceNode = (IxiProgramNode) ParserUtil
+                        .parseNode(new StringReader(contents),
+                                n.interfaceName + ".ixi", true);
+                signatures = signaturesOf(interfaceNode);
+                interfaceCache.put(location, contentHash, signatures);
+            }
+            addInterfaceFunctions(signatures);
             return Result.ofVoid();
         } catch (ParserException e) {
             throw new InvalidInterfaceException(e, n.getLocation());
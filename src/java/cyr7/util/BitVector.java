@@ -0,0 +1,255 @@
+package cyr7.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.StringJoiner;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A dense set of non-negative integers, stored one bit per integer, for use
+ * as the lattice of set-valued dataflow analyses whose elements have dense
+ * ids. Unlike {@link BitSet}, every operation that modifies the set works in
+ * place and reports whether the set changed, so a worklist can tell whether
+ * a lattice value moved without comparing it against a copy.
+ * <p>
+ * Two vectors are equal when they contain the same integers, however many
+ * words each has allocated.
+ */
+public final class BitVector {
+
+    private static final long[] NO_WORDS = new long[0];
+
+    private long[] words;
+
+    public BitVector() {
+        this.words = NO_WORDS;
+    }
+
+    public BitVector(BitVector other) {
+        this.words = other.words.length == 0 ? NO_WORDS : other.words.clone();
+    }
+
+    public BitVector(BitSet bits) {
+        this.words = bits.isEmpty() ? NO_WORDS : bits.toLongArray();
+    }
+
+    private static int wordIndex(int bit) {
+        return bit >>> 6;
+    }
+
+    private void ensureWords(int count) {
+        if (words.length < count) {
+            words = Arrays.copyOf(words, Math.max(count, words.length * 2));
+        }
+    }
+
+    public boolean get(int bit) {
+        int word = wordIndex(bit);
+        return word < words.length && (words[word] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Adds {@code bit}, returning whether it was absent.
+     */
+    public boolean set(int bit) {
+        int word = wordIndex(bit);
+        ensureWords(word + 1);
+        long old = words[word];
+        words[word] = old | (1L << bit);
+        return words[word] != old;
+    }
+
+    /**
+     * Removes {@code bit}, returning whether it was present.
+     */
+    public boolean clear(int bit) {
+        int word = wordIndex(bit);
+        if (word >= words.length) {
+            return false;
+        }
+        long old = words[word];
+        words[word] = old & ~(1L << bit);
+        return words[word] != old;
+    }
+
+    /**
+     * Adds every integer in {@code other}, returning whether any was absent.
+     */
+    public boolean or(BitVector other) {
+        int length = lastNonZeroWord(other.words) + 1;
+        ensureWords(length);
+        long changed = 0;
+        for (int i = 0; i < length; i++) {
+            long old = words[i];
+            words[i] = old | other.words[i];
+            changed |= words[i] ^ old;
+        }
+        return changed != 0;
+    }
+
+    /**
+     * Adds every integer in {@code bits}, returning whether any was absent.
+     */
+    public boolean or(BitSet bits) {
+        boolean changed = false;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            changed |= set(bit);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes every integer that is not in {@code other}, returning whether
+     * any was present.
+     */
+    public boolean and(BitVector other) {
+        long changed = 0;
+        for (int i = 0; i < words.length; i++) {
+            long old = words[i];
+            words[i] = i < other.words.length ? old & other.words[i] : 0;
+            changed |= words[i] ^ old;
+        }
+        return changed != 0;
+    }
+
+    /**
+     * Removes every integer in {@code other}, returning whether any was
+     * present.
+     */
+    public boolean andNot(BitVector other) {
+        int length = Math.min(words.length, other.words.length);
+        long changed = 0;
+        for (int i = 0; i < length; i++) {
+            long old = words[i];
+            words[i] = old & ~other.words[i];
+            changed |= words[i] ^ old;
+        }
+        return changed != 0;
+    }
+
+    /**
+     * Removes every integer in {@code bits}, returning whether any was
+     * present.
+     */
+    public boolean andNot(BitSet bits) {
+        boolean changed = false;
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            changed |= clear(bit);
+        }
+        return changed;
+    }
+
+    /**
+     * Returns whether every integer in {@code other} is in this set.
+     */
+    public boolean containsAll(BitVector other) {
+        for (int i = lastNonZeroWord(other.words); i >= 0; i--) {
+            long word = i < words.length ? words[i] : 0;
+            if ((other.words[i] & ~word) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether this set and {@code other} have an integer in common.
+     */
+    public boolean intersects(BitVector other) {
+        int length = Math.min(words.length, other.words.length);
+        for (int i = 0; i < length; i++) {
+            if ((words[i] & other.words[i]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return lastNonZeroWord(words) < 0;
+    }
+
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the least integer in this set that is at least {@code from},
+     * or -1 if there is none.
+     */
+    public int nextSetBit(int from) {
+        int word = wordIndex(from);
+        if (word >= words.length) {
+            return -1;
+        }
+        long remaining = words[word] & (-1L << from);
+        while (true) {
+            if (remaining != 0) {
+                return word * 64 + Long.numberOfTrailingZeros(remaining);
+            }
+            if (++word == words.length) {
+                return -1;
+            }
+            remaining = words[word];
+        }
+    }
+
+    public void forEach(IntConsumer action) {
+        for (int bit = nextSetBit(0); bit >= 0; bit = nextSetBit(bit + 1)) {
+            action.accept(bit);
+        }
+    }
+
+    public IntStream stream() {
+        IntStream.Builder bits = IntStream.builder();
+        forEach(bits);
+        return bits.build();
+    }
+
+    private static int lastNonZeroWord(long[] words) {
+        int last = words.length - 1;
+        while (last >= 0 && words[last] == 0) {
+            last--;
+        }
+        return last;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BitVector)) return false;
+        long[] other = ((BitVector) o).words;
+        int length = lastNonZeroWord(words) + 1;
+        if (length != lastNonZeroWord(other) + 1) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (words[i] != other[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = 1234;
+        for (int i = lastNonZeroWord(words); i >= 0; i--) {
+            h ^= words[i] * (i + 1);
+        }
+        return (int) ((h >> 32) ^ h);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        forEach(bit -> joiner.add(String.valueOf(bit)));
+        return joiner.toString();
+    }
+
+}
@@ -0,0 +1,49 @@
+package cyr7.util;
+
+/**
+ * Counts how many dataflow analyses the worklist solvers have run, and how
+ * many times they have visited a node, that is applied the transfer
+ * function of a node. The ratio of the two measures how quickly analyses
+ * converge: a solver that visits every node once per strongly connected
+ * component needs little more than one visit per node.
+ * <p>
+ * The counts are kept per thread and only ever grow, so that
+ * {@link PhaseTimings} can attribute the analyses that a phase runs to that
+ * phase in the same way that it attributes CPU time, by reading the counts
+ * of the thread before and after the phase.
+ */
+public final class DataflowStatistics {
+
+    /**
+     * The number of analyses and the number of node visits of each thread.
+     */
+    private static final ThreadLocal<long[]> counts =
+        ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Records one analysis that visited nodes {@code visits} times.
+     */
+    public static void record(long visits) {
+        long[] thread = counts.get();
+        thread[0]++;
+        thread[1] += visits;
+    }
+
+    /**
+     * The number of analyses that the current thread has run.
+     */
+    public static long analyses() {
+        return counts.get()[0];
+    }
+
+    /**
+     * The number of nodes that the analyses of the current thread have
+     * visited.
+     */
+    public static long nodeVisits() {
+        return counts.get()[1];
+    }
+
+    private DataflowStatistics() { }
+
+}
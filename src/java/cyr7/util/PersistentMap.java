@@ -0,0 +1,580 @@
+package cyr7.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+
+/**
+ * An immutable map that shares structure with the maps it is derived from,
+ * stored as a hash array mapped trie. Adding or removing a key copies only
+ * the nodes on the path to that key, so a dataflow analysis can keep a map
+ * at every node of a CFG for about the cost of the keys that change at each
+ * node, rather than the cost of the whole map.
+ * <p>
+ * The shape of the trie depends only on the keys that it holds, so two maps
+ * are compared and {@link #merge merged} node by node, skipping the subtrees
+ * that they share. Keys and values must not be null.
+ */
+public final class PersistentMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final PersistentMap<?, ?> EMPTY =
+        new PersistentMap<>(BitmapNode.EMPTY);
+
+    /**
+     * The root of the trie, which is a {@link BitmapNode} even when all of
+     * its keys have the same hash.
+     */
+    private final BitmapNode root;
+
+    private PersistentMap(BitmapNode root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    public boolean isEmpty() {
+        return root.bitmap == 0;
+    }
+
+    /**
+     * Returns the value of {@code key}, or {@code null} if it is absent.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        return (V) root.find(0, key.hashCode(), key);
+    }
+
+    /**
+     * Returns a map that maps {@code key} to {@code value}, and every other
+     * key to its value in this map. Returns this map if {@code key} already
+     * maps to an equal value.
+     */
+    public PersistentMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        return withRoot(root.with(0, key.hashCode(), key, value, null));
+    }
+
+    /**
+     * Returns a map without {@code key} that maps every other key to its
+     * value in this map. Returns this map if {@code key} is absent.
+     */
+    public PersistentMap<K, V> without(K key) {
+        return withRoot(root.without(0, key.hashCode(), key));
+    }
+
+    /**
+     * Returns the union of this map and {@code other}, where a key in both
+     * maps to {@code combine} of its value in this map and its value in
+     * {@code other}. {@code combine} must return a value equal to its
+     * arguments when they are equal, as the meet of a lattice does, since
+     * the subtrees that the maps share are not visited. Returns this map if
+     * the union is equal to it, or else {@code other} if the union is equal to
+     * that.
+     */
+    @SuppressWarnings("unchecked")
+    public PersistentMap<K, V> merge(PersistentMap<K, V> other,
+                                     BinaryOperator<V> combine) {
+        final Node merged = root.merge(other.root, 0,
+            (BinaryOperator<Object>) combine);
+        return merged == other.root ? other : withRoot(merged);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        root.forEach((key, value) -> action.accept((K) key, (V) value));
+    }
+
+    private PersistentMap<K, V> withRoot(Node newRoot) {
+        if (newRoot == root) {
+            return this;
+        }
+        final BitmapNode bitmapRoot = (BitmapNode) newRoot;
+        return bitmapRoot.bitmap == 0 ? empty() : new PersistentMap<>(bitmapRoot);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PersistentMap<?, ?> that = (PersistentMap<?, ?>) o;
+        return root.sameEntries(that.root);
+    }
+
+    @Override
+    public int hashCode() {
+        final int[] hash = { 0 };
+        root.forEach((key, value) -> hash[0] += key.hashCode() ^ value.hashCode());
+        return hash[0];
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "{", "}");
+        root.forEach((key, value) -> joiner.add(key + "=" + value));
+        return joiner.toString();
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & MASK);
+    }
+
+    /**
+     * Returns the node at {@code shift} that holds two entries with different
+     * hashes. An entry whose key is {@code null} stands for the node that is
+     * its value.
+     */
+    private static Node split(int shift,
+                              int hash1, Object key1, Object value1,
+                              int hash2, Object key2, Object value2) {
+        final int bit1 = bit(hash1, shift), bit2 = bit(hash2, shift);
+        if (bit1 == bit2) {
+            final Node child = split(shift + BITS,
+                hash1, key1, value1, hash2, key2, value2);
+            return new BitmapNode(bit1, new Object[] { null }, new Object[] { child });
+        }
+        return Integer.compareUnsigned(bit1, bit2) < 0
+            ? new BitmapNode(bit1 | bit2,
+                new Object[] { key1, key2 }, new Object[] { value1, value2 })
+            : new BitmapNode(bit1 | bit2,
+                new Object[] { key2, key1 }, new Object[] { value2, value1 });
+    }
+
+    /**
+     * Returns the node at {@code shift} that holds two entries.
+     */
+    private static Node pair(int shift, Object key1, Object value1,
+                             Object key2, Object value2) {
+        final int hash1 = key1.hashCode(), hash2 = key2.hashCode();
+        if (hash1 == hash2) {
+            return new CollisionNode(hash1,
+                new Object[] { key1, key2 }, new Object[] { value1, value2 });
+        }
+        return split(shift, hash1, key1, value1, hash2, key2, value2);
+    }
+
+    private static BinaryOperator<Object> flip(BinaryOperator<Object> combine) {
+        return (lhs, rhs) -> combine.apply(rhs, lhs);
+    }
+
+    /**
+     * A node of the trie. A node other than the root holds at least two
+     * keys, and is a {@link CollisionNode} exactly when all of its keys have
+     * the same hash.
+     */
+    private static abstract class Node {
+
+        abstract Object find(int shift, int hash, Object key);
+
+        /**
+         * Returns this node with {@code key} mapped to {@code value}, or to
+         * {@code combine} of its old value and {@code value} if it is present
+         * and {@code combine} is not null.
+         */
+        abstract Node with(int shift, int hash, Object key, Object value,
+                           BinaryOperator<Object> combine);
+
+        abstract Node without(int shift, int hash, Object key);
+
+        abstract Node merge(Node other, int shift, BinaryOperator<Object> combine);
+
+        abstract void forEach(BiConsumer<Object, Object> action);
+
+        abstract boolean sameEntries(Node other);
+
+        /**
+         * The key of this node if it holds only one, and otherwise
+         * {@code null}.
+         */
+        abstract Object singleKey();
+
+        abstract Object singleValue();
+
+    }
+
+    /**
+     * A node whose entries are indexed by five bits of the hashes of their
+     * keys. A slot whose key is {@code null} holds the child node of the keys
+     * that share those bits.
+     */
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY =
+            new BitmapNode(0, new Object[0], new Object[0]);
+
+        final int bitmap;
+        final Object[] keys;
+        final Object[] values;
+
+        BitmapNode(int bitmap, Object[] keys, Object[] values) {
+            this.bitmap = bitmap;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            final int i = index(bit);
+            if (keys[i] == null) {
+                return ((Node) values[i]).find(shift + BITS, hash, key);
+            }
+            return keys[i].equals(key) ? values[i] : null;
+        }
+
+        @Override
+        Node with(int shift, int hash, Object key, Object value,
+                  BinaryOperator<Object> combine) {
+            final int bit = bit(hash, shift);
+            final int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                final int size = keys.length;
+                final Object[] newKeys = new Object[size + 1];
+                final Object[] newValues = new Object[size + 1];
+                System.arraycopy(keys, 0, newKeys, 0, i);
+                System.arraycopy(keys, i, newKeys, i + 1, size - i);
+                System.arraycopy(values, 0, newValues, 0, i);
+                System.arraycopy(values, i, newValues, i + 1, size - i);
+                newKeys[i] = key;
+                newValues[i] = value;
+                return new BitmapNode(bitmap | bit, newKeys, newValues);
+            }
+            if (keys[i] == null) {
+                final Node child = (Node) values[i];
+                final Node newChild =
+                    child.with(shift + BITS, hash, key, value, combine);
+                return newChild == child ? this : withSlot(i, null, newChild);
+            }
+            if (keys[i].equals(key)) {
+                final Object newValue = combine == null
+                    ? value
+                    : combine.apply(values[i], value);
+                return values[i].equals(newValue)
+                    ? this
+                    : withSlot(i, keys[i], newValue);
+            }
+            return withSlot(i, null,
+                pair(shift + BITS, keys[i], values[i], key, value));
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            final int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            final int i = index(bit);
+            if (keys[i] != null) {
+                if (!keys[i].equals(key)) {
+                    return this;
+                }
+                final int size = keys.length;
+                final Object[] newKeys = new Object[size - 1];
+                final Object[] newValues = new Object[size - 1];
+                System.arraycopy(keys, 0, newKeys, 0, i);
+                System.arraycopy(keys, i + 1, newKeys, i, size - i - 1);
+                System.arraycopy(values, 0, newValues, 0, i);
+                System.arraycopy(values, i + 1, newValues, i, size - i - 1);
+                return new BitmapNode(bitmap & ~bit, newKeys, newValues)
+                    .collapse(shift);
+            }
+            final Node child = (Node) values[i];
+            final Node newChild = child.without(shift + BITS, hash, key);
+            if (newChild == child) {
+                return this;
+            }
+            final Object single = newChild.singleKey();
+            return single != null
+                ? withSlot(i, single, newChild.singleValue())
+                : withSlot(i, null, newChild).collapse(shift);
+        }
+
+        /**
+         * Replaces this node below the root by its only child if that child
+         * is a {@link CollisionNode}, whose keys then all have the same hash.
+         */
+        private Node collapse(int shift) {
+            if (shift > 0 && keys.length == 1 && keys[0] == null
+                    && values[0] instanceof CollisionNode) {
+                return (Node) values[0];
+            }
+            return this;
+        }
+
+        private BitmapNode withSlot(int i, Object key, Object value) {
+            final Object[] newKeys = keys.clone();
+            final Object[] newValues = values.clone();
+            newKeys[i] = key;
+            newValues[i] = value;
+            return new BitmapNode(bitmap, newKeys, newValues);
+        }
+
+        @Override
+        Node merge(Node other, int shift, BinaryOperator<Object> combine) {
+            if (other == this) {
+                return this;
+            }
+            if (other instanceof CollisionNode) {
+                final Node merged =
+                    ((CollisionNode) other).insertInto(this, shift, combine);
+                return merged != this && merged.sameEntries(other) ? other : merged;
+            }
+            final BitmapNode that = (BitmapNode) other;
+            final int union = bitmap | that.bitmap;
+            final Object[] newKeys = new Object[Integer.bitCount(union)];
+            final Object[] newValues = new Object[newKeys.length];
+            boolean sameAsThis = union == bitmap;
+            boolean sameAsThat = union == that.bitmap;
+            int i = 0;
+            for (int bits = union; bits != 0; bits &= bits - 1, i++) {
+                final int bit = bits & -bits;
+                if ((that.bitmap & bit) == 0) {
+                    newKeys[i] = keys[index(bit)];
+                    newValues[i] = values[index(bit)];
+                    continue;
+                } else if ((bitmap & bit) == 0) {
+                    newKeys[i] = that.keys[that.index(bit)];
+                    newValues[i] = that.values[that.index(bit)];
+                    continue;
+                }
+                final Object key1 = keys[index(bit)];
+                final Object value1 = values[index(bit)];
+                final Object key2 = that.keys[that.index(bit)];
+                final Object value2 = that.values[that.index(bit)];
+                if (key1 != null && key2 != null) {
+                    if (key1.equals(key2)) {
+                        newKeys[i] = key1;
+                        newValues[i] = combine.apply(value1, value2);
+                    } else {
+                        newValues[i] = pair(shift + BITS, key1, value1, key2, value2);
+                    }
+                } else if (key1 != null) {
+                    newValues[i] = ((Node) value2).with(shift + BITS,
+                        key1.hashCode(), key1, value1, flip(combine));
+                } else if (key2 != null) {
+                    newValues[i] = ((Node) value1).with(shift + BITS,
+                        key2.hashCode(), key2, value2, combine);
+                } else {
+                    newValues[i] = ((Node) value1).merge(
+                        (Node) value2, shift + BITS, combine);
+                }
+                sameAsThis &= sameSlot(newKeys[i], newValues[i], key1, value1);
+                sameAsThat &= sameSlot(newKeys[i], newValues[i], key2, value2);
+            }
+            if (sameAsThis) {
+                return this;
+            } else if (sameAsThat) {
+                return that;
+            }
+            return new BitmapNode(union, newKeys, newValues);
+        }
+
+        private static boolean sameSlot(Object key1, Object value1,
+                                        Object key2, Object value2) {
+            return key1 == null
+                ? key2 == null && value1 == value2
+                : key1.equals(key2) && value1.equals(value2);
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null) {
+                    ((Node) values[i]).forEach(action);
+                } else {
+                    action.accept(keys[i], values[i]);
+                }
+            }
+        }
+
+        @Override
+        boolean sameEntries(Node other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof BitmapNode)) {
+                return false;
+            }
+            final BitmapNode that = (BitmapNode) other;
+            if (bitmap != that.bitmap) {
+                return false;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == null) {
+                    if (that.keys[i] != null
+                            || !((Node) values[i]).sameEntries((Node) that.values[i])) {
+                        return false;
+                    }
+                } else if (!keys[i].equals(that.keys[i])
+                        || !values[i].equals(that.values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Object singleKey() {
+            return keys.length == 1 ? keys[0] : null;
+        }
+
+        @Override
+        Object singleValue() {
+            return values[0];
+        }
+
+    }
+
+    /**
+     * A node whose keys all have the same hash, in no particular order.
+     */
+    private static final class CollisionNode extends Node {
+
+        final int hash;
+        final Object[] keys;
+        final Object[] values;
+
+        CollisionNode(int hash, Object[] keys, Object[] values) {
+            this.hash = hash;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            final int i = indexOf(key);
+            return i < 0 ? null : values[i];
+        }
+
+        @Override
+        Node with(int shift, int hash, Object key, Object value,
+                  BinaryOperator<Object> combine) {
+            if (hash != this.hash) {
+                return split(shift, this.hash, null, this, hash, key, value);
+            }
+            final int i = indexOf(key);
+            if (i < 0) {
+                final Object[] newKeys = Arrays.copyOf(keys, keys.length + 1);
+                final Object[] newValues = Arrays.copyOf(values, values.length + 1);
+                newKeys[keys.length] = key;
+                newValues[values.length] = value;
+                return new CollisionNode(hash, newKeys, newValues);
+            }
+            final Object newValue = combine == null
+                ? value
+                : combine.apply(values[i], value);
+            if (values[i].equals(newValue)) {
+                return this;
+            }
+            final Object[] newValues = values.clone();
+            newValues[i] = newValue;
+            return new CollisionNode(hash, keys, newValues);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            final int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            final int size = keys.length;
+            final Object[] newKeys = new Object[size - 1];
+            final Object[] newValues = new Object[size - 1];
+            System.arraycopy(keys, 0, newKeys, 0, i);
+            System.arraycopy(keys, i + 1, newKeys, i, size - i - 1);
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(values, i + 1, newValues, i, size - i - 1);
+            return new CollisionNode(this.hash, newKeys, newValues);
+        }
+
+        @Override
+        Node merge(Node other, int shift, BinaryOperator<Object> combine) {
+            if (other == this) {
+                return this;
+            } else if (other instanceof CollisionNode
+                    && ((CollisionNode) other).hash == hash) {
+                final Node merged =
+                    ((CollisionNode) other).insertInto(this, shift, combine);
+                return merged != this && merged.sameEntries(other) ? other : merged;
+            }
+            return insertInto(other, shift, flip(combine));
+        }
+
+        /**
+         * Adds the entries of this node to {@code target}, mapping a key in
+         * both to {@code combine} of its value in {@code target} and its
+         * value in this node.
+         */
+        Node insertInto(Node target, int shift, BinaryOperator<Object> combine) {
+            Node result = target;
+            for (int i = 0; i < keys.length; i++) {
+                result = result.with(shift, hash, keys[i], values[i], combine);
+            }
+            return result;
+        }
+
+        @Override
+        void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < keys.length; i++) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+
+        @Override
+        boolean sameEntries(Node other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof CollisionNode)) {
+                return false;
+            }
+            final CollisionNode that = (CollisionNode) other;
+            if (hash != that.hash || keys.length != that.keys.length) {
+                return false;
+            }
+            for (int i = 0; i < keys.length; i++) {
+                final int j = that.indexOf(keys[i]);
+                if (j < 0 || !values[i].equals(that.values[j])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Object singleKey() {
+            return keys.length == 1 ? keys[0] : null;
+        }
+
+        @Override
+        Object singleValue() {
+            return values[0];
+        }
+
+    }
+
+}
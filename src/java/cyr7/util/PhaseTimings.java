@@ -0,0 +1,310 @@
+package cyr7.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records how much wall time, CPU time and memory each phase of the compiler
+ * takes, and how many dataflow analyses it runs and nodes they visit, both
+ * for the compilation unit as a whole and for each function.
+ * Phases may be timed by any number of threads at once. The CPU time,
+ * allocated bytes and {@link DataflowStatistics dataflow statistics} of a
+ * phase are those of the thread that runs it, so phases that run
+ * concurrently are summed rather than overlapped; the same goes for their
+ * wall time.
+ * <p>
+ * The timings returned by {@link #disabled()} run every phase without
+ * measuring it.
+ */
+public final class PhaseTimings {
+
+    /**
+     * A phase of the compiler, which returns a result and may fail with an
+     * exception of type {@code E}.
+     */
+    @FunctionalInterface
+    public interface Phase<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    /**
+     * The number of slowest functions that the text report names.
+     */
+    private static final int SLOWEST_FUNCTIONS = 10;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private static final PhaseTimings DISABLED = new PhaseTimings(false);
+
+    public static PhaseTimings disabled() {
+        return DISABLED;
+    }
+
+    public static PhaseTimings enabled() {
+        return new PhaseTimings(true);
+    }
+
+    private final boolean enabled;
+
+    /**
+     * The totals of each phase, in the order that the phases first ran.
+     */
+    private final Map<String, Stats> phases = new LinkedHashMap<>();
+
+    /**
+     * The totals of each phase of each function.
+     */
+    private final Map<String, Map<String, Stats>> functions = new LinkedHashMap<>();
+
+    private PhaseTimings(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code body}, a phase that works on the whole compilation unit.
+     */
+    public <T, E extends Exception> T time(String phase, Phase<T, E> body)
+            throws E {
+        return time(phase, null, body);
+    }
+
+    /**
+     * Runs {@code body}, the part of {@code phase} that works on
+     * {@code function}. The measurement counts towards both the phase and
+     * the function.
+     */
+    public <T, E extends Exception> T time(String phase,
+                                           String function,
+                                           Phase<T, E> body) throws E {
+        if (!enabled) {
+            return body.run();
+        }
+        long wall = System.nanoTime();
+        long cpu = cpuTime();
+        long allocated = allocatedBytes();
+        long analyses = DataflowStatistics.analyses();
+        long visits = DataflowStatistics.nodeVisits();
+        try {
+            return body.run();
+        } finally {
+            record(phase, function, new Stats(1,
+                System.nanoTime() - wall,
+                cpuTime() - cpu,
+                allocatedBytes() - allocated,
+                DataflowStatistics.analyses() - analyses,
+                DataflowStatistics.nodeVisits() - visits));
+        }
+    }
+
+    private synchronized void record(String phase, String function, Stats stats) {
+        phases.computeIfAbsent(phase, p -> new Stats()).add(stats);
+        if (function != null) {
+            functions.computeIfAbsent(function, f -> new LinkedHashMap<>())
+                .computeIfAbsent(phase, p -> new Stats())
+                .add(stats);
+        }
+    }
+
+    /**
+     * Writes a table of the totals of each phase, followed by the phases of
+     * the slowest functions. The first column is as wide as the longest
+     * name in it, so that the other columns line up however long the names
+     * of the functions are.
+     */
+    public synchronized void writeText(Writer writer) throws IOException {
+        List<String> slowest = slowestFunctions();
+        List<String> shown = slowest.subList(0,
+            Math.min(SLOWEST_FUNCTIONS, slowest.size()));
+        int width = Math.max("Phase".length(), "total".length());
+        for (String phase : phases.keySet()) {
+            width = Math.max(width, phase.length());
+        }
+        for (String function : shown) {
+            width = Math.max(width, function.length());
+            for (String phase : functions.get(function).keySet()) {
+                width = Math.max(width, ("  " + phase).length());
+            }
+        }
+
+        String header = String.format("%-" + width + "s %8s %12s %12s %15s %9s %11s%n",
+            "Phase", "Calls", "Wall (ms)", "CPU (ms)", "Allocated (KiB)",
+            "Analyses", "DFA visits");
+        writer.append(header);
+        Stats total = new Stats();
+        for (var entry : phases.entrySet()) {
+            writer.append(textRow(width, entry.getKey(), entry.getValue()));
+            total.add(entry.getValue());
+        }
+        writer.append(textRow(width, "total", total));
+
+        if (shown.isEmpty()) {
+            return;
+        }
+        writer.append(System.lineSeparator());
+        writer.append(String.format("Slowest functions (%d of %d):%n",
+            shown.size(), slowest.size()));
+        for (String function : shown) {
+            writer.append(System.lineSeparator());
+            writer.append(textRow(width, function, total(functions.get(function))));
+            for (var entry : functions.get(function).entrySet()) {
+                writer.append(textRow(width, "  " + entry.getKey(), entry.getValue()));
+            }
+        }
+    }
+
+    /**
+     * Writes the totals of each phase and the phases of every function, with
+     * the functions ordered from slowest to fastest, as a JSON object.
+     */
+    public synchronized void writeJSON(Writer writer, String filename)
+            throws IOException {
+        writer.append("{").append(System.lineSeparator());
+        writer.append("  \"file\": ").append(jsonString(filename)).append(",")
+            .append(System.lineSeparator());
+        writer.append("  \"phases\": ");
+        writeJSONPhases(writer, phases, "  ");
+        writer.append(",").append(System.lineSeparator());
+        writer.append("  \"functions\": [");
+        List<String> slowest = slowestFunctions();
+        for (int i = 0; i < slowest.size(); i++) {
+            String function = slowest.get(i);
+            writer.append(i == 0 ? "" : ",").append(System.lineSeparator());
+            writer.append("    {\"function\": ").append(jsonString(function))
+                .append(", ").append(jsonFields(total(functions.get(function))))
+                .append(", \"phases\": ");
+            writeJSONPhases(writer, functions.get(function), "    ");
+            writer.append("}");
+        }
+        writer.append(slowest.isEmpty() ? "" : System.lineSeparator() + "  ");
+        writer.append("]").append(System.lineSeparator());
+        writer.append("}").append(System.lineSeparator());
+    }
+
+    private static void writeJSONPhases(Writer writer,
+                                        Map<String, Stats> phases,
+                                        String indent) throws IOException {
+        writer.append("[");
+        boolean first = true;
+        for (var entry : phases.entrySet()) {
+            writer.append(first ? "" : ",").append(System.lineSeparator());
+            writer.append(indent).append("  {\"phase\": ")
+                .append(jsonString(entry.getKey())).append(", ")
+                .append(jsonFields(entry.getValue())).append("}");
+            first = false;
+        }
+        writer.append(first ? "" : System.lineSeparator() + indent).append("]");
+    }
+
+    private static String jsonFields(Stats stats) {
+        return String.format(
+            "\"calls\": %d, \"wallNanos\": %d, \"cpuNanos\": %d, \"allocatedBytes\": %d, "
+                + "\"dataflowAnalyses\": %d, \"dataflowVisits\": %d",
+            stats.calls, stats.wallNanos, stats.cpuNanos, stats.allocatedBytes,
+            stats.analyses, stats.visits);
+    }
+
+    private static String jsonString(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Returns the row of {@code name}, padded to {@code width}.
+     */
+    private static String textRow(int width, String name, Stats stats) {
+        return String.format("%-" + width + "s %8d %12.3f %12.3f %15d %9d %11d%n",
+            name,
+            stats.calls,
+            stats.wallNanos / 1e6,
+            stats.cpuNanos / 1e6,
+            stats.allocatedBytes / 1024,
+            stats.analyses,
+            stats.visits);
+    }
+
+    /**
+     * Returns the functions that have been timed, from the one whose phases
+     * took the most wall time to the one whose phases took the least.
+     */
+    private List<String> slowestFunctions() {
+        List<String> names = new ArrayList<>(functions.keySet());
+        names.sort(Comparator.comparingLong(
+            (String f) -> total(functions.get(f)).wallNanos).reversed());
+        return names;
+    }
+
+    private static Stats total(Map<String, Stats> phases) {
+        Stats total = new Stats();
+        phases.values().forEach(total::add);
+        return total;
+    }
+
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported()
+            ? THREADS.getCurrentThreadCpuTime()
+            : 0;
+    }
+
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static final class Stats {
+
+        long calls;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        long analyses;
+        long visits;
+
+        Stats() {
+            this(0, 0, 0, 0, 0, 0);
+        }
+
+        Stats(long calls, long wallNanos, long cpuNanos, long allocatedBytes,
+              long analyses, long visits) {
+            this.calls = calls;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.analyses = analyses;
+            this.visits = visits;
+        }
+
+        void add(Stats other) {
+            calls += other.calls;
+            wallNanos += other.wallNanos;
+            cpuNanos += other.cpuNanos;
+            allocatedBytes += other.allocatedBytes;
+            analyses += other.analyses;
+            visits += other.visits;
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+package cyr7.util;
+
+import java.util.BitSet;
+
+/**
+ * A worklist of the ints {@code 0} to {@code size - 1} that always removes
+ * the least int in the list, and holds each int at most once, so adding an
+ * int that is already waiting does not make it be visited twice.
+ * <p>
+ * The list is a bitset that is scanned upwards from the least int that
+ * could be in it, so visiting every int in order costs one pass over the
+ * bitset.
+ */
+public final class PriorityWorklist {
+
+    private final BitSet waiting;
+    private int least;
+
+    private PriorityWorklist(int size) {
+        this.waiting = new BitSet(size);
+        this.least = 0;
+    }
+
+    /**
+     * Returns a worklist that holds every int from {@code 0} to
+     * {@code size - 1}.
+     */
+    public static PriorityWorklist full(int size) {
+        PriorityWorklist worklist = new PriorityWorklist(size);
+        worklist.waiting.set(0, size);
+        return worklist;
+    }
+
+    /**
+     * Adds {@code i} to the worklist, if it is not already waiting.
+     */
+    public void add(int i) {
+        waiting.set(i);
+        least = Math.min(least, i);
+    }
+
+    public boolean isEmpty() {
+        return waiting.isEmpty();
+    }
+
+    /**
+     * Removes and returns the least int in the worklist, or -1 if it is
+     * empty.
+     */
+    public int poll() {
+        int next = waiting.nextSetBit(least);
+        if (next >= 0) {
+            waiting.clear(next);
+            least = next;
+        }
+        return next;
+    }
+
+}
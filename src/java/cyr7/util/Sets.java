@@ -3,14 +3,14 @@ package cyr7.util;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 
 public final class Sets {
 
     public static <T> Set<T> union(Collection<? extends T> lhs, Collection<? extends T> rhs) {
-        return Stream.concat(lhs.stream(), rhs.stream()).collect(Collectors.toSet());
+        Set<T> elements = new HashSet<>(lhs);
+        elements.addAll(rhs);
+        return elements;
     }
 
     public static <T> Set<T> intersection(Set<? extends T> lhs, Set<? extends T> rhs) {
@@ -0,0 +1,239 @@
+package cyr7.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The order in which a worklist should visit the nodes of a graph that are
+ * reachable from a root so that a forward dataflow analysis converges in as
+ * few visits as possible.
+ * <p>
+ * The nodes are grouped into strongly connected components, found with
+ * Tarjan's algorithm, and the components are placed in topological order.
+ * Within a component, nodes are placed in reverse postorder. A worklist
+ * that always visits the earliest node in this order therefore finishes
+ * each component, typically a loop, before moving on to the components
+ * after it, and visits every node after its predecessors outside of back
+ * edges. Backward analyses visit the nodes in the opposite order, which
+ * {@link #backwardIndexOf} gives.
+ */
+public final class WorklistOrder<N> {
+
+    private final List<N> nodes;
+    private final Map<N, Integer> indices;
+    private final int[] components;
+    private final int componentCount;
+
+    private WorklistOrder(List<N> nodes, int[] components, int componentCount) {
+        this.nodes = nodes;
+        this.components = components;
+        this.componentCount = componentCount;
+        this.indices = new HashMap<>(nodes.size() * 2);
+        for (int i = 0; i < nodes.size(); i++) {
+            indices.put(nodes.get(i), i);
+        }
+    }
+
+    /**
+     * Orders the nodes reachable from {@code root}, where
+     * {@code successors} gives the successors of each node.
+     */
+    public static <N> WorklistOrder<N> of(
+            N root,
+            Function<? super N, ? extends Collection<? extends N>> successors) {
+        // Number the reachable nodes and turn the graph into adjacency
+        // arrays, so that the traversals below work on ints.
+        Map<N, Integer> ids = new HashMap<>();
+        List<N> reachable = new ArrayList<>();
+        ids.put(root, 0);
+        reachable.add(root);
+        for (int i = 0; i < reachable.size(); i++) {
+            for (N successor : successors.apply(reachable.get(i))) {
+                if (!ids.containsKey(successor)) {
+                    ids.put(successor, reachable.size());
+                    reachable.add(successor);
+                }
+            }
+        }
+        int size = reachable.size();
+        int[][] edges = new int[size][];
+        for (int i = 0; i < size; i++) {
+            edges[i] = successors.apply(reachable.get(i)).stream()
+                .mapToInt(ids::get)
+                .toArray();
+        }
+
+        int[] reversePostorder = reversePostorder(edges);
+        int[] component = new int[size];
+        int componentCount = tarjan(edges, component);
+
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator
+            .comparingInt((Integer v) -> component[v])
+            .thenComparingInt(v -> reversePostorder[v]));
+
+        List<N> ordered = new ArrayList<>(size);
+        int[] components = new int[size];
+        for (int i = 0; i < size; i++) {
+            ordered.add(reachable.get(order[i]));
+            components[i] = component[order[i]];
+        }
+        return new WorklistOrder<>(ordered, components, componentCount);
+    }
+
+    /**
+     * Returns the reverse postorder number of each node of a depth-first
+     * traversal from node 0.
+     */
+    private static int[] reversePostorder(int[][] edges) {
+        int size = edges.length;
+        int[] number = new int[size];
+        int[] nextEdge = new int[size];
+        boolean[] visited = new boolean[size];
+        int[] stack = new int[size];
+        int top = 0;
+        int finished = 0;
+        stack[top++] = 0;
+        visited[0] = true;
+        while (top > 0) {
+            int v = stack[top - 1];
+            if (nextEdge[v] < edges[v].length) {
+                int w = edges[v][nextEdge[v]++];
+                if (!visited[w]) {
+                    visited[w] = true;
+                    stack[top++] = w;
+                }
+            } else {
+                top--;
+                number[v] = size - 1 - finished++;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Finds the strongly connected components of the graph with Tarjan's
+     * algorithm, without recursion so that long functions cannot overflow
+     * the stack. Sets {@code component[v]} to the position of the
+     * component of {@code v} in topological order, and returns the number
+     * of components.
+     */
+    private static int tarjan(int[][] edges, int[] component) {
+        int size = edges.length;
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] nextEdge = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] componentStack = new int[size];
+        int[] callStack = new int[size];
+        Arrays.fill(index, -1);
+        int componentTop = 0;
+        int callTop = 0;
+        int nextIndex = 0;
+        int found = 0;
+
+        index[0] = lowLink[0] = nextIndex++;
+        componentStack[componentTop++] = 0;
+        onStack[0] = true;
+        callStack[callTop++] = 0;
+        while (callTop > 0) {
+            int v = callStack[callTop - 1];
+            if (nextEdge[v] < edges[v].length) {
+                int w = edges[v][nextEdge[v]++];
+                if (index[w] < 0) {
+                    index[w] = lowLink[w] = nextIndex++;
+                    componentStack[componentTop++] = w;
+                    onStack[w] = true;
+                    callStack[callTop++] = w;
+                } else if (onStack[w]) {
+                    lowLink[v] = Math.min(lowLink[v], index[w]);
+                }
+                continue;
+            }
+            callTop--;
+            if (callTop > 0) {
+                int caller = callStack[callTop - 1];
+                lowLink[caller] = Math.min(lowLink[caller], lowLink[v]);
+            }
+            if (lowLink[v] == index[v]) {
+                int w;
+                do {
+                    w = componentStack[--componentTop];
+                    onStack[w] = false;
+                    component[w] = found;
+                } while (w != v);
+                found++;
+            }
+        }
+
+        // Tarjan's algorithm finds components in reverse topological order.
+        for (int v = 0; v < size; v++) {
+            component[v] = found - 1 - component[v];
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of nodes reachable from the root.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node at position {@code index} of the forward order.
+     */
+    public N node(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns the position of {@code node} in the forward order, or -1 if
+     * it is not reachable from the root.
+     */
+    public int indexOf(N node) {
+        Integer index = indices.get(node);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the position of {@code node} in the backward order, or -1 if
+     * it is not reachable from the root.
+     */
+    public int backwardIndexOf(N node) {
+        int index = indexOf(node);
+        return index < 0 ? -1 : size() - 1 - index;
+    }
+
+    /**
+     * Returns the node at position {@code index} of the backward order.
+     */
+    public N backwardNode(int index) {
+        return node(size() - 1 - index);
+    }
+
+    /**
+     * Returns the topological position of the strongly connected component
+     * of the node at position {@code index} of the forward order.
+     */
+    public int componentOf(int index) {
+        return components[index];
+    }
+
+    /**
+     * Returns the number of strongly connected components.
+     */
+    public int componentCount() {
+        return componentCount;
+    }
+
+}
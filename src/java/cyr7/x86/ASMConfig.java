@@ -0,0 +1,45 @@
+package cyr7.x86;
+
+/**
+ * Settings that change the shape of the generated assembly. An instance is
+ * immutable, so a single configuration can be shared by every file and every
+ * function compiled in one invocation of the compiler.
+ */
+public final class ASMConfig {
+
+    public static ASMConfig defaults() {
+        return new ASMConfig(false, false);
+    }
+
+    public static ASMConfig of(boolean commentedAssembly,
+                               boolean assemblyLevelAssertions) {
+        return new ASMConfig(commentedAssembly, assemblyLevelAssertions);
+    }
+
+    private final boolean commentedAssembly;
+    private final boolean assemblyLevelAssertions;
+
+    private ASMConfig(boolean commentedAssembly,
+                      boolean assemblyLevelAssertions) {
+        this.commentedAssembly = commentedAssembly;
+        this.assemblyLevelAssertions = assemblyLevelAssertions;
+    }
+
+    /**
+     * Returns {@code true} if assembly instructions should be annotated with
+     * the IR node that produced them.
+     */
+    public boolean commentedAssembly() {
+        return commentedAssembly;
+    }
+
+    /**
+     * Returns {@code true} if sanity checks should be emitted at the assembly
+     * level. This specifically enables checking for 16-byte alignment for
+     * function calls.
+     */
+    public boolean assemblyLevelAssertions() {
+        return assemblyLevelAssertions;
+    }
+
+}
@@ -7,25 +7,30 @@ import cyr7.ir.IRUtil;
 import cyr7.ir.IdGenerator;
 import cyr7.ir.nodes.IRCompUnit;
 import cyr7.typecheck.IxiFileOpener;
+import cyr7.util.PhaseTimings;
 import cyr7.x86.asm.ASMLine;
 import cyr7.x86.reg_allocator.ASMAbstractGenerator;
 import cyr7.x86.reg_allocator.ASMGenerator;
+import cyr7.x86.reg_allocator.ASMGeneratorException;
 import cyr7.x86.reg_allocator.ASMTrivialRegAllocGenerator;
 import cyr7.x86.tiler.TilerFactory;
 
+import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.List;
+import java.util.Map;
 
 public final class ASMUtil {
 
     public enum TilerConf {
         BASIC, COMPLEX;
 
-        TilerFactory getFactory() {
+        TilerFactory getFactory(ASMConfig asmConfig) {
             switch (this) {
-                case BASIC: return TilerFactory.basicTilerFactory();
-                case COMPLEX: return TilerFactory.complexTilerFactory();
+                case BASIC: return TilerFactory.basicTilerFactory(asmConfig);
+                case COMPLEX: return TilerFactory.complexTilerFactory(asmConfig);
                 default: throw new RuntimeException("Unknown tiler conf case: " + this);
             }
         }
@@ -36,19 +41,66 @@ public final class ASMUtil {
         String filename,
         IxiFileOpener fileOpener,
         OptConfig optConfig,
-        TilerConf tiler
+        TilerConf tiler,
+        ASMConfig asmConfig
     ) throws Exception {
         IdGenerator idGenerator = new DefaultIdGenerator();
         IRCompUnit compUnit
             = IRUtil.generateIR(reader, filename, fileOpener, optConfig, idGenerator);
+        return generateASM(compUnit, idGenerator, optConfig, tiler, asmConfig,
+            PhaseTimings.disabled());
+    }
+
+    /**
+     * Generates the assembly of the lowered intermediate code
+     * {@code compUnit}, whose temps and labels were created by
+     * {@code idGenerator}. Tiling and register allocation are recorded in
+     * {@code timings}.
+     */
+    public static List<ASMLine> generateASM(
+        IRCompUnit compUnit,
+        IdGenerator idGenerator,
+        OptConfig optConfig,
+        TilerConf tiler,
+        ASMConfig asmConfig,
+        PhaseTimings timings
+    ) throws ASMGeneratorException {
+        return asmGenerator(idGenerator, optConfig, tiler, asmConfig, timings)
+            .generate(compUnit);
+    }
 
-        ASMGenerator asmGenerator;
+    /**
+     * Generates the assembly of each function of {@code compUnit}, keyed by
+     * the name of the function.
+     *
+     * @see #generateASM(IRCompUnit, IdGenerator, OptConfig, TilerConf, ASMConfig, PhaseTimings)
+     */
+    public static Map<String, List<ASMLine>> generateFunctionASM(
+        IRCompUnit compUnit,
+        IdGenerator idGenerator,
+        OptConfig optConfig,
+        TilerConf tiler,
+        ASMConfig asmConfig,
+        PhaseTimings timings
+    ) throws ASMGeneratorException {
+        return asmGenerator(idGenerator, optConfig, tiler, asmConfig, timings)
+            .generateFunctions(compUnit);
+    }
+
+    private static ASMGenerator asmGenerator(
+        IdGenerator idGenerator,
+        OptConfig optConfig,
+        TilerConf tiler,
+        ASMConfig asmConfig,
+        PhaseTimings timings
+    ) {
         if (optConfig.reg()) {
-            asmGenerator = new ASMRegAllocGenerator(tiler.getFactory(), idGenerator);
+            return new ASMRegAllocGenerator(tiler.getFactory(asmConfig),
+                idGenerator, optConfig.parallel(), timings);
         } else {
-            asmGenerator = new ASMTrivialRegAllocGenerator(tiler.getFactory(), idGenerator);
+            return new ASMTrivialRegAllocGenerator(
+                tiler.getFactory(asmConfig), idGenerator, timings);
         }
-        return asmGenerator.generate(compUnit);
     }
 
     public static void writeASM(
@@ -57,14 +109,54 @@ public final class ASMUtil {
             String filename,
             IxiFileOpener fileOpener,
             OptConfig optConfig,
-            TilerConf tiler
+            TilerConf tiler,
+            ASMConfig asmConfig
     ) throws Exception {
-        writer.append(".intel_syntax noprefix").append(System.lineSeparator());
+        IdGenerator idGenerator = new DefaultIdGenerator();
+        IRCompUnit compUnit
+            = IRUtil.generateIR(reader, filename, fileOpener, optConfig, idGenerator);
+        writeASM(compUnit, idGenerator, optConfig, tiler, asmConfig,
+            PhaseTimings.disabled(), writer);
+    }
 
-        List<ASMLine> lines = generateASM(reader, filename, fileOpener, optConfig, tiler);
-        for (ASMLine line: lines) {
-            writer.append(line.getIntelAssembly()).append(System.lineSeparator());
+    public static void writeASM(List<ASMLine> lines, Writer writer)
+            throws IOException {
+        ASMWriter asm = new ASMWriter(writer);
+        asm.write(lines);
+        asm.flush();
+    }
+
+    /**
+     * Generates the assembly of {@code compUnit} and writes it to
+     * {@code writer} a function at a time, as soon as each function has been
+     * allocated. Only the assembly of the functions being generated is held
+     * in memory, rather than that of the whole compilation unit.
+     *
+     * @see #generateASM(IRCompUnit, IdGenerator, OptConfig, TilerConf, ASMConfig, PhaseTimings)
+     */
+    public static void writeASM(
+        IRCompUnit compUnit,
+        IdGenerator idGenerator,
+        OptConfig optConfig,
+        TilerConf tiler,
+        ASMConfig asmConfig,
+        PhaseTimings timings,
+        Writer writer
+    ) throws ASMGeneratorException, IOException {
+        ASMWriter asm = new ASMWriter(writer);
+        try {
+            asmGenerator(idGenerator, optConfig, tiler, asmConfig, timings)
+                .generateFunctions(compUnit, (name, lines) -> {
+                    try {
+                        asm.write(lines);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        asm.flush();
     }
 
     public static List<ASMLine> generateAbstractASM(
@@ -0,0 +1,62 @@
+package cyr7.x86;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import cyr7.x86.asm.ASMLine;
+
+/**
+ * Writes assembly to a {@link Writer} a function at a time. Each line is
+ * formatted into a single {@link StringBuilder} that is reused for the whole
+ * file and handed to the writer whenever it grows past a threshold, so
+ * emitting a line allocates no strings of its own.
+ */
+public final class ASMWriter {
+
+    /**
+     * The number of characters that are formatted before they are handed to
+     * the writer.
+     */
+    private static final int CHUNK = 1 << 14;
+
+    private final Writer writer;
+    private final StringBuilder buffer = new StringBuilder(CHUNK + 256);
+    private final String lineSeparator = System.lineSeparator();
+
+    /**
+     * Starts the assembly file written to {@code writer}.
+     */
+    public ASMWriter(Writer writer) {
+        this.writer = writer;
+        buffer.append(".intel_syntax noprefix").append(lineSeparator);
+    }
+
+    /**
+     * Writes {@code lines}, such as the assembly of one function.
+     */
+    public void write(List<ASMLine> lines) throws IOException {
+        for (ASMLine line : lines) {
+            line.appendIntelAssembly(buffer, true, true);
+            buffer.append(lineSeparator);
+            if (buffer.length() >= CHUNK) {
+                drain();
+            }
+        }
+    }
+
+    /**
+     * Writes everything formatted so far to the underlying writer and
+     * flushes it.
+     */
+    public void flush() throws IOException {
+        drain();
+        writer.flush();
+    }
+
+    private void drain() throws IOException {
+        writer.append(buffer);
+        buffer.setLength(0);
+    }
+
+}
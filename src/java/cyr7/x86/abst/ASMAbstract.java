@@ -18,7 +18,6 @@ import cyr7.x86.tiler.TilerFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 
 public enum ASMAbstract {
     ;
@@ -47,7 +46,7 @@ public enum ASMAbstract {
                 ASMConstants.CALLEE_SAVED_REGISTERS[i]));
         }
 
-        for (ASMReg callerSaved : Set.of(ASMReg.R10, ASMReg.R11)) {
+        for (ASMReg callerSaved : List.of(ASMReg.R10, ASMReg.R11)) {
             if (callerSaved != ASMReg.RSP) {
                 body.add(make.Mov(callerSaved, arg.constant(0)));
             }
@@ -6,7 +6,6 @@ import cyr7.x86.visitor.AbstractASMVisitor;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 public final class ASMInstr implements ASMLine {
 
@@ -26,18 +25,29 @@ public final class ASMInstr implements ASMLine {
 
     @Override
     public String getIntelAssembly(boolean indented, boolean includeComments) {
-        String opCode = type.getIntelOpCode();
-        String arguments = args.stream().map(ASMArg::getIntelArg).collect(Collectors.joining(", "));
-        String src = source.map(x -> x.toString().replace("\n", "")).orElse(null);
-
         StringBuilder result = new StringBuilder();
-        if (indented) result.append("    ");
-        result.append(opCode);
-        if (!arguments.isEmpty()) result.append(" ").append(arguments);
-        if (src != null && includeComments) result.append(" ## ").append(src);
+        appendIntelAssembly(result, indented, includeComments);
         return result.toString();
     }
 
+    @Override
+    public void appendIntelAssembly(StringBuilder out, boolean indented,
+                                    boolean includeComments) {
+        if (indented) out.append("    ");
+        out.append(type.getIntelOpCode());
+        for (int i = 0; i < args.size(); i++) {
+            out.append(i == 0 ? " " : ", ").append(args.get(i).getIntelArg());
+        }
+        if (includeComments && source.isPresent()) {
+            String src = source.get().toString();
+            out.append(" ## ");
+            for (int i = 0; i < src.length(); i++) {
+                char c = src.charAt(i);
+                if (c != '\n') out.append(c);
+            }
+        }
+    }
+
     @Override
     public String toString() {
         return "ASMInstr [args=" + args + ", type=" + type + "]";
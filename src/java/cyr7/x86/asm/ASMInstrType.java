@@ -52,8 +52,10 @@ public enum ASMInstrType {
     // cqo
     CQO;
 
+    private final String intelOpCode = this.name().toLowerCase();
+
     public String getIntelOpCode() {
-        return this.name().toLowerCase();
+        return intelOpCode;
     }
 
     @Override
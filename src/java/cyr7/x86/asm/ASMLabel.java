@@ -18,6 +18,12 @@ public final class ASMLabel implements ASMLine {
         return label + ":";
     }
 
+    @Override
+    public void appendIntelAssembly(StringBuilder out, boolean indented,
+                                    boolean includeComments) {
+        out.append(label).append(':');
+    }
+
     @Override
     public String toString() {
         return "ASMLabel [label=" + label + "]";
@@ -10,6 +10,17 @@ public interface ASMLine {
 
     String getIntelAssembly(boolean indented, boolean withComments);
 
+    /**
+     * Appends the text of {@link #getIntelAssembly(boolean, boolean)} to
+     * {@code out}. Lines that are emitted often override this to format
+     * themselves directly into {@code out}, without building a string of
+     * their own.
+     */
+    default void appendIntelAssembly(StringBuilder out, boolean indented,
+                                     boolean withComments) {
+        out.append(getIntelAssembly(indented, withComments));
+    }
+
     <R> R accept(AbstractASMVisitor<R> visitor);
 
 }
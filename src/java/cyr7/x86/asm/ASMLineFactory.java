@@ -1,7 +1,7 @@
 package cyr7.x86.asm;
 
-import cyr7.cli.CLI;
 import cyr7.ir.nodes.IRNode;
+import cyr7.x86.ASMConfig;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,7 +17,11 @@ public class ASMLineFactory {
     }
 
     public ASMLineFactory(IRNode node) {
-        if (CLI.wantsCommentedAssembly) {
+        this(node, ASMConfig.defaults());
+    }
+
+    public ASMLineFactory(IRNode node, ASMConfig config) {
+        if (config.commentedAssembly()) {
             this.node = Optional.of(node);
         } else {
             this.node = Optional.empty();
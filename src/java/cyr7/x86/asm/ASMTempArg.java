@@ -10,8 +10,22 @@ public final class ASMTempArg implements ASMTempRegArg {
     public final String name;
     public final ASMRegSize size;
 
+    /**
+     * The id of this temp in the {@link cyr7.ir.TempTable TempTable} of its
+     * function, or -1 if the temps of its function have not been numbered.
+     * The temps of a function are numbered when its registers are allocated.
+     * Ids are given by name, so the byte and quad word temps of the same name
+     * share an id.
+     */
+    public final int id;
+
     public ASMTempArg(String name, ASMRegSize size) {
+        this(name, -1, size);
+    }
+
+    public ASMTempArg(String name, int id, ASMRegSize size) {
         this.name = name;
+        this.id = id;
         this.size = size;
     }
 
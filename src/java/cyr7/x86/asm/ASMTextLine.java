@@ -0,0 +1,27 @@
+package cyr7.x86.asm;
+
+import cyr7.x86.visitor.AbstractASMVisitor;
+
+/**
+ * A line of assembly that is already in its final textual form, such as a
+ * line of previously generated assembly that was read back from a file.
+ */
+public class ASMTextLine implements ASMLine {
+
+    private final String text;
+
+    public ASMTextLine(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String getIntelAssembly(boolean indented, boolean withComments) {
+        return text;
+    }
+
+    @Override
+    public <R> R accept(AbstractASMVisitor<R> visitor) {
+        return null;
+    }
+
+}
@@ -42,7 +42,8 @@ public class Binop_ConstTempArgPattern {
             final int cost = 1 + pattern2.preMapRight().getOptimalTiling().tileCost;
             return Optional.of(BinOpInstructionGenerator
                                     .generateInstruction(n, cost, constant,
-                                            temp, insns, generator));
+                                            temp, insns, generator,
+                                            tiler.lineFactory(n)));
         }
         return Optional.empty();
     }
@@ -43,7 +43,8 @@ public class Binop_TempArgConstPattern {
             final int cost = 1 + pattern.preMapLeft().getOptimalTiling().tileCost;
             return Optional.of(BinOpInstructionGenerator
                                     .generateInstruction(n, cost, temp,
-                                            constant, insns, generator));
+                                            constant, insns, generator,
+                                            tiler.lineFactory(n)));
         }
         return Optional.empty();
     }
@@ -5,20 +5,54 @@ import cyr7.ir.nodes.IRFuncDecl;
 import cyr7.x86.asm.ASMLine;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 public interface ASMGenerator {
 
     default List<ASMLine> generate(IRCompUnit compUnit) throws ASMGeneratorException {
         List<ASMLine> lines = new ArrayList<>();
 
-        for (IRFuncDecl funcDecl : compUnit.functions().values()) {
-            lines.addAll(generate(funcDecl));
+        for (List<ASMLine> functionLines : generateFunctions(compUnit).values()) {
+            lines.addAll(functionLines);
         }
 
         return lines;
     }
 
+    /**
+     * Generates the assembly of each function in {@code compUnit}, keyed by
+     * the name of the function, in the order of
+     * {@code compUnit.functions()}.
+     */
+    default Map<String, List<ASMLine>> generateFunctions(IRCompUnit compUnit)
+            throws ASMGeneratorException {
+        Map<String, List<ASMLine>> functions = new LinkedHashMap<>();
+
+        for (IRFuncDecl funcDecl : compUnit.functions().values()) {
+            functions.put(funcDecl.name(), generate(funcDecl));
+        }
+
+        return functions;
+    }
+
+    /**
+     * Generates the assembly of each function in {@code compUnit}, passing
+     * the name and assembly of each function to {@code sink} as soon as it
+     * is generated, in the order of {@code compUnit.functions()}. The
+     * assembly of a function is not referenced by the generator once
+     * {@code sink} returns.
+     */
+    default void generateFunctions(IRCompUnit compUnit,
+                                   BiConsumer<String, List<ASMLine>> sink)
+            throws ASMGeneratorException {
+        for (IRFuncDecl funcDecl : compUnit.functions().values()) {
+            sink.accept(funcDecl.name(), generate(funcDecl));
+        }
+    }
+
     List<ASMLine> generate(IRFuncDecl funcDecl) throws ASMGeneratorException;
 
 }
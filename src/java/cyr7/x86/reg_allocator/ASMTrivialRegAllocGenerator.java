@@ -3,6 +3,7 @@ package cyr7.x86.reg_allocator;
 import cyr7.ir.IdGenerator;
 import cyr7.ir.nodes.IRCompUnit;
 import cyr7.ir.nodes.IRFuncDecl;
+import cyr7.util.PhaseTimings;
 import cyr7.visitor.MyIRVisitor;
 import cyr7.x86.abst.ASMAbstract;
 import cyr7.x86.asm.ASMArg;
@@ -35,17 +36,28 @@ public class ASMTrivialRegAllocGenerator implements ASMGenerator {
 
     private final TilerFactory tilerFactory;
     private final IdGenerator generator;
+    private final PhaseTimings timings;
 
     public ASMTrivialRegAllocGenerator(TilerFactory tilerFactory,
                                        IdGenerator generator) {
+        this(tilerFactory, generator, PhaseTimings.disabled());
+    }
+
+    /**
+     * Tiling is recorded per function in {@code timings}.
+     */
+    public ASMTrivialRegAllocGenerator(TilerFactory tilerFactory,
+                                       IdGenerator generator,
+                                       PhaseTimings timings) {
         this.tilerFactory = tilerFactory;
         this.generator = generator;
+        this.timings = timings;
     }
 
     @Override
     public List<ASMLine> generate(IRFuncDecl funcDecl) {
-        List<ASMLine> body
-            = ASMAbstract.generateBody(funcDecl, generator, tilerFactory);
+        List<ASMLine> body = timings.time("tiling", funcDecl.name(),
+            () -> ASMAbstract.generateBody(funcDecl, generator, tilerFactory));
         List<ASMTempArg> uniqueTemps = uniqueTemps(body);
         List<ASMLine> prologue
             = ASMAbstract.createPrologue(funcDecl.name(), uniqueTemps.size());
@@ -3,6 +3,7 @@ package cyr7.x86.tiler;
 import cyr7.ir.IdGenerator;
 import cyr7.ir.nodes.*;
 import cyr7.visitor.MyIRVisitor;
+import cyr7.x86.ASMConfig;
 import cyr7.x86.asm.ASMArg;
 import cyr7.x86.asm.ASMArgFactory;
 import cyr7.x86.asm.ASMConstArg;
@@ -41,6 +42,8 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
 
     protected final boolean stack16ByteAligned;
 
+    protected final ASMConfig asmConfig;
+
     private boolean shouldMemoizeResult = false;
 
     public BasicTiler(
@@ -50,11 +53,24 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
         Optional<ASMTempArg> additionalRetValAddress,
         boolean stack16ByteAligned) {
 
+        this(generator, numRetValues, returnLbl, additionalRetValAddress,
+            stack16ByteAligned, ASMConfig.defaults());
+    }
+
+    public BasicTiler(
+        IdGenerator generator,
+        int numRetValues,
+        String returnLbl,
+        Optional<ASMTempArg> additionalRetValAddress,
+        boolean stack16ByteAligned,
+        ASMConfig asmConfig) {
+
         this.generator = generator;
         this.numRetValues = numRetValues;
         this.returnLbl = returnLbl;
         this.additionalRetValAddress = additionalRetValAddress;
         this.stack16ByteAligned = stack16ByteAligned;
+        this.asmConfig = asmConfig;
     }
 
     private final TilerData setResult(IRNode_c n, TilerData result) {
@@ -68,9 +84,16 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
         return this.generator;
     }
 
+    /**
+     * Creates the factory for the instructions that tile node {@code n}.
+     */
+    public ASMLineFactory lineFactory(IRNode n) {
+        return new ASMLineFactory(n, asmConfig);
+    }
+
     @Override
     public TilerData visit(IRBinOp n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -92,7 +115,7 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
         final int cost = 1 + left.tileCost + right.tileCost;
 
         TilerData result = BinOpInstructionGenerator.generateInstruction(n, cost,
-                leftArg, rightArg, insns, generator);
+                leftArg, rightArg, insns, generator, make);
         return this.setResult(n, result);
     }
 
@@ -104,7 +127,7 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
 
     @Override
     public TilerData visit(IRInteger n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -202,13 +225,14 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
             arguments,
             insn,
             generator,
-            stack16ByteAligned).generate();
+            stack16ByteAligned,
+            asmConfig).generate();
         return this.setResult(n, result);
     }
 
     @Override
     public TilerData visit(IRCJump n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -249,7 +273,7 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
 
     @Override
     public TilerData visit(IRJump n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -301,13 +325,13 @@ public class BasicTiler implements MyIRVisitor<TilerData> {
         TilerData result = MoveInstructionGenerator.generate(n,
                 cost, target.result.get(), source.result.get(),
                 numRetValues, generator,
-                additionalRetValAddress, instrs);
+                additionalRetValAddress, instrs, lineFactory(n));
         return this.setResult(n, result);
     }
 
     @Override
     public TilerData visit(IRReturn n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
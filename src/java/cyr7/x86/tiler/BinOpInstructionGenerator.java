@@ -23,9 +23,9 @@ public class BinOpInstructionGenerator {
             ASMArg leftArg,
             ASMArg rightArg,
             List<ASMLine> insns,
-            IdGenerator generator) {
+            IdGenerator generator,
+            ASMLineFactory make) {
 
-        ASMLineFactory make = new ASMLineFactory(n);
         ASMArg ret = arg.temp(generator.newTemp(), ASMRegSize.QWORD);
 
         switch (n.opType()) {
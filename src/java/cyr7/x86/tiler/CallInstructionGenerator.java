@@ -4,9 +4,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
-import cyr7.cli.CLI;
 import cyr7.ir.IdGenerator;
 import cyr7.ir.nodes.IRCallStmt;
+import cyr7.x86.ASMConfig;
 import cyr7.x86.ASMConstants;
 import cyr7.x86.asm.ASMAddrExpr.ScaleValues;
 import cyr7.x86.asm.ASMArg;
@@ -29,6 +29,7 @@ public class CallInstructionGenerator {
     private final List<ASMLine> insn;
     private final IdGenerator generator;
     private final boolean stack16ByteAligned;
+    private final ASMConfig asmConfig;
 
     private final ASMLineFactory make;
 
@@ -42,7 +43,8 @@ public class CallInstructionGenerator {
         List<ASMArg> arguments,
         List<ASMLine> insn,
         IdGenerator generator,
-        boolean stack16ByteAligned) {
+        boolean stack16ByteAligned,
+        ASMConfig asmConfig) {
 
         this.n = n;
         this.cost = cost;
@@ -52,8 +54,9 @@ public class CallInstructionGenerator {
         this.insn = insn;
         this.generator = generator;
         this.stack16ByteAligned = stack16ByteAligned;
+        this.asmConfig = asmConfig;
 
-        this.make = new ASMLineFactory(n);
+        this.make = new ASMLineFactory(n, asmConfig);
     }
 
     public TilerData generate() {
@@ -66,7 +69,7 @@ public class CallInstructionGenerator {
 
         precallSaveCallerSavedRegisters();
 
-        if (CLI.assemblyLevelAssertionsEnabled) {
+        if (asmConfig.assemblyLevelAssertions()) {
             precallAddAssemblyLevelStackAlignmentCheck();
         }
 
@@ -25,6 +25,7 @@ import cyr7.ir.nodes.IRNode_c;
 import cyr7.ir.nodes.IRReturn;
 import cyr7.ir.nodes.IRSeq;
 import cyr7.ir.nodes.IRTemp;
+import cyr7.x86.ASMConfig;
 import cyr7.x86.asm.ASMArg;
 import cyr7.x86.asm.ASMLine;
 import cyr7.x86.asm.ASMLineFactory;
@@ -69,8 +70,17 @@ public class ComplexTiler extends BasicTiler {
                         String returnLbl,
                         Optional<ASMTempArg> additionalRetValAddress,
                         boolean stack16ByteAligned) {
+        this(generator, numRetValues, returnLbl, additionalRetValAddress,
+            stack16ByteAligned, ASMConfig.defaults());
+    }
+
+    public ComplexTiler(IdGenerator generator, int numRetValues,
+                        String returnLbl,
+                        Optional<ASMTempArg> additionalRetValAddress,
+                        boolean stack16ByteAligned,
+                        ASMConfig asmConfig) {
         super(generator, numRetValues, returnLbl, additionalRetValAddress,
-            stack16ByteAligned);
+            stack16ByteAligned, asmConfig);
 
         disableBasicTilerMemoizeResults();
     }
@@ -78,7 +88,7 @@ public class ComplexTiler extends BasicTiler {
 
     @Override
     public TilerData visit(IRBinOp n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -145,7 +155,7 @@ public class ComplexTiler extends BasicTiler {
 
     @Override
     public TilerData visit(IRMem n) {
-        ASMLineFactory make = new ASMLineFactory(n);
+        ASMLineFactory make = lineFactory(n);
         if (n.hasOptimalTiling()) {
             return n.getOptimalTiling();
         }
@@ -238,7 +248,8 @@ public class ComplexTiler extends BasicTiler {
             arguments,
             instructions,
             generator,
-            stack16ByteAligned).generate());
+            stack16ByteAligned,
+            asmConfig).generate());
 
         possibleTilings.add(super.visit(n));
 
@@ -311,7 +322,8 @@ public class ComplexTiler extends BasicTiler {
         final int cost = 1 + target.tileCost + source.tileCost;
         possibleTilings.add(MoveInstructionGenerator.generate(n, cost,
             targetArg, sourceArg,
-            numRetValues, generator, additionalRetValAddress, instructions));
+            numRetValues, generator, additionalRetValAddress, instructions,
+            lineFactory(n)));
 
         possibleTilings.add(super.visit(n));
 
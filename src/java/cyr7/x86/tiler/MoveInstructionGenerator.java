@@ -56,9 +56,9 @@ public class MoveInstructionGenerator {
         int numRetValues,
         IdGenerator generator,
         Optional<ASMTempArg> additionalRetValAddress,
-        List<ASMLine> instrs) {
+        List<ASMLine> instrs,
+        ASMLineFactory make) {
 
-        ASMLineFactory make = new ASMLineFactory(n);
         TilerData result;
         if (isAnArg(n.target())) {
             // Case: Move(ARG_i, t)
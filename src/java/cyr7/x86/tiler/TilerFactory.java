@@ -2,6 +2,7 @@ package cyr7.x86.tiler;
 
 import cyr7.ir.IdGenerator;
 import cyr7.visitor.MyIRVisitor;
+import cyr7.x86.ASMConfig;
 import cyr7.x86.asm.ASMTempArg;
 
 import java.util.Optional;
@@ -11,11 +12,23 @@ public interface TilerFactory {
     static TilerFactory basicTilerFactory() {
         return BasicTiler::new;
     }
+
+    static TilerFactory basicTilerFactory(ASMConfig asmConfig) {
+        return (generator, numRetValues, returnLbl, additionalRetValueAddress,
+                stack16ByteAligned) -> new BasicTiler(generator, numRetValues,
+            returnLbl, additionalRetValueAddress, stack16ByteAligned, asmConfig);
+    }
     
     static TilerFactory complexTilerFactory() {
         return ComplexTiler::new;
     }
 
+    static TilerFactory complexTilerFactory(ASMConfig asmConfig) {
+        return (generator, numRetValues, returnLbl, additionalRetValueAddress,
+                stack16ByteAligned) -> new ComplexTiler(generator, numRetValues,
+            returnLbl, additionalRetValueAddress, stack16ByteAligned, asmConfig);
+    }
+
     MyIRVisitor<TilerData> constructTiler(
         IdGenerator generator,
         int numRetValues,
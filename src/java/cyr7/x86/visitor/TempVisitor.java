@@ -1,6 +1,6 @@
 package cyr7.x86.visitor;
 
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import cyr7.x86.asm.ASMAddrExpr;
@@ -20,7 +20,7 @@ public class TempVisitor extends AbstractASMVisitor<Set<ASMTempArg>> {
     }
 
     public Set<ASMTempArg> visit(ASMAddrExpr e) {
-        Set<ASMTempArg> temps = new HashSet<>();
+        Set<ASMTempArg> temps = new LinkedHashSet<>();
         e.base.ifPresent(b -> temps.addAll(b.accept(this)));
         e.index.ifPresent(i -> temps.addAll(i.accept(this)));
         return temps;
@@ -33,7 +33,7 @@ public class TempVisitor extends AbstractASMVisitor<Set<ASMTempArg>> {
 
     @Override
     public Set<ASMTempArg> visit(ASMInstr i) {
-        Set<ASMTempArg> temps = new HashSet<>();
+        Set<ASMTempArg> temps = new LinkedHashSet<>();
         i.args.forEach(arg -> {
             temps.addAll(arg.accept(this));
         });
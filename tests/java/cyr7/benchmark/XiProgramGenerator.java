@@ -0,0 +1,274 @@
+package cyr7.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates well-typed Xi programs of a given {@link Shape}. The same seed
+ * and shape always generate the same program, so a program that exposes a
+ * slow phase can be regenerated from just those numbers.
+ * <p>
+ * Every function other than {@code main} takes two ints and returns an int.
+ * A function only calls the functions declared before it, and every loop
+ * counts up to a small bound, so the generated programs terminate. They
+ * are meant to be compiled rather than run, though: the number of calls a
+ * program makes grows exponentially with its number of functions.
+ */
+public final class XiProgramGenerator {
+
+    /**
+     * The size of a generated program.
+     */
+    public static final class Shape {
+
+        /**
+         * The number of functions besides {@code main}.
+         */
+        public final int functions;
+
+        /**
+         * The number of statements in the body of each function, counting
+         * the statements nested in loops and conditionals.
+         */
+        public final int statements;
+
+        /**
+         * How deeply loops may be nested.
+         */
+        public final int loopDepth;
+
+        /**
+         * The number of variables that each function keeps live from its
+         * first statement to its last.
+         */
+        public final int temps;
+
+        /**
+         * The chance, between 0 and 1, that a statement assigns the result
+         * of a call.
+         */
+        public final double callDensity;
+
+        /**
+         * How deeply arithmetic expressions may be nested.
+         */
+        public final int expressionDepth;
+
+        public Shape(int functions, int statements, int loopDepth, int temps,
+                     double callDensity, int expressionDepth) {
+            if (functions < 0 || statements < 0 || loopDepth < 0 || temps < 1
+                    || callDensity < 0 || callDensity > 1
+                    || expressionDepth < 1) {
+                throw new IllegalArgumentException("Invalid shape: "
+                    + functions + ", " + statements + ", " + loopDepth + ", "
+                    + temps + ", " + callDensity + ", " + expressionDepth);
+            }
+            this.functions = functions;
+            this.statements = statements;
+            this.loopDepth = loopDepth;
+            this.temps = temps;
+            this.callDensity = callDensity;
+            this.expressionDepth = expressionDepth;
+        }
+
+        /**
+         * A small program: a handful of short functions with shallow loops.
+         */
+        public static Shape small() {
+            return new Shape(8, 32, 2, 6, 0.1, 3);
+        }
+
+        public Shape withFunctions(int functions) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        public Shape withStatements(int statements) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        public Shape withLoopDepth(int loopDepth) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        public Shape withTemps(int temps) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        public Shape withCallDensity(double callDensity) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        public Shape withExpressionDepth(int expressionDepth) {
+            return new Shape(functions, statements, loopDepth, temps,
+                callDensity, expressionDepth);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "functions=%d statements=%d loopDepth=%d temps=%d "
+                    + "callDensity=%.2f expressionDepth=%d",
+                functions, statements, loopDepth, temps, callDensity,
+                expressionDepth);
+        }
+
+    }
+
+    /**
+     * Returns the program of shape {@code shape} generated from {@code seed}.
+     */
+    public static String generate(Shape shape, long seed) {
+        return new XiProgramGenerator(shape, seed).program();
+    }
+
+    /**
+     * The number of times that a generated loop runs.
+     */
+    private static final int LOOP_BOUND = 4;
+
+    private final Shape shape;
+    private final Random random;
+    private final StringBuilder out = new StringBuilder();
+
+    /**
+     * The index of the function being generated; it may call any function
+     * with a smaller index.
+     */
+    private int function;
+
+    /**
+     * The number of loop counters declared so far in the current function,
+     * used to give each counter a fresh name.
+     */
+    private int counters;
+
+    private XiProgramGenerator(Shape shape, long seed) {
+        this.shape = shape;
+        this.random = new Random(seed);
+    }
+
+    private String program() {
+        for (function = 0; function < shape.functions; function++) {
+            function();
+        }
+        out.append("main(args: int[][]) {\n");
+        out.append("    r: int = ")
+            .append(shape.functions == 0
+                ? "0"
+                : name(shape.functions - 1) + "(1, 2)")
+            .append('\n');
+        out.append("}\n");
+        return out.toString();
+    }
+
+    private static String name(int function) {
+        return "f" + function;
+    }
+
+    private void function() {
+        counters = 0;
+        out.append(name(function)).append("(a: int, b: int): int {\n");
+        for (int t = 0; t < shape.temps; t++) {
+            line(1, "t" + t + ": int = " + (t % 2 == 0 ? "a" : "b")
+                + " + " + t);
+        }
+        block(1, shape.statements, 0);
+
+        List<String> temps = new ArrayList<>();
+        for (int t = 0; t < shape.temps; t++) {
+            temps.add("t" + t);
+        }
+        line(1, "return " + String.join(" + ", temps));
+        out.append("}\n\n");
+    }
+
+    /**
+     * Generates {@code statements} statements at nesting level
+     * {@code indent}, inside {@code loops} loops.
+     */
+    private void block(int indent, int statements, int loops) {
+        while (statements > 0) {
+            int choice = random.nextInt(10);
+            if (statements > 2 && loops < shape.loopDepth && choice < 2) {
+                int body = 1 + random.nextInt(statements - 2);
+                loop(indent, body, loops);
+                statements -= body + 2;
+            } else if (statements > 2 && choice < 3) {
+                int branches = statements - 1;
+                int then = 1 + random.nextInt(branches);
+                conditional(indent, then, branches - then, loops);
+                statements -= branches + 1;
+            } else {
+                assignment(indent);
+                statements--;
+            }
+        }
+    }
+
+    private void loop(int indent, int body, int loops) {
+        String counter = "i" + counters++;
+        line(indent, counter + ": int = 0");
+        line(indent, "while (" + counter + " < " + LOOP_BOUND + ") {");
+        block(indent + 1, body, loops + 1);
+        line(indent + 1, counter + " = " + counter + " + 1");
+        line(indent, "}");
+    }
+
+    private void conditional(int indent, int then, int otherwise, int loops) {
+        line(indent, "if (" + condition() + ") {");
+        block(indent + 1, then, loops);
+        if (otherwise > 0) {
+            line(indent, "} else {");
+            block(indent + 1, otherwise, loops);
+        }
+        line(indent, "}");
+    }
+
+    private void assignment(int indent) {
+        String target = temp();
+        if (function > 0 && random.nextDouble() < shape.callDensity) {
+            int callee = random.nextInt(function);
+            line(indent, target + " = " + name(callee) + "("
+                + expression(1) + ", " + expression(1) + ")");
+        } else {
+            line(indent, target + " = " + expression(shape.expressionDepth));
+        }
+    }
+
+    private String condition() {
+        String[] comparisons = {"<", "<=", "==", "!=", ">", ">="};
+        return expression(1) + " "
+            + comparisons[random.nextInt(comparisons.length)] + " "
+            + expression(1);
+    }
+
+    /**
+     * Returns an int expression nested at most {@code depth} deep.
+     */
+    private String expression(int depth) {
+        if (depth <= 1 || random.nextInt(3) == 0) {
+            return random.nextBoolean()
+                ? temp()
+                : String.valueOf(random.nextInt(100));
+        }
+        String[] operators = {"+", "-", "*"};
+        return "(" + expression(depth - 1) + " "
+            + operators[random.nextInt(operators.length)] + " "
+            + expression(depth - 1) + ")";
+    }
+
+    private String temp() {
+        return "t" + random.nextInt(shape.temps);
+    }
+
+    private void line(int indent, String text) {
+        out.append("    ".repeat(indent)).append(text).append('\n');
+    }
+
+}
@@ -0,0 +1,81 @@
+package cyr7.benchmark;
+
+import cyr7.ast.Node;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.interpret.IRSimulator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.parser.ParserUtil;
+import cyr7.typecheck.TypeCheckUtil;
+import cyr7.visitor.VisitorFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XiProgramGeneratorTest {
+
+    private static final List<Shape> SHAPES = List.of(
+        Shape.small(),
+        Shape.small().withFunctions(0),
+        Shape.small().withStatements(0),
+        Shape.small().withLoopDepth(5).withStatements(60),
+        Shape.small().withTemps(1).withCallDensity(1),
+        Shape.small().withExpressionDepth(8));
+
+    private static Node typeCheck(String program) throws Exception {
+        Node node = ParserUtil.parseNode(
+            new StringReader(program), "generated.xi", false);
+        TypeCheckUtil.typeCheckNoIxiFiles(node);
+        return node;
+    }
+
+    @Test
+    void generatedProgramsAreWellTyped() throws Exception {
+        for (Shape shape : SHAPES) {
+            for (long seed = 0; seed < 5; seed++) {
+                String program = XiProgramGenerator.generate(shape, seed);
+                assertDoesNotThrow(() -> typeCheck(program),
+                    shape + " seed=" + seed + "\n" + program);
+            }
+        }
+    }
+
+    @Test
+    void generatedProgramsTerminate() throws Exception {
+        DefaultIdGenerator generator = new DefaultIdGenerator();
+        IRCompUnit mir = (IRCompUnit) typeCheck(
+                XiProgramGenerator.generate(Shape.small()
+                    .withFunctions(3)
+                    .withStatements(12)
+                    .withLoopDepth(1), 42))
+            .accept(VisitorFactory.Companion.astToIrVisitor(generator))
+            .assertSecond();
+        IRCompUnit lir = IRUtil.lower(mir, generator, OptConfig.allEnabled());
+
+        new IRSimulator(lir).call("_Imain_paai", 0);
+    }
+
+    @Test
+    void seedsDetermineThePrograms() {
+        assertEquals(XiProgramGenerator.generate(Shape.small(), 7),
+            XiProgramGenerator.generate(Shape.small(), 7));
+        assertNotEquals(XiProgramGenerator.generate(Shape.small(), 7),
+            XiProgramGenerator.generate(Shape.small(), 8));
+    }
+
+    @Test
+    void shapesControlTheSize() {
+        String program = XiProgramGenerator.generate(
+            Shape.small().withFunctions(20), 0);
+        assertTrue(program.contains("f19(a: int, b: int): int {"));
+        assertFalse(program.contains("f20("));
+        assertThrows(IllegalArgumentException.class,
+            () -> Shape.small().withTemps(0));
+    }
+
+}
@@ -0,0 +1,164 @@
+package cyr7.cfg;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.C;
+import cyr7.benchmark.XiProgramGenerator;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cfg.ir.dfa.WorklistAnalysis;
+import cyr7.cfg.ir.dfa.loops.DominatorAnalysis;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.dfa.loops.DominatorUtil;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGNodeFactory;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+
+public class TestDominatorTree {
+
+    private static final CFGNodeFactory make = new CFGNodeFactory(C.LOC);
+    private static final IRNodeFactory makeIR = new IRNodeFactory_c(C.LOC);
+
+    /**
+     * 1:   x = 12
+     * 2:   while (x < 12)
+     * 3:       x = 5
+     * 4:       a = 3
+     * 5:   x = 2
+     */
+    @Test
+    void testSimpleLoop() {
+        CFGNode line6 = make.Return();
+        CFGNode line5 = make.VarAssign("x",
+                makeIR.IRInteger(2),
+                line6);
+        CFGStubNode line3Stub = new CFGStubNode();
+        CFGNode line2 = make.If(line3Stub, line5, makeIR.IRBinOp(OpType.LT,
+                makeIR.IRTemp("x"), makeIR.IRInteger(12)));
+        CFGNode line4 = make.VarAssign("a",
+                makeIR.IRInteger(3),
+                line2);
+        CFGNode line3 = make.VarAssign("x", makeIR.IRInteger(5),
+                line4);
+        line2.replaceOutEdge(line3Stub, line3);
+        CFGNode line1 = make.VarAssign("x", makeIR.IRInteger(12),
+                line2);
+        CFGStartNode line0 = make.Start(line1);
+
+        DominatorTree tree = DominatorTree.of(line0);
+
+        assertSame(line0, tree.root());
+        assertNull(tree.idom(line0));
+        assertSame(line0, tree.idom(line1));
+        assertSame(line1, tree.idom(line2));
+        assertSame(line2, tree.idom(line3));
+        assertSame(line3, tree.idom(line4));
+        assertSame(line2, tree.idom(line5));
+        assertSame(line5, tree.idom(line6));
+        assertEquals(Set.of(line3, line5), new HashSet<>(tree.children(line2)));
+
+        assertTrue(tree.dominates(line2, line2));
+        assertTrue(tree.dominates(line2, line4));
+        assertTrue(tree.dominates(line1, line6));
+        assertFalse(tree.dominates(line3, line5));
+        assertFalse(tree.dominates(line4, line2));
+        assertFalse(tree.strictlyDominates(line2, line2));
+
+        assertEquals(Set.of(line2), tree.frontier(line2));
+        assertEquals(Set.of(line2), tree.frontier(line3));
+        assertEquals(Set.of(line2), tree.frontier(line4));
+        assertEquals(Set.of(), tree.frontier(line5));
+        assertEquals(Set.of(), tree.frontier(line1));
+    }
+
+    @Test
+    void testUnreachableNodesAreNotInTheTree() {
+        CFGNode end = make.Return();
+        CFGNode unreachable = make.VarAssign("x", makeIR.IRInteger(1), end);
+        CFGStartNode start = make.Start(end);
+
+        DominatorTree tree = DominatorTree.of(start);
+
+        assertFalse(tree.contains(unreachable));
+        assertNull(tree.idom(unreachable));
+        assertFalse(tree.dominates(unreachable, end));
+        assertFalse(tree.dominates(start, unreachable));
+        assertSame(start, tree.idom(end));
+        assertEquals(Set.of(), tree.frontier(end));
+    }
+
+    @Test
+    void testLongChainDoesNotOverflow() {
+        CFGNode last = make.Return();
+        CFGNode first = last;
+        for (int i = 0; i < 100_000; i++) {
+            first = make.VarAssign("x", makeIR.IRInteger(i), first);
+        }
+        CFGStartNode start = make.Start(first);
+
+        DominatorTree tree = DominatorTree.of(start);
+
+        assertTrue(tree.dominates(start, last));
+        assertTrue(tree.dominates(first, last));
+        assertFalse(tree.dominates(last, first));
+        assertSame(last.in().get(0), tree.idom(last));
+    }
+
+    @Test
+    void testAgreesWithDominatorAnalysis() throws Exception {
+        for (long seed = 0; seed < 4; seed++) {
+            String program = XiProgramGenerator.generate(
+                Shape.small().withLoopDepth(3).withStatements(40), seed);
+            Map<String, CFGStartNode> cfgs = IRUtil.generateCFG(
+                new StringReader(program), "generated.xi",
+                filename -> Reader.nullReader(), OptConfig.none(),
+                new DefaultIdGenerator());
+
+            for (CFGStartNode cfg : cfgs.values()) {
+                var result = WorklistAnalysis.analyze(cfg, DominatorAnalysis.INSTANCE);
+                Map<CFGNode, Set<CFGNode>> dominators =
+                    DominatorUtil.generateMap(result.out());
+                DominatorTree tree = DominatorTree.of(cfg);
+
+                for (CFGNode node : tree.nodes()) {
+                    Set<CFGNode> expected =
+                        dominators.getOrDefault(node, Set.of(cfg));
+                    Set<CFGNode> actual = new HashSet<>();
+                    for (CFGNode dominator : tree.nodes()) {
+                        if (tree.dominates(dominator, node)) {
+                            actual.add(dominator);
+                        }
+                    }
+                    assertEquals(expected, actual, node.toString());
+
+                    CFGNode idom = tree.idom(node);
+                    if (idom != null) {
+                        Set<CFGNode> strict = new HashSet<>(expected);
+                        strict.remove(node);
+                        assertEquals(dominators.getOrDefault(idom, Set.of(cfg)),
+                            strict);
+                    }
+                }
+            }
+        }
+    }
+
+}
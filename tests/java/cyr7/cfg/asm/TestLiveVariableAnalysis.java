@@ -6,11 +6,15 @@ import cyr7.cfg.asm.nodes.AsmCFGOpNode;
 import cyr7.cfg.asm.nodes.AsmCFGReturnNode;
 import cyr7.cfg.asm.nodes.AsmCFGStartNode;
 import cyr7.cfg.asm.reg.LiveVariableAnalysis;
+import cyr7.ir.TempTable;
+import cyr7.util.BitVector;
 import cyr7.util.Sets;
 import cyr7.x86.ASMConstants;
 import cyr7.x86.asm.ASMArgFactory;
 import cyr7.x86.asm.ASMLineFactory;
 import cyr7.x86.asm.ASMReg;
+import cyr7.x86.asm.ASMRegSize;
+import cyr7.x86.asm.ASMTempArg;
 import cyr7.x86.asm.ASMTempRegArg;
 import org.junit.jupiter.api.Test;
 
@@ -26,6 +30,14 @@ public class TestLiveVariableAnalysis {
     public static final ASMLineFactory make = new ASMLineFactory();
     public static final ASMArgFactory arg = ASMArgFactory.instance;
 
+    // The analysis reads the ids that temps carry, as the register
+    // allocator numbers them.
+    private static final TempTable temps = new TempTable();
+
+    private static ASMTempArg temp(String name) {
+        return new ASMTempArg(name, temps.id(name), ASMRegSize.QWORD);
+    }
+
     @Test
     void testLectureExample() {
         // 0: start
@@ -39,41 +51,41 @@ public class TestLiveVariableAnalysis {
         AsmCFGNode[] nodes = new AsmCFGNode[7];
         nodes[6] = new AsmCFGReturnNode(-1, make.Ret());
         nodes[5] = new AsmCFGOpNode(-1,
-            make.Mov(ASMReg.RAX, arg.temp("d")),
+            make.Mov(ASMReg.RAX, temp("d")),
             nodes[6]);
         nodes[4] = new AsmCFGOpNode(-1,
             make.Lea(
-                arg.temp("d"),
-                arg.mem(arg.temp("c"), arg.temp("e"))),
+                temp("d"),
+                arg.mem(temp("c"), temp("e"))),
             nodes[5]);
         nodes[3] = new AsmCFGOpNode(-1,
-            make.Mul(arg.temp("c"), arg.temp("b")),
+            make.Mul(temp("c"), temp("b")),
             nodes[4]);
         nodes[2] = new AsmCFGOpNode(-1,
-            make.Mov(arg.temp("c"), arg.temp("b")),
+            make.Mov(temp("c"), temp("b")),
             nodes[3]);
         nodes[1] = new AsmCFGOpNode(-1,
-            make.Lea(arg.temp("b"), arg.mem(arg.temp("a"), 2)),
+            make.Lea(temp("b"), arg.mem(temp("a"), 2)),
             nodes[2]);
         nodes[0] = new AsmCFGStartNode(nodes[1]);
 
-        Map<AsmCFGNode, Set<? extends ASMTempRegArg>> result
-            = WorklistAnalysis.analyze((AsmCFGStartNode) nodes[0],
-            new LiveVariableAnalysis("_Imain_i"));
+        LiveVariableAnalysis analysis = new LiveVariableAnalysis("_Imain_i");
+        Map<AsmCFGNode, BitVector> result
+            = WorklistAnalysis.analyze((AsmCFGStartNode) nodes[0], analysis);
 
-        assertEquals(liveVariables("a", "e"), result.get(nodes[0]));
-        assertEquals(liveVariables("a", "e"), result.get(nodes[1]));
-        assertEquals(liveVariables("b", "e"), result.get(nodes[2]));
-        assertEquals(liveVariables("b", "c", "e"), result.get(nodes[3]));
-        assertEquals(liveVariables("c", "e"), result.get(nodes[4]));
-        assertEquals(liveVariables("d"), result.get(nodes[5]));
-        assertEquals(Set.of(ASMReg.RAX), result.get(nodes[6]));
+        assertEquals(liveVariables("a", "e"), analysis.args(result.get(nodes[0])));
+        assertEquals(liveVariables("a", "e"), analysis.args(result.get(nodes[1])));
+        assertEquals(liveVariables("b", "e"), analysis.args(result.get(nodes[2])));
+        assertEquals(liveVariables("b", "c", "e"), analysis.args(result.get(nodes[3])));
+        assertEquals(liveVariables("c", "e"), analysis.args(result.get(nodes[4])));
+        assertEquals(liveVariables("d"), analysis.args(result.get(nodes[5])));
+        assertEquals(Set.of(ASMReg.RAX), analysis.args(result.get(nodes[6])));
     }
 
     private static Set<ASMTempRegArg> liveVariables(String... tempNames) {
         // union in the callee saved registers
         return Sets.union(
-            Arrays.stream(tempNames).map(arg::temp).collect(Collectors.toSet()),
+            Arrays.stream(tempNames).map(TestLiveVariableAnalysis::temp).collect(Collectors.toSet()),
             Set.of());
     }
 
@@ -0,0 +1,61 @@
+package cyr7.cfg.asm;
+
+import cyr7.cli.OptConfig;
+import cyr7.x86.ASMConfig;
+import cyr7.x86.ASMUtil;
+import cyr7.x86.ASMUtil.TilerConf;
+import cyr7.x86.asm.ASMLine;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestParallelRegisterAllocation {
+
+    private static final String PROGRAM = String.join("\n",
+        "sum(n: int): int {",
+        "    i: int = 0",
+        "    total: int = 0",
+        "    while (i < n) {",
+        "        total = total + i * i",
+        "        i = i + 1",
+        "    }",
+        "    return total",
+        "}",
+        "pair(a: int, b: int): int, int {",
+        "    if (a < b) { return b, a }",
+        "    return a, b",
+        "}",
+        "main(args: int[][]) {",
+        "    x: int, y: int = pair(sum(10), sum(3))",
+        "    z: int[] = {x, y, x + y}",
+        "}");
+
+    private static List<String> generate(boolean parallel) throws Exception {
+        OptConfig optConfig = OptConfig.allEnabled();
+        optConfig.setParallel(parallel);
+        List<ASMLine> lines = ASMUtil.generateASM(
+            new StringReader(PROGRAM),
+            "parallel.xi",
+            filename -> Reader.nullReader(),
+            optConfig,
+            TilerConf.COMPLEX,
+            ASMConfig.defaults());
+        return lines.stream()
+            .map(ASMLine::getIntelAssembly)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void testParallelAllocationMatchesSerialAllocation() throws Exception {
+        List<String> serial = generate(false);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(serial, generate(true));
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.benchmark.XiProgramGenerator;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cfg.ir.dfa.BlockDfaResult;
+import cyr7.cfg.ir.dfa.BlockWorklistAnalysis;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis.CopyPropLattice;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis.IrLiveVarLattice;
+import cyr7.cfg.ir.dfa.WorklistAnalysis;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+
+class TestBlockWorklistAnalysis {
+
+    private static Map<String, CFGStartNode> cfgs(long seed) throws Exception {
+        String program = XiProgramGenerator.generate(
+            Shape.small().withLoopDepth(3).withStatements(40), seed);
+        return IRUtil.generateCFG(new StringReader(program), "generated.xi",
+            filename -> Reader.nullReader(), OptConfig.none(),
+            new DefaultIdGenerator());
+    }
+
+    @Test
+    void blocksAgreeWithNodesForLiveness() throws Exception {
+        for (long seed = 0; seed < 4; seed++) {
+            for (CFGStartNode cfg : cfgs(seed).values()) {
+                // Values of liveness are only comparable within one analysis.
+                IrLiveVariableAnalysis liveness = new IrLiveVariableAnalysis();
+                Map<CFGNode, IrLiveVarLattice> nodes =
+                    WorklistAnalysis.analyze(cfg, liveness);
+                BlockDfaResult<IrLiveVarLattice> blocks =
+                    BlockWorklistAnalysis.analyze(cfg, liveness);
+
+                assertEquals(nodes, blocks.asMap());
+                assertTrue(blocks.blocks().size() < nodes.size());
+            }
+        }
+    }
+
+    @Test
+    void blocksAgreeWithNodesForCopies() throws Exception {
+        for (long seed = 0; seed < 4; seed++) {
+            for (CFGStartNode cfg : cfgs(seed).values()) {
+                Map<CFGNode, CopyPropLattice> nodes =
+                    WorklistAnalysis.analyze(cfg, CopyPropagationAnalysis.INSTANCE).in();
+                Map<CFGNode, CopyPropLattice> blocks =
+                    BlockWorklistAnalysis.analyze(cfg, CopyPropagationAnalysis.INSTANCE).asMap();
+
+                for (CFGNode node : nodes.keySet()) {
+                    assertEquals(nodes.get(node), blocks.get(node), node.toString());
+                }
+                assertEquals(nodes.size(), blocks.size());
+            }
+        }
+    }
+
+}
@@ -1,20 +1,34 @@
 package cyr7.cfg.ir;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.SSATransformer;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGNodeFactory;
 import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.opt.CCPOptimization;
+import cyr7.cfg.ir.pass.FunctionAnalyses;
+import cyr7.cfg.ir.pass.Pass;
+import cyr7.cfg.ir.pass.PassManager;
+import cyr7.cfg.ir.pass.Pipeline;
 import cyr7.cfg.util.IrCfgTestUtil;
 import cyr7.ir.nodes.IRBinOp.OpType;
 import cyr7.ir.nodes.IRNodeFactory_c;
+import cyr7.util.PhaseTimings;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 import polyglot.util.Pair;
 
@@ -161,4 +175,332 @@ class TestCondConstProp {
 
     }
 
+
+    /**
+     * x = 3
+     * y = x * 4
+     * if (y == 12) {
+     *    println(y)
+     * } else {
+     *    println(0)
+     * }
+     * return
+     *
+     * Should simplify to the following:
+     * start
+     * println(12)
+     * return
+     */
+    @Test
+    void testConstantBranchesAndArithmeticAreRemoved() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        CFGNode returnNode = cfg.Return();
+        CFGNode printlnY = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRTemp("y"))), returnNode);
+        CFGNode println0 = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRInteger(0))), returnNode);
+        CFGNode ifNode = cfg.If(printlnY, println0,
+                ir.IRBinOp(OpType.EQ, ir.IRTemp("y"), ir.IRInteger(12)));
+        CFGNode yAssign = cfg.VarAssign("y",
+                ir.IRBinOp(OpType.MUL_INT, ir.IRTemp("x"), ir.IRInteger(4)),
+                ifNode);
+        CFGNode xAssign = cfg.VarAssign("x", ir.IRInteger(3), yAssign);
+        CFGStartNode root = cfg.Start(xAssign);
+
+        CFGNode println12 = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRInteger(12))), new CFGStubNode());
+
+        PassManager.run(Pipeline.parse("cp,copy,dce*").orElseThrow(), "f",
+            root, PhaseTimings.disabled());
+
+        assertTrue(IrCfgTestUtil.assertEqualGraphs(
+                root,
+                IrCfgTestUtil.nodeSet(root, println12, returnNode),
+                IrCfgTestUtil.edgeList(
+                    new Pair<>(root, println12),
+                    new Pair<>(println12, returnNode))));
+        assertFalse(Pass.CP.run(root, new FunctionAnalyses(root)));
+    }
+
+    /**
+     * x = 1
+     * i = 0
+     * while (i < n) {
+     *    if (x != 1) {
+     *      x = 2
+     *    }
+     *    i = i + 1
+     * }
+     * println(x)
+     * return
+     *
+     * The assignment in the loop is never executed, so x is 1 after the
+     * loop. In SSA form, x is merged by phi-functions at the head of the
+     * loop and after the inner if, and should simplify to the following:
+     * start
+     * i = 0
+     * while (i < n) {
+     *    i = i + 1
+     * }
+     * println(1)
+     * return
+     */
+    @Test
+    void testConstantsFlowThroughPhisInSSAForm() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        final var stub = new CFGStubNode();
+
+        CFGNode returnNode = cfg.Return();
+        CFGCallNode printlnX = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRTemp("x"))), returnNode);
+        CFGNode increment = cfg.VarAssign("i",
+                ir.IRBinOp(OpType.ADD_INT, ir.IRTemp("i"), ir.IRInteger(1)),
+                stub);
+        CFGNode xIs2 = cfg.VarAssign("x", ir.IRInteger(2), increment);
+        CFGNode ifX = cfg.If(xIs2, increment,
+                ir.IRBinOp(OpType.NEQ, ir.IRTemp("x"), ir.IRInteger(1)));
+        CFGIfNode header = cfg.If(ifX, printlnX,
+                ir.IRBinOp(OpType.LT, ir.IRTemp("i"), ir.IRTemp("n")));
+        increment.replaceOutEdge(stub, header);
+        CFGNode iAssign = cfg.VarAssign("i", ir.IRInteger(0), header);
+        CFGNode xAssign = cfg.VarAssign("x", ir.IRInteger(1), iAssign);
+        CFGStartNode root = cfg.Start(xAssign);
+
+        PassManager.run(Pipeline.parse("ssa;cp,copy,dce*").orElseThrow(), "f",
+            root, PhaseTimings.disabled());
+
+        assertEquals(List.of(ir.IRInteger(1)), printlnX.call.args());
+        assertSame(increment, header.trueBranch());
+        assertSame(iAssign, root.out().get(0));
+    }
+
+    /**
+     * x = 1
+     * if (a < 0) goto check else goto next
+     * next: y = 2
+     * if (a != 0) goto error else goto check
+     * check: if (x == 1) goto done else goto error
+     * error: println(a)
+     * done: return
+     *
+     * The second if cannot be folded, even though the if that it branches to
+     * is bypassed before it.
+     */
+    @Test
+    void testIfBeforeABypassedIfInSSAForm() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        CFGNode returnNode = cfg.Return();
+        CFGNode printlnA = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRTemp("a"))), returnNode);
+        CFGNode check = cfg.If(returnNode, printlnA,
+                ir.IRBinOp(OpType.EQ, ir.IRTemp("x"), ir.IRInteger(1)));
+        CFGIfNode ifA = cfg.If(printlnA, check,
+                ir.IRBinOp(OpType.NEQ, ir.IRTemp("a"), ir.IRInteger(0)));
+        CFGNode yAssign = cfg.VarAssign("y", ir.IRInteger(2), ifA);
+        CFGNode ifNegative = cfg.If(check, yAssign,
+                ir.IRBinOp(OpType.LT, ir.IRTemp("a"), ir.IRInteger(0)));
+        CFGNode xAssign = cfg.VarAssign("x", ir.IRInteger(1), ifNegative);
+        CFGStartNode root = cfg.Start(xAssign);
+
+        PassManager.run(Pipeline.parse("ssa;cp").orElseThrow(), "f",
+            root, PhaseTimings.disabled());
+
+        assertSame(ifA, yAssign.out().get(0));
+        assertSame(printlnA, ifA.trueBranch());
+        assertSame(returnNode, ifA.falseBranch());
+    }
+
+    /**
+     * x = 30
+     * if (x > 30) goto l else goto l
+     * l: println(x)
+     * return
+     *
+     * Both edges of the if lead to the same node, which must stay reachable.
+     * Should simplify to the following:
+     * start
+     * x = 30
+     * println(30)
+     * return
+     */
+    @Test
+    void testIfWithCoincidingBranches() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        for (boolean blocks : List.of(false, true)) {
+            CFGNode returnNode = cfg.Return();
+            CFGNode printlnX = cfg.Call(
+                    ir.IRCallStmt(List.of(), ir.IRName("println"),
+                            List.of(ir.IRTemp("x"))), returnNode);
+            CFGNode ifNode = cfg.If(printlnX, printlnX,
+                    ir.IRBinOp(OpType.GT, ir.IRTemp("x"), ir.IRInteger(30)));
+            CFGNode xAssign = cfg.VarAssign("x", ir.IRInteger(30), ifNode);
+            CFGStartNode root = cfg.Start(xAssign);
+
+            CFGNode println30 = cfg.Call(
+                    ir.IRCallStmt(List.of(), ir.IRName("println"),
+                            List.of(ir.IRInteger(30))), new CFGStubNode());
+
+            if (blocks) {
+                // The pass solves over basic blocks rather than nodes.
+                PassManager.run(Pipeline.parse("cp").orElseThrow(), "f",
+                    root, PhaseTimings.disabled());
+            } else {
+                CCPOptimization.optimize(root);
+            }
+
+            assertTrue(IrCfgTestUtil.assertEqualGraphs(
+                    root,
+                    IrCfgTestUtil.nodeSet(root, xAssign, println30,
+                        returnNode),
+                    IrCfgTestUtil.edgeList(
+                        new Pair<>(root, xAssign),
+                        new Pair<>(xAssign, println30),
+                        new Pair<>(println30, returnNode))));
+        }
+    }
+
+    /**
+     * i = 1
+     * while (i < 1) {
+     *    j = 1
+     *    while (j < 4) {
+     *      j = j + 2
+     *    }
+     *    i = i + 2
+     * }
+     * println(i)
+     * return
+     *
+     * The outer loop is never entered, so the inner loop is unreachable
+     * and must not keep the analysis from terminating. Should simplify to
+     * the following:
+     * start
+     * i = 1
+     * println(1)
+     * return
+     */
+    @Test
+    void testLoopsThatAreNeverEntered() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        for (boolean blocks : List.of(false, true)) {
+            final var stub = new CFGStubNode();
+
+            CFGNode returnNode = cfg.Return();
+            CFGNode printlnI = cfg.Call(
+                    ir.IRCallStmt(List.of(), ir.IRName("println"),
+                            List.of(ir.IRTemp("i"))), returnNode);
+            CFGNode incrementI = cfg.VarAssign("i",
+                    ir.IRBinOp(OpType.ADD_INT, ir.IRTemp("i"), ir.IRInteger(2)),
+                    stub);
+            CFGNode incrementJ = cfg.VarAssign("j",
+                    ir.IRBinOp(OpType.ADD_INT, ir.IRTemp("j"), ir.IRInteger(2)),
+                    stub);
+            CFGNode innerHeader = cfg.If(incrementJ, incrementI,
+                    ir.IRBinOp(OpType.LT, ir.IRTemp("j"), ir.IRInteger(4)));
+            incrementJ.replaceOutEdge(stub, innerHeader);
+            CFGNode jAssign = cfg.VarAssign("j", ir.IRInteger(1), innerHeader);
+            CFGNode outerHeader = cfg.If(jAssign, printlnI,
+                    ir.IRBinOp(OpType.LT, ir.IRTemp("i"), ir.IRInteger(1)));
+            incrementI.replaceOutEdge(stub, outerHeader);
+            CFGNode iAssign = cfg.VarAssign("i", ir.IRInteger(1), outerHeader);
+            CFGStartNode root = cfg.Start(iAssign);
+
+            CFGNode println1 = cfg.Call(
+                    ir.IRCallStmt(List.of(), ir.IRName("println"),
+                            List.of(ir.IRInteger(1))), new CFGStubNode());
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                if (blocks) {
+                    PassManager.run(Pipeline.parse("cp").orElseThrow(), "f",
+                        root, PhaseTimings.disabled());
+                } else {
+                    CCPOptimization.optimize(root);
+                }
+            });
+
+            assertTrue(IrCfgTestUtil.assertEqualGraphs(
+                    root,
+                    IrCfgTestUtil.nodeSet(root, iAssign, println1,
+                        returnNode),
+                    IrCfgTestUtil.edgeList(
+                        new Pair<>(root, iAssign),
+                        new Pair<>(iAssign, println1),
+                        new Pair<>(println1, returnNode))));
+        }
+    }
+
+    /**
+     * x = 1
+     * i = 0
+     * head: if (x == 1) goto body else goto dead
+     * body: i = i + 1
+     * if (i < n) goto head else goto done
+     * dead: if (i < 0) goto done else goto end
+     * done: println(i)
+     * end: return
+     *
+     * The first if only takes its true branch, but it cannot be bypassed
+     * since it has a phi-function for i. The if that it never branches to
+     * must still be unlinked from both of its successors, and the edges
+     * that remain must be recorded on both of their ends.
+     */
+    @Test
+    void testFoldedIfWhoseBypassIsRefusedInSSAForm() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        final var stub = new CFGStubNode();
+
+        CFGNode returnNode = cfg.Return();
+        CFGNode printlnI = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRTemp("i"))), returnNode);
+        CFGNode dead = cfg.If(printlnI, returnNode,
+                ir.IRBinOp(OpType.LT, ir.IRTemp("i"), ir.IRInteger(0)));
+        CFGNode latch = cfg.If(stub, printlnI,
+                ir.IRBinOp(OpType.LT, ir.IRTemp("i"), ir.IRTemp("n")));
+        CFGNode increment = cfg.VarAssign("i",
+                ir.IRBinOp(OpType.ADD_INT, ir.IRTemp("i"), ir.IRInteger(1)),
+                latch);
+        CFGIfNode head = cfg.If(increment, dead,
+                ir.IRBinOp(OpType.EQ, ir.IRTemp("x"), ir.IRInteger(1)));
+        latch.replaceOutEdge(stub, head);
+        CFGNode iAssign = cfg.VarAssign("i", ir.IRInteger(0), head);
+        CFGNode xAssign = cfg.VarAssign("x", ir.IRInteger(1), iAssign);
+        CFGStartNode root = cfg.Start(xAssign);
+
+        SSAForm form = SSATransformer.convert(root);
+        assertFalse(form.phis(head).isEmpty());
+
+        assertTrue(CCPOptimization.optimize(form));
+
+        assertTrue(IrCfgTestUtil.hasConsistentEdges(root));
+        assertSame(increment, head.trueBranch());
+        assertSame(increment, head.falseBranch());
+        assertFalse(dead.in().contains(head));
+        assertFalse(printlnI.in().contains(dead));
+        assertFalse(returnNode.in().contains(dead));
+    }
+
 }
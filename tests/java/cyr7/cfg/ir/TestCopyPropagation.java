@@ -1,5 +1,8 @@
 package cyr7.cfg.ir;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
@@ -8,6 +11,8 @@ import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 import cyr7.cfg.ir.flatten.CFGFlattener;
+import cyr7.cfg.ir.nodes.CFGCallNode;
+import cyr7.cfg.ir.nodes.CFGIfNode;
 import cyr7.cfg.ir.nodes.CFGNode;
 import cyr7.cfg.ir.nodes.CFGNodeFactory;
 import cyr7.cfg.ir.nodes.CFGReturnNode;
@@ -15,6 +20,8 @@ import cyr7.cfg.ir.nodes.CFGStartNode;
 import cyr7.cfg.ir.nodes.CFGStubNode;
 import cyr7.cfg.ir.nodes.CFGVarAssignNode;
 import cyr7.cfg.ir.opt.CopyPropagationOptimization;
+import cyr7.cfg.ir.pass.PassManager;
+import cyr7.cfg.ir.pass.Pipeline;
 import cyr7.cfg.util.IrCfgTestUtil;
 import cyr7.ir.DefaultIdGenerator;
 import cyr7.ir.nodes.IRBinOp.OpType;
@@ -22,6 +29,7 @@ import cyr7.ir.nodes.IRInteger;
 import cyr7.ir.nodes.IRNodeFactory_c;
 import cyr7.ir.nodes.IRStmt;
 import cyr7.ir.nodes.IRTemp;
+import cyr7.util.PhaseTimings;
 import java_cup.runtime.ComplexSymbolFactory.Location;
 import polyglot.util.Pair;
 
@@ -338,4 +346,44 @@ class TestCopyPropagation {
         assertTrue(IrCfgTestUtil.assertEqualGraphs(
                             start, expectedNodes, expectedEdges));
     }
+
+    /**
+     * x = a
+     * if (c) {
+     *    y = x
+     * } else {
+     *    y = 1
+     * }
+     * println(y)
+     * return
+     *
+     * In SSA form, the copy of x reaches the phi-function for y, which takes
+     * x instead, so the copy is dead. Out of SSA form, the edge from the
+     * then branch copies x into y directly.
+     */
+    @Test
+    void testCopiesReachPhisInSSAForm() {
+        final Location loc = new Location(-1, -1);
+        final var cfg = new CFGNodeFactory(loc);
+        final var ir = new IRNodeFactory_c(loc);
+
+        CFGNode returnNode = cfg.Return();
+        CFGCallNode printlnY = cfg.Call(
+                ir.IRCallStmt(List.of(), ir.IRName("println"),
+                        List.of(ir.IRTemp("y"))), returnNode);
+        CFGNode yIsX = cfg.VarAssign("y", ir.IRTemp("x"), printlnY);
+        CFGNode yIs1 = cfg.VarAssign("y", ir.IRInteger(1), printlnY);
+        CFGIfNode ifNode = cfg.If(yIsX, yIs1, ir.IRTemp("c"));
+        CFGVarAssignNode xAssign = cfg.VarAssign("x", ir.IRTemp("a"), ifNode);
+        CFGStartNode root = cfg.Start(xAssign);
+
+        PassManager.run(Pipeline.parse("ssa;copy,dce*").orElseThrow(), "f",
+            root, PhaseTimings.disabled());
+
+        CFGVarAssignNode copy = (CFGVarAssignNode) ifNode.trueBranch();
+        assertNotSame(yIsX, copy);
+        assertEquals(ir.IRTemp(xAssign.variable), copy.value);
+        assertSame(printlnY, copy.outNode());
+        assertEquals(List.of(ir.IRTemp(copy.variable)), printlnY.call.args());
+    }
 }
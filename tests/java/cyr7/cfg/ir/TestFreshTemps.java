@@ -0,0 +1,58 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+import cyr7.ir.nodes.IRTemp;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+class TestFreshTemps {
+
+    private final Location loc = new Location(-1, -1);
+
+    /**
+     * start <p>
+     * _vn4 = _licm2 <p>
+     * x = _vn12 <p>
+     * return
+     */
+    @Test
+    void numbersContinueAfterThoseInUse() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode x = new CFGVarAssignNode(loc, "x",
+            new IRTemp(loc, "_vn12"), returnNode);
+        CFGVarAssignNode vn = new CFGVarAssignNode(loc, "_vn4",
+            new IRTemp(loc, "_licm2"), x);
+        FreshTemps temps = FreshTemps.of(new CFGStartNode(loc, vn));
+
+        assertEquals("_vn13", temps.next("_vn"));
+        assertEquals("_vn14", temps.next("_vn"));
+        assertEquals("_licm3", temps.next("_licm"));
+        assertEquals("_sr1", temps.next("_sr"));
+    }
+
+    /**
+     * start <p>
+     * x = y <p>
+     * return
+     */
+    @Test
+    void freshTempsCarryTheirIds() {
+        CFGVarAssignNode x = new CFGVarAssignNode(loc, "x",
+            new IRTemp(loc, "y"), new CFGReturnNode(loc));
+        CFGStartNode start = new CFGStartNode(loc, x);
+        FreshTemps temps = FreshTemps.of(start);
+
+        String name = temps.next("_vn");
+        IRTemp temp = temps.temp(loc, name);
+
+        assertEquals(start.temps().find(name), temp.id());
+        assertEquals(name, start.temps().name(temp.id()));
+    }
+
+}
@@ -0,0 +1,171 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.C;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGNodeFactory;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+import cyr7.cfg.ir.opt.LoopInvariantCodeMotionOptimization;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+
+class TestLoopInvariantCodeMotion {
+
+    private static final CFGNodeFactory make = new CFGNodeFactory(C.LOC);
+    private static final IRNodeFactory makeIR = new IRNodeFactory_c(C.LOC);
+
+    private IRExpr temp(String name) {
+        return makeIR.IRTemp(name);
+    }
+
+    private IRExpr length(String array) {
+        return makeIR.IRMem(makeIR.IRBinOp(OpType.SUB_INT, temp(array),
+            makeIR.IRInteger(8)));
+    }
+
+    private static boolean hoist(CFGStartNode start) {
+        return LoopInvariantCodeMotionOptimization.run(start,
+            DominatorTree.of(start), FreshTemps.of(start));
+    }
+
+    /**
+     * Returns a loop {@code i = 0; while (i < bound) { body; i = i + 1 }}
+     * that exits to a return, where {@code body} is made by
+     * {@code makeBody} from the node that it is followed by.
+     */
+    private CFGStartNode loop(IRExpr bound, Function<CFGNode, CFGNode> makeBody) {
+        CFGStubNode stub = new CFGStubNode();
+        CFGVarAssignNode increment = make.VarAssign("i",
+            makeIR.IRBinOp(OpType.ADD_INT, temp("i"), makeIR.IRInteger(1)),
+            stub);
+        CFGNode body = makeBody.apply(increment);
+        CFGIfNode header = make.If(body, make.Return(),
+            makeIR.IRBinOp(OpType.LT, temp("i"), bound));
+        increment.replaceOutEdge(stub, header);
+        return make.Start(make.VarAssign("i", makeIR.IRInteger(0), header));
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < MEM(a - 8)) { x = x + i; i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void lengthsInTheGuardAreLoadedOnce() {
+        CFGStartNode start = loop(length("a"), next -> make.VarAssign("x",
+            makeIR.IRBinOp(OpType.ADD_INT, temp("x"), temp("i")), next));
+        CFGVarAssignNode init = (CFGVarAssignNode) start.out().get(0);
+        CFGIfNode header = (CFGIfNode) init.outNode();
+
+        assertTrue(hoist(start));
+
+        CFGVarAssignNode preheader = (CFGVarAssignNode) init.outNode();
+        assertEquals(length("a"), preheader.value);
+        assertSame(header, preheader.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            temp(preheader.variable)), header.cond);
+
+        assertFalse(hoist(start));
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < MEM(a - 8)) { MEM(a + i * 8) = i; i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void loadsInLoopsThatStoreStay() {
+        CFGMemAssignNode[] store = new CFGMemAssignNode[1];
+        CFGStartNode start = loop(length("a"), next -> store[0] =
+            make.MemAssign(makeIR.IRMem(makeIR.IRBinOp(OpType.ADD_INT,
+                temp("a"), makeIR.IRBinOp(OpType.MUL_INT, temp("i"),
+                    makeIR.IRInteger(8)))), temp("i"), next));
+        CFGVarAssignNode init = (CFGVarAssignNode) start.out().get(0);
+        CFGIfNode header = (CFGIfNode) init.outNode();
+
+        assertTrue(hoist(start));
+
+        // Only the address of the length is invariant.
+        CFGVarAssignNode preheader = (CFGVarAssignNode) init.outNode();
+        assertEquals(makeIR.IRBinOp(OpType.SUB_INT, temp("a"),
+            makeIR.IRInteger(8)), preheader.value);
+        assertSame(header, preheader.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            makeIR.IRMem(temp(preheader.variable))), header.cond);
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < 10) { x = x + MEM(a + n * 8); i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void loadsInTheBodyAreNotSpeculated() {
+        IRExpr address = makeIR.IRBinOp(OpType.ADD_INT, temp("a"),
+            makeIR.IRBinOp(OpType.MUL_INT, temp("n"), makeIR.IRInteger(8)));
+        CFGVarAssignNode[] sum = new CFGVarAssignNode[1];
+        CFGStartNode start = loop(makeIR.IRInteger(10), next -> sum[0] =
+            make.VarAssign("x", makeIR.IRBinOp(OpType.ADD_INT, temp("x"),
+                makeIR.IRMem(address)), next));
+        CFGVarAssignNode init = (CFGVarAssignNode) start.out().get(0);
+        CFGIfNode header = (CFGIfNode) init.outNode();
+
+        assertTrue(hoist(start));
+
+        // The loop may not run, so only the address is computed before it.
+        CFGVarAssignNode preheader = (CFGVarAssignNode) init.outNode();
+        assertEquals(address, preheader.value);
+        assertSame(header, preheader.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.ADD_INT, temp("x"),
+            makeIR.IRMem(temp(preheader.variable))), sum[0].value);
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < 10) { x = n / -1 + n / 2; i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void divisionsByMinusOneAreNotSpeculated() {
+        IRExpr negated = makeIR.IRBinOp(OpType.DIV_INT, temp("n"),
+            makeIR.IRInteger(-1));
+        IRExpr halved = makeIR.IRBinOp(OpType.DIV_INT, temp("n"),
+            makeIR.IRInteger(2));
+        CFGVarAssignNode[] x = new CFGVarAssignNode[1];
+        CFGStartNode start = loop(makeIR.IRInteger(10), next -> x[0] =
+            make.VarAssign("x", makeIR.IRBinOp(OpType.ADD_INT, negated,
+                halved), next));
+        CFGVarAssignNode init = (CFGVarAssignNode) start.out().get(0);
+        CFGIfNode header = (CFGIfNode) init.outNode();
+
+        assertTrue(hoist(start));
+
+        // n / -1 fails if n is the least integer, so only n / 2 is hoisted.
+        CFGVarAssignNode preheader = (CFGVarAssignNode) init.outNode();
+        assertEquals(halved, preheader.value);
+        assertSame(header, preheader.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.ADD_INT, negated,
+            temp(preheader.variable)), x[0].value);
+    }
+
+}
@@ -0,0 +1,213 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.C;
+import cyr7.cfg.ir.dfa.pre.LazyCodeMotion;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGNodeFactory;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+import cyr7.cfg.ir.opt.PartialRedundancyEliminationOptimization;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+import cyr7.ir.nodes.IRTemp;
+
+class TestPartialRedundancyElimination {
+
+    private static final CFGNodeFactory make = new CFGNodeFactory(C.LOC);
+    private static final IRNodeFactory makeIR = new IRNodeFactory_c(C.LOC);
+
+    private IRExpr temp(String name) {
+        return makeIR.IRTemp(name);
+    }
+
+    private IRExpr sum() {
+        return makeIR.IRBinOp(OpType.ADD_INT, temp("a"), temp("b"));
+    }
+
+    private IRExpr length(String array) {
+        return makeIR.IRMem(makeIR.IRBinOp(OpType.SUB_INT, temp(array),
+            makeIR.IRInteger(8)));
+    }
+
+    private static boolean eliminate(CFGStartNode start) {
+        return PartialRedundancyEliminationOptimization.run(start,
+            LazyCodeMotion.of(start), FreshTemps.of(start));
+    }
+
+    /**
+     * start <p>
+     * if (c) { x = a + b } <p>
+     * y = a + b <p>
+     * return
+     */
+    @Test
+    void partiallyRedundantExpressionsAreEvaluatedOnTheOtherPaths() {
+        CFGVarAssignNode y = make.VarAssign("y", sum(), make.Return());
+        CFGVarAssignNode x = make.VarAssign("x", sum(), y);
+        CFGIfNode ifNode = make.If(x, y, temp("c"));
+        CFGStartNode start = make.Start(ifNode);
+
+        assertTrue(eliminate(start));
+
+        // The expression is kept where it was evaluated, in its temporary.
+        CFGVarAssignNode kept = (CFGVarAssignNode) ifNode.trueBranch();
+        assertEquals(sum(), kept.value);
+        assertSame(x, kept.outNode());
+        assertEquals(temp(kept.variable), x.value);
+
+        // It is evaluated on the path that did not evaluate it.
+        CFGVarAssignNode inserted = (CFGVarAssignNode) ifNode.falseBranch();
+        assertEquals(kept.variable, inserted.variable);
+        assertEquals(sum(), inserted.value);
+        assertSame(y, inserted.outNode());
+
+        assertEquals(temp(kept.variable), y.value);
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < MEM(a - 8)) { i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void loopInvariantExpressionsAreEvaluatedBeforeTheLoop() {
+        CFGStubNode stub = new CFGStubNode();
+        CFGVarAssignNode increment = make.VarAssign("i",
+            makeIR.IRBinOp(OpType.ADD_INT, temp("i"), makeIR.IRInteger(1)),
+            stub);
+        CFGIfNode header = make.If(increment, make.Return(),
+            makeIR.IRBinOp(OpType.LT, temp("i"), length("a")));
+        increment.replaceOutEdge(stub, header);
+        CFGVarAssignNode init = make.VarAssign("i", makeIR.IRInteger(0), header);
+        CFGStartNode start = make.Start(init);
+
+        assertTrue(eliminate(start));
+
+        // The address is evaluated first, and the load reads it.
+        CFGVarAssignNode address = (CFGVarAssignNode) init.outNode();
+        assertEquals(makeIR.IRBinOp(OpType.SUB_INT, temp("a"),
+            makeIR.IRInteger(8)), address.value);
+        CFGVarAssignNode length = (CFGVarAssignNode) address.outNode();
+        assertEquals(makeIR.IRMem(temp(address.variable)), length.value);
+        assertSame(header, length.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            temp(length.variable)), header.cond);
+        assertSame(header, increment.outNode());
+
+        assertFalse(eliminate(start));
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * while (i < 10) { x = a + b; i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void expressionsAreNotEvaluatedOnPathsThatDidNot() {
+        CFGStubNode stub = new CFGStubNode();
+        CFGVarAssignNode increment = make.VarAssign("i",
+            makeIR.IRBinOp(OpType.ADD_INT, temp("i"), makeIR.IRInteger(1)),
+            stub);
+        CFGVarAssignNode x = make.VarAssign("x", sum(), increment);
+        CFGIfNode header = make.If(x, make.Return(),
+            makeIR.IRBinOp(OpType.LT, temp("i"), makeIR.IRInteger(10)));
+        increment.replaceOutEdge(stub, header);
+        CFGStartNode start = make.Start(make.VarAssign("i",
+            makeIR.IRInteger(0), header));
+
+        // The loop may not run, so the sum is not moved out of it.
+        assertFalse(eliminate(start));
+        assertEquals(sum(), x.value);
+    }
+
+    /**
+     * start <p>
+     * y0 = v0 + 1; y1 = v0 + 1; y2 = v1 + 1; y3 = v1 + 1; ... <p>
+     * return
+     * <p>
+     * A long function in which each expression is evaluated twice, which
+     * the analyses must handle without sets as wide as every expression of
+     * the function at every node.
+     */
+    @Test
+    void expressionsOfLongFunctionsAreReused() {
+        final int length = 50000;
+        CFGNode next = make.Return();
+        List<CFGVarAssignNode> assignments = new ArrayList<>();
+        for (int i = length - 1; i >= 0; i--) {
+            CFGVarAssignNode assignment = make.VarAssign("y" + i,
+                makeIR.IRBinOp(OpType.ADD_INT, temp("v" + i / 2),
+                    makeIR.IRInteger(1)),
+                next);
+            assignments.add(assignment);
+            next = assignment;
+        }
+        CFGStartNode start = make.Start(next);
+
+        assertTrue(eliminate(start));
+
+        // Each sum is evaluated once, into a temporary that both of its
+        // assignments read.
+        assertTrue(assignments.stream()
+            .allMatch(assignment -> assignment.value instanceof IRTemp));
+        int sums = 0;
+        for (CFGNode node = start.out().get(0); !node.out().isEmpty();
+                node = node.out().get(0)) {
+            if (!(((CFGVarAssignNode) node).value instanceof IRTemp)) {
+                sums++;
+            }
+        }
+        assertEquals(length / 2, sums);
+    }
+
+    /**
+     * Returns {@code if (c) { x = expr } f()} followed by {@code next}.
+     */
+    private CFGStartNode evaluatedBeforeCall(IRExpr expr, CFGNode next) {
+        CFGNode call = make.Call(makeIR.IRCallStmt(List.of(),
+            makeIR.IRName("f"), List.of()), next);
+        CFGVarAssignNode x = make.VarAssign("x", expr, call);
+        return make.Start(make.If(x, call, temp("c")));
+    }
+
+    /**
+     * start <p>
+     * if (c) { x = n / k } <p>
+     * f() <p>
+     * y = n / k <p>
+     * return
+     */
+    @Test
+    void divisionsByMinusOneAreNotMovedAcrossCalls() {
+        IRExpr halved = makeIR.IRBinOp(OpType.DIV_INT, temp("n"),
+            makeIR.IRInteger(2));
+        CFGVarAssignNode y = make.VarAssign("y", halved, make.Return());
+        assertTrue(eliminate(evaluatedBeforeCall(halved, y)));
+        assertTrue(y.value instanceof IRTemp);
+
+        // n / -1 fails if n is the least integer, and f may not return.
+        IRExpr negated = makeIR.IRBinOp(OpType.DIV_INT, temp("n"),
+            makeIR.IRInteger(-1));
+        y = make.VarAssign("y", negated, make.Return());
+        assertFalse(eliminate(evaluatedBeforeCall(negated, y)));
+        assertEquals(negated, y.value);
+    }
+
+}
@@ -0,0 +1,146 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.pass.CFGPass;
+import cyr7.cfg.ir.pass.FunctionAnalyses;
+import cyr7.cfg.ir.pass.Pass;
+import cyr7.cfg.ir.pass.PassGroup;
+import cyr7.cfg.ir.pass.PassManager;
+import cyr7.cfg.ir.pass.Pipeline;
+import cyr7.cfg.util.IrCfgTestUtil;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRTemp;
+import cyr7.util.PhaseTimings;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+import polyglot.util.Pair;
+
+class TestPassManager {
+
+    private final Location loc = new Location(-1, -1);
+
+    /**
+     * start <p>
+     * y = 15 <p>
+     * x = y <p>
+     * return
+     */
+    private CFGStartNode deadChain(CFGNode returnNode) {
+        CFGNode deadAssign = new CFGVarAssignNode(loc, "x",
+                                    new IRTemp(loc, "y"), returnNode);
+        CFGNode firstAssign = new CFGVarAssignNode(loc, "y",
+                                    new IRInteger(loc, 15), deadAssign);
+        return new CFGStartNode(loc, firstAssign);
+    }
+
+    private static FunctionAnalyses run(String pipeline, CFGStartNode cfg) {
+        return PassManager.run(Pipeline.parse(pipeline).orElseThrow(),
+            "f", cfg, PhaseTimings.disabled());
+    }
+
+    @Test
+    void fixpointRemovesEveryDeadAssignment() {
+        CFGNode returnNode = new CFGReturnNode(loc);
+        CFGStartNode start = deadChain(returnNode);
+
+        FunctionAnalyses analyses = run("dce*", start);
+
+        assertTrue(IrCfgTestUtil.assertEqualGraphs(start,
+            IrCfgTestUtil.nodeSet(start, returnNode),
+            IrCfgTestUtil.edgeList(new Pair<>(start, returnNode))));
+        // Two rounds remove an assignment each, and the third finds nothing
+        // left to remove.
+        assertEquals(3, analyses.computations());
+    }
+
+    @Test
+    void groupsStopAtTheirCap() {
+        CFGNode returnNode = new CFGReturnNode(loc);
+        CFGStartNode start = deadChain(returnNode);
+
+        CFGNode firstAssign = start.out().get(0);
+
+        FunctionAnalyses analyses = run("dce", start);
+
+        assertEquals(1, analyses.computations());
+        assertTrue(IrCfgTestUtil.assertEqualGraphs(start,
+            IrCfgTestUtil.nodeSet(start, firstAssign, returnNode),
+            IrCfgTestUtil.edgeList(
+                new Pair<>(start, firstAssign),
+                new Pair<>(firstAssign, returnNode))));
+    }
+
+    @Test
+    void unchangedCFGsKeepTheirAnalyses() {
+        CFGStartNode start = new CFGStartNode(loc, new CFGReturnNode(loc));
+
+        FunctionAnalyses analyses = run("copy,dce*;dce", start);
+
+        assertEquals(2, analyses.computations());
+    }
+
+    /**
+     * A pass that records whether the CFG was in SSA form when it ran.
+     */
+    private static CFGPass probe(boolean runsOnSSAForm, List<Boolean> seen) {
+        return new CFGPass() {
+            @Override
+            public String name() {
+                return "probe";
+            }
+
+            @Override
+            public boolean run(CFGStartNode cfg, FunctionAnalyses analyses) {
+                seen.add(analyses.ssaForm().isPresent());
+                return false;
+            }
+
+            @Override
+            public boolean runsOnSSAForm() {
+                return runsOnSSAForm;
+            }
+        };
+    }
+
+    @Test
+    void ssaFormIsKeptUntilAPassThatDoesNotRunOnIt() {
+        CFGNode returnNode = new CFGReturnNode(loc);
+        CFGStartNode start = deadChain(returnNode);
+        List<Boolean> seen = new ArrayList<>();
+
+        FunctionAnalyses analyses = PassManager.run(Pipeline.of(List.of(
+                PassGroup.once(List.of(Pass.SSA, probe(true, seen))),
+                PassGroup.once(List.of(probe(true, seen), probe(false, seen),
+                    probe(true, seen))))),
+            "f", start, PhaseTimings.disabled());
+
+        assertEquals(List.of(true, true, false, false), seen);
+        assertTrue(analyses.ssaForm().isEmpty());
+    }
+
+    @Test
+    void pipelinesRoundTrip() {
+        for (String description : List.of("copy,dce*8;lu", "dce*3", "lu")) {
+            assertEquals(description,
+                Pipeline.parse(description).orElseThrow().toString());
+        }
+        assertEquals("copy,dce*" + Pipeline.DEFAULT_MAX_ITERATIONS,
+            Pipeline.parse("COPY, dce *").orElseThrow().toString());
+        assertEquals("dce*8",
+            Pipeline.parse("copy,dce*8;copy").orElseThrow()
+                .without(Pass.COPY).toString());
+        assertTrue(Pipeline.parse("copy;inline").isEmpty());
+        assertTrue(Pipeline.parse("dce*0").isEmpty());
+    }
+
+}
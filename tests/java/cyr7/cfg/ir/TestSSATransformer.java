@@ -0,0 +1,152 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.benchmark.XiProgramGenerator;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cfg.ir.dfa.SSAForm;
+import cyr7.cfg.ir.dfa.SSAForm.Phi;
+import cyr7.cfg.ir.dfa.SSATransformer;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRTemp;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+class TestSSATransformer {
+
+    private final Location loc = new Location(-1, -1);
+
+    private static Set<CFGNode> reachable(CFGStartNode start) {
+        Set<CFGNode> visited = new LinkedHashSet<>();
+        Queue<CFGNode> worklist = new ArrayDeque<>();
+        worklist.add(start);
+        visited.add(start);
+        while (!worklist.isEmpty()) {
+            for (CFGNode out : worklist.remove().out()) {
+                if (visited.add(out)) {
+                    worklist.add(out);
+                }
+            }
+        }
+        return visited;
+    }
+
+    private static String name(CFGVarAssignNode n) {
+        return ((IRTemp) n.value).name();
+    }
+
+    /**
+     * start <p>
+     * z = 4 <p>
+     * x = 1 <p>
+     * if (c) { z = 3; x = 2 } <p>
+     * _RET0 = x <p>
+     * return
+     */
+    @Test
+    void phisAreOnlyPlacedWhereTheVariableIsLive() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode join = new CFGVarAssignNode(loc, "_RET0",
+            new IRTemp(loc, "x"), returnNode);
+        CFGVarAssignNode thenX = new CFGVarAssignNode(loc, "x",
+            new IRInteger(loc, 2), join);
+        CFGVarAssignNode thenZ = new CFGVarAssignNode(loc, "z",
+            new IRInteger(loc, 3), thenX);
+        CFGIfNode ifNode = new CFGIfNode(loc, thenZ, join,
+            new IRTemp(loc, "c"));
+        CFGVarAssignNode firstX = new CFGVarAssignNode(loc, "x",
+            new IRInteger(loc, 1), ifNode);
+        CFGVarAssignNode firstZ = new CFGVarAssignNode(loc, "z",
+            new IRInteger(loc, 4), firstX);
+        CFGStartNode start = new CFGStartNode(loc, firstZ);
+
+        SSAForm form = SSATransformer.convert(start);
+
+        assertEquals(1, form.phis().size());
+        Phi phi = form.phis(join).get(0);
+        assertEquals("x", phi.variable());
+        assertNotEquals(firstX.variable, thenX.variable);
+        assertNotEquals(firstZ.variable, thenZ.variable);
+        assertEquals(Map.of(ifNode, firstX.variable, thenX, thenX.variable),
+            phi.arguments());
+        assertEquals(phi.target(), name(join));
+        assertEquals("c", ((IRTemp) ifNode.cond).name());
+
+        assertSame(phi, form.phiDefinition(phi.target()));
+        assertSame(firstX, form.definition(firstX.variable));
+        assertEquals(Set.of(join), form.uses(phi.target()));
+        assertEquals(Set.of(phi), form.phiUses(thenX.variable));
+
+        form.destruct();
+
+        // Each edge into the join copies its argument into the target.
+        CFGVarAssignNode falseCopy = (CFGVarAssignNode) ifNode.falseBranch();
+        assertEquals(phi.target(), falseCopy.variable);
+        assertEquals(firstX.variable, name(falseCopy));
+        CFGVarAssignNode thenCopy = (CFGVarAssignNode) thenX.outNode();
+        assertEquals(phi.target(), thenCopy.variable);
+        assertEquals(thenX.variable, name(thenCopy));
+        assertEquals(Set.of(falseCopy, thenCopy), new HashSet<>(join.in()));
+    }
+
+    @Test
+    void everyVariableIsDefinedOnce() throws Exception {
+        for (long seed = 0; seed < 4; seed++) {
+            String program = XiProgramGenerator.generate(
+                Shape.small().withLoopDepth(3).withStatements(40), seed);
+            Map<String, CFGStartNode> cfgs = IRUtil.generateCFG(
+                new StringReader(program), "generated.xi",
+                filename -> Reader.nullReader(), OptConfig.none(),
+                new DefaultIdGenerator());
+
+            for (CFGStartNode cfg : cfgs.values()) {
+                Set<CFGNode> nodes = reachable(cfg);
+                SSAForm form = SSATransformer.convert(cfg);
+
+                Set<String> defined = new HashSet<>();
+                for (Phi phi : form.phis()) {
+                    assertTrue(defined.add(phi.target()), phi.toString());
+                    Set<CFGNode> predecessors = new HashSet<>(phi.node().in());
+                    predecessors.retainAll(nodes);
+                    assertEquals(predecessors, phi.arguments().keySet());
+                }
+                for (CFGNode node : nodes) {
+                    for (String def : node.defs()) {
+                        if (!def.equals("_")) {
+                            assertTrue(defined.add(def), def);
+                        }
+                    }
+                    for (String use : node.uses()) {
+                        assertTrue(form.uses(use).contains(node), use);
+                    }
+                }
+                assertEquals(defined, form.variables());
+
+                form.destruct();
+                assertTrue(form.phis().isEmpty());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,255 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.C;
+import cyr7.cfg.ir.dfa.BlockWorklistAnalysis;
+import cyr7.cfg.ir.dfa.IrLiveVariableAnalysis;
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGNodeFactory;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGStubNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+import cyr7.cfg.ir.opt.StrengthReductionOptimization;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+
+class TestStrengthReduction {
+
+    private static final CFGNodeFactory make = new CFGNodeFactory(C.LOC);
+    private static final IRNodeFactory makeIR = new IRNodeFactory_c(C.LOC);
+
+    private IRExpr temp(String name) {
+        return makeIR.IRTemp(name);
+    }
+
+    private IRExpr element(String array, String index) {
+        return makeIR.IRBinOp(OpType.ADD_INT, temp(array),
+            makeIR.IRBinOp(OpType.MUL_INT, temp(index), makeIR.IRInteger(8)));
+    }
+
+    private IRExpr increment(String variable, long step) {
+        return makeIR.IRBinOp(OpType.ADD_INT, temp(variable),
+            makeIR.IRInteger(step));
+    }
+
+    /**
+     * Returns a loop
+     * {@code i = 0; n = MEM(a - 8); while (i < bound) { body; i = i + 1 }}
+     * that exits to {@code exit}, where {@code body} is made by
+     * {@code makeBody} from the node that it is followed by.
+     */
+    private CFGStartNode loop(IRExpr bound,
+                              Function<CFGNode, CFGNode> makeBody,
+                              CFGNode exit) {
+        CFGStubNode stub = new CFGStubNode();
+        CFGVarAssignNode increment = make.VarAssign("i", increment("i", 1), stub);
+        CFGNode body = makeBody.apply(increment);
+        CFGIfNode header = make.If(body, exit, makeIR.IRBinOp(OpType.LT,
+            temp("i"), bound));
+        increment.replaceOutEdge(stub, header);
+        CFGVarAssignNode length = make.VarAssign("n", makeIR.IRMem(
+            makeIR.IRBinOp(OpType.SUB_INT, temp("a"), makeIR.IRInteger(8))),
+            header);
+        return make.Start(make.VarAssign("i", makeIR.IRInteger(0), length));
+    }
+
+    /**
+     * Returns the last node before the header of a {@link #loop}.
+     */
+    private static CFGVarAssignNode entry(CFGStartNode start) {
+        return (CFGVarAssignNode) start.out().get(0).out().get(0);
+    }
+
+    private IRExpr accumulate(String array) {
+        return makeIR.IRBinOp(OpType.ADD_INT, temp("x"),
+            makeIR.IRMem(element(array, "i")));
+    }
+
+    private static boolean reduce(CFGStartNode start) {
+        return StrengthReductionOptimization.run(start,
+            DominatorTree.of(start),
+            BlockWorklistAnalysis.analyze(start,
+                new IrLiveVariableAnalysis()).asMap(),
+            FreshTemps.of(start));
+    }
+
+    private static Set<CFGNode> reachable(CFGStartNode start) {
+        Set<CFGNode> visited = new HashSet<>();
+        Deque<CFGNode> worklist = new ArrayDeque<>();
+        worklist.push(start);
+        while (!worklist.isEmpty()) {
+            CFGNode node = worklist.pop();
+            if (visited.add(node)) {
+                node.out().forEach(worklist::push);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * n = MEM(a - 8) <p>
+     * while (i < 10) { MEM(a + i * 8) = i; i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void scaledIndicesBecomePointers() {
+        CFGMemAssignNode[] store = new CFGMemAssignNode[1];
+        CFGStartNode start = loop(makeIR.IRInteger(10),
+            next -> store[0] = make.MemAssign(makeIR.IRMem(element("a", "i")),
+                temp("i"), next), make.Return());
+        CFGVarAssignNode init = entry(start);
+        CFGIfNode header = (CFGIfNode) init.outNode();
+        CFGVarAssignNode increment = (CFGVarAssignNode) store[0].outNode();
+
+        assertTrue(reduce(start));
+
+        CFGVarAssignNode pointer = (CFGVarAssignNode) init.outNode();
+        assertEquals(element("a", "i"), pointer.value);
+        assertSame(header, pointer.outNode());
+        assertEquals(makeIR.IRMem(temp(pointer.variable)), store[0].target);
+
+        CFGVarAssignNode bump = (CFGVarAssignNode) increment.outNode();
+        assertEquals(pointer.variable, bump.variable);
+        assertEquals(increment(pointer.variable, 8), bump.value);
+        assertSame(header, bump.outNode());
+
+        // The counter is stored, so it stays.
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            makeIR.IRInteger(10)), header.cond);
+
+        assertFalse(reduce(start));
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * n = MEM(a - 8) <p>
+     * while (i < n) { x = x + MEM(a + i * 8); i = i + 1 } <p>
+     * return
+     */
+    @Test
+    void countersOnlyComparedAreEliminated() {
+        CFGVarAssignNode[] sum = new CFGVarAssignNode[1];
+        CFGStartNode start = loop(temp("n"), next -> sum[0] = make.VarAssign(
+            "x", accumulate("a"), next), make.Return());
+        CFGNode init = start.out().get(0);
+        CFGVarAssignNode length = entry(start);
+        CFGIfNode header = (CFGIfNode) length.outNode();
+
+        assertTrue(reduce(start));
+
+        CFGVarAssignNode pointer = (CFGVarAssignNode) length.outNode();
+        CFGVarAssignNode bound = (CFGVarAssignNode) pointer.outNode();
+        assertSame(header, bound.outNode());
+        assertEquals(makeIR.IRBinOp(OpType.ADD_INT, temp("a"),
+            makeIR.IRBinOp(OpType.MUL_INT, temp("n"),
+                makeIR.IRInteger(8))), bound.value);
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp(pointer.variable),
+            temp(bound.variable)), header.cond);
+
+        CFGVarAssignNode bump = (CFGVarAssignNode) sum[0].outNode();
+        assertEquals(increment(pointer.variable, 8), bump.value);
+        assertSame(header, bump.outNode());
+
+        for (CFGNode node : reachable(start)) {
+            assertTrue(node == init || !node.defs().contains("i"));
+        }
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * n = MEM(a - 8) <p>
+     * while (i < 10) { x = x + MEM(a + i * 8); i = i + 1 } <p>
+     * y = i <p>
+     * return
+     */
+    @Test
+    void countersLiveAfterTheLoopStay() {
+        CFGVarAssignNode[] sum = new CFGVarAssignNode[1];
+        CFGNode exit = make.VarAssign("y", temp("i"), make.Return());
+        CFGStartNode start = loop(makeIR.IRInteger(10),
+            next -> sum[0] = make.VarAssign("x", accumulate("a"), next),
+            exit);
+        CFGIfNode header = (CFGIfNode) entry(start).outNode();
+
+        assertTrue(reduce(start));
+
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            makeIR.IRInteger(10)), header.cond);
+        CFGVarAssignNode increment = (CFGVarAssignNode) sum[0].outNode();
+        assertEquals("i", increment.variable);
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * n = MEM(a - 8) <p>
+     * while (i < m) { x = x + MEM(a + i * 8); i = i + 1 } <p>
+     * return
+     * <p>
+     * {@code a + m * 8} overflows if {@code m} is large, so the counter
+     * stays.
+     */
+    @Test
+    void countersComparedWithUnknownBoundsStay() {
+        CFGVarAssignNode[] sum = new CFGVarAssignNode[1];
+        CFGStartNode start = loop(temp("m"), next -> sum[0] = make.VarAssign(
+            "x", accumulate("a"), next), make.Return());
+        CFGIfNode header = (CFGIfNode) entry(start).outNode();
+
+        assertTrue(reduce(start));
+
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"), temp("m")),
+            header.cond);
+        CFGVarAssignNode increment = (CFGVarAssignNode) sum[0].outNode();
+        assertEquals("i", increment.variable);
+    }
+
+    /**
+     * start <p>
+     * i = 0 <p>
+     * n = MEM(a - 8) <p>
+     * while (i < 10) { x = x + MEM(b + i * 8); i = i + 1 } <p>
+     * return
+     * <p>
+     * {@code b} need not be an array, so {@code b + 10 * 8} may overflow and
+     * the counter stays.
+     */
+    @Test
+    void countersScaledFromUnknownAddressesStay() {
+        CFGVarAssignNode[] sum = new CFGVarAssignNode[1];
+        CFGStartNode start = loop(makeIR.IRInteger(10),
+            next -> sum[0] = make.VarAssign("x", accumulate("b"), next),
+            make.Return());
+        CFGIfNode header = (CFGIfNode) entry(start).outNode();
+
+        assertTrue(reduce(start));
+
+        assertEquals(makeIR.IRBinOp(OpType.LT, temp("i"),
+            makeIR.IRInteger(10)), header.cond);
+        CFGVarAssignNode increment = (CFGVarAssignNode) sum[0].outNode();
+        assertEquals("i", increment.variable);
+    }
+
+}
@@ -0,0 +1,165 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.cfg.ir.dfa.loops.DominatorTree;
+import cyr7.cfg.ir.nodes.CFGIfNode;
+import cyr7.cfg.ir.nodes.CFGMemAssignNode;
+import cyr7.cfg.ir.nodes.CFGNode;
+import cyr7.cfg.ir.nodes.CFGReturnNode;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cfg.ir.nodes.CFGVarAssignNode;
+import cyr7.cfg.ir.opt.FreshTemps;
+import cyr7.cfg.ir.opt.ValueNumberingOptimization;
+import cyr7.ir.nodes.IRBinOp;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRInteger;
+import cyr7.ir.nodes.IRMem;
+import cyr7.ir.nodes.IRTemp;
+import java_cup.runtime.ComplexSymbolFactory.Location;
+
+class TestValueNumbering {
+
+    private final Location loc = new Location(-1, -1);
+
+    private IRExpr temp(String name) {
+        return new IRTemp(loc, name);
+    }
+
+    private IRExpr length(String array) {
+        return new IRMem(loc, new IRBinOp(loc, OpType.SUB_INT,
+            temp(array), new IRInteger(loc, 8)));
+    }
+
+    private boolean number(CFGStartNode start) {
+        return ValueNumberingOptimization.run(start, DominatorTree.of(start),
+            FreshTemps.of(start));
+    }
+
+    /**
+     * start <p>
+     * x = MEM(a - 8) <p>
+     * y = MEM(a - 8) <p>
+     * MEM(b) = 1 <p>
+     * z = MEM(a - 8) <p>
+     * return
+     */
+    @Test
+    void storesKillLoads() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode z = new CFGVarAssignNode(loc, "z", length("a"),
+            returnNode);
+        CFGMemAssignNode store = new CFGMemAssignNode(loc,
+            new IRMem(loc, temp("b")), new IRInteger(loc, 1), z);
+        CFGVarAssignNode y = new CFGVarAssignNode(loc, "y", length("a"), store);
+        CFGVarAssignNode x = new CFGVarAssignNode(loc, "x", length("a"), y);
+        CFGStartNode start = new CFGStartNode(loc, x);
+
+        assertTrue(number(start));
+
+        assertEquals(temp("x"), y.value);
+
+        // The address is still the same, so it is computed once.
+        CFGVarAssignNode address = (CFGVarAssignNode) start.out().get(0);
+        assertEquals(new IRBinOp(loc, OpType.SUB_INT, temp("a"),
+            new IRInteger(loc, 8)), address.value);
+        assertSame(x, address.outNode());
+        assertEquals(new IRMem(loc, temp(address.variable)), x.value);
+        assertEquals(new IRMem(loc, temp(address.variable)), z.value);
+
+        assertFalse(number(start));
+    }
+
+    /**
+     * start <p>
+     * x = MEM(a) <p>
+     * if (c) { MEM(a) = 1 } else { w = 2 } <p>
+     * y = MEM(a) <p>
+     * v = MEM(a) <p>
+     * return
+     */
+    @Test
+    void loadsAreNotReusedAfterAStoreOnEitherBranch() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode v = new CFGVarAssignNode(loc, "v",
+            new IRMem(loc, temp("a")), returnNode);
+        CFGVarAssignNode y = new CFGVarAssignNode(loc, "y",
+            new IRMem(loc, temp("a")), v);
+        CFGMemAssignNode store = new CFGMemAssignNode(loc,
+            new IRMem(loc, temp("a")), new IRInteger(loc, 1), y);
+        CFGVarAssignNode w = new CFGVarAssignNode(loc, "w",
+            new IRInteger(loc, 2), y);
+        CFGIfNode ifNode = new CFGIfNode(loc, store, w, temp("c"));
+        CFGVarAssignNode x = new CFGVarAssignNode(loc, "x",
+            new IRMem(loc, temp("a")), ifNode);
+        CFGStartNode start = new CFGStartNode(loc, x);
+
+        assertTrue(number(start));
+
+        assertEquals(new IRMem(loc, temp("a")), y.value);
+        assertEquals(temp("y"), v.value);
+    }
+
+    /**
+     * start <p>
+     * t = a * i <p>
+     * if (c) { u = i * a } <p>
+     * return
+     */
+    @Test
+    void dominatingComputationsAreReused() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode u = new CFGVarAssignNode(loc, "u",
+            new IRBinOp(loc, OpType.MUL_INT, temp("i"), temp("a")),
+            returnNode);
+        CFGIfNode ifNode = new CFGIfNode(loc, u, returnNode, temp("c"));
+        CFGVarAssignNode t = new CFGVarAssignNode(loc, "t",
+            new IRBinOp(loc, OpType.MUL_INT, temp("a"), temp("i")), ifNode);
+        CFGStartNode start = new CFGStartNode(loc, t);
+
+        assertTrue(number(start));
+
+        assertEquals(temp("t"), u.value);
+    }
+
+    /**
+     * start <p>
+     * x = a + b <p>
+     * x = x + 1 <p>
+     * y = a + b <p>
+     * return
+     */
+    @Test
+    void redefinedTemporariesDoNotHoldValues() {
+        CFGReturnNode returnNode = new CFGReturnNode(loc);
+        CFGVarAssignNode y = new CFGVarAssignNode(loc, "y",
+            new IRBinOp(loc, OpType.ADD_INT, temp("a"), temp("b")),
+            returnNode);
+        CFGVarAssignNode increment = new CFGVarAssignNode(loc, "x",
+            new IRBinOp(loc, OpType.ADD_INT, temp("x"), new IRInteger(loc, 1)),
+            y);
+        CFGVarAssignNode x = new CFGVarAssignNode(loc, "x",
+            new IRBinOp(loc, OpType.ADD_INT, temp("a"), temp("b")),
+            increment);
+        CFGStartNode start = new CFGStartNode(loc, x);
+
+        assertTrue(number(start));
+
+        CFGNode first = start.out().get(0);
+        assertTrue(first instanceof CFGVarAssignNode);
+        String sum = ((CFGVarAssignNode) first).variable;
+        assertEquals(new IRBinOp(loc, OpType.ADD_INT, temp("a"), temp("b")),
+            ((CFGVarAssignNode) first).value);
+        assertEquals(temp(sum), x.value);
+        assertEquals(temp(sum), y.value);
+        assertEquals(new IRBinOp(loc, OpType.ADD_INT, temp("x"),
+            new IRInteger(loc, 1)), increment.value);
+    }
+
+}
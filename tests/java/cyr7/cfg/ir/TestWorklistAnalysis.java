@@ -0,0 +1,58 @@
+package cyr7.cfg.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.benchmark.XiProgramGenerator;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis;
+import cyr7.cfg.ir.dfa.CopyPropagationAnalysis.CopyPropLattice;
+import cyr7.cfg.ir.dfa.DfaResult;
+import cyr7.cfg.ir.dfa.WorklistAnalysis;
+import cyr7.cfg.ir.nodes.CFGStartNode;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.util.DataflowStatistics;
+
+class TestWorklistAnalysis {
+
+    private static Map<String, CFGStartNode> cfgs(long seed) throws Exception {
+        String program = XiProgramGenerator.generate(
+            Shape.small().withLoopDepth(3).withStatements(40), seed);
+        return IRUtil.generateCFG(new StringReader(program), "generated.xi",
+            filename -> Reader.nullReader(), OptConfig.none(),
+            new DefaultIdGenerator());
+    }
+
+    @Test
+    void orderedWorklistVisitsFewerNodesThanFifoOnLoopNests() throws Exception {
+        long ordered = 0;
+        long fifo = 0;
+        for (long seed = 0; seed < 4; seed++) {
+            for (CFGStartNode cfg : cfgs(seed).values()) {
+                long analyses = DataflowStatistics.analyses();
+                long before = DataflowStatistics.nodeVisits();
+                DfaResult<CopyPropLattice> sccOrder =
+                    WorklistAnalysis.analyze(cfg, CopyPropagationAnalysis.INSTANCE);
+                long between = DataflowStatistics.nodeVisits();
+                DfaResult<CopyPropLattice> fifoOrder =
+                    WorklistAnalysis.runPrevAnalysis(cfg, CopyPropagationAnalysis.INSTANCE);
+                long after = DataflowStatistics.nodeVisits();
+
+                assertEquals(analyses + 2, DataflowStatistics.analyses());
+                assertEquals(fifoOrder.in(), sccOrder.in());
+                ordered += between - before;
+                fifo += after - between;
+            }
+        }
+        assertTrue(ordered < fifo, ordered + " visits, FIFO " + fifo);
+    }
+
+}
@@ -166,6 +166,28 @@ public class IrCfgTestUtil {
         return sameEdges && sameNodes;
     }
 
+    /**
+     * Checks that every edge between the nodes reachable from {@code start}
+     * is recorded on both of its ends, in the {@link CFGNode#out() out}
+     * nodes of its source and the {@link CFGNode#in() in} nodes of its
+     * target.
+     */
+    public static boolean hasConsistentEdges(CFGNode start) {
+        for (CFGNode node : getAllNodes(start)) {
+            for (CFGNode out : node.out()) {
+                if (!out.in().contains(node)) {
+                    return false;
+                }
+            }
+            for (CFGNode in : node.in()) {
+                if (!in.out().contains(node)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      *
      * Checks that two CFG nodes are equal.
@@ -0,0 +1,159 @@
+package cyr7.cli;
+
+import cyr7.ast.toplevel.FunctionDeclNode;
+import cyr7.ast.toplevel.XiProgramNode;
+import cyr7.typecheck.InterfaceCache;
+import cyr7.x86.asm.ASMLine;
+import cyr7.x86.asm.ASMTextLine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AssemblyCacheTest {
+
+    private static final String F = String.join("\n",
+        "f(x: int): int {",
+        "    i: int = 0",
+        "    while (i < x) { i = i + 2 }",
+        "    return i",
+        "}");
+
+    @TempDir
+    Path directory;
+
+    private CompilationSession session(String program, OptConfig optConfig)
+            throws Exception {
+        CompilerOptions options = new CompilerOptions(optConfig);
+        options.assemblyCacheRoot = directory.toFile();
+        return CompilationSession.read(
+            new StringReader(program),
+            "incremental.xi",
+            filename -> Reader.nullReader(),
+            new InterfaceCache(),
+            options);
+    }
+
+    private static List<String> text(List<ASMLine> lines) {
+        return lines.stream()
+            .map(ASMLine::getIntelAssembly)
+            .collect(Collectors.toList());
+    }
+
+    private long cachedFunctions() throws Exception {
+        try (var files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void reusesTheAssemblyOfUnchangedFunctions() throws Exception {
+        String program = F + "\nmain(args: int[][]) { y: int = f(4) }";
+
+        List<ASMLine> first = session(program, OptConfig.allEnabled()).asm();
+        assertEquals(2, cachedFunctions());
+        assertTrue(first.stream().noneMatch(l -> l instanceof ASMTextLine));
+
+        List<ASMLine> second = session(program, OptConfig.allEnabled()).asm();
+        assertTrue(second.stream().allMatch(l -> l instanceof ASMTextLine));
+        assertEquals(text(first), text(second));
+    }
+
+    @Test
+    void recompilesOnlyChangedFunctions() throws Exception {
+        session(F + "\nmain(args: int[][]) { y: int = f(4) }",
+            OptConfig.allEnabled()).asm();
+
+        List<ASMLine> lines = session(
+            F + "\nmain(args: int[][]) { y: int = f(5) + 1 }",
+            OptConfig.allEnabled()).asm();
+
+        assertEquals(3, cachedFunctions());
+        assertTrue(lines.stream().anyMatch(l -> l instanceof ASMTextLine));
+        assertTrue(lines.stream().anyMatch(l -> !(l instanceof ASMTextLine)));
+    }
+
+    @Test
+    void fingerprintCoversCalleeSignaturesAndOptions() throws Exception {
+        String g = "g(): int { return length(h()) }";
+        FunctionDeclNode first = function(
+            session(g + " h(): int[] { return {1} }", OptConfig.allEnabled()));
+        FunctionDeclNode second = function(
+            session(g + " h(): bool[] { return {true} }", OptConfig.allEnabled()));
+
+        CompilerOptions options = new CompilerOptions(OptConfig.allEnabled());
+        CompilerOptions unoptimized = new CompilerOptions(OptConfig.none());
+        assertEquals(AssemblyCache.fingerprint(first, options),
+            AssemblyCache.fingerprint(first, new CompilerOptions(OptConfig.allEnabled())));
+        assertNotEquals(AssemblyCache.fingerprint(first, options),
+            AssemblyCache.fingerprint(second, options));
+        assertNotEquals(AssemblyCache.fingerprint(first, options),
+            AssemblyCache.fingerprint(first, unoptimized));
+    }
+
+    @Test
+    void recompilesCallersOfChangedCalleesWhenInlining() throws Exception {
+        String main = "\nmain(args: int[][]) { y: int = g(4) }";
+        session("g(x: int): int { return x + 1 }" + main,
+            OptConfig.allEnabled()).asm();
+
+        // g is small enough to be inlined into main, so main is stale too.
+        List<ASMLine> lines = session("g(x: int): int { return x + 2 }" + main,
+            OptConfig.allEnabled()).asm();
+
+        assertEquals(4, cachedFunctions());
+        assertTrue(lines.stream().noneMatch(l -> l instanceof ASMTextLine));
+    }
+
+    @Test
+    void fingerprintsCoverInlinedCalleesOnlyWhenInlining() throws Exception {
+        String main = "\nmain(args: int[][]) { y: int = g(4) }";
+        String mainName = "_Imain_paai";
+        XiProgramNode first = (XiProgramNode) session(
+            "g(x: int): int { return x + 1 }" + main,
+            OptConfig.allEnabled()).typedAst();
+        XiProgramNode second = (XiProgramNode) session(
+            "g(x: int): int { return x + 2 }" + main,
+            OptConfig.allEnabled()).typedAst();
+
+        CompilerOptions inlining = new CompilerOptions(OptConfig.allEnabled());
+        assertNotEquals(
+            AssemblyCache.fingerprints(first, inlining).get(mainName),
+            AssemblyCache.fingerprints(second, inlining).get(mainName));
+
+        CompilerOptions unoptimized = new CompilerOptions(OptConfig.none());
+        assertNotNull(AssemblyCache.fingerprints(first, unoptimized).get(mainName));
+        assertEquals(
+            AssemblyCache.fingerprints(first, unoptimized).get(mainName),
+            AssemblyCache.fingerprints(second, unoptimized).get(mainName));
+    }
+
+    private static FunctionDeclNode function(CompilationSession session)
+            throws Exception {
+        return ((XiProgramNode) session.typedAst()).functions.get(0);
+    }
+
+    @Test
+    void missingCacheDirectoryIsCreated() throws Exception {
+        File nested = directory.resolve("nested").toFile();
+        CompilerOptions options = new CompilerOptions(OptConfig.allEnabled());
+        options.assemblyCacheRoot = nested;
+        CompilationSession.read(
+            new StringReader("main(args: int[][]) { }"),
+            "incremental.xi",
+            filename -> Reader.nullReader(),
+            new InterfaceCache(),
+            options).asm();
+
+        assertTrue(nested.isDirectory());
+    }
+
+}
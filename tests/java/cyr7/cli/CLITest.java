@@ -73,6 +73,21 @@ class CLITest {
         assertEquals(cmd.getOptionValue("D"), ".");
     }
 
+    @Test
+    void recognizesServerWithEitherDash() throws ParseException {
+        assertTrue(CLI.parseCommand("-server".split(" ")).hasOption("server"));
+        assertTrue(CLI.parseCommand("--server".split(" ")).hasOption("server"));
+    }
+
+    @Test
+    void reportTimingsDoesNotTakeTheNextFile() throws ParseException {
+        CommandLine cmd = CLI.parseCommand(
+            "--report-timings a.xi -rtformat json b.xi".split(" "));
+        assertTrue(cmd.hasOption("rt"));
+        assertEquals("json", cmd.getOptionValue("rtformat"));
+        assertArrayEquals(new String[] { "a.xi", "b.xi" }, cmd.getArgs());
+    }
+
     @Test
     void getsCorrectPathForD() throws ParseException {
         final String command = "-D ";
@@ -0,0 +1,130 @@
+package cyr7.cli;
+
+import cyr7.typecheck.InterfaceCache;
+import cyr7.x86.ASMUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationSessionTest {
+
+    private static final String PROGRAM = String.join("\n",
+        "f(x: int): int {",
+        "    return x * 2 + 1",
+        "}",
+        "main(args: int[][]) {",
+        "    y: int = f(4)",
+        "}");
+
+    private static CompilationSession session(String program) throws Exception {
+        return session(program, false);
+    }
+
+    private static CompilationSession session(String program, boolean timed)
+            throws Exception {
+        CompilerOptions options = new CompilerOptions(OptConfig.allEnabled());
+        options.wantsTimings = timed;
+        return CompilationSession.read(
+            new StringReader(program),
+            "session.xi",
+            filename -> Reader.nullReader(),
+            new InterfaceCache(),
+            options);
+    }
+
+    @Test
+    void stagesAreComputedOnce() throws Exception {
+        CompilationSession session = session(PROGRAM);
+
+        assertSame(session.ast(), session.typedAst());
+        assertSame(session.mir(), session.mir());
+        assertSame(session.lir(), session.lir());
+        assertSame(session.finalCfg(), session.finalCfg());
+        assertSame(session.asm(), session.asm());
+    }
+
+    @Test
+    void laterStagesReuseEarlierStages() throws Exception {
+        CompilationSession session = session(PROGRAM);
+
+        assertNotNull(session.initialLir());
+        assertNotNull(session.lir());
+        assertEquals(session.lir().functions().keySet(),
+            session.finalCfg().keySet());
+        assertFalse(session.asm().isEmpty());
+    }
+
+    @Test
+    void streamedAssemblyMatchesGeneratedAssembly() throws Exception {
+        StringWriter streamed = new StringWriter();
+        session(PROGRAM).writeASM(streamed);
+
+        StringWriter generated = new StringWriter();
+        ASMUtil.writeASM(session(PROGRAM).asm(), generated);
+
+        assertEquals(generated.toString(), streamed.toString());
+        assertTrue(streamed.toString().startsWith(".intel_syntax noprefix"));
+    }
+
+    @Test
+    void failuresAreRememberedByTheStage() throws Exception {
+        CompilationSession session = session("main(args: int[][]) {");
+
+        Exception parseFailure = assertThrows(Exception.class, session::ast);
+        assertSame(parseFailure, assertThrows(Exception.class, session::ast));
+        assertSame(parseFailure, assertThrows(Exception.class, session::lir));
+    }
+
+    @Test
+    void timingsCoverEveryPhaseAndFunction() throws Exception {
+        CompilationSession session = session(PROGRAM, true);
+        session.asm();
+
+        StringWriter report = new StringWriter();
+        session.timings().writeJSON(report, "session.xi");
+        for (String phase : List.of("lexing", "parsing", "typechecking",
+                "AstToIrVisitor", "IRConstFoldVisitor", "LoweringVisitor",
+                "TraceOptimizer", "copy propagation", "dead code elimination",
+                "tiling", "register allocation")) {
+            assertTrue(report.toString().contains("\"phase\": \"" + phase + "\""),
+                phase);
+        }
+        assertTrue(report.toString().contains("\"function\": \"_If_ii\""));
+        assertTrue(report.toString().contains("\"function\": \"_Imain_paai\""));
+        assertTrue(report.toString().matches("(?s).*\"dataflowVisits\": [1-9].*"));
+    }
+
+    @Test
+    void functionsStayInCFGFormThroughTheMidEnd() throws Exception {
+        CompilationSession session = session(PROGRAM, true);
+        session.finalCfg();
+        session.asm();
+
+        StringWriter report = new StringWriter();
+        session.timings().writeJSON(report, "session.xi");
+        for (String phase : List.of("CFG construction", "CFG flattening")) {
+            assertTrue(report.toString().contains(
+                "{\"phase\": \"" + phase + "\", \"calls\": 1,"), phase);
+        }
+        assertEquals(session.lir().functions().keySet(),
+            session.finalCfg().keySet());
+    }
+
+    @Test
+    void timedSessionsReportTheSameErrors() throws Exception {
+        String program = "main(args: int[][]) { x: int = ) 'ab' }";
+
+        Exception untimed = assertThrows(Exception.class,
+            session(program, false)::ast);
+        Exception timed = assertThrows(Exception.class,
+            session(program, true)::ast);
+        assertEquals(untimed.getClass(), timed.getClass());
+        assertEquals(untimed.getMessage(), timed.getMessage());
+    }
+
+}
@@ -0,0 +1,77 @@
+package cyr7.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompileServerTest {
+
+    @TempDir
+    Path directory;
+
+    private List<String> serve(String... requests) {
+        StringWriter response = new StringWriter();
+        CompileServer.serve(
+            new BufferedReader(new StringReader(String.join("\n", requests))),
+            new PrintWriter(response));
+        return response.toString().lines().collect(Collectors.toList());
+    }
+
+    @Test
+    void respondsToEachRequest() throws Exception {
+        Files.writeString(directory.resolve("a.xi"),
+            "main(args: int[][]) { x: int = 1 + 2 }");
+        String request = String.join(" ",
+            "-sourcepath", directory.toString(),
+            "-D", directory.toString(),
+            "a.xi");
+
+        List<String> lines = serve(request, "", request, "exit", request);
+
+        assertEquals(2, lines.stream()
+            .filter(CompileServer.END_OF_RESPONSE::equals)
+            .count());
+        List<String> outputs = lines.stream()
+            .filter(l -> l.startsWith(CompileServer.OUTPUT_PREFIX))
+            .collect(Collectors.toList());
+        assertEquals(2, outputs.size());
+        Path assembly = Path.of(
+            outputs.get(0).substring(CompileServer.OUTPUT_PREFIX.length()));
+        assertTrue(Files.exists(assembly));
+        assertTrue(assembly.toString().endsWith("a.s"));
+    }
+
+    @Test
+    void reportsDiagnosticsOfTheRequest() throws Exception {
+        Files.writeString(directory.resolve("bad.xi"),
+            "main(args: int[][]) { x: int = true }");
+        String request = String.join(" ",
+            "-sourcepath", directory.toString(),
+            "-D", directory.toString(),
+            "-t", "-noASM",
+            "bad.xi");
+
+        List<String> lines = serve(request);
+
+        assertTrue(lines.get(0).startsWith("Semantic error"));
+        assertEquals(CompileServer.END_OF_RESPONSE, lines.get(lines.size() - 1));
+    }
+
+    @Test
+    void requestsDoNotInheritDebugPrinting() {
+        serve("-debug -noASM", "-noASM");
+
+        assertFalse(CLI.isDebugPrintingEnabled());
+    }
+
+}
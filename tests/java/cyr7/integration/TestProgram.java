@@ -62,6 +62,62 @@ public abstract class TestProgram {
         assertEquals(expected(), result);
     }
 
+    @Test
+    void testLirConstantPropagation() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.CP, Optimization.COPY, Optimization.DCE),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirValueNumbering() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.VN, Optimization.COPY, Optimization.DCE),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirInlining() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.INL),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirStrengthReduction() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.COPY, Optimization.DCE, Optimization.SR),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirLoopInvariantCodeMotion() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.COPY, Optimization.DCE, Optimization.LICM),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirPartialRedundancyElimination() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.COPY, Optimization.DCE, Optimization.PRE),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
+    @Test
+    void testLirSsa() throws Exception {
+        String result = Run.lirRun(Run.getFile(filename()),
+            OptConfig.of(Optimization.SSA),
+            configuration());
+        assertEquals(expected(), result);
+    }
+
     @Test
     void testLirAllEnabled() throws Exception {
         String result = Run.lirRun(Run.getFile(filename()),
@@ -0,0 +1,25 @@
+package cyr7.ir;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestScopedIdGenerator {
+
+    @Test
+    void differentFunctionsNeverShareNames() {
+        IdGenerator first = ScopedIdGenerator.forFunction("_Ia'_b_p");
+        IdGenerator second = ScopedIdGenerator.forFunction("_Ia_'b_p");
+
+        assertNotEquals(first.newTemp(), second.newTemp());
+        assertNotEquals(first.newLabel(), second.newLabel());
+    }
+
+    @Test
+    void labelsOnlyUseAssemblyCharacters() {
+        String label = ScopedIdGenerator.forFunction("_If'oo_p").newLabel();
+
+        assertTrue(label.matches("[A-Za-z0-9_]+"), label);
+    }
+
+}
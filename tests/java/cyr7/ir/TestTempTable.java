@@ -0,0 +1,108 @@
+package cyr7.ir;
+
+import cyr7.C;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+import cyr7.ir.nodes.IRTemp;
+import cyr7.util.BitVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTempTable {
+
+    @Test
+    void sameNameHasSameId() {
+        TempTable temps = new TempTable();
+        int id = temps.id("_t_table_a");
+        assertEquals(id, temps.id("_t_table_a"));
+        assertNotEquals(id, temps.id("_t_table_b"));
+        assertEquals("_t_table_a", temps.name(id));
+        assertTrue(id < temps.size());
+    }
+
+    @Test
+    void idsAreDensePerTable() {
+        TempTable first = new TempTable();
+        TempTable second = new TempTable();
+        first.id("_t_table_c");
+        first.id("_t_table_d");
+
+        assertEquals(0, second.id("_t_table_d"));
+        assertEquals(1, first.id("_t_table_d"));
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    void findDoesNotAssignIds() {
+        TempTable temps = new TempTable();
+        assertEquals(-1, temps.find("_t_table_e"));
+        assertEquals(0, temps.size());
+
+        int id = temps.id("_t_table_e");
+        assertEquals(id, temps.find("_t_table_e"));
+    }
+
+    @Test
+    void namesRoundTripThroughBitVectors() {
+        TempTable temps = new TempTable();
+        Set<String> names = Set.of("_t_table_f", "_t_table_g", "_t_table_h");
+        BitVector ids = temps.ids(names);
+
+        assertEquals(3, ids.cardinality());
+        assertEquals(names, temps.names(ids));
+    }
+
+    @Test
+    void numberedTempsCarryTheirIds() {
+        TempTable temps = new TempTable();
+        temps.id("_t_table_i");
+        IRTemp temp = temps.number(new IRTemp(C.LOC, "_t_table_j"));
+
+        assertEquals(1, temp.id());
+        assertSame(temp, temps.number(temp));
+        assertEquals(new IRTemp(C.LOC, "_t_table_j"), temp);
+    }
+
+    @Test
+    void tempsOfAnotherTableAreRenumbered() {
+        TempTable first = new TempTable();
+        TempTable second = new TempTable();
+        IRTemp temp = first.temp(C.LOC, "_t_table_k");
+        second.id("_t_table_l");
+
+        assertEquals(0, temp.id());
+        assertEquals(1, second.id(temp));
+        assertEquals(1, second.number(temp).id());
+    }
+
+    @Test
+    void useIdsAreSortedWithoutRepeats() {
+        TempTable temps = new TempTable();
+        IRNodeFactory make = new IRNodeFactory_c(C.LOC);
+        temps.id("_t_table_m");
+        IRTemp n = temps.temp(C.LOC, "_t_table_n");
+        IRExpr sum = make.IRBinOp(OpType.ADD_INT, n,
+            make.IRMem(make.IRTemp("_t_table_m")));
+
+        assertArrayEquals(new int[] {0, 1},
+            temps.sortedUseIds(List.of(sum, n)));
+    }
+
+    @Test
+    void sortedIdsAreIncreasing() {
+        TempTable temps = new TempTable();
+        temps.id("_t_table_k");
+        temps.id("_t_table_l");
+
+        assertArrayEquals(new int[] { 0, 1, 2 },
+            temps.sortedIds(List.of("_t_table_m", "_t_table_l", "_t_table_k")));
+    }
+
+}
@@ -0,0 +1,62 @@
+package cyr7.ir.lowering;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.nodes.IRCompUnit;
+
+class ParallelLoweringTest {
+
+    private static final String PROGRAM = String.join("\n",
+        "sum(n: int): int {",
+        "    i: int = 0",
+        "    total: int = 0",
+        "    while (i < n) {",
+        "        total = total + i",
+        "        i = i + 1",
+        "    }",
+        "    return total",
+        "}",
+        "fib(n: int): int {",
+        "    if (n < 2) { return n }",
+        "    return fib(n - 1) + fib(n - 2)",
+        "}",
+        "copies(x: int): int {",
+        "    a: int = x",
+        "    b: int = a",
+        "    c: int = b + 4 * 2",
+        "    unused: int = c * 3",
+        "    return c",
+        "}",
+        "main(args: int[][]) {",
+        "    x: int = sum(10) + fib(5) + copies(2)",
+        "}");
+
+    private static String lower(boolean parallel) throws Exception {
+        OptConfig optConfig = OptConfig.allEnabled();
+        optConfig.setParallel(parallel);
+        IRCompUnit compUnit = IRUtil.generateIR(
+            new StringReader(PROGRAM),
+            "parallel.xi",
+            filename -> Reader.nullReader(),
+            optConfig,
+            new DefaultIdGenerator());
+        return IRUtil.sexpr(compUnit);
+    }
+
+    @Test
+    void parallelLoweringMatchesSerialLowering() throws Exception {
+        String serial = lower(false);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(serial, lower(true));
+        }
+    }
+
+}
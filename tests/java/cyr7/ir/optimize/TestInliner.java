@@ -0,0 +1,156 @@
+package cyr7.ir.optimize;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import cyr7.C;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IdGenerator;
+import cyr7.ir.interpret.IRSimulator;
+import cyr7.ir.nodes.IRBinOp.OpType;
+import cyr7.ir.nodes.IRCallStmt;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.ir.nodes.IRExpr;
+import cyr7.ir.nodes.IRLabel;
+import cyr7.ir.nodes.IRNodeFactory;
+import cyr7.ir.nodes.IRNodeFactory_c;
+import cyr7.ir.nodes.IRSeq;
+import cyr7.ir.nodes.IRStmt;
+
+class TestInliner {
+
+    private final IRNodeFactory make = new IRNodeFactory_c(C.LOC);
+    private final IdGenerator generator = new DefaultIdGenerator();
+
+    private IRExpr temp(String name) {
+        return make.IRTemp(name);
+    }
+
+    private IRExpr arg(int i) {
+        return make.IRTemp(generator.argTemp(i));
+    }
+
+    private IRExpr ret(int i) {
+        return make.IRTemp(generator.retTemp(i));
+    }
+
+    private IRStmt call(List<String> collectors, String function,
+                        IRExpr... args) {
+        return make.IRCallStmt(collectors, make.IRName(function), List.of(args));
+    }
+
+    private IRCompUnit unit(IRStmt main, String name, IRStmt... body) {
+        IRCompUnit compUnit = make.IRCompUnit("test");
+        compUnit.appendFunc(make.IRFuncDecl("main", main));
+        compUnit.appendFunc(make.IRFuncDecl(name, make.IRSeq(body)));
+        return compUnit;
+    }
+
+    private List<IRStmt> body(IRCompUnit compUnit, String function) {
+        return ((IRSeq) compUnit.getFunction(function).body()).stmts();
+    }
+
+    private long run(IRCompUnit compUnit) {
+        return new IRSimulator(compUnit).call("main");
+    }
+
+    @Test
+    void callsToSmallFunctionsAreInlined() {
+        IRCompUnit compUnit = unit(
+            make.IRSeq(
+                call(List.of("x"), "add", make.IRInteger(2), make.IRInteger(3)),
+                make.IRMove(ret(0), temp("x")),
+                make.IRReturn()),
+            "add",
+            make.IRMove(temp("x"), arg(0)),
+            make.IRMove(temp("y"), arg(1)),
+            make.IRMove(ret(0), make.IRBinOp(OpType.ADD_INT,
+                temp("x"), temp("y"))),
+            make.IRReturn());
+
+        IRCompUnit inlined = IRInliner.optimize(compUnit, generator);
+
+        assertTrue(body(inlined, "main")
+            .stream()
+            .noneMatch(stmt -> stmt instanceof IRCallStmt));
+        assertEquals(body(compUnit, "add"), body(inlined, "add"));
+        assertEquals(5, run(compUnit));
+        assertEquals(5, run(inlined));
+    }
+
+    @Test
+    void multipleReturnValuesAreCollected() {
+        // The interpreter reads the number of results from the mangled name.
+        String minmax = "_Iminmax_t2ii";
+        IRCompUnit compUnit = unit(
+            make.IRSeq(
+                call(List.of("x", "y"), minmax,
+                    make.IRInteger(7), make.IRInteger(3)),
+                call(List.of("z", "_"), minmax,
+                    make.IRInteger(1), make.IRInteger(2)),
+                make.IRMove(ret(0), make.IRBinOp(OpType.ADD_INT,
+                    make.IRBinOp(OpType.MUL_INT, temp("x"), make.IRInteger(100)),
+                    make.IRBinOp(OpType.ADD_INT,
+                        make.IRBinOp(OpType.MUL_INT, temp("y"), make.IRInteger(10)),
+                        temp("z")))),
+                make.IRReturn()),
+            minmax,
+            make.IRMove(temp("a"), arg(0)),
+            make.IRMove(temp("b"), arg(1)),
+            make.IRCJump(make.IRBinOp(OpType.LT, temp("a"), temp("b")), "lt"),
+            make.IRMove(ret(0), temp("b")),
+            make.IRMove(ret(1), temp("a")),
+            make.IRReturn(),
+            make.IRLabel("lt"),
+            make.IRMove(ret(0), temp("a")),
+            make.IRMove(ret(1), temp("b")),
+            make.IRReturn());
+
+        IRCompUnit inlined = IRInliner.optimize(compUnit, generator);
+
+        List<IRStmt> main = body(inlined, "main");
+        assertTrue(main.stream().noneMatch(stmt -> stmt instanceof IRCallStmt));
+        Set<String> labels = new HashSet<>();
+        for (IRStmt stmt : main) {
+            if (stmt instanceof IRLabel) {
+                assertTrue(labels.add(((IRLabel) stmt).name()));
+            }
+        }
+        assertFalse(labels.contains("lt"));
+        assertEquals(371, run(compUnit));
+        assertEquals(371, run(inlined));
+    }
+
+    @Test
+    void recursiveFunctionsAreNotInlined() {
+        IRCompUnit compUnit = unit(
+            make.IRSeq(
+                call(List.of("x"), "count", make.IRInteger(3)),
+                make.IRMove(ret(0), temp("x")),
+                make.IRReturn()),
+            "count",
+            make.IRMove(temp("n"), arg(0)),
+            make.IRCJump(make.IRBinOp(OpType.EQ, temp("n"), make.IRInteger(0)),
+                "done"),
+            call(List.of("m"), "count",
+                make.IRBinOp(OpType.SUB_INT, temp("n"), make.IRInteger(1))),
+            make.IRMove(ret(0), make.IRBinOp(OpType.ADD_INT,
+                temp("m"), make.IRInteger(2))),
+            make.IRReturn(),
+            make.IRLabel("done"),
+            make.IRMove(ret(0), make.IRInteger(0)),
+            make.IRReturn());
+
+        assertSame(compUnit, IRInliner.optimize(compUnit, generator));
+        assertEquals(6, run(compUnit));
+    }
+
+}
@@ -0,0 +1,111 @@
+package cyr7.typecheck;
+
+import cyr7.exceptions.semantics.SemanticException;
+import cyr7.parser.ParserUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestInterfaceCache {
+
+    private final Map<String, String> interfaces = new HashMap<>();
+    private final Map<String, Integer> opened = new HashMap<>();
+
+    private final IxiFileOpener opener = name -> {
+        opened.merge(name, 1, Integer::sum);
+        return new StringReader(interfaces.get(name));
+    };
+
+    private void typeCheck(String program, InterfaceCache cache)
+            throws Exception {
+        typeCheck(program, opener, cache);
+    }
+
+    private void typeCheck(String program, IxiFileOpener opener,
+                           InterfaceCache cache) throws Exception {
+        TypeCheckUtil.typeCheck(
+            ParserUtil.parseNode(new StringReader(program), "test.xi", false),
+            opener,
+            cache);
+    }
+
+    /**
+     * Returns an opener of a library directory {@code root} that has the
+     * interface {@code lib} with the given contents.
+     */
+    private static IxiFileOpener library(String root, String contents) {
+        return new IxiFileOpener() {
+            @Override
+            public Reader openIxiLibraryFile(String name) {
+                return new StringReader(contents);
+            }
+
+            @Override
+            public String locate(String name) {
+                return root + "/" + name + ".ixi";
+            }
+        };
+    }
+
+    @Test
+    void reusesSignaturesOfUnchangedInterfaces() throws Exception {
+        interfaces.put("lib", "f(x: int): int");
+        InterfaceCache cache = new InterfaceCache();
+
+        typeCheck("use lib main(args: int[][]) { x: int = f(1) }", cache);
+        assertTrue(cache.get("lib", InterfaceCache.hash("f(x: int): int"))
+            .isPresent());
+
+        typeCheck("use lib g(): int { return f(2) }", cache);
+        assertEquals(2, opened.get("lib"));
+    }
+
+    @Test
+    void invalidatesChangedInterfaces() throws Exception {
+        interfaces.put("lib", "f(x: int): int");
+        InterfaceCache cache = new InterfaceCache();
+        typeCheck("use lib main(args: int[][]) { x: int = f(1) }", cache);
+
+        interfaces.put("lib", "f(x: int): bool");
+        assertThrows(SemanticException.class, () ->
+            typeCheck("use lib main(args: int[][]) { x: int = f(1) }", cache));
+        assertTrue(cache.get("lib", InterfaceCache.hash("f(x: int): int"))
+            .isEmpty());
+        typeCheck("use lib main(args: int[][]) { x: bool = f(1) }", cache);
+    }
+
+    @Test
+    void reportsConflictsBetweenCachedInterfaces() throws Exception {
+        interfaces.put("a", "f(x: int): int");
+        interfaces.put("b", "f(x: int): bool");
+        InterfaceCache cache = new InterfaceCache();
+        typeCheck("use a main(args: int[][]) { }", cache);
+        typeCheck("use b main(args: int[][]) { }", cache);
+
+        assertThrows(SemanticException.class, () ->
+            typeCheck("use a use b main(args: int[][]) { }", cache));
+    }
+
+    @Test
+    void keepsInterfacesOfDifferentLibrariesApart() throws Exception {
+        IxiFileOpener first = library("first", "f(x: int): int");
+        IxiFileOpener second = library("second", "f(x: int): bool");
+        InterfaceCache cache = new InterfaceCache();
+
+        typeCheck("use lib main(args: int[][]) { x: int = f(1) }", first, cache);
+        typeCheck("use lib main(args: int[][]) { x: bool = f(1) }", second, cache);
+
+        assertTrue(cache.get("first/lib.ixi", InterfaceCache.hash("f(x: int): int"))
+            .isPresent());
+        assertTrue(cache.get("second/lib.ixi", InterfaceCache.hash("f(x: int): bool"))
+            .isPresent());
+        assertThrows(SemanticException.class, () ->
+            typeCheck("use lib main(args: int[][]) { x: bool = f(1) }", first, cache));
+    }
+
+}
@@ -0,0 +1,85 @@
+package cyr7.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestBitVector {
+
+    private static BitVector of(int... bits) {
+        BitVector vector = new BitVector();
+        for (int bit : bits) {
+            vector.set(bit);
+        }
+        return vector;
+    }
+
+    @Test
+    void operationsReportWhetherTheSetChanged() {
+        BitVector vector = of(1, 70);
+
+        assertFalse(vector.set(70));
+        assertTrue(vector.set(200));
+        assertFalse(vector.or(of(1, 200)));
+        assertTrue(vector.or(of(3)));
+        assertFalse(vector.andNot(of(4, 500)));
+        assertTrue(vector.andNot(of(1)));
+        assertFalse(vector.and(of(3, 70, 200)));
+        assertTrue(vector.and(of(3)));
+        assertEquals(of(3), vector);
+    }
+
+    @Test
+    void equalityIgnoresAllocatedWords() {
+        BitVector grown = of(2, 1000);
+        grown.clear(1000);
+
+        assertEquals(of(2), grown);
+        assertEquals(of(2).hashCode(), grown.hashCode());
+
+        BitVector emptied = of(900);
+        emptied.andNot(of(900));
+        assertTrue(emptied.isEmpty());
+        assertEquals(new BitVector(), emptied);
+    }
+
+    @Test
+    void comparesWithoutCopying() {
+        BitVector vector = of(1, 70, 200);
+
+        assertTrue(vector.containsAll(of(1, 200)));
+        assertTrue(vector.containsAll(new BitVector()));
+        assertFalse(vector.containsAll(of(1, 500)));
+        assertFalse(of(1).containsAll(of(70)));
+        assertTrue(vector.intersects(of(70, 500)));
+        assertFalse(vector.intersects(of(2, 500)));
+        assertEquals(of(1, 70, 200), vector);
+    }
+
+    @Test
+    void iteratesItsBitsInOrder() {
+        BitVector vector = of(130, 0, 64, 63);
+
+        assertArrayEquals(new int[] { 0, 63, 64, 130 }, vector.stream().toArray());
+        assertEquals(4, vector.cardinality());
+        assertEquals(130, vector.nextSetBit(65));
+        assertEquals(-1, vector.nextSetBit(131));
+        assertEquals("{0, 63, 64, 130}", vector.toString());
+    }
+
+    @Test
+    void convertsFromAndCombinesWithBitSets() {
+        BitSet bits = new BitSet();
+        bits.set(5);
+        bits.set(99);
+
+        BitVector vector = new BitVector(bits);
+        assertEquals(of(5, 99), vector);
+        assertFalse(vector.or(bits));
+        assertTrue(vector.andNot(bits));
+        assertTrue(vector.isEmpty());
+    }
+
+}
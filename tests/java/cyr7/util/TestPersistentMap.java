@@ -0,0 +1,126 @@
+package cyr7.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestPersistentMap {
+
+    private static PersistentMap<String, Integer> of(Map<String, Integer> entries) {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+            map = map.with(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    private static Map<String, Integer> toMap(PersistentMap<String, Integer> map) {
+        Map<String, Integer> entries = new HashMap<>();
+        map.forEach(entries::put);
+        return entries;
+    }
+
+    /**
+     * Keys that often share all or part of their hashes, since "Aa" and "BB"
+     * have the same hash.
+     */
+    private static List<String> keys() {
+        List<String> keys = new ArrayList<>();
+        for (String first : List.of("Aa", "BB")) {
+            for (String second : List.of("Aa", "BB")) {
+                keys.add(first + second);
+            }
+            keys.add(first);
+        }
+        for (int i = 0; i < 200; i++) {
+            keys.add("t" + i);
+        }
+        return keys;
+    }
+
+    @Test
+    void updatesLeaveTheOriginalUnchanged() {
+        PersistentMap<String, Integer> map = of(Map.of("x", 1, "y", 2));
+
+        PersistentMap<String, Integer> updated = map.with("x", 3).without("y");
+
+        assertEquals(Map.of("x", 1, "y", 2), toMap(map));
+        assertEquals(Map.of("x", 3), toMap(updated));
+        assertSame(map, map.with("x", 1));
+        assertSame(map, map.without("z"));
+        assertNull(map.get("z"));
+        assertTrue(map.without("x").without("y").isEmpty());
+    }
+
+    @Test
+    void mapsWithTheSameEntriesAreEqual() {
+        Random random = new Random(17);
+        List<String> keys = keys();
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int step = 0; step < 5000; step++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            if (random.nextBoolean()) {
+                int value = random.nextInt(3);
+                expected.put(key, value);
+                map = map.with(key, value);
+            } else {
+                expected.remove(key);
+                map = map.without(key);
+            }
+            for (String k : List.of("Aa", "BB", "AaBB", key)) {
+                assertEquals(expected.get(k), map.get(k));
+            }
+            if (step % 50 == 0) {
+                PersistentMap<String, Integer> built = of(expected);
+                assertEquals(expected, toMap(map));
+                assertEquals(built, map);
+                assertEquals(built.hashCode(), map.hashCode());
+            }
+        }
+    }
+
+    @Test
+    void mergeCombinesTheValuesOfSharedKeys() {
+        Random random = new Random(42);
+        List<String> keys = keys();
+        for (int round = 0; round < 50; round++) {
+            Map<String, Integer> left = new HashMap<>();
+            Map<String, Integer> right = new HashMap<>();
+            for (String key : keys) {
+                int choice = random.nextInt(4);
+                if (choice == 1 || choice == 3) {
+                    left.put(key, random.nextInt(3));
+                }
+                if (choice == 2 || choice == 3) {
+                    right.put(key, random.nextInt(3));
+                }
+            }
+            Map<String, Integer> expected = new HashMap<>(left);
+            right.forEach((key, value) -> expected.merge(key, value, Math::min));
+
+            PersistentMap<String, Integer> merged = of(left).merge(of(right), Math::min);
+
+            assertEquals(expected, toMap(merged));
+            assertEquals(of(expected), merged);
+        }
+    }
+
+    @Test
+    void mergeReusesMapsThatDoNotChange() {
+        PersistentMap<String, Integer> map = of(Map.of("Aa", 1, "BB", 2, "x", 3));
+        PersistentMap<String, Integer> larger = map.with("y", 0).with("Aa", 0);
+
+        assertSame(map, map.merge(map, Math::min));
+        assertSame(map, map.merge(PersistentMap.empty(), Math::min));
+        assertSame(larger, map.merge(larger, Math::min));
+        assertSame(larger, larger.merge(map, Math::min));
+    }
+
+}
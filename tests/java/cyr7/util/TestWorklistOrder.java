@@ -0,0 +1,84 @@
+package cyr7.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestWorklistOrder {
+
+    private static WorklistOrder<Integer> order(Map<Integer, List<Integer>> edges) {
+        return WorklistOrder.of(0, n -> edges.getOrDefault(n, List.of()));
+    }
+
+    private static List<Integer> nodes(WorklistOrder<Integer> order) {
+        return IntStream.range(0, order.size())
+            .mapToObj(order::node)
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void loopsAreFinishedBeforeTheNodesAfterThem() {
+        // 0 -> (1 <-> 2) -> (3 <-> 4) -> 5. Reverse postorder alone would
+        // place 5 before 4, leaving the second loop before it converges.
+        WorklistOrder<Integer> order = order(Map.of(
+            0, List.of(1),
+            1, List.of(2),
+            2, List.of(3, 1),
+            3, List.of(4, 5),
+            4, List.of(3)));
+
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), nodes(order));
+        assertEquals(4, order.componentCount());
+        assertEquals(order.componentOf(1), order.componentOf(2));
+        assertEquals(order.componentOf(3), order.componentOf(4));
+        assertNotEquals(order.componentOf(2), order.componentOf(3));
+    }
+
+    @Test
+    void nodesComeAfterTheirPredecessors() {
+        WorklistOrder<Integer> order = order(Map.of(
+            0, List.of(2, 1),
+            1, List.of(3),
+            2, List.of(3),
+            3, List.of(4)));
+
+        assertEquals(0, order.indexOf(0));
+        assertTrue(order.indexOf(3) > order.indexOf(1));
+        assertTrue(order.indexOf(3) > order.indexOf(2));
+        assertEquals(4, order.indexOf(4));
+        assertEquals(0, order.backwardIndexOf(4));
+        assertEquals(4, order.backwardNode(0));
+        assertEquals(-1, order.indexOf(7));
+    }
+
+    @Test
+    void longGraphsDoNotOverflowTheStack() {
+        int size = 200_000;
+        WorklistOrder<Integer> order = WorklistOrder.of(0,
+            n -> n + 1 < size ? List.of(n + 1, 0) : List.of(0));
+
+        assertEquals(size, order.size());
+        assertEquals(1, order.componentCount());
+        assertEquals(size - 1, order.indexOf(size - 1));
+    }
+
+    @Test
+    void worklistVisitsTheLeastWaitingIntOnce() {
+        PriorityWorklist worklist = PriorityWorklist.full(4);
+        assertEquals(0, worklist.poll());
+        assertEquals(1, worklist.poll());
+        worklist.add(0);
+        worklist.add(3);
+        assertEquals(0, worklist.poll());
+        assertEquals(2, worklist.poll());
+        assertEquals(3, worklist.poll());
+        assertTrue(worklist.isEmpty());
+        assertEquals(-1, worklist.poll());
+    }
+
+}
@@ -0,0 +1,116 @@
+package cyr7.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cyr7.cfg.asm.reg.RegisterAllocationFailedException;
+import cyr7.cfg.asm.reg.RegisterAllocator;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.IdGenerator;
+import cyr7.ir.ScopedIdGenerator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.ir.nodes.IRFuncDecl;
+import cyr7.x86.ASMConfig;
+import cyr7.x86.abst.ASMAbstract;
+import cyr7.x86.asm.ASMLine;
+import cyr7.x86.tiler.ComplexTiler;
+import cyr7.x86.tiler.TilerFactory;
+
+/**
+ * Measures instruction selection with {@link ComplexTiler} and register
+ * allocation with {@link RegisterAllocator}, over every function of the
+ * fully optimized program.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackEndBenchmark {
+
+    private static final TilerFactory TILER
+        = TilerFactory.complexTilerFactory(ASMConfig.defaults());
+
+    /**
+     * The tiler records the best tiling of each IR node on the node itself,
+     * so each invocation tiles freshly lowered IR.
+     */
+    @State(Scope.Thread)
+    public static class LoweredProgram {
+
+        List<IRFuncDecl> functions;
+
+        @Setup(Level.Invocation)
+        public void lower(XiSource source) throws Exception {
+            IRCompUnit lir = IRUtil.lower(source.translate(),
+                new DefaultIdGenerator(), OptConfig.allEnabled());
+            functions = new ArrayList<>(lir.functions().values());
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class TiledProgram {
+
+        final List<String> names = new ArrayList<>();
+        final List<List<ASMLine>> bodies = new ArrayList<>();
+        final List<IdGenerator> generators = new ArrayList<>();
+
+        @Setup(Level.Invocation)
+        public void tile(XiSource source) throws Exception {
+            names.clear();
+            bodies.clear();
+            generators.clear();
+            IRCompUnit lir = IRUtil.lower(source.translate(),
+                new DefaultIdGenerator(), OptConfig.allEnabled());
+            for (IRFuncDecl function : lir.functions().values()) {
+                IdGenerator generator = ScopedIdGenerator.forFunction(function.name());
+                names.add(function.name());
+                bodies.add(ASMAbstract.generateBody(function, generator, TILER));
+                generators.add(generator);
+            }
+        }
+
+    }
+
+    @Benchmark
+    public void tile(LoweredProgram program, Blackhole blackhole) {
+        for (IRFuncDecl function : program.functions) {
+            blackhole.consume(ASMAbstract.generateBody(function,
+                ScopedIdGenerator.forFunction(function.name()), TILER));
+        }
+    }
+
+    @Benchmark
+    public void allocateRegisters(TiledProgram program, Blackhole blackhole) {
+        for (int i = 0; i < program.names.size(); i++) {
+            RegisterAllocator allocator = new RegisterAllocator(
+                program.bodies.get(i), program.names.get(i),
+                program.generators.get(i));
+            try {
+                allocator.run();
+            } catch (RegisterAllocationFailedException e) {
+                // Measured like a successful allocation; the compiler would
+                // fall back to spilling every temp.
+            }
+            blackhole.consume(allocator.program());
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package cyr7.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cyr7.ast.Node;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.lexer.MultiFileLexer;
+import cyr7.parser.XiParser;
+import cyr7.parser.sym;
+import cyr7.typecheck.TypeCheckUtil;
+import cyr7.visitor.VisitorFactory;
+import java_cup.runtime.ComplexSymbolFactory;
+import java_cup.runtime.ScannerBuffer;
+import java_cup.runtime.Symbol;
+
+/**
+ * Measures the throughput of each phase of the front end on its own: lexing
+ * with {@link MultiFileLexer}, parsing with {@link XiParser}, typechecking
+ * with {@code TypeCheckVisitor} and translating to IR with
+ * {@code AstToIrVisitor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+    /**
+     * The typechecker annotates the AST in place, so each invocation
+     * typechecks a freshly parsed AST.
+     */
+    @State(Scope.Thread)
+    public static class ParsedProgram {
+
+        Node ast;
+
+        @Setup(Level.Invocation)
+        public void parse(XiSource source) throws Exception {
+            ast = source.parse();
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class TypedProgram {
+
+        Node ast;
+
+        @Setup(Level.Trial)
+        public void typeCheck(XiSource source) throws Exception {
+            ast = source.typeCheck();
+        }
+
+    }
+
+    @Benchmark
+    public void lex(XiSource source, Blackhole blackhole) throws Exception {
+        MultiFileLexer lexer = new MultiFileLexer(source.reader(),
+            source.filename(), false);
+        Symbol token;
+        do {
+            token = lexer.next_token();
+            blackhole.consume(token);
+        } while (token.sym != sym.EOF);
+    }
+
+    @Benchmark
+    public Object parse(XiSource source) throws Exception {
+        ScannerBuffer lexer = new ScannerBuffer(new MultiFileLexer(
+            source.reader(), source.filename(), false));
+        return new XiParser(lexer, new ComplexSymbolFactory()).parse().value;
+    }
+
+    @Benchmark
+    public Node typeCheck(XiSource source, ParsedProgram program) {
+        TypeCheckUtil.typeCheck(program.ast, source.opener());
+        return program.ast;
+    }
+
+    @Benchmark
+    public IRCompUnit translate(TypedProgram program) {
+        return (IRCompUnit) program.ast
+            .accept(VisitorFactory.Companion.astToIrVisitor(
+                new DefaultIdGenerator()))
+            .assertSecond();
+    }
+
+}
@@ -0,0 +1,67 @@
+package cyr7.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cyr7.cli.OptConfig;
+import cyr7.cli.Optimization;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.nodes.IRCompUnit;
+
+/**
+ * Measures {@link IRUtil#lower} with each optimization enabled on its own,
+ * with none of them, and with all of them. Lowering never changes its input,
+ * so the same MIR is lowered by every invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoweringBenchmark {
+
+    /**
+     * {@code none}, {@code all}, or the name of an {@link Optimization}.
+     */
+    @Param({"none", "cf", "copy", "dce", "lu", "all"})
+    public String optimization;
+
+    private OptConfig optConfig;
+    private IRCompUnit mir;
+
+    @Setup
+    public void translate(XiSource source) throws Exception {
+        switch (optimization) {
+            case "none":
+                optConfig = OptConfig.none();
+                break;
+            case "all":
+                optConfig = OptConfig.allEnabled();
+                break;
+            default:
+                optConfig = OptConfig.of(Optimization.parse(optimization)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                        "Unknown optimization: " + optimization)));
+        }
+        mir = source.translate();
+    }
+
+    @Benchmark
+    public IRCompUnit lower() {
+        return IRUtil.lower(mir, new DefaultIdGenerator(), optConfig);
+    }
+
+}
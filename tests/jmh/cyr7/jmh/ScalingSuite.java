@@ -0,0 +1,266 @@
+package cyr7.jmh;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import cyr7.ast.Node;
+import cyr7.benchmark.XiProgramGenerator;
+import cyr7.benchmark.XiProgramGenerator.Shape;
+import cyr7.cli.OptConfig;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IRUtil;
+import cyr7.ir.IdGenerator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.parser.ParserUtil;
+import cyr7.typecheck.TypeCheckUtil;
+import cyr7.util.PhaseTimings;
+import cyr7.visitor.VisitorFactory;
+import cyr7.x86.ASMConfig;
+import cyr7.x86.ASMUtil;
+import cyr7.x86.ASMUtil.TilerConf;
+
+/**
+ * Measures how the compile time and peak heap of each stage of the compiler
+ * grow with the size of the program, using programs generated by
+ * {@link XiProgramGenerator}. Each size knob is swept on its own, doubling
+ * from a base shape, and every other knob is held fixed.
+ * <p>
+ * The results are written as CSV, together with a gnuplot script that
+ * plots each stage against each knob. A summary printed to standard out
+ * gives the growth exponent of each stage between consecutive sizes; an
+ * exponent well above 1 marks super-linear behavior.
+ * <p>
+ * Usage: {@code ScalingSuite [output directory] [seed] [repetitions]}
+ */
+public final class ScalingSuite {
+
+    private static final String[] STAGES = {
+        "parsing", "typechecking", "AstToIrVisitor", "lowering", "assembly"
+    };
+
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = new ArrayList<>();
+
+    static {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                HEAP_POOLS.add(pool);
+            }
+        }
+    }
+
+    /**
+     * A knob of {@link Shape} and the sizes it is swept over.
+     */
+    private static final class Sweep {
+
+        final String knob;
+        final int[] sizes;
+        final IntFunction<Shape> shape;
+
+        Sweep(String knob, IntFunction<Shape> shape, int... sizes) {
+            this.knob = knob;
+            this.sizes = sizes;
+            this.shape = shape;
+        }
+
+    }
+
+    private static List<Sweep> sweeps() {
+        Shape base = Shape.small();
+        Shape longFunctions = base.withFunctions(4).withStatements(256);
+        return List.of(
+            new Sweep("functions", base::withFunctions,
+                16, 32, 64, 128, 256, 512, 1024),
+            new Sweep("statements", base.withFunctions(4)::withStatements,
+                64, 128, 256, 512, 1024, 2048, 4096),
+            new Sweep("loopDepth", longFunctions::withLoopDepth,
+                1, 2, 3, 4, 6, 8),
+            new Sweep("temps", longFunctions::withTemps,
+                8, 16, 32, 64, 128, 256),
+            new Sweep("callsPercent",
+                percent -> longFunctions.withCallDensity(percent / 100.0),
+                5, 10, 20, 40, 80),
+            new Sweep("expressionDepth", longFunctions::withExpressionDepth,
+                2, 4, 6, 8, 10, 12));
+    }
+
+    /**
+     * The measurements of one stage: the median wall time over the
+     * repetitions, and the largest peak heap.
+     */
+    private static final class Measurement {
+
+        final long[] wallNanos;
+        long peakHeapBytes;
+
+        Measurement(int repetitions) {
+            this.wallNanos = new long[repetitions];
+        }
+
+        double medianMillis() {
+            long[] sorted = wallNanos.clone();
+            Arrays.sort(sorted);
+            return sorted[sorted.length / 2] / 1e6;
+        }
+
+        double peakHeapMiB() {
+            return peakHeapBytes / (1024.0 * 1024.0);
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface Stage<T> {
+        T run() throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path output = Paths.get(args.length > 0 ? args[0] : "build/reports/scaling");
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 0;
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        Files.createDirectories(output);
+
+        try (PrintWriter csv = new PrintWriter(
+                Files.newBufferedWriter(output.resolve("scaling.csv")))) {
+            csv.println("knob,size,stage,wall_ms,peak_heap_mib");
+            for (Sweep sweep : sweeps()) {
+                System.out.printf("%n%s%n", sweep.knob);
+                System.out.printf("%8s", "size");
+                for (String stage : STAGES) {
+                    System.out.printf(" %22s", stage + " ms (exp)");
+                }
+                System.out.println();
+
+                Map<String, Double> previous = new LinkedHashMap<>();
+                int previousSize = 0;
+                for (int size : sweep.sizes) {
+                    String program = XiProgramGenerator.generate(
+                        sweep.shape.apply(size), seed);
+                    Map<String, Measurement> measurements
+                        = measure(program, repetitions);
+
+                    System.out.printf("%8d", size);
+                    for (String stage : STAGES) {
+                        Measurement m = measurements.get(stage);
+                        csv.printf("%s,%d,%s,%.3f,%.3f%n", sweep.knob, size,
+                            stage, m.medianMillis(), m.peakHeapMiB());
+                        String exponent = previous.containsKey(stage)
+                            ? String.format("%.2f", Math.log(
+                                    m.medianMillis() / previous.get(stage))
+                                / Math.log((double) size / previousSize))
+                            : "-";
+                        System.out.printf(" %14.2f (%5s)",
+                            m.medianMillis(), exponent);
+                        previous.put(stage, m.medianMillis());
+                    }
+                    System.out.println();
+                    previousSize = size;
+                }
+            }
+        }
+        writePlotScript(output);
+        System.out.printf("%nWrote %s%n", output.resolve("scaling.csv"));
+    }
+
+    /**
+     * Compiles {@code program} {@code repetitions} times, measuring each
+     * stage separately. Every stage after parsing starts from the output of
+     * the previous stage of the same repetition.
+     */
+    private static Map<String, Measurement> measure(String program,
+                                                    int repetitions)
+            throws Exception {
+        Map<String, Measurement> measurements = new LinkedHashMap<>();
+        for (String stage : STAGES) {
+            measurements.put(stage, new Measurement(repetitions));
+        }
+        for (int i = 0; i < repetitions; i++) {
+            int repetition = i;
+            IdGenerator generator = new DefaultIdGenerator();
+            Node ast = time(measurements.get("parsing"), repetition, () ->
+                ParserUtil.parseNode(new StringReader(program),
+                    "generated.xi", false));
+            time(measurements.get("typechecking"), repetition, () -> {
+                TypeCheckUtil.typeCheck(ast, name -> Reader.nullReader());
+                return ast;
+            });
+            IRCompUnit mir = time(measurements.get("AstToIrVisitor"),
+                repetition, () -> (IRCompUnit) ast
+                    .accept(VisitorFactory.Companion.astToIrVisitor(generator))
+                    .assertSecond());
+            IRCompUnit lir = time(measurements.get("lowering"), repetition,
+                () -> IRUtil.lower(mir, generator, OptConfig.allEnabled()));
+            time(measurements.get("assembly"), repetition, () ->
+                ASMUtil.generateASM(lir, generator, OptConfig.allEnabled(),
+                    TilerConf.COMPLEX, ASMConfig.defaults(),
+                    PhaseTimings.disabled()));
+        }
+        return measurements;
+    }
+
+    /**
+     * Runs {@code stage}, recording its wall time and the peak heap usage
+     * while it ran. The heap is collected beforehand, so the peak is that of
+     * the stage and of whatever earlier stages it still references.
+     */
+    private static <T> T time(Measurement measurement, int repetition,
+                              Stage<T> stage) throws Exception {
+        System.gc();
+        HEAP_POOLS.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+        T result = stage.run();
+        measurement.wallNanos[repetition] = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : HEAP_POOLS) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        measurement.peakHeapBytes = Math.max(measurement.peakHeapBytes, peak);
+        return result;
+    }
+
+    private static void writePlotScript(Path output) throws IOException {
+        try (PrintWriter gp = new PrintWriter(
+                Files.newBufferedWriter(output.resolve("scaling.gp")))) {
+            gp.println("# Plots scaling.csv: gnuplot scaling.gp");
+            gp.println("set datafile separator ','");
+            gp.println("set terminal pngcairo size 1200,500");
+            gp.println("set key top left");
+            gp.println("set logscale xy");
+            for (Sweep sweep : sweeps()) {
+                gp.printf("set output '%s.png'%n", sweep.knob);
+                gp.println("set multiplot layout 1,2");
+                plot(gp, sweep.knob, 4, "wall time (ms)");
+                plot(gp, sweep.knob, 5, "peak heap (MiB)");
+                gp.println("unset multiplot");
+            }
+        }
+    }
+
+    private static void plot(PrintWriter gp, String knob, int column,
+                             String label) {
+        gp.printf("set xlabel '%s'%nset ylabel '%s'%n", knob, label);
+        List<String> lines = new ArrayList<>();
+        for (String stage : STAGES) {
+            lines.add(String.format(
+                "'scaling.csv' using ((strcol(1) eq '%s' && strcol(3) eq '%s')"
+                    + " ? $2 : NaN):%d with linespoints title '%s'",
+                knob, stage, column, stage));
+        }
+        gp.println("plot " + String.join(", \\\n     ", lines));
+    }
+
+}
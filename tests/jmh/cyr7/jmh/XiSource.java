@@ -0,0 +1,93 @@
+package cyr7.jmh;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import cyr7.ast.Node;
+import cyr7.ir.DefaultIdGenerator;
+import cyr7.ir.IdGenerator;
+import cyr7.ir.nodes.IRCompUnit;
+import cyr7.parser.ParserUtil;
+import cyr7.typecheck.IxiFileOpener;
+import cyr7.typecheck.TypeCheckUtil;
+import cyr7.visitor.VisitorFactory;
+
+/**
+ * The Xi program that a benchmark compiles. The program is read once per
+ * trial from {@link #file}, which is resolved against the project directory;
+ * by default every program in {@code benchmarks/} is measured, and any other
+ * file, such as one of the test resources, can be chosen with
+ * {@code -p file=<path>}.
+ */
+@State(Scope.Benchmark)
+public class XiSource {
+
+    @Param({
+        "benchmarks/copy_dce_benchmark1.xi",
+        "benchmarks/copy_dce_benchmark2.xi",
+        "benchmarks/copy_dce_benchmark3.xi",
+        "benchmarks/lu_benchmark1.xi",
+        "benchmarks/lu_benchmark2.xi",
+        "benchmarks/lu_benchmark3.xi",
+        "benchmarks/reg_benchmark1.xi",
+        "benchmarks/reg_benchmark2.xi",
+        "benchmarks/reg_benchmark3.xi",
+        "benchmarks/reg_benchmark4.xi"
+    })
+    public String file;
+
+    /**
+     * Interfaces are looked up next to the standard library used by the
+     * test resources.
+     */
+    static final Path LIBRARY = Paths.get("tests", "resources", "integration", "lib");
+
+    private String source;
+
+    @Setup
+    public void read() throws IOException {
+        source = Files.readString(Paths.get(file));
+    }
+
+    Reader reader() {
+        return new StringReader(source);
+    }
+
+    String filename() {
+        return Paths.get(file).getFileName().toString();
+    }
+
+    IxiFileOpener opener() {
+        return name -> Files.newBufferedReader(LIBRARY.resolve(name + ".ixi"));
+    }
+
+    Node parse() throws Exception {
+        return ParserUtil.parseNode(reader(), filename(), false);
+    }
+
+    Node typeCheck() throws Exception {
+        Node node = parse();
+        TypeCheckUtil.typeCheck(node, opener());
+        return node;
+    }
+
+    IRCompUnit translate(IdGenerator generator) throws Exception {
+        return (IRCompUnit) typeCheck()
+            .accept(VisitorFactory.Companion.astToIrVisitor(generator))
+            .assertSecond();
+    }
+
+    IRCompUnit translate() throws Exception {
+        return translate(new DefaultIdGenerator());
+    }
+
+}